@@ -0,0 +1,160 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Sage and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Sage - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.dltk.internal.core.index.segment;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Growable buffer used for encoding segment records, and helper methods for
+ * decoding them. Strings are stored as their UTF-8 byte length followed by
+ * the bytes, <code>null</code> strings have length <code>-1</code>.
+ *
+ * @author michael
+ */
+public class RecordBuffer {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8"); //$NON-NLS-1$
+
+	private byte[] bytes;
+	private int size;
+
+	public RecordBuffer(int capacity) {
+		bytes = new byte[capacity];
+	}
+
+	public void reset() {
+		size = 0;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public void putByte(int value) {
+		ensureCapacity(1);
+		bytes[size++] = (byte) value;
+	}
+
+	public void putInt(int value) {
+		ensureCapacity(4);
+		bytes[size++] = (byte) (value >>> 24);
+		bytes[size++] = (byte) (value >>> 16);
+		bytes[size++] = (byte) (value >>> 8);
+		bytes[size++] = (byte) value;
+	}
+
+	/**
+	 * Overwrites integer value at the given position
+	 */
+	public void setInt(int position, int value) {
+		bytes[position] = (byte) (value >>> 24);
+		bytes[position + 1] = (byte) (value >>> 16);
+		bytes[position + 2] = (byte) (value >>> 8);
+		bytes[position + 3] = (byte) value;
+	}
+
+	public void putLong(long value) {
+		putInt((int) (value >>> 32));
+		putInt((int) value);
+	}
+
+	public void putBytes(byte[] value, int offset, int length) {
+		ensureCapacity(length);
+		System.arraycopy(value, offset, bytes, size, length);
+		size += length;
+	}
+
+	public void putString(String value) {
+		if (value == null) {
+			putInt(-1);
+			return;
+		}
+		int length = value.length();
+		boolean ascii = true;
+		for (int i = 0; i < length; ++i) {
+			if (value.charAt(i) >= 0x80) {
+				ascii = false;
+				break;
+			}
+		}
+		if (ascii) {
+			putInt(length);
+			ensureCapacity(length);
+			for (int i = 0; i < length; ++i) {
+				bytes[size++] = (byte) value.charAt(i);
+			}
+		} else {
+			ByteBuffer encoded = UTF8.encode(value);
+			int encodedLength = encoded.remaining();
+			putInt(encodedLength);
+			ensureCapacity(encodedLength);
+			encoded.get(bytes, size, encodedLength);
+			size += encodedLength;
+		}
+	}
+
+	/**
+	 * Returns buffer wrapping the encoded bytes, which is valid until this
+	 * record buffer is modified
+	 */
+	public ByteBuffer toByteBuffer() {
+		return ByteBuffer.wrap(bytes, 0, size);
+	}
+
+	private void ensureCapacity(int required) {
+		if (size + required > bytes.length) {
+			byte[] grown = new byte[Math.max(bytes.length * 2, size + required)];
+			System.arraycopy(bytes, 0, grown, 0, size);
+			bytes = grown;
+		}
+	}
+
+	/**
+	 * Reads string from the current position of the given buffer
+	 */
+	public static String getString(ByteBuffer buffer) {
+		int length = buffer.getInt();
+		if (length < 0) {
+			return null;
+		}
+		int start = buffer.position();
+		boolean ascii = true;
+		for (int i = 0; i < length; ++i) {
+			if (buffer.get(start + i) < 0) {
+				ascii = false;
+				break;
+			}
+		}
+		if (ascii) {
+			char[] chars = new char[length];
+			for (int i = 0; i < length; ++i) {
+				chars[i] = (char) buffer.get(start + i);
+			}
+			buffer.position(start + length);
+			return new String(chars);
+		}
+		ByteBuffer slice = buffer.duplicate();
+		slice.limit(start + length);
+		buffer.position(start + length);
+		return UTF8.decode(slice).toString();
+	}
+
+	/**
+	 * Skips string at the current position of the given buffer
+	 */
+	public static void skipString(ByteBuffer buffer) {
+		int length = buffer.getInt();
+		if (length > 0) {
+			buffer.position(buffer.position() + length);
+		}
+	}
+}
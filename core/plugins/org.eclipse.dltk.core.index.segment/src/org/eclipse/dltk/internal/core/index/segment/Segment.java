@@ -0,0 +1,321 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Sage and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Sage - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.dltk.internal.core.index.segment;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only segment file. The file starts with a header containing the
+ * format version and the sequence number of the first segment this segment
+ * supersedes (segments produced by compaction replace a range of older
+ * segments). The header is followed by records, each record is prefixed with
+ * its length and checksum, so a record torn by a crash is detected when the
+ * segment is replayed.
+ * <p>
+ * Records are appended by a single writer through the file channel, and read
+ * by any number of threads through a read-only memory mapping, which is
+ * re-created when the file grows.
+ * </p>
+ *
+ * @author michael
+ */
+public class Segment {
+
+	/**
+	 * Visitor of the segment records
+	 */
+	public interface IRecordVisitor {
+
+		/**
+		 * @param offset
+		 *            Record offset in the segment
+		 * @param payload
+		 *            Record contents
+		 */
+		void visit(Segment segment, int offset, ByteBuffer payload);
+	}
+
+	private static final int MAGIC = 0x444C5347;
+	private static final int VERSION = 1;
+
+	/** Magic number, version and base sequence number */
+	public static final int HEADER_SIZE = 16;
+
+	/** Record length and checksum */
+	public static final int RECORD_HEADER_SIZE = 8;
+
+	private final File file;
+	private final long sequence;
+	private final long base;
+	private final RandomAccessFile randomAccessFile;
+	private final FileChannel channel;
+
+	private volatile int size;
+	private volatile MappedByteBuffer mapped;
+
+	/** Size of records describing live documents */
+	private final AtomicInteger liveBytes = new AtomicInteger();
+
+	private Segment(File file, long sequence, long base,
+			RandomAccessFile randomAccessFile, int size) {
+		this.file = file;
+		this.sequence = sequence;
+		this.base = base;
+		this.randomAccessFile = randomAccessFile;
+		this.channel = randomAccessFile.getChannel();
+		this.size = size;
+	}
+
+	/**
+	 * Creates new empty segment
+	 *
+	 * @param base
+	 *            Sequence number of the first segment this segment supersedes,
+	 *            or the own sequence number for segments that don't supersede
+	 *            other segments
+	 */
+	public static Segment create(File file, long sequence, long base)
+			throws IOException {
+		RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw"); //$NON-NLS-1$
+		try {
+			randomAccessFile.setLength(0);
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			header.putInt(MAGIC);
+			header.putInt(VERSION);
+			header.putLong(base);
+			header.flip();
+			randomAccessFile.getChannel().write(header, 0);
+		} catch (IOException e) {
+			randomAccessFile.close();
+			throw e;
+		}
+		return new Segment(file, sequence, base, randomAccessFile, HEADER_SIZE);
+	}
+
+	/**
+	 * Opens existing segment. Records must be {@link #replay(IRecordVisitor)
+	 * replayed} before new records are appended.
+	 *
+	 * @return segment, or <code>null</code> if the file was written using
+	 *         incompatible format
+	 */
+	public static Segment open(File file, long sequence) throws IOException {
+		RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw"); //$NON-NLS-1$
+		try {
+			if (randomAccessFile.length() >= HEADER_SIZE) {
+				ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+				randomAccessFile.getChannel().read(header, 0);
+				header.flip();
+				if (header.getInt() == MAGIC && header.getInt() == VERSION) {
+					return new Segment(file, sequence, header.getLong(),
+							randomAccessFile, (int) randomAccessFile.length());
+				}
+			}
+		} catch (IOException e) {
+			randomAccessFile.close();
+			throw e;
+		}
+		randomAccessFile.close();
+		return null;
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	public long getSequence() {
+		return sequence;
+	}
+
+	public long getBase() {
+		return base;
+	}
+
+	/**
+	 * Returns size of the segment data
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * Returns size of records describing live documents
+	 */
+	public int getLiveBytes() {
+		return liveBytes.get();
+	}
+
+	public void addLiveBytes(int delta) {
+		liveBytes.addAndGet(delta);
+	}
+
+	/**
+	 * Appends new record. Must be called by a single writer at a time.
+	 *
+	 * @param payload
+	 *            Record contents between the buffer position and its limit
+	 * @return record offset
+	 */
+	public int append(ByteBuffer payload) throws IOException {
+		int length = payload.remaining();
+		byte[] bytes;
+		int bytesOffset;
+		if (payload.hasArray()) {
+			bytes = payload.array();
+			bytesOffset = payload.arrayOffset() + payload.position();
+		} else {
+			bytes = new byte[length];
+			payload.duplicate().get(bytes);
+			bytesOffset = 0;
+		}
+		CRC32 crc = new CRC32();
+		crc.update(bytes, bytesOffset, length);
+
+		ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + length);
+		record.putInt(length);
+		record.putInt((int) crc.getValue());
+		record.put(bytes, bytesOffset, length);
+		record.flip();
+
+		int offset = size;
+		long position = offset;
+		while (record.hasRemaining()) {
+			position += channel.write(record, position);
+		}
+		size = offset + RECORD_HEADER_SIZE + length;
+		return offset;
+	}
+
+	/**
+	 * Returns contents of the record at the given offset
+	 */
+	public ByteBuffer read(int offset) throws IOException {
+		ByteBuffer buffer = buffer(offset + RECORD_HEADER_SIZE);
+		int length = buffer.getInt(offset);
+		int start = offset + RECORD_HEADER_SIZE;
+		if (buffer.capacity() < start + length) {
+			buffer = buffer(start + length);
+		}
+		buffer.limit(start + length);
+		buffer.position(start);
+		return buffer.slice();
+	}
+
+	/**
+	 * Returns read-only buffer, which covers at least the given number of
+	 * bytes from the beginning of the segment
+	 */
+	private ByteBuffer buffer(int end) throws IOException {
+		MappedByteBuffer current = mapped;
+		if (current == null || current.capacity() < end) {
+			synchronized (this) {
+				current = mapped;
+				if (current == null || current.capacity() < end) {
+					current = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+							size);
+					mapped = current;
+				}
+			}
+		}
+		return current.duplicate();
+	}
+
+	/**
+	 * Reads all records of this segment, and truncates the segment at the
+	 * first record that is incomplete or corrupted.
+	 *
+	 * @return <code>true</code> if all records were valid
+	 */
+	public boolean replay(IRecordVisitor visitor) throws IOException {
+		int fileSize = size;
+		ByteBuffer buffer = buffer(fileSize);
+		int offset = HEADER_SIZE;
+		byte[] bytes = new byte[0];
+		CRC32 crc = new CRC32();
+		while (offset + RECORD_HEADER_SIZE <= fileSize) {
+			int length = buffer.getInt(offset);
+			int checksum = buffer.getInt(offset + 4);
+			int start = offset + RECORD_HEADER_SIZE;
+			if (length < 0 || length > fileSize - start) {
+				break;
+			}
+			if (bytes.length < length) {
+				bytes = new byte[length];
+			}
+			buffer.position(start);
+			buffer.get(bytes, 0, length);
+			crc.reset();
+			crc.update(bytes, 0, length);
+			if ((int) crc.getValue() != checksum) {
+				break;
+			}
+			buffer.limit(start + length);
+			buffer.position(start);
+			visitor.visit(this, offset, buffer.slice());
+			buffer.limit(buffer.capacity());
+			offset = start + length;
+		}
+		if (offset != fileSize) {
+			truncate(offset);
+			return false;
+		}
+		return true;
+	}
+
+	private void truncate(int end) throws IOException {
+		synchronized (this) {
+			mapped = null;
+			channel.truncate(end);
+			size = end;
+		}
+	}
+
+	/**
+	 * Forces appended records to the storage device
+	 */
+	public void force() throws IOException {
+		channel.force(false);
+	}
+
+	/**
+	 * Closes the segment file. Buffers that were already returned by
+	 * {@link #read(int)} remain valid.
+	 */
+	public void close() throws IOException {
+		randomAccessFile.close();
+	}
+
+	/**
+	 * Closes and deletes the segment file
+	 *
+	 * @return <code>true</code> if the file was deleted
+	 */
+	public boolean delete() {
+		try {
+			close();
+		} catch (IOException e) {
+			// ignore
+		}
+		mapped = null;
+		return file.delete();
+	}
+
+	public String toString() {
+		return file.getName();
+	}
+}
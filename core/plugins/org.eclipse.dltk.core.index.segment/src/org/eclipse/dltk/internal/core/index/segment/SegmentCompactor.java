@@ -0,0 +1,58 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Sage and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Sage - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.dltk.internal.core.index.segment;
+
+import java.io.IOException;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.dltk.core.index.segment.SegmentIndex;
+
+/**
+ * Background job that compacts sealed segments of the {@link SegmentStore}.
+ *
+ * @author michael
+ */
+public class SegmentCompactor extends Job {
+
+	/** Delay (in ms) before compaction, so bulk updates are finished first */
+	private static final long COMPACTION_DELAY = 5000;
+
+	private final SegmentStore store;
+
+	public SegmentCompactor(SegmentStore store) {
+		super("Compacting index"); //$NON-NLS-1$
+		this.store = store;
+		setSystem(true);
+		setPriority(DECORATE);
+	}
+
+	/**
+	 * Schedules compaction, unless it's already scheduled or running
+	 */
+	public void request() {
+		if (getState() == NONE) {
+			schedule(COMPACTION_DELAY);
+		}
+	}
+
+	protected IStatus run(IProgressMonitor monitor) {
+		try {
+			store.compact(monitor);
+		} catch (IOException e) {
+			SegmentIndex.error("An exception was thrown while compacting index", //$NON-NLS-1$
+					e);
+		}
+		return monitor.isCanceled() ? Status.CANCEL_STATUS : Status.OK_STATUS;
+	}
+}
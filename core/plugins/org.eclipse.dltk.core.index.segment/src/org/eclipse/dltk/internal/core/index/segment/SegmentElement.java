@@ -0,0 +1,109 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Sage and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Sage - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.dltk.internal.core.index.segment;
+
+/**
+ * Element declaration or reference stored in a segment.
+ *
+ * @author michael
+ */
+public class SegmentElement {
+
+	private int type;
+	private int flags;
+	private int offset;
+	private int length;
+	private int nameOffset;
+	private int nameLength;
+	private String name;
+	private String metadata;
+	private String qualifier;
+	private String parent;
+	private boolean isReference;
+
+	public SegmentElement(int type, int flags, int offset, int length,
+			int nameOffset, int nameLength, String name, String metadata,
+			String qualifier, String parent, boolean isReference) {
+		this.type = type;
+		this.flags = flags;
+		this.offset = offset;
+		this.length = length;
+		this.nameOffset = nameOffset;
+		this.nameLength = nameLength;
+		this.name = name;
+		this.metadata = metadata;
+		this.qualifier = qualifier;
+		this.parent = parent;
+		this.isReference = isReference;
+	}
+
+	public int getType() {
+		return type;
+	}
+
+	public int getFlags() {
+		return flags;
+	}
+
+	public int getOffset() {
+		return offset;
+	}
+
+	public int getLength() {
+		return length;
+	}
+
+	public int getNameOffset() {
+		return nameOffset;
+	}
+
+	public int getNameLength() {
+		return nameLength;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public String getMetadata() {
+		return metadata;
+	}
+
+	public String getQualifier() {
+		return qualifier;
+	}
+
+	public String getParent() {
+		return parent;
+	}
+
+	public boolean isReference() {
+		return isReference;
+	}
+
+	/**
+	 * Returns upper case letters of the name, or <code>null</code> if the
+	 * name doesn't start with upper case letter
+	 */
+	public static String getCamelCaseName(String name) {
+		StringBuilder buf = new StringBuilder();
+		for (int i = 0; i < name.length(); ++i) {
+			char ch = name.charAt(i);
+			if (Character.isUpperCase(ch)) {
+				buf.append(ch);
+			} else if (i == 0) {
+				// not applicable for camel case search
+				break;
+			}
+		}
+		return buf.length() > 0 ? buf.toString() : null;
+	}
+}
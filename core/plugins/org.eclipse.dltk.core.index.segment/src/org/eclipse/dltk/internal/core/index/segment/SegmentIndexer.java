@@ -0,0 +1,286 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Sage and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Sage - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.dltk.internal.core.index.segment;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.dltk.core.ContentDigest;
+import org.eclipse.dltk.core.DLTKLanguageManager;
+import org.eclipse.dltk.core.IDLTKLanguageToolkit;
+import org.eclipse.dltk.core.IDLTKLanguageToolkitExtension;
+import org.eclipse.dltk.core.IModelElement;
+import org.eclipse.dltk.core.ISourceModule;
+import org.eclipse.dltk.core.environment.EnvironmentPathUtils;
+import org.eclipse.dltk.core.environment.IFileHandle;
+import org.eclipse.dltk.core.index.segment.SegmentIndex;
+import org.eclipse.dltk.core.index2.AbstractIndexer;
+import org.eclipse.dltk.core.index2.IIndexerBundleExtension;
+import org.eclipse.dltk.core.index2.IIndexerExtension;
+import org.eclipse.dltk.core.index2.RecordingIndexingRequestor;
+import org.eclipse.dltk.core.index2.search.ISearchEngine;
+import org.eclipse.dltk.internal.core.ExternalSourceModule;
+import org.eclipse.dltk.internal.core.SourceModule;
+import org.eclipse.dltk.internal.core.index2.IndexerManager;
+import org.eclipse.dltk.internal.core.util.Util;
+import org.eclipse.osgi.util.NLS;
+
+/**
+ * Indexer that stores documents in the append-only {@link SegmentStore}.
+ *
+ * @author michael
+ */
+public class SegmentIndexer extends AbstractIndexer implements
+		IIndexerExtension, IIndexerBundleExtension {
+
+	private List<SegmentElement> elements;
+	private boolean bulkMode;
+
+	public void addDeclaration(DeclarationInfo info) {
+		elements.add(new SegmentElement(info.elementType, info.flags,
+				info.offset, info.length, info.nameOffset, info.nameLength,
+				info.elementName, info.metadata, info.qualifier, info.parent,
+				false));
+	}
+
+	public void addReference(ReferenceInfo info) {
+		elements.add(new SegmentElement(info.elementType, 0, info.offset,
+				info.length, 0, 0, info.elementName, info.metadata,
+				info.qualifier, null, true));
+	}
+
+	public void indexDocument(ISourceModule sourceModule) {
+		indexDocument(sourceModule, null);
+	}
+
+	public void indexDocument(ISourceModule sourceModule,
+			RecordingIndexingRequestor recorded) {
+
+		SegmentStore store = SegmentStore.getInstance();
+		if (store == null) {
+			return;
+		}
+		IDLTKLanguageToolkit toolkit = DLTKLanguageManager
+				.getLanguageToolkit(sourceModule);
+		if (toolkit == null) {
+			return;
+		}
+
+		IPath containerPath;
+		if (sourceModule instanceof SourceModule) {
+			containerPath = sourceModule.getScriptProject().getPath();
+		} else {
+			containerPath = sourceModule.getAncestor(
+					IModelElement.PROJECT_FRAGMENT).getPath();
+		}
+
+		String relativePath;
+		if (toolkit instanceof IDLTKLanguageToolkitExtension
+				&& ((IDLTKLanguageToolkitExtension) toolkit)
+						.isArchiveFileName(sourceModule.getPath().toString())) {
+			relativePath = ((ExternalSourceModule) sourceModule).getFullPath()
+					.toString();
+		} else {
+			relativePath = Util.relativePath(sourceModule.getPath(),
+					containerPath.segmentCount());
+		}
+
+		IFileHandle fileHandle = EnvironmentPathUtils.getFile(sourceModule);
+		long lastModified = fileHandle == null ? 0 : fileHandle.lastModified();
+
+		try {
+			SegmentStore.Document existing = store.getDocument(containerPath
+					.toString(), relativePath);
+			if (existing != null && existing.getTimestamp() == lastModified) {
+				// File is not updated - nothing to do
+				return;
+			}
+
+			String digest = null;
+			if (IndexerManager.isDigestChangeDetection()) {
+				if (recorded == null) {
+					// parse the contents the digest is computed of
+					recorded = recordDocument(sourceModule, true);
+				}
+				digest = recorded.getContentDigest();
+				if (digest == null) {
+					digest = ContentDigest.compute(sourceModule);
+				}
+				if (existing != null && digest != null
+						&& digest.equals(existing.getDigest())) {
+					// File contents are not changed:
+					store.updateTimestamp(containerPath.toString(),
+							relativePath, lastModified);
+					return;
+				}
+			}
+
+			elements = new ArrayList<SegmentElement>();
+			try {
+				if (recorded != null) {
+					recorded.replay(this);
+				} else {
+					super.indexDocument(sourceModule);
+				}
+				store.addDocument(containerPath.toString(), relativePath,
+						lastModified, digest, toolkit.getNatureId(), elements,
+						!bulkMode);
+			} finally {
+				elements = null;
+			}
+		} catch (IOException e) {
+			SegmentIndex.error(NLS.bind(
+					"An exception was thrown while indexing document ''{0}''", //$NON-NLS-1$
+					sourceModule.getPath()), e);
+		}
+	}
+
+	public void beginBulkIndexing() {
+		bulkMode = true;
+	}
+
+	public void endBulkIndexing() {
+		bulkMode = false;
+		SegmentStore store = SegmentStore.getInstance();
+		if (store != null) {
+			try {
+				store.flush();
+			} catch (IOException e) {
+				SegmentIndex.error(
+						"An exception was thrown while flushing index", e); //$NON-NLS-1$
+			}
+		}
+	}
+
+	public Map<String, Long> getDocuments(IPath containerPath) {
+		SegmentStore store = SegmentStore.getInstance();
+		if (store == null) {
+			return null;
+		}
+		Map<String, SegmentStore.Document> documents = store
+				.getDocuments(containerPath.toString());
+		if (documents == null) {
+			return null;
+		}
+		Map<String, Long> paths = new HashMap<String, Long>();
+		for (Map.Entry<String, SegmentStore.Document> entry : documents
+				.entrySet()) {
+			paths.put(entry.getKey(), entry.getValue().getTimestamp());
+		}
+		return paths;
+	}
+
+	public Map<String, String> getDocumentDigests(IPath containerPath) {
+		SegmentStore store = SegmentStore.getInstance();
+		if (store == null) {
+			return null;
+		}
+		Map<String, SegmentStore.Document> documents = store
+				.getDocuments(containerPath.toString());
+		if (documents == null) {
+			return null;
+		}
+		Map<String, String> digests = new HashMap<String, String>();
+		for (Map.Entry<String, SegmentStore.Document> entry : documents
+				.entrySet()) {
+			digests.put(entry.getKey(), entry.getValue().getDigest());
+		}
+		return digests;
+	}
+
+	public void updateDocumentTimestamps(IPath containerPath,
+			Map<String, Long> timestamps) {
+		SegmentStore store = SegmentStore.getInstance();
+		if (store == null) {
+			return;
+		}
+		try {
+			store.updateTimestamps(containerPath.toString(), timestamps);
+		} catch (IOException e) {
+			SegmentIndex.error(NLS.bind(
+					"An exception thrown while updating files of ''{0}''", //$NON-NLS-1$
+					containerPath.toString()), e);
+		}
+	}
+
+	public void removeContainer(IPath containerPath) {
+		SegmentStore store = SegmentStore.getInstance();
+		if (store == null) {
+			return;
+		}
+		try {
+			store.removeContainer(containerPath.toString());
+		} catch (IOException e) {
+			SegmentIndex.error(NLS.bind(
+					"An exception thrown while removing container ''{0}'' from index", //$NON-NLS-1$
+					containerPath.toString()), e);
+		}
+	}
+
+	public void removeDocument(IPath containerPath, String relativePath) {
+		SegmentStore store = SegmentStore.getInstance();
+		if (store == null) {
+			return;
+		}
+		try {
+			store.removeDocument(containerPath.toString(), relativePath);
+		} catch (IOException e) {
+			SegmentIndex.error(NLS.bind(
+					"An exception thrown while removing file ''{0}'' from index", //$NON-NLS-1$
+					containerPath.append(relativePath).toString()), e);
+		}
+	}
+
+	public String getBundleFormat() {
+		return SegmentStore.BUNDLE_HEADER;
+	}
+
+	public boolean exportContainer(IPath containerPath, File bundle) {
+		SegmentStore store = SegmentStore.getInstance();
+		if (store == null) {
+			return false;
+		}
+		try {
+			return store.exportContainer(containerPath.toString(), bundle);
+		} catch (IOException e) {
+			SegmentIndex.error(NLS.bind(
+					"An exception thrown while exporting container ''{0}''", //$NON-NLS-1$
+					containerPath.toString()), e);
+			return false;
+		}
+	}
+
+	public boolean importContainer(IPath containerPath, File bundle,
+			Map<String, Long> timestamps) {
+		SegmentStore store = SegmentStore.getInstance();
+		if (store == null) {
+			return false;
+		}
+		try {
+			store.importContainer(containerPath.toString(), bundle, timestamps);
+			return true;
+		} catch (IOException e) {
+			SegmentIndex.error(NLS.bind(
+					"An exception thrown while importing container ''{0}''", //$NON-NLS-1$
+					containerPath.toString()), e);
+			return false;
+		}
+	}
+
+	public ISearchEngine createSearchEngine() {
+		return new SegmentSearchEngine();
+	}
+}
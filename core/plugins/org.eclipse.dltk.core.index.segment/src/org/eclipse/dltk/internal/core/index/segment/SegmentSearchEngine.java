@@ -0,0 +1,386 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Sage and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Sage - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.dltk.internal.core.index.segment;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.dltk.core.DLTKCore;
+import org.eclipse.dltk.core.IDLTKLanguageToolkit;
+import org.eclipse.dltk.core.IDLTKLanguageToolkitExtension;
+import org.eclipse.dltk.core.IProjectFragment;
+import org.eclipse.dltk.core.IScriptFolder;
+import org.eclipse.dltk.core.ISourceModule;
+import org.eclipse.dltk.core.ScriptModelUtil;
+import org.eclipse.dltk.core.index.segment.SegmentIndex;
+import org.eclipse.dltk.core.index2.search.ISearchEngineExtension;
+import org.eclipse.dltk.core.index2.search.ISearchRequestor;
+import org.eclipse.dltk.core.search.IDLTKSearchScope;
+import org.eclipse.dltk.internal.core.ArchiveFolder;
+import org.eclipse.dltk.internal.core.BuiltinScriptFolder;
+import org.eclipse.dltk.internal.core.ExternalScriptFolder;
+import org.eclipse.dltk.internal.core.ProjectFragment;
+import org.eclipse.dltk.internal.core.search.DLTKSearchScope;
+import org.eclipse.dltk.internal.core.search.DLTKWorkspaceScope;
+
+/**
+ * Search engine implementation for segment-based index.
+ *
+ * @author michael
+ */
+public class SegmentSearchEngine implements ISearchEngineExtension {
+
+	/**
+	 * Orders matches by element name ignoring case, declarations first
+	 */
+	private static final Comparator<Match> MATCH_COMPARATOR = new Comparator<Match>() {
+		public int compare(Match m1, Match m2) {
+			if (m1.element.isReference() != m2.element.isReference()) {
+				return m1.element.isReference() ? 1 : -1;
+			}
+			return String.CASE_INSENSITIVE_ORDER.compare(m1.element.getName(),
+					m2.element.getName());
+		}
+	};
+
+	/**
+	 * Element found in the store, which is reported after all the matches are
+	 * sorted
+	 */
+	private static class Match {
+		final String containerPath;
+		final String path;
+		final SegmentElement element;
+
+		Match(String containerPath, String path, SegmentElement element) {
+			this.containerPath = containerPath;
+			this.path = path;
+			this.element = element;
+		}
+	}
+
+	public void search(int elementType, String qualifier, String elementName,
+			int trueFlags, int falseFlags, int limit, SearchFor searchFor,
+			MatchRule matchRule, IDLTKSearchScope scope,
+			ISearchRequestor requestor, IProgressMonitor monitor) {
+
+		search(elementType, qualifier, elementName, trueFlags, falseFlags,
+				limit, searchFor, matchRule, false, scope, requestor, monitor);
+	}
+
+	public void search(final int elementType, final String qualifier,
+			String elementName, final int trueFlags, final int falseFlags,
+			final int limit, SearchFor searchFor, MatchRule matchRule,
+			boolean orderByName, IDLTKSearchScope scope,
+			ISearchRequestor requestor, final IProgressMonitor monitor) {
+
+		SegmentStore store = SegmentStore.getInstance();
+		if (store == null) {
+			return;
+		}
+
+		List<String> containerPaths = null;
+		Set<String> relativePaths = null;
+		if (!(scope instanceof DLTKWorkspaceScope)) {
+			containerPaths = new ArrayList<String>();
+			for (IPath containerPath : scope.enclosingProjectsAndZips()) {
+				containerPaths.add(containerPath.toString());
+			}
+			if (scope instanceof DLTKSearchScope) {
+				relativePaths = getScriptFilePaths((DLTKSearchScope) scope);
+			}
+		}
+
+		final boolean searchForDecls = searchFor == SearchFor.DECLARATIONS
+				|| searchFor == SearchFor.ALL_OCCURENCES;
+		final boolean searchForRefs = searchFor == SearchFor.REFERENCES
+				|| searchFor == SearchFor.ALL_OCCURENCES;
+		final NameMatcher nameMatcher = new NameMatcher(elementName,
+				matchRule);
+		final Set<String> fRelativePaths = relativePaths;
+		final SourceModuleResolver resolver = new SourceModuleResolver(
+				scope, requestor);
+
+		SegmentStore.IElementFilter filter = new SegmentStore.IElementFilter() {
+			public boolean acceptDocument(String containerPath, String path) {
+				return fRelativePaths == null || fRelativePaths.contains(path);
+			}
+
+			public boolean acceptElement(int type, boolean isReference,
+					String name) {
+				return type == elementType
+						&& (isReference ? searchForRefs : searchForDecls)
+						&& nameMatcher.matches(name, isReference);
+			}
+		};
+
+		// Elements are stored in the order they were indexed, so sorted
+		// matches are reported only after the whole store is searched:
+		final List<Match> matches = orderByName ? new ArrayList<Match>()
+				: null;
+
+		SegmentStore.IElementVisitor visitor = new SegmentStore.IElementVisitor() {
+			int count;
+
+			public boolean visit(String containerPath, String path,
+					SegmentElement element) {
+				if ((trueFlags == 0 || (element.getFlags() & trueFlags) != 0)
+						&& (falseFlags == 0 || (element.getFlags() & falseFlags) == 0)
+						&& (qualifier == null || qualifier.length() == 0 || qualifier
+								.equals(element.getQualifier()))) {
+					if (matches != null) {
+						matches.add(new Match(containerPath, path, element));
+					} else if (resolver.match(containerPath, path, element)) {
+						++count;
+					}
+				}
+				return (limit <= 0 || count < limit)
+						&& (monitor == null || !monitor.isCanceled());
+			}
+		};
+
+		try {
+			store.search(scope.getLanguageToolkit().getNatureId(),
+					containerPaths, filter, visitor, monitor);
+		} catch (IOException e) {
+			SegmentIndex.error(
+					"An exception has thrown while performing a search", e); //$NON-NLS-1$
+			return;
+		}
+
+		if (matches != null) {
+			Collections.sort(matches, MATCH_COMPARATOR);
+			int count = 0;
+			for (Match match : matches) {
+				if ((limit > 0 && count >= limit)
+						|| (monitor != null && monitor.isCanceled())) {
+					break;
+				}
+				if (resolver.match(match.containerPath, match.path,
+						match.element)) {
+					++count;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns paths of script files the scope is restricted to, or
+	 * <code>null</code> if the scope contains whole containers
+	 */
+	private static Set<String> getScriptFilePaths(DLTKSearchScope scope) {
+		Set<String> paths = new HashSet<String>();
+		String[] fileExtensions = ScriptModelUtil.getFileExtensions(scope
+				.getLanguageToolkit());
+
+		// XXX - need a better way do differentiate between file and container
+		// scopes
+		for (String relativePath : scope.getRelativePaths()) {
+			if (relativePath.length() > 0) {
+				if (fileExtensions != null) {
+					boolean isScriptFile = false;
+					for (String ext : fileExtensions) {
+						if (relativePath.endsWith("." + ext)) { //$NON-NLS-1$
+							isScriptFile = true;
+							break;
+						}
+					}
+					if (!isScriptFile) {
+						break;
+					}
+				}
+				paths.add(relativePath);
+			}
+		}
+		return paths.isEmpty() ? null : paths;
+	}
+
+	/**
+	 * Matches element names against the searched pattern
+	 */
+	private static class NameMatcher {
+		private final String pattern;
+		private final MatchRule matchRule;
+		private final String patternUC;
+		private Set<String> patternSet;
+		private Pattern posixPattern;
+
+		NameMatcher(String pattern, MatchRule matchRule) {
+			this.pattern = pattern != null && pattern.length() > 0 ? pattern
+					: null;
+			this.matchRule = matchRule;
+			this.patternUC = pattern != null ? pattern.toUpperCase() : null;
+			if (this.pattern != null) {
+				if (matchRule == MatchRule.SET) {
+					patternSet = new HashSet<String>();
+					for (String part : pattern.split(",")) { //$NON-NLS-1$
+						if (part.length() > 0) {
+							patternSet.add(part.toLowerCase());
+						}
+					}
+				} else if (matchRule == MatchRule.PATTERN) {
+					posixPattern = createPosixPattern(pattern);
+				}
+			}
+		}
+
+		boolean matches(String name, boolean isReference) {
+			if (pattern == null) {
+				return true;
+			}
+			if (matchRule == MatchRule.EXACT) {
+				return pattern.equalsIgnoreCase(name);
+			}
+			if (matchRule == MatchRule.PREFIX) {
+				return name.regionMatches(true, 0, pattern, 0, pattern
+						.length());
+			}
+			if (matchRule == MatchRule.CAMEL_CASE) {
+				if (isReference) {
+					return false;
+				}
+				String camelCaseName = SegmentElement.getCamelCaseName(name);
+				return camelCaseName != null
+						&& camelCaseName.startsWith(patternUC);
+			}
+			if (matchRule == MatchRule.SET) {
+				return patternSet.contains(name.toLowerCase());
+			}
+			if (matchRule == MatchRule.PATTERN) {
+				return posixPattern.matcher(name).matches();
+			}
+			return true;
+		}
+
+		private static Pattern createPosixPattern(String pattern) {
+			StringBuilder buf = new StringBuilder();
+			boolean inQuoted = false;
+			for (int i = 0; i < pattern.length(); ++i) {
+				char ch = pattern.charAt(i);
+				if (ch == '*' || ch == '?') {
+					if (inQuoted) {
+						buf.append("\\E"); //$NON-NLS-1$
+						inQuoted = false;
+					}
+					buf.append(ch == '*' ? ".*" : ".?"); //$NON-NLS-1$ //$NON-NLS-2$
+				} else {
+					if (!inQuoted) {
+						buf.append("\\Q"); //$NON-NLS-1$
+						inQuoted = true;
+					}
+					buf.append(ch);
+				}
+			}
+			return Pattern.compile(buf.toString(), Pattern.CASE_INSENSITIVE);
+		}
+	}
+
+	/**
+	 * Resolves source modules of the found elements and reports matches to
+	 * the search requestor
+	 */
+	private static class SourceModuleResolver {
+		private final Map<String, IProjectFragment> projectFragmentCache = new HashMap<String, IProjectFragment>();
+		private final Map<String, ISourceModule> sourceModuleCache = new HashMap<String, ISourceModule>();
+		private final DLTKSearchScope scope;
+		private final ISearchRequestor requestor;
+		private final boolean archiveToolkit;
+		private final IDLTKLanguageToolkit toolkit;
+
+		SourceModuleResolver(IDLTKSearchScope scope, ISearchRequestor requestor) {
+			this.scope = (DLTKSearchScope) scope;
+			this.requestor = requestor;
+			this.toolkit = scope.getLanguageToolkit();
+			this.archiveToolkit = toolkit instanceof IDLTKLanguageToolkitExtension;
+		}
+
+		/**
+		 * @return <code>true</code> if the match was reported
+		 */
+		boolean match(String containerPath, String path,
+				SegmentElement element) {
+			if (archiveToolkit
+					&& ((IDLTKLanguageToolkitExtension) toolkit)
+							.isArchiveFileName(containerPath)) {
+				containerPath = containerPath
+						+ IDLTKSearchScope.FILE_ENTRY_SEPARATOR;
+			}
+
+			String resourcePath = new Path(containerPath).append(path)
+					.toString();
+
+			IProjectFragment projectFragment = projectFragmentCache
+					.get(containerPath);
+			if (projectFragment == null) {
+				projectFragment = scope.projectFragment(resourcePath);
+				if (projectFragment == null) {
+					projectFragment = scope.projectFragment(containerPath);
+				}
+				projectFragmentCache.put(containerPath, projectFragment);
+			}
+			if (projectFragment == null) {
+				return false;
+			}
+			if (!scope.encloses(resourcePath)) {
+				return false;
+			}
+
+			ISourceModule sourceModule = sourceModuleCache.get(resourcePath);
+			if (sourceModule == null) {
+				Path relativePath = new Path(path);
+				if (projectFragment.isExternal()) {
+					IScriptFolder scriptFolder = new ExternalScriptFolder(
+							(ProjectFragment) projectFragment, relativePath
+									.removeLastSegments(1));
+					sourceModule = scriptFolder.getSourceModule(relativePath
+							.lastSegment());
+				} else if (projectFragment.isArchive()) {
+					IScriptFolder scriptFolder = new ArchiveFolder(
+							(ProjectFragment) projectFragment, relativePath
+									.removeLastSegments(1));
+					sourceModule = scriptFolder.getSourceModule(relativePath
+							.lastSegment());
+				} else if (projectFragment.isBuiltin()) {
+					IScriptFolder scriptFolder = new BuiltinScriptFolder(
+							(ProjectFragment) projectFragment, relativePath
+									.removeLastSegments(1));
+					sourceModule = scriptFolder.getSourceModule(relativePath
+							.lastSegment());
+				} else {
+					IProject project = projectFragment.getScriptProject()
+							.getProject();
+					sourceModule = DLTKCore.createSourceModuleFrom(project
+							.getFile(relativePath));
+				}
+				sourceModuleCache.put(resourcePath, sourceModule);
+			}
+
+			requestor.match(element.getType(), element.getFlags(), element
+					.getOffset(), element.getLength(), element.getNameOffset(),
+					element.getNameLength(), element.getName(), element
+							.getMetadata(), element.getQualifier(), element
+							.getParent(), sourceModule, element.isReference());
+			return true;
+		}
+	}
+}
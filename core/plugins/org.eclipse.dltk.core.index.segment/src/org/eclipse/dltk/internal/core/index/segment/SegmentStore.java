@@ -0,0 +1,994 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Sage and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Sage - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.dltk.internal.core.index.segment;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.dltk.core.index.segment.SegmentIndex;
+import org.eclipse.osgi.util.NLS;
+
+/**
+ * Log-structured store of indexed documents.
+ * <p>
+ * Every change is appended as a record to the active segment file: a document
+ * with all its elements, a tombstone of a removed document or container, or a
+ * new document timestamp. When the active segment is full, a new one is
+ * started. The directory of live documents (container path to relative path
+ * to record location) is kept in memory, and is rebuilt by replaying all
+ * segments in order when the store is opened.
+ * </p>
+ * <p>
+ * Records of replaced and removed documents remain in the segments until they
+ * are compacted: when more than half of the sealed segments' data is dead,
+ * {@link SegmentCompactor} copies live documents to a new segment that
+ * supersedes the old ones.
+ * </p>
+ * <p>
+ * Writes are serialized. Searches read documents through memory mappings of
+ * the segments, and are only excluded while compacted segments are swapped.
+ * </p>
+ *
+ * @author michael
+ */
+public class SegmentStore {
+
+	/**
+	 * Document stored in a segment
+	 */
+	public static class Document {
+		private final Segment segment;
+		private final int offset;
+		private final int elementsOffset;
+		private final int size;
+		private final long timestamp;
+		private final String digest;
+		private final String natureId;
+
+		Document(Segment segment, int offset, int elementsOffset, int size,
+				long timestamp, String digest, String natureId) {
+			this.segment = segment;
+			this.offset = offset;
+			this.elementsOffset = elementsOffset;
+			this.size = size;
+			this.timestamp = timestamp;
+			this.digest = digest;
+			this.natureId = natureId;
+		}
+
+		public long getTimestamp() {
+			return timestamp;
+		}
+
+		public String getDigest() {
+			return digest;
+		}
+
+		public String getNatureId() {
+			return natureId;
+		}
+
+		Document moveTo(Segment segment, int offset) {
+			return new Document(segment, offset, elementsOffset, size,
+					timestamp, digest, natureId);
+		}
+
+		Document withTimestamp(long timestamp) {
+			return new Document(segment, offset, elementsOffset, size,
+					timestamp, digest, natureId);
+		}
+	}
+
+	/**
+	 * Filter of the searched documents and elements
+	 */
+	public interface IElementFilter {
+
+		/**
+		 * Returns whether elements of the given document should be read
+		 */
+		boolean acceptDocument(String containerPath, String path);
+
+		/**
+		 * Returns whether the element should be read entirely and visited.
+		 * This method is called before the rest of element data is decoded.
+		 */
+		boolean acceptElement(int elementType, boolean isReference,
+				String name);
+	}
+
+	/**
+	 * Visitor of the found elements
+	 */
+	public interface IElementVisitor {
+
+		/**
+		 * @return <code>false</code> to stop the search
+		 */
+		boolean visit(String containerPath, String path, SegmentElement element);
+	}
+
+	private static final byte DOCUMENT = 1;
+	private static final byte FILE_TOMBSTONE = 2;
+	private static final byte CONTAINER_TOMBSTONE = 3;
+	private static final byte TIMESTAMP = 4;
+
+	/** Header of the bundles, changed with the encoding of elements */
+	static final String BUNDLE_HEADER = "DLTK SEGMENT BUNDLE 1"; //$NON-NLS-1$
+
+	/** Size after which the active segment is sealed */
+	private static final int SEGMENT_SIZE = 16 * 1024 * 1024;
+
+	/** Minimal size of dead data that triggers compaction */
+	private static final int MIN_DEAD_BYTES = 4 * 1024 * 1024;
+
+	private static final String SEGMENT_EXT = ".seg"; //$NON-NLS-1$
+	private static final String COMPACTED_EXT = ".cseg"; //$NON-NLS-1$
+	private static final String TEMP_EXT = ".tmp"; //$NON-NLS-1$
+
+	private static SegmentStore instance;
+
+	private final File directory;
+	private final Object writeLock = new Object();
+	private final ReadWriteLock segmentsLock = new ReentrantReadWriteLock();
+	private final RecordBuffer recordBuffer = new RecordBuffer(64 * 1024);
+	private final SegmentCompactor compactor = new SegmentCompactor(this);
+
+	/** All segments in the replay order, including the active one */
+	private final List<Segment> segments = new ArrayList<Segment>();
+	private Segment active;
+	private long nextSequence;
+	private volatile boolean closed;
+
+	private final ConcurrentHashMap<String, ConcurrentHashMap<String, Document>> containers = new ConcurrentHashMap<String, ConcurrentHashMap<String, Document>>();
+
+	public SegmentStore(File directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * Returns the store located in the plug-in state location, or
+	 * <code>null</code> if it can't be opened
+	 */
+	public static synchronized SegmentStore getInstance() {
+		if (instance == null) {
+			SegmentIndex plugin = SegmentIndex.getDefault();
+			if (plugin == null) {
+				return null;
+			}
+			SegmentStore store = new SegmentStore(plugin.getStateLocation()
+					.append("segments").toFile()); //$NON-NLS-1$
+			try {
+				store.open();
+				instance = store;
+			} catch (IOException e) {
+				SegmentIndex.error("An exception was thrown while opening index", //$NON-NLS-1$
+						e);
+			}
+		}
+		return instance;
+	}
+
+	/**
+	 * Closes the store returned by {@link #getInstance()}
+	 */
+	public static synchronized void shutdown() {
+		if (instance != null) {
+			try {
+				instance.close();
+			} catch (IOException e) {
+				SegmentIndex.error(
+						"An exception was thrown while closing index", e); //$NON-NLS-1$
+			}
+			instance = null;
+		}
+	}
+
+	/**
+	 * Opens the store, removing segments superseded by compacted ones, and
+	 * replays all remaining segments.
+	 */
+	public void open() throws IOException {
+		synchronized (writeLock) {
+			directory.mkdirs();
+			TreeMap<Long, File> files = new TreeMap<Long, File>();
+			File[] children = directory.listFiles();
+			if (children != null) {
+				for (File file : children) {
+					String name = file.getName();
+					if (name.endsWith(TEMP_EXT)) {
+						file.delete();
+						continue;
+					}
+					long sequence = parseSequence(name);
+					if (sequence < 0) {
+						continue;
+					}
+					File other = files.get(sequence);
+					if (other == null || name.endsWith(COMPACTED_EXT)) {
+						if (other != null) {
+							// compacted segment replaces the segment it was
+							// named after
+							other.delete();
+						}
+						files.put(sequence, file);
+					} else {
+						file.delete();
+					}
+				}
+			}
+
+			try {
+				for (Map.Entry<Long, File> entry : files.entrySet()) {
+					Segment segment = Segment.open(entry.getValue(), entry
+							.getKey());
+					if (segment == null) {
+						throw new IncompatibleSegmentException(entry
+								.getValue());
+					}
+					segments.add(segment);
+				}
+			} catch (IncompatibleSegmentException e) {
+				// Index format was changed - start from scratch:
+				for (Segment segment : segments) {
+					segment.close();
+				}
+				segments.clear();
+				for (File file : files.values()) {
+					file.delete();
+				}
+				files.clear();
+			}
+
+			removeSupersededSegments();
+
+			Segment.IRecordVisitor visitor = new Segment.IRecordVisitor() {
+				public void visit(Segment segment, int offset,
+						ByteBuffer payload) {
+					apply(segment, offset, payload);
+				}
+			};
+			for (Segment segment : segments) {
+				if (!segment.replay(visitor)) {
+					SegmentIndex.warn(NLS.bind(
+							"Index segment ''{0}'' was truncated", //$NON-NLS-1$
+							segment.getFile().getName()));
+				}
+				nextSequence = segment.getSequence() + 1;
+			}
+
+			if (!segments.isEmpty()) {
+				Segment last = segments.get(segments.size() - 1);
+				if (last.getSize() < SEGMENT_SIZE
+						&& last.getFile().getName().endsWith(SEGMENT_EXT)) {
+					active = last;
+				}
+			}
+			if (active == null) {
+				startSegment();
+			}
+			closed = false;
+		}
+	}
+
+	/**
+	 * Removes segments whose sequence numbers are in the range covered by a
+	 * later compacted segment
+	 */
+	private void removeSupersededSegments() {
+		for (int i = segments.size() - 1; i >= 0; --i) {
+			Segment compacted = segments.get(i);
+			long base = compacted.getBase();
+			if (base >= compacted.getSequence()) {
+				continue;
+			}
+			for (int j = i - 1; j >= 0 && segments.get(j).getSequence() >= base; --j) {
+				segments.remove(j).delete();
+				--i;
+			}
+		}
+	}
+
+	private static long parseSequence(String name) {
+		int dot = name.lastIndexOf('.');
+		if (dot <= 0) {
+			return -1;
+		}
+		String ext = name.substring(dot);
+		if (!SEGMENT_EXT.equals(ext) && !COMPACTED_EXT.equals(ext)) {
+			return -1;
+		}
+		try {
+			return Long.parseLong(name.substring(0, dot), 16);
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	private File segmentFile(long sequence, String ext) {
+		String name = Long.toHexString(sequence);
+		StringBuilder buf = new StringBuilder();
+		for (int i = name.length(); i < 16; ++i) {
+			buf.append('0');
+		}
+		buf.append(name).append(ext);
+		return new File(directory, buf.toString());
+	}
+
+	/**
+	 * Seals the active segment and starts the new one. Must be called by the
+	 * writer.
+	 */
+	private void startSegment() throws IOException {
+		if (active != null) {
+			active.force();
+		}
+		long sequence = nextSequence++;
+		active = Segment.create(segmentFile(sequence, SEGMENT_EXT), sequence,
+				sequence);
+		segments.add(active);
+	}
+
+	/**
+	 * Closes the store. Running compaction is cancelled.
+	 */
+	public void close() throws IOException {
+		closed = true;
+		compactor.cancel();
+		try {
+			compactor.join();
+		} catch (InterruptedException e) {
+			// ignore
+		}
+		synchronized (writeLock) {
+			segmentsLock.writeLock().lock();
+			try {
+				if (active != null) {
+					active.force();
+				}
+				for (Segment segment : segments) {
+					segment.close();
+				}
+				segments.clear();
+				active = null;
+				containers.clear();
+			} finally {
+				segmentsLock.writeLock().unlock();
+			}
+		}
+	}
+
+	/**
+	 * Applies record to the directory of live documents
+	 */
+	private void apply(Segment segment, int offset, ByteBuffer payload) {
+		int size = Segment.RECORD_HEADER_SIZE + payload.remaining();
+		byte kind = payload.get();
+		String containerPath = RecordBuffer.getString(payload);
+		if (kind == CONTAINER_TOMBSTONE) {
+			Map<String, Document> documents = containers.remove(containerPath);
+			if (documents != null) {
+				for (Document document : documents.values()) {
+					document.segment.addLiveBytes(-document.size);
+				}
+			}
+			return;
+		}
+		String path = RecordBuffer.getString(payload);
+		ConcurrentHashMap<String, Document> documents = containers
+				.get(containerPath);
+		if (kind == DOCUMENT) {
+			long timestamp = payload.getLong();
+			String digest = RecordBuffer.getString(payload);
+			String natureId = RecordBuffer.getString(payload);
+			if (documents == null) {
+				documents = new ConcurrentHashMap<String, Document>();
+				containers.put(containerPath, documents);
+			}
+			Document document = new Document(segment, offset, payload
+					.position(), size, timestamp, digest, natureId);
+			segment.addLiveBytes(size);
+			Document old = documents.put(path, document);
+			if (old != null) {
+				old.segment.addLiveBytes(-old.size);
+			}
+		} else if (documents != null) {
+			if (kind == FILE_TOMBSTONE) {
+				Document old = documents.remove(path);
+				if (old != null) {
+					old.segment.addLiveBytes(-old.size);
+				}
+			} else if (kind == TIMESTAMP) {
+				long timestamp = payload.getLong();
+				Document old = documents.get(path);
+				if (old != null) {
+					documents.put(path, old.withTimestamp(timestamp));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Appends the record in {@link #recordBuffer} to the active segment and
+	 * applies it. Must be called by the writer.
+	 */
+	private void appendRecord(boolean sync) throws IOException {
+		if (closed) {
+			throw new IOException("Index is closed"); //$NON-NLS-1$
+		}
+		ByteBuffer payload = recordBuffer.toByteBuffer();
+		int recordSize = Segment.RECORD_HEADER_SIZE + payload.remaining();
+		if (active.getSize() > Segment.HEADER_SIZE
+				&& active.getSize() + recordSize > SEGMENT_SIZE) {
+			startSegment();
+			scheduleCompaction();
+		}
+		int offset = active.append(payload);
+		apply(active, offset, recordBuffer.toByteBuffer());
+		if (sync) {
+			active.force();
+		}
+	}
+
+	/**
+	 * Stores new document replacing the existing document with the same path
+	 *
+	 * @param sync
+	 *            Whether to force the document to the storage device
+	 *            immediately, or leave it to {@link #flush()}
+	 */
+	public void addDocument(String containerPath, String path,
+			long timestamp, String digest, String natureId,
+			List<SegmentElement> elements, boolean sync) throws IOException {
+
+		synchronized (writeLock) {
+			RecordBuffer buf = recordBuffer;
+			buf.reset();
+			buf.putByte(DOCUMENT);
+			buf.putString(containerPath);
+			buf.putString(path);
+			buf.putLong(timestamp);
+			buf.putString(digest);
+			buf.putString(natureId);
+			buf.putInt(elements.size());
+			for (SegmentElement element : elements) {
+				buf.putInt(element.getType());
+				buf.putByte(element.isReference() ? 1 : 0);
+				buf.putString(element.getName());
+				int restPosition = buf.size();
+				buf.putInt(0);
+				buf.putInt(element.getFlags());
+				buf.putInt(element.getOffset());
+				buf.putInt(element.getLength());
+				buf.putInt(element.getNameOffset());
+				buf.putInt(element.getNameLength());
+				buf.putString(element.getMetadata());
+				buf.putString(element.getQualifier());
+				buf.putString(element.getParent());
+				buf.setInt(restPosition, buf.size() - restPosition - 4);
+			}
+			appendRecord(sync);
+		}
+	}
+
+	/**
+	 * Writes a tombstone of the given document
+	 */
+	public void removeDocument(String containerPath, String path)
+			throws IOException {
+		synchronized (writeLock) {
+			Map<String, Document> documents = containers.get(containerPath);
+			if (documents == null || !documents.containsKey(path)) {
+				return;
+			}
+			recordBuffer.reset();
+			recordBuffer.putByte(FILE_TOMBSTONE);
+			recordBuffer.putString(containerPath);
+			recordBuffer.putString(path);
+			appendRecord(true);
+		}
+		scheduleCompaction();
+	}
+
+	/**
+	 * Writes a tombstone of all documents of the given container
+	 */
+	public void removeContainer(String containerPath) throws IOException {
+		synchronized (writeLock) {
+			if (!containers.containsKey(containerPath)) {
+				return;
+			}
+			recordBuffer.reset();
+			recordBuffer.putByte(CONTAINER_TOMBSTONE);
+			recordBuffer.putString(containerPath);
+			appendRecord(true);
+		}
+		scheduleCompaction();
+	}
+
+	/**
+	 * Records new timestamp of the document whose contents didn't change
+	 */
+	public void updateTimestamp(String containerPath, String path,
+			long timestamp) throws IOException {
+		synchronized (writeLock) {
+			Map<String, Document> documents = containers.get(containerPath);
+			if (documents == null || !documents.containsKey(path)) {
+				return;
+			}
+			recordBuffer.reset();
+			recordBuffer.putByte(TIMESTAMP);
+			recordBuffer.putString(containerPath);
+			recordBuffer.putString(path);
+			recordBuffer.putLong(timestamp);
+			appendRecord(true);
+		}
+	}
+
+	/**
+	 * Records new timestamps of the documents whose contents didn't change.
+	 * Records are forced to the storage device once all of them are appended.
+	 */
+	public void updateTimestamps(String containerPath,
+			Map<String, Long> timestamps) throws IOException {
+		synchronized (writeLock) {
+			Map<String, Document> documents = containers.get(containerPath);
+			if (documents == null) {
+				return;
+			}
+			boolean appended = false;
+			for (Map.Entry<String, Long> entry : timestamps.entrySet()) {
+				if (!documents.containsKey(entry.getKey())) {
+					continue;
+				}
+				recordBuffer.reset();
+				recordBuffer.putByte(TIMESTAMP);
+				recordBuffer.putString(containerPath);
+				recordBuffer.putString(entry.getKey());
+				recordBuffer.putLong(entry.getValue().longValue());
+				appendRecord(false);
+				appended = true;
+			}
+			if (appended) {
+				active.force();
+			}
+		}
+	}
+
+	/**
+	 * Forces all appended records to the storage device
+	 */
+	public void flush() throws IOException {
+		synchronized (writeLock) {
+			if (active != null) {
+				active.force();
+			}
+		}
+		scheduleCompaction();
+	}
+
+	/**
+	 * Returns the stored document, or <code>null</code> if there's no such
+	 * document
+	 */
+	public Document getDocument(String containerPath, String path) {
+		Map<String, Document> documents = containers.get(containerPath);
+		return documents != null ? documents.get(path) : null;
+	}
+
+	/**
+	 * Returns documents of the given container by their relative paths, or
+	 * <code>null</code> if the container is unknown
+	 */
+	public Map<String, Document> getDocuments(String containerPath) {
+		Map<String, Document> documents = containers.get(containerPath);
+		return documents != null ? new HashMap<String, Document>(documents)
+				: null;
+	}
+
+	/**
+	 * Writes all documents of the given container into the bundle file,
+	 * sorted by their paths. Elements are copied as they're encoded in the
+	 * segments.
+	 *
+	 * @return <code>false</code> if the container is unknown
+	 */
+	public boolean exportContainer(String containerPath, File bundle)
+			throws IOException {
+
+		segmentsLock.readLock().lock();
+		try {
+			Map<String, Document> documents = containers.get(containerPath);
+			if (documents == null) {
+				return false;
+			}
+			documents = new TreeMap<String, Document>(documents);
+			DataOutputStream output = new DataOutputStream(
+					new BufferedOutputStream(new FileOutputStream(bundle),
+							64 * 1024));
+			try {
+				output.writeUTF(BUNDLE_HEADER);
+				output.writeInt(documents.size());
+				byte[] bytes = new byte[0];
+				for (Map.Entry<String, Document> entry : documents.entrySet()) {
+					Document document = entry.getValue();
+					ByteBuffer payload = document.segment
+							.read(document.offset);
+					payload.position(document.elementsOffset);
+					int length = payload.remaining();
+					if (bytes.length < length) {
+						bytes = new byte[length];
+					}
+					payload.get(bytes, 0, length);
+					output.writeUTF(entry.getKey());
+					writeOptionalString(output, document.digest);
+					writeOptionalString(output, document.natureId);
+					output.writeInt(length);
+					output.write(bytes, 0, length);
+				}
+			} finally {
+				output.close();
+			}
+			return true;
+		} finally {
+			segmentsLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Replaces documents of the given container with the documents of the
+	 * bundle written by {@link #exportContainer(String, File)}
+	 *
+	 * @param timestamps
+	 *            Timestamps of the imported documents by their paths
+	 */
+	public void importContainer(String containerPath, File bundle,
+			Map<String, Long> timestamps) throws IOException {
+
+		DataInputStream input = new DataInputStream(new BufferedInputStream(
+				new FileInputStream(bundle), 64 * 1024));
+		try {
+			if (!BUNDLE_HEADER.equals(input.readUTF())) {
+				throw new IOException("Wrong format of index bundle " //$NON-NLS-1$
+						+ bundle);
+			}
+			removeContainer(containerPath);
+			int count = input.readInt();
+			byte[] bytes = new byte[0];
+			for (int i = 0; i < count; ++i) {
+				String path = input.readUTF();
+				String digest = readOptionalString(input);
+				String natureId = readOptionalString(input);
+				int length = input.readInt();
+				if (bytes.length < length) {
+					bytes = new byte[length];
+				}
+				input.readFully(bytes, 0, length);
+				Long timestamp = timestamps.get(path);
+				synchronized (writeLock) {
+					RecordBuffer buf = recordBuffer;
+					buf.reset();
+					buf.putByte(DOCUMENT);
+					buf.putString(containerPath);
+					buf.putString(path);
+					buf.putLong(timestamp != null ? timestamp.longValue() : 0);
+					buf.putString(digest);
+					buf.putString(natureId);
+					buf.putBytes(bytes, 0, length);
+					appendRecord(false);
+				}
+			}
+		} finally {
+			input.close();
+		}
+		flush();
+	}
+
+	private static void writeOptionalString(DataOutputStream output,
+			String value) throws IOException {
+		output.writeBoolean(value != null);
+		if (value != null) {
+			output.writeUTF(value);
+		}
+	}
+
+	private static String readOptionalString(DataInputStream input)
+			throws IOException {
+		return input.readBoolean() ? input.readUTF() : null;
+	}
+
+	/**
+	 * Returns total size of the segments
+	 */
+	public long getSize() {
+		synchronized (writeLock) {
+			long size = 0;
+			for (Segment segment : segments) {
+				size += segment.getSize();
+			}
+			return size;
+		}
+	}
+
+	/**
+	 * Returns size of the live documents
+	 */
+	public long getLiveSize() {
+		synchronized (writeLock) {
+			long size = 0;
+			for (Segment segment : segments) {
+				size += segment.getLiveBytes();
+			}
+			return size;
+		}
+	}
+
+	/**
+	 * Visits elements of the documents of the given language nature
+	 *
+	 * @param natureId
+	 *            Language nature ID
+	 * @param containerPaths
+	 *            Paths of containers to search in, or <code>null</code> to
+	 *            search in all containers
+	 */
+	public void search(String natureId, Collection<String> containerPaths,
+			IElementFilter filter, IElementVisitor visitor,
+			IProgressMonitor monitor) throws IOException {
+
+		segmentsLock.readLock().lock();
+		try {
+			if (containerPaths == null) {
+				containerPaths = containers.keySet();
+			}
+			for (String containerPath : containerPaths) {
+				Map<String, Document> documents = containers
+						.get(containerPath);
+				if (documents == null) {
+					continue;
+				}
+				for (Map.Entry<String, Document> entry : documents.entrySet()) {
+					if (monitor != null && monitor.isCanceled()) {
+						return;
+					}
+					Document document = entry.getValue();
+					String path = entry.getKey();
+					if (!natureId.equals(document.natureId)
+							|| !filter.acceptDocument(containerPath, path)) {
+						continue;
+					}
+					if (!visitElements(containerPath, path, document, filter,
+							visitor)) {
+						return;
+					}
+				}
+			}
+		} finally {
+			segmentsLock.readLock().unlock();
+		}
+	}
+
+	private boolean visitElements(String containerPath, String path,
+			Document document, IElementFilter filter, IElementVisitor visitor)
+			throws IOException {
+
+		ByteBuffer payload = document.segment.read(document.offset);
+		payload.position(document.elementsOffset);
+		int count = payload.getInt();
+		for (int i = 0; i < count; ++i) {
+			int type = payload.getInt();
+			boolean isReference = payload.get() != 0;
+			String name = RecordBuffer.getString(payload);
+			int restLength = payload.getInt();
+			if (!filter.acceptElement(type, isReference, name)) {
+				payload.position(payload.position() + restLength);
+				continue;
+			}
+			int flags = payload.getInt();
+			int offset = payload.getInt();
+			int length = payload.getInt();
+			int nameOffset = payload.getInt();
+			int nameLength = payload.getInt();
+			String metadata = RecordBuffer.getString(payload);
+			String qualifier = RecordBuffer.getString(payload);
+			String parent = RecordBuffer.getString(payload);
+			if (!visitor.visit(containerPath, path, new SegmentElement(type,
+					flags, offset, length, nameOffset, nameLength, name,
+					metadata, qualifier, parent, isReference))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Schedules compaction if the sealed segments contain enough dead data
+	 */
+	private void scheduleCompaction() {
+		if (!closed && getDeadBytes() > MIN_DEAD_BYTES) {
+			compactor.request();
+		}
+	}
+
+	private long getDeadBytes() {
+		synchronized (writeLock) {
+			long total = 0;
+			long live = 0;
+			for (Segment segment : segments) {
+				if (segment != active) {
+					total += segment.getSize() - Segment.HEADER_SIZE;
+					live += segment.getLiveBytes();
+				}
+			}
+			return live * 2 < total ? total - live : 0;
+		}
+	}
+
+	/**
+	 * Copies live documents of all sealed segments into a new segment, which
+	 * supersedes them. Documents written while the compaction is running go
+	 * to the active segment and are not affected. Timestamps recorded while
+	 * it is running replace the documents read from the sealed segments by
+	 * their copies, so the copies are found by segment and offset.
+	 */
+	public void compact(IProgressMonitor monitor) throws IOException {
+		List<Segment> inputs;
+		List<Document> live = new ArrayList<Document>();
+		synchronized (writeLock) {
+			if (closed) {
+				return;
+			}
+			// seal the active segment, so everything written so far is
+			// compacted, and the output sequence number precedes new segments:
+			startSegment();
+			inputs = new ArrayList<Segment>(segments);
+			inputs.remove(active);
+
+			Set<Segment> inputSet = new HashSet<Segment>(inputs);
+			long liveSize = 0;
+			for (Map<String, Document> documents : containers.values()) {
+				for (Document document : documents.values()) {
+					if (inputSet.contains(document.segment)) {
+						live.add(document);
+						liveSize += document.size;
+					}
+				}
+			}
+			if (liveSize > Integer.MAX_VALUE - Segment.HEADER_SIZE) {
+				SegmentIndex.warn("Index is too large to be compacted"); //$NON-NLS-1$
+				return;
+			}
+		}
+
+		Segment last = inputs.get(inputs.size() - 1);
+		long sequence = last.getSequence();
+		File tempFile = segmentFile(sequence, TEMP_EXT);
+		Segment output = Segment.create(tempFile, sequence, inputs.get(0)
+				.getBase());
+		// input segment -> offset in it -> offset in the output
+		Map<Segment, Map<Integer, Integer>> moved = new HashMap<Segment, Map<Integer, Integer>>();
+		for (Segment input : inputs) {
+			moved.put(input, new HashMap<Integer, Integer>());
+		}
+		try {
+			for (Document document : live) {
+				if (closed || (monitor != null && monitor.isCanceled())) {
+					output.delete();
+					return;
+				}
+				int offset = output.append(withTimestamp(document.segment
+						.read(document.offset), document.timestamp));
+				moved.get(document.segment).put(
+						Integer.valueOf(document.offset),
+						Integer.valueOf(offset));
+			}
+			output.force();
+			output.close();
+		} catch (IOException e) {
+			output.delete();
+			throw e;
+		}
+
+		File compactedFile = segmentFile(sequence, COMPACTED_EXT);
+		if (!tempFile.renameTo(compactedFile)) {
+			tempFile.delete();
+			throw new IOException(NLS.bind("Can''t rename ''{0}''", tempFile)); //$NON-NLS-1$
+		}
+		output = Segment.open(compactedFile, sequence);
+
+		synchronized (writeLock) {
+			if (closed) {
+				output.close();
+				return;
+			}
+			segmentsLock.writeLock().lock();
+			try {
+				// documents still in the inputs were copied, possibly with
+				// older timestamps than they have now:
+				for (Map<String, Document> documents : containers.values()) {
+					for (Map.Entry<String, Document> entry : documents
+							.entrySet()) {
+						Document document = entry.getValue();
+						Map<Integer, Integer> offsets = moved
+								.get(document.segment);
+						if (offsets == null) {
+							continue;
+						}
+						Integer offset = offsets.get(Integer
+								.valueOf(document.offset));
+						documents.put(entry.getKey(), document.moveTo(output,
+								offset.intValue()));
+						output.addLiveBytes(document.size);
+					}
+				}
+				segments.removeAll(inputs);
+				segments.add(0, output);
+				for (Segment input : inputs) {
+					if (!input.delete()) {
+						// will be removed when the store is opened next time
+						SegmentIndex.warn(NLS.bind(
+								"Can''t delete index segment ''{0}''", //$NON-NLS-1$
+								input.getFile().getName()));
+					}
+				}
+			} finally {
+				segmentsLock.writeLock().unlock();
+			}
+		}
+	}
+
+	/**
+	 * Returns the document record with the given timestamp, so timestamps
+	 * recorded in the compacted segments are not lost
+	 */
+	private static ByteBuffer withTimestamp(ByteBuffer record, long timestamp) {
+		// skip the kind, the container path and the path
+		int position = record.position() + 1;
+		for (int i = 0; i < 2; ++i) {
+			position += 4 + Math.max(record.getInt(position), 0);
+		}
+		if (record.getLong(position) == timestamp) {
+			return record;
+		}
+		ByteBuffer copy = ByteBuffer.allocate(record.remaining());
+		copy.put(record.duplicate());
+		copy.putLong(position - record.position(), timestamp);
+		copy.flip();
+		return copy;
+	}
+
+	private static class IncompatibleSegmentException extends IOException {
+		private static final long serialVersionUID = 1L;
+
+		IncompatibleSegmentException(File file) {
+			super(file.getName());
+		}
+	}
+}
@@ -14,6 +14,16 @@ CREATE TABLE IF NOT EXISTS {0}(
 	METADATA VARCHAR, 
 	QUALIFIER VARCHAR, 
 	PARENT VARCHAR, 
-	FILE_ID INT NOT NULL, 
-	FOREIGN KEY(FILE_ID) REFERENCES FILES(ID) ON UPDATE CASCADE ON DELETE CASCADE, 
-);
\ No newline at end of file
+	FILE_ID INT NOT NULL
+);
+
+-- Secondary indexes used by the element search. Index on the FILE_ID
+-- is created prior to the foreign key, so it's reused by the constraint.
+CREATE INDEX IF NOT EXISTS {0}_NAME_IDX ON {0}(NAME);
+CREATE INDEX IF NOT EXISTS {0}_CC_NAME_IDX ON {0}(CC_NAME);
+CREATE INDEX IF NOT EXISTS {0}_QUALIFIER_IDX ON {0}(QUALIFIER);
+CREATE INDEX IF NOT EXISTS {0}_PARENT_IDX ON {0}(PARENT);
+CREATE INDEX IF NOT EXISTS {0}_FILE_ID_IDX ON {0}(FILE_ID);
+
+ALTER TABLE {0} ADD CONSTRAINT IF NOT EXISTS {0}_FILE_ID_FK 
+	FOREIGN KEY(FILE_ID) REFERENCES FILES(ID) ON UPDATE CASCADE ON DELETE CASCADE;
\ No newline at end of file
@@ -9,6 +9,14 @@ CREATE TABLE IF NOT EXISTS {0}(
 	NAME VARCHAR_IGNORECASE NOT NULL,
 	METADATA VARCHAR,
 	QUALIFIER VARCHAR,
-	FILE_ID INT NOT NULL,
-	FOREIGN KEY(FILE_ID) REFERENCES FILES(ID) ON UPDATE CASCADE ON DELETE CASCADE,
-);
\ No newline at end of file
+	FILE_ID INT NOT NULL
+);
+
+-- Secondary indexes used by the element search. Index on the FILE_ID
+-- is created prior to the foreign key, so it's reused by the constraint.
+CREATE INDEX IF NOT EXISTS {0}_NAME_IDX ON {0}(NAME);
+CREATE INDEX IF NOT EXISTS {0}_QUALIFIER_IDX ON {0}(QUALIFIER);
+CREATE INDEX IF NOT EXISTS {0}_FILE_ID_IDX ON {0}(FILE_ID);
+
+ALTER TABLE {0} ADD CONSTRAINT IF NOT EXISTS {0}_FILE_ID_FK 
+	FOREIGN KEY(FILE_ID) REFERENCES FILES(ID) ON UPDATE CASCADE ON DELETE CASCADE;
\ No newline at end of file
@@ -40,6 +40,7 @@ public class H2Index extends Plugin {
 
 	@Override
 	public void stop(BundleContext context) throws Exception {
+		H2Cache.cancelLoad();
 		plugin = null;
 		super.stop(context);
 	}
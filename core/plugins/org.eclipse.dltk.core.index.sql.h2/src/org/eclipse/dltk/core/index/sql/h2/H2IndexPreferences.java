@@ -39,6 +39,12 @@ public class H2IndexPreferences extends AbstractPreferenceInitializer {
 	 */
 	public static final String DB_LOCK_MODE = "lockMode"; //$NON-NLS-1$
 
+	/**
+	 * Maximal amount of memory in kilobytes used by the in-memory elements
+	 * cache. Zero means no limit.
+	 */
+	public static final String CACHE_MEMORY_LIMIT = "cacheMemoryLimit"; //$NON-NLS-1$
+
 	/**
 	 * Schema version
 	 */
@@ -52,5 +58,6 @@ public class H2IndexPreferences extends AbstractPreferenceInitializer {
 		p.putInt(DB_CACHE_SIZE, 32000); // 32Mb
 		p.put(DB_CACHE_TYPE, "LRU");
 		p.putInt(DB_LOCK_MODE, 0); // no transaction isolation
+		p.putInt(CACHE_MEMORY_LIMIT, 128000); // 128Mb
 	}
 }
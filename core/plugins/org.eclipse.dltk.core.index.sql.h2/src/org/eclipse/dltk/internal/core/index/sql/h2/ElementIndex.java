@@ -0,0 +1,437 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Sage and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Sage - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.dltk.internal.core.index.sql.h2;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.dltk.core.index.sql.Element;
+
+/**
+ * In-memory index of element declarations of a single element type.
+ * <p>
+ * Elements are stored per file in append-only arrays, which are modified by a
+ * single writer at a time, and published to readers without locking. In
+ * addition, an immutable snapshot of all elements sorted by name and by
+ * camel-case name is kept, so name lookups are performed using binary search.
+ * Files changed since the snapshot was built are tracked separately, and
+ * their elements are read directly from the per-file arrays until the
+ * snapshot is rebuilt. Readers never block.
+ * </p>
+ *
+ * @author michael
+ */
+public class ElementIndex {
+
+	/**
+	 * Visitor of the elements found in the index. Visited elements only
+	 * <em>may</em> match the requested name, so visitor must check them.
+	 */
+	public interface IElementVisitor {
+
+		/**
+		 * @return <code>false</code> to stop visiting elements
+		 */
+		boolean visit(Element element);
+	}
+
+	/** Minimal number of changed files that causes snapshot rebuild */
+	private static final int MIN_REBUILD_THRESHOLD = 64;
+
+	private static final Element[] NO_ELEMENTS = new Element[0];
+
+	static final Comparator<Element> NAME_COMPARATOR = new Comparator<Element>() {
+		public int compare(Element e1, Element e2) {
+			return String.CASE_INSENSITIVE_ORDER.compare(e1.getName(), e2
+					.getName());
+		}
+	};
+
+	private static final Comparator<Element> CC_NAME_COMPARATOR = new Comparator<Element>() {
+		public int compare(Element e1, Element e2) {
+			return e1.getCamelCaseName().compareTo(e2.getCamelCaseName());
+		}
+	};
+
+	/**
+	 * Append-only list of file elements. Only one thread may add elements at
+	 * a time, while any number of threads may read them.
+	 */
+	private static class FileElements {
+		private volatile Element[] elements = new Element[4];
+		private volatile int count;
+
+		void add(Element element) {
+			Element[] current = elements;
+			int size = count;
+			if (size == current.length) {
+				Element[] grown = new Element[Math.max(4, size * 2)];
+				System.arraycopy(current, 0, grown, 0, size);
+				grown[size] = element;
+				elements = grown;
+			} else {
+				current[size] = element;
+			}
+			count = size + 1;
+		}
+
+		/**
+		 * Releases unused array capacity. Must be called by the writer.
+		 */
+		void trim() {
+			int size = count;
+			if (size < elements.length) {
+				Element[] trimmed = new Element[size];
+				System.arraycopy(elements, 0, trimmed, 0, size);
+				elements = trimmed;
+			}
+		}
+
+		Element[] toArray() {
+			// read count before the array, see add()
+			int size = count;
+			Element[] result = new Element[size];
+			System.arraycopy(elements, 0, result, 0, size);
+			return result;
+		}
+	}
+
+	private static class Snapshot {
+		final Element[] byName;
+		final Element[] byCamelCase;
+		final ConcurrentHashMap<Integer, Boolean> changedFiles = new ConcurrentHashMap<Integer, Boolean>();
+
+		Snapshot(Element[] byName, Element[] byCamelCase) {
+			this.byName = byName;
+			this.byCamelCase = byCamelCase;
+		}
+	}
+
+	private final Object writeLock = new Object();
+	private final ConcurrentHashMap<Integer, FileElements> elementsByFile = new ConcurrentHashMap<Integer, FileElements>();
+	private volatile Snapshot snapshot = new Snapshot(NO_ELEMENTS, NO_ELEMENTS);
+
+	/**
+	 * Adds new element to the index
+	 */
+	public void add(Element element) {
+		synchronized (writeLock) {
+			int fileId = element.getFileId();
+			markChanged(fileId);
+			FileElements fileElements = elementsByFile.get(fileId);
+			if (fileElements == null) {
+				fileElements = new FileElements();
+				elementsByFile.put(fileId, fileElements);
+			}
+			fileElements.add(element);
+		}
+	}
+
+	/**
+	 * Removes all elements of the given file
+	 * 
+	 * @return removed elements
+	 */
+	public Element[] removeFile(int fileId) {
+		synchronized (writeLock) {
+			if (elementsByFile.containsKey(fileId)) {
+				markChanged(fileId);
+				return elementsByFile.remove(fileId).toArray();
+			}
+			return NO_ELEMENTS;
+		}
+	}
+
+	/**
+	 * Removes all elements of the given files. Instead of marking every file
+	 * as changed, removed elements are filtered out of the sorted snapshot,
+	 * so removing a large container doesn't cause repeated snapshot rebuilds.
+	 * 
+	 * @return removed elements
+	 */
+	public List<Element> removeFiles(Set<Integer> filesIds) {
+		synchronized (writeLock) {
+			List<Element> removed = new ArrayList<Element>();
+			for (Integer fileId : filesIds) {
+				FileElements fileElements = elementsByFile.remove(fileId);
+				if (fileElements != null) {
+					for (Element element : fileElements.toArray()) {
+						removed.add(element);
+					}
+				}
+			}
+			if (!removed.isEmpty()) {
+				Snapshot current = snapshot;
+				Snapshot filtered = new Snapshot(exclude(current.byName,
+						filesIds), exclude(current.byCamelCase, filesIds));
+				filtered.changedFiles.putAll(current.changedFiles);
+				for (Integer fileId : filesIds) {
+					filtered.changedFiles.remove(fileId);
+				}
+				snapshot = filtered;
+			}
+			return removed;
+		}
+	}
+
+	private static Element[] exclude(Element[] elements,
+			Set<Integer> filesIds) {
+		List<Element> result = new ArrayList<Element>(elements.length);
+		for (Element element : elements) {
+			if (!filesIds.contains(element.getFileId())) {
+				result.add(element);
+			}
+		}
+		return result.toArray(new Element[result.size()]);
+	}
+
+	/**
+	 * Returns elements declared in the given file
+	 */
+	public Element[] getElements(int fileId) {
+		FileElements fileElements = elementsByFile.get(fileId);
+		return fileElements != null ? fileElements.toArray() : NO_ELEMENTS;
+	}
+
+	/**
+	 * Returns whether there are changes not reflected in the sorted snapshot
+	 */
+	public boolean isSnapshotOutdated() {
+		return !snapshot.changedFiles.isEmpty();
+	}
+
+	private void markChanged(int fileId) {
+		Snapshot current = snapshot;
+		current.changedFiles.put(fileId, Boolean.TRUE);
+		int threshold = Math.max(MIN_REBUILD_THRESHOLD, elementsByFile
+				.size() / 8);
+		if (current.changedFiles.size() > threshold) {
+			rebuildSnapshot();
+			// the file is going to be modified after the snapshot is built:
+			snapshot.changedFiles.put(fileId, Boolean.TRUE);
+		}
+	}
+
+	/**
+	 * Rebuilds sorted snapshot of all elements. Writers are blocked while
+	 * this method runs, readers continue using previous snapshot.
+	 */
+	public void rebuildSnapshot() {
+		synchronized (writeLock) {
+			List<Element> all = new ArrayList<Element>();
+			List<Element> camelCase = new ArrayList<Element>();
+			for (FileElements fileElements : elementsByFile.values()) {
+				fileElements.trim();
+				for (Element element : fileElements.toArray()) {
+					all.add(element);
+					if (element.getCamelCaseName() != null) {
+						camelCase.add(element);
+					}
+				}
+			}
+			Element[] byName = all.toArray(new Element[all.size()]);
+			Arrays.sort(byName, NAME_COMPARATOR);
+			Element[] byCamelCase = camelCase.toArray(new Element[camelCase
+					.size()]);
+			Arrays.sort(byCamelCase, CC_NAME_COMPARATOR);
+
+			snapshot = new Snapshot(byName, byCamelCase);
+		}
+	}
+
+	/**
+	 * Visits elements whose name starts with one of the given prefixes
+	 * (ignoring case).
+	 *
+	 * @param prefixes
+	 *            Name prefixes
+	 * @param exact
+	 *            Whether to visit elements whose name is equal to one of the
+	 *            prefixes only
+	 */
+	public void visitByName(String[] prefixes, boolean exact,
+			IElementVisitor visitor) {
+		Snapshot current = snapshot;
+		Set<Integer> changedFiles = new HashSet<Integer>(current.changedFiles
+				.keySet());
+
+		Element[] elements = current.byName;
+		for (String prefix : prefixes) {
+			for (int i = lowerBound(elements, prefix, false); i < elements.length; ++i) {
+				Element element = elements[i];
+				if (!nameMatches(element.getName(), prefix, exact)) {
+					break;
+				}
+				if (!changedFiles.contains(element.getFileId())
+						&& !visitor.visit(element)) {
+					return;
+				}
+			}
+		}
+		visitChangedFiles(changedFiles, visitor);
+	}
+
+	/**
+	 * Visits elements whose name starts with one of the given prefixes
+	 * (ignoring case) in the order of their names. Elements of the files
+	 * changed since the snapshot was built are sorted and merged with the
+	 * snapshot elements, so the first elements are visited without going
+	 * through the whole range.
+	 *
+	 * @param prefixes
+	 *            Name prefixes, which must not be prefixes of each other
+	 * @param exact
+	 *            Whether to visit elements whose name is equal to one of the
+	 *            prefixes only
+	 */
+	public void visitByNameOrdered(String[] prefixes, boolean exact,
+			IElementVisitor visitor) {
+		Snapshot current = snapshot;
+		Set<Integer> changedFiles = new HashSet<Integer>(current.changedFiles
+				.keySet());
+
+		String[] sortedPrefixes = new String[prefixes.length];
+		System.arraycopy(prefixes, 0, sortedPrefixes, 0, prefixes.length);
+		Arrays.sort(sortedPrefixes, String.CASE_INSENSITIVE_ORDER);
+
+		List<Element> changed = new ArrayList<Element>();
+		for (Integer fileId : changedFiles) {
+			for (Element element : getElements(fileId)) {
+				for (String prefix : sortedPrefixes) {
+					if (nameMatches(element.getName(), prefix, exact)) {
+						changed.add(element);
+						break;
+					}
+				}
+			}
+		}
+		Collections.sort(changed, NAME_COMPARATOR);
+
+		int next = 0;
+		Element[] elements = current.byName;
+		for (String prefix : sortedPrefixes) {
+			for (int i = lowerBound(elements, prefix, false); i < elements.length; ++i) {
+				Element element = elements[i];
+				if (!nameMatches(element.getName(), prefix, exact)) {
+					break;
+				}
+				if (changedFiles.contains(element.getFileId())) {
+					continue;
+				}
+				while (next < changed.size()
+						&& NAME_COMPARATOR.compare(changed.get(next), element) < 0) {
+					if (!visitor.visit(changed.get(next++))) {
+						return;
+					}
+				}
+				if (!visitor.visit(element)) {
+					return;
+				}
+			}
+		}
+		while (next < changed.size()) {
+			if (!visitor.visit(changed.get(next++))) {
+				return;
+			}
+		}
+	}
+
+	private static boolean nameMatches(String name, String prefix,
+			boolean exact) {
+		return exact ? name.equalsIgnoreCase(prefix) : name.regionMatches(
+				true, 0, prefix, 0, prefix.length());
+	}
+
+	/**
+	 * Visits elements whose camel-case name starts with the given prefix
+	 *
+	 * @param prefix
+	 *            Camel-case name prefix (in upper case)
+	 */
+	public void visitByCamelCase(String prefix, IElementVisitor visitor) {
+		Snapshot current = snapshot;
+		Set<Integer> changedFiles = new HashSet<Integer>(current.changedFiles
+				.keySet());
+
+		Element[] elements = current.byCamelCase;
+		for (int i = lowerBound(elements, prefix, true); i < elements.length; ++i) {
+			Element element = elements[i];
+			if (!element.getCamelCaseName().startsWith(prefix)) {
+				break;
+			}
+			if (!changedFiles.contains(element.getFileId())
+					&& !visitor.visit(element)) {
+				return;
+			}
+		}
+		visitChangedFiles(changedFiles, visitor);
+	}
+
+	/**
+	 * Visits all elements in the index
+	 */
+	public void visitAll(IElementVisitor visitor) {
+		for (FileElements fileElements : elementsByFile.values()) {
+			for (Element element : fileElements.toArray()) {
+				if (!visitor.visit(element)) {
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Visits all elements of the given files
+	 */
+	public void visitFiles(Set<Integer> filesIds, IElementVisitor visitor) {
+		for (Integer fileId : filesIds) {
+			for (Element element : getElements(fileId)) {
+				if (!visitor.visit(element)) {
+					return;
+				}
+			}
+		}
+	}
+
+	private void visitChangedFiles(Set<Integer> changedFiles,
+			IElementVisitor visitor) {
+		if (!changedFiles.isEmpty()) {
+			visitFiles(changedFiles, visitor);
+		}
+	}
+
+	/**
+	 * Returns index of the first element which is not less than the given key
+	 */
+	private static int lowerBound(Element[] elements, String key,
+			boolean camelCase) {
+		int low = 0;
+		int high = elements.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			int cmp = camelCase ? elements[mid].getCamelCaseName().compareTo(
+					key) : String.CASE_INSENSITIVE_ORDER.compare(elements[mid]
+					.getName(), key);
+			if (cmp < 0) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+}
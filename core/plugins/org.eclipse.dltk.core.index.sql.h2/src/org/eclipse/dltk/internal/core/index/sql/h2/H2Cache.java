@@ -11,274 +11,456 @@
  *******************************************************************************/
 package org.eclipse.dltk.internal.core.index.sql.h2;
 
-import java.sql.Connection;
-import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.Comparator;
 import java.util.HashSet;
-import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Pattern;
 
-import org.eclipse.core.runtime.NullProgressMonitor;
-import org.eclipse.core.runtime.jobs.ILock;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Platform;
+import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.jobs.Job;
-import org.eclipse.dltk.core.IModelElement;
+import org.eclipse.dltk.core.RuntimePerformanceMonitor;
+import org.eclipse.dltk.core.RuntimePerformanceMonitor.PerformanceNode;
 import org.eclipse.dltk.core.index.sql.Container;
-import org.eclipse.dltk.core.index.sql.DbFactory;
 import org.eclipse.dltk.core.index.sql.Element;
 import org.eclipse.dltk.core.index.sql.File;
-import org.eclipse.dltk.core.index.sql.IElementDao;
 import org.eclipse.dltk.core.index.sql.IElementHandler;
 import org.eclipse.dltk.core.index.sql.h2.H2Index;
+import org.eclipse.dltk.core.index.sql.h2.H2IndexPreferences;
 import org.eclipse.dltk.core.index2.search.ISearchEngine.MatchRule;
+import org.eclipse.dltk.internal.core.ModelManager;
+import org.eclipse.dltk.internal.core.index.sql.h2.ElementIndex.IElementVisitor;
 
 /**
- * This is a cache layer between H2 database and model access
+ * This is a cache layer between H2 database and model access.
+ * <p>
+ * All maps are concurrent, and element declarations are kept in a separate
+ * {@link ElementIndex} per elements table, so searches never block indexing,
+ * and name lookups don't iterate over all cached elements.
+ * </p>
+ * <p>
+ * The cache is loaded in background by {@link H2CacheLoader} container by
+ * container. Searches that are limited to already loaded containers are
+ * served from the cache, while other searches are performed using SQL.
+ * Modifications made while the cache is being loaded are tracked per file,
+ * so they aren't overridden by outdated data read by the loader.
+ * </p>
+ * <p>
+ * Strings shared by many elements (names, qualifiers and parents) are interned.
+ * Memory consumed by elements is estimated per container, and when it exceeds
+ * the limit set by {@link H2IndexPreferences#CACHE_MEMORY_LIMIT}, containers
+ * that were not searched for the longest time are evicted from the cache, so
+ * searches in them are performed using SQL until they are loaded again.
+ * </p>
  * 
  * @author michael
  */
 public class H2Cache {
 
-	private static final ILock containerLock = Job.getJobManager().newLock();
-	private static final Map<Integer, Container> containerById = new HashMap<Integer, Container>();
+	/**
+	 * Path prefix of containers that were detached, and wait for their rows
+	 * to be deleted
+	 */
+	static final String DETACHED_PREFIX = "#detached/"; //$NON-NLS-1$
+
+	/** Delay before rebuilding sorted element snapshots after modification */
+	private static final long REBUILD_DELAY = 2000;
+
+	/**
+	 * Estimated size of the element object including references to it from
+	 * the per-file and sorted arrays
+	 */
+	private static final int ELEMENT_OVERHEAD = 80;
+
+	private static final String PERFORMANCE_KIND = "H2 Index"; //$NON-NLS-1$
+	private static final String CACHE_LOAD = "Cache Load"; //$NON-NLS-1$
+	private static final String CACHE_EVICTION = "Cache Eviction"; //$NON-NLS-1$
+
+	/**
+	 * Loaded container statistics used for choosing containers to evict
+	 */
+	private static class ContainerInfo {
+		final AtomicLong memory = new AtomicLong();
+		volatile long lastAccess = System.currentTimeMillis();
+	}
+
+	private static final Map<Integer, Container> containerById = new ConcurrentHashMap<Integer, Container>();
+	private static final Map<String, Container> containerByPath = new ConcurrentHashMap<String, Container>();
+
+	private static final ConcurrentHashMap<Integer, Map<String, File>> filesByContainer = new ConcurrentHashMap<Integer, Map<String, File>>();
+	private static final Map<Integer, File> fileById = new ConcurrentHashMap<Integer, File>();
+
+	/** Element indexes by declarations table name */
+	private static final ConcurrentHashMap<String, ElementIndex> elementsMap = new ConcurrentHashMap<String, ElementIndex>();
+
+	private static final H2CacheLoader loader = new H2CacheLoader();
+	private static final Object loadLock = new Object();
+	private static final ConcurrentHashMap<Integer, ContainerInfo> loadedContainers = new ConcurrentHashMap<Integer, ContainerInfo>();
+	/** Files modified while the cache is being loaded */
+	private static final Map<Integer, Boolean> touchedFiles = new ConcurrentHashMap<Integer, Boolean>();
 
-	private static final ILock fileLock = Job.getJobManager().newLock();
-	private static final Map<Integer, Map<Integer, File>> filesByContainer = new HashMap<Integer, Map<Integer, File>>();
+	private static volatile boolean isLoaded;
+	private static volatile long lastModification;
 
-	private static final ILock elementLock = Job.getJobManager().newLock();
-	private static final Map<Integer, Map<Integer, List<Element>>> elementsMap = new HashMap<Integer, Map<Integer, List<Element>>>();
+	private static final AtomicLong memoryUsage = new AtomicLong();
+	private static volatile long memoryLimit;
+
+	private static final Job rebuildJob = new Job("Rebuilding index cache") { //$NON-NLS-1$
+		protected IStatus run(IProgressMonitor monitor) {
+			long idle = System.currentTimeMillis() - lastModification;
+			if (idle < REBUILD_DELAY) {
+				// indexing is still in progress:
+				schedule(REBUILD_DELAY - idle);
+				return Status.OK_STATUS;
+			}
+			for (ElementIndex index : elementsMap.values()) {
+				if (monitor.isCanceled()) {
+					return Status.CANCEL_STATUS;
+				}
+				if (index.isSnapshotOutdated()) {
+					index.rebuildSnapshot();
+				}
+			}
+			return Status.OK_STATUS;
+		}
+	};
+	private static final Job evictionJob = new Job("Evicting index cache") { //$NON-NLS-1$
+		protected IStatus run(IProgressMonitor monitor) {
+			evictColdContainers();
+			return Status.OK_STATUS;
+		}
+	};
+	static {
+		rebuildJob.setSystem(true);
+		rebuildJob.setPriority(Job.DECORATE);
+		evictionJob.setSystem(true);
+	}
 
-	private static final ILock loadedLock = Job.getJobManager().newLock();
-	private static boolean isLoaded;
+	private static void elementsModified() {
+		lastModification = System.currentTimeMillis();
+		if (rebuildJob.getState() == Job.NONE) {
+			rebuildJob.schedule(REBUILD_DELAY);
+		}
+	}
 
 	public static void addContainer(Container container) {
-		containerLock.acquire();
-		try {
-			int containerId = container.getId();
-			containerById.put(containerId, container);
-		} finally {
-			containerLock.release();
+		containerById.put(container.getId(), container);
+		containerByPath.put(container.getPath(), container);
+		if (isLoaded) {
+			// all existing containers are loaded, so this one is new:
+			loadedContainers.putIfAbsent(container.getId(),
+					new ContainerInfo());
 		}
 	}
 
-	public static void addElement(Element element) {
-		elementLock.acquire();
-		try {
-			int elementType = element.getType();
-			Map<Integer, List<Element>> elementsByFile = elementsMap
-					.get(elementType);
-			if (elementsByFile == null) {
-				elementsByFile = new HashMap<Integer, List<Element>>();
-				elementsMap.put(elementType, elementsByFile);
+	/**
+	 * Replaces cached container after its path was changed
+	 */
+	public static void renameContainer(Container container, Container renamed) {
+		containerByPath.remove(container.getPath());
+		containerById.put(renamed.getId(), renamed);
+		containerByPath.put(renamed.getPath(), renamed);
+	}
+
+	/**
+	 * Adds element declaration to the cache
+	 * 
+	 * @param tableName
+	 *            Name of the table containing element declarations
+	 * @param element
+	 *            Element declaration
+	 */
+	public static void addElement(String tableName, Element element) {
+		element = compact(element);
+		if (!isLoaded) {
+			synchronized (loadLock) {
+				touchedFiles.put(element.getFileId(), Boolean.TRUE);
+				getElementIndex(tableName).add(element);
 			}
-			int fileId = element.getFileId();
-			List<Element> elementsSet = elementsByFile.get(fileId);
-			if (elementsSet == null) {
-				elementsSet = new LinkedList<Element>();
-				elementsByFile.put(fileId, elementsSet);
+		} else {
+			getElementIndex(tableName).add(element);
+		}
+		ContainerInfo info = getContainerInfo(element.getFileId());
+		if (info != null) {
+			info.memory.addAndGet(estimateSize(element));
+		}
+		memoryAdded(estimateSize(element));
+		elementsModified();
+	}
+
+	/**
+	 * Returns element whose strings are shared with other cached elements
+	 */
+	private static Element compact(Element element) {
+		ModelManager modelManager = ModelManager.getModelManager();
+		String name = intern(modelManager, element.getName());
+		String camelCaseName = intern(modelManager, element
+				.getCamelCaseName());
+		String qualifier = intern(modelManager, element.getQualifier());
+		String parent = intern(modelManager, element.getParent());
+		if (name == element.getName()
+				&& camelCaseName == element.getCamelCaseName()
+				&& qualifier == element.getQualifier()
+				&& parent == element.getParent()) {
+			return element;
+		}
+		return new Element(element.getType(), element.getFlags(), element
+				.getOffset(), element.getLength(), element.getNameOffset(),
+				element.getNameLength(), name, camelCaseName, element
+						.getMetadata(), qualifier, parent, element.getFileId(),
+				element.isReference());
+	}
+
+	private static String intern(ModelManager modelManager, String str) {
+		return str != null ? modelManager.intern(str) : null;
+	}
+
+	private static long estimateSize(Element element) {
+		// interned strings are shared, so only metadata is counted
+		String metadata = element.getMetadata();
+		return ELEMENT_OVERHEAD
+				+ (metadata != null ? 40 + metadata.length() * 2 : 0);
+	}
+
+	private static ContainerInfo getContainerInfo(int fileId) {
+		File file = fileById.get(fileId);
+		return file != null ? loadedContainers.get(file.getContainerId())
+				: null;
+	}
+
+	private static void memoryAdded(long size) {
+		long usage = memoryUsage.addAndGet(size);
+		long limit = memoryLimit;
+		if (limit > 0 && usage > limit
+				&& evictionJob.getState() == Job.NONE) {
+			evictionJob.schedule();
+		}
+	}
+
+	private static ElementIndex getElementIndex(String tableName) {
+		ElementIndex index = elementsMap.get(tableName);
+		if (index == null) {
+			index = new ElementIndex();
+			ElementIndex existing = elementsMap.putIfAbsent(tableName, index);
+			if (existing != null) {
+				index = existing;
 			}
-			elementsSet.add(element);
-		} finally {
-			elementLock.release();
 		}
+		return index;
 	}
 
 	public static void addFile(File file) {
-		fileLock.acquire();
-		try {
-			int containerId = file.getContainerId();
-			Map<Integer, File> files = filesByContainer.get(containerId);
-			if (files == null) {
-				files = new HashMap<Integer, File>();
-				filesByContainer.put(containerId, files);
+		int containerId = file.getContainerId();
+		Map<String, File> files = filesByContainer.get(containerId);
+		if (files == null) {
+			files = new ConcurrentHashMap<String, File>();
+			Map<String, File> existing = filesByContainer.putIfAbsent(
+					containerId, files);
+			if (existing != null) {
+				files = existing;
 			}
-			files.put(file.getId(), file);
-		} finally {
-			fileLock.release();
 		}
+		files.put(file.getPath(), file);
+		fileById.put(file.getId(), file);
 	}
 
 	public static void deleteContainerById(int id) {
-		containerLock.acquire();
-		try {
-			containerById.remove(id);
-			deleteFilesByContainerId(id);
-		} finally {
-			containerLock.release();
+		if (!isLoaded) {
+			synchronized (loadLock) {
+				doDeleteContainerById(id);
+			}
+		} else {
+			doDeleteContainerById(id);
+		}
+	}
+
+	private static void doDeleteContainerById(int id) {
+		Container container = containerById.remove(id);
+		if (container != null) {
+			containerByPath.remove(container.getPath());
 		}
+		deleteFilesByContainerId(id);
+		loadedContainers.remove(id);
 	}
 
 	public static void deleteContainerByPath(String path) {
-		containerLock.acquire();
-		try {
-			Container container = selectContainerByPath(path);
-			if (container != null) {
-				deleteContainerById(container.getId());
-			}
-		} finally {
-			containerLock.release();
+		Container container = selectContainerByPath(path);
+		if (container != null) {
+			deleteContainerById(container.getId());
 		}
 	}
 
 	public static void deleteElementsByFileId(int id) {
-		elementLock.acquire();
-		try {
-			Iterator<Map<Integer, List<Element>>> i = elementsMap.values()
-					.iterator();
-			while (i.hasNext()) {
-				Map<Integer, List<Element>> elementsByFile = i.next();
-				elementsByFile.remove(id);
+		if (!isLoaded) {
+			synchronized (loadLock) {
+				touchedFiles.put(id, Boolean.TRUE);
+				doDeleteElementsByFileId(id);
 			}
-		} finally {
-			elementLock.release();
+		} else {
+			doDeleteElementsByFileId(id);
+		}
+		elementsModified();
+	}
+
+	private static void doDeleteElementsByFileId(int id) {
+		ContainerInfo info = getContainerInfo(id);
+		long size = 0;
+		for (ElementIndex index : elementsMap.values()) {
+			for (Element element : index.removeFile(id)) {
+				size += estimateSize(element);
+			}
+		}
+		if (size > 0) {
+			if (info != null) {
+				info.memory.addAndGet(-size);
+			}
+			memoryUsage.addAndGet(-size);
 		}
 	}
 
 	public static void deleteFileByContainerIdAndPath(int containerId,
 			String path) {
-		fileLock.acquire();
-		try {
-			File file = selectFileByContainerIdAndPath(containerId, path);
-			if (file != null) {
-				deleteFileById(file.getId());
-			}
-		} finally {
-			fileLock.release();
+		File file = selectFileByContainerIdAndPath(containerId, path);
+		if (file != null) {
+			deleteFileById(file.getId());
 		}
 	}
 
 	public static void deleteFileById(int id) {
-		fileLock.acquire();
-		try {
-			Iterator<Map<Integer, File>> i = filesByContainer.values()
-					.iterator();
-			while (i.hasNext()) {
-				i.next().remove(id);
+		deleteElementsByFileId(id);
+		File file = fileById.remove(id);
+		if (file != null) {
+			Map<String, File> files = filesByContainer.get(file
+					.getContainerId());
+			if (files != null) {
+				files.remove(file.getPath());
 			}
-			deleteElementsByFileId(id);
-		} finally {
-			fileLock.release();
 		}
 	}
 
+	/**
+	 * Removes files of the container together with their elements. Elements
+	 * of all the files are removed from every element index at once, so the
+	 * cost doesn't depend on number of files.
+	 */
 	public static void deleteFilesByContainerId(int id) {
-		fileLock.acquire();
-		try {
-			Map<Integer, File> files = filesByContainer.remove(id);
-			if (files != null) {
-				Iterator<Integer> i = files.keySet().iterator();
-				while (i.hasNext()) {
-					deleteElementsByFileId(i.next());
+		Map<String, File> files = filesByContainer.remove(id);
+		if (files == null || files.isEmpty()) {
+			return;
+		}
+		Set<Integer> filesIds = new HashSet<Integer>();
+		for (File file : files.values()) {
+			filesIds.add(file.getId());
+		}
+		ContainerInfo info = loadedContainers.get(id);
+		long size = 0;
+		if (!isLoaded) {
+			synchronized (loadLock) {
+				for (Integer fileId : filesIds) {
+					touchedFiles.put(fileId, Boolean.TRUE);
 				}
+				size = doDeleteElementsByFileIds(filesIds);
 			}
-		} finally {
-			fileLock.release();
+		} else {
+			size = doDeleteElementsByFileIds(filesIds);
 		}
+		for (Integer fileId : filesIds) {
+			fileById.remove(fileId);
+		}
+		if (size > 0) {
+			if (info != null) {
+				info.memory.addAndGet(-size);
+			}
+			memoryUsage.addAndGet(-size);
+		}
+		elementsModified();
 	}
 
-	public static Container selectContainerById(int id) {
-		containerLock.acquire();
-		try {
-			return containerById.get(id);
-		} finally {
-			containerLock.release();
+	private static long doDeleteElementsByFileIds(Set<Integer> filesIds) {
+		long size = 0;
+		for (ElementIndex index : elementsMap.values()) {
+			for (Element element : index.removeFiles(filesIds)) {
+				size += estimateSize(element);
+			}
 		}
+		return size;
+	}
+
+	public static Container selectContainerById(int id) {
+		return containerById.get(id);
 	}
 
 	public static Container selectContainerByPath(String path) {
-		containerLock.acquire();
-		try {
-			Iterator<Container> i = containerById.values().iterator();
-			while (i.hasNext()) {
-				Container container = i.next();
-				if (container.getPath().equals(path)) {
-					return container;
-				}
-			}
-			return null;
-		} finally {
-			containerLock.release();
-		}
+		return containerByPath.get(path);
 	}
 
 	public static Collection<Element> selectElementsByFileId(int id) {
-		elementLock.acquire();
-		try {
-			List<Element> elements = new LinkedList<Element>();
-			Iterator<Map<Integer, List<Element>>> i = elementsMap.values()
-					.iterator();
-			while (i.hasNext()) {
-				Map<Integer, List<Element>> elementsByFile = i.next();
-				List<Element> l = elementsByFile.get(id);
-				if (l != null) {
-					elements.addAll(l);
-				}
+		List<Element> elements = new ArrayList<Element>();
+		for (ElementIndex index : elementsMap.values()) {
+			for (Element element : index.getElements(id)) {
+				elements.add(element);
 			}
-			return elements;
-		} finally {
-			elementLock.release();
 		}
+		return elements;
 	}
 
 	public static File selectFileByContainerIdAndPath(int containerId,
 			String path) {
-		fileLock.acquire();
-		try {
-			Map<Integer, File> files = filesByContainer.get(containerId);
-			if (files != null) {
-				Iterator<File> i = files.values().iterator();
-				while (i.hasNext()) {
-					File file = i.next();
-					if (file.getPath().equals(path)) {
-						return file;
-					}
-				}
-			}
-		} finally {
-			fileLock.release();
+		Map<String, File> files = filesByContainer.get(containerId);
+		if (files != null) {
+			return files.get(path);
 		}
 		return null;
 	}
 
 	public static File selectFileById(int id) {
-		fileLock.acquire();
-		try {
-			Iterator<Map<Integer, File>> i = filesByContainer.values()
-					.iterator();
-			while (i.hasNext()) {
-				File file = i.next().get(id);
-				if (file != null) {
-					return file;
-				}
-			}
-			return null;
-		} finally {
-			fileLock.release();
-		}
+		return fileById.get(id);
 	}
 
+	/**
+	 * Returns files of the given container, or <code>null</code> if the
+	 * container is not loaded into the cache yet
+	 */
 	public static Collection<File> selectFilesByContainerId(int id) {
-		fileLock.acquire();
-		try {
-			Map<Integer, File> files = filesByContainer.get(id);
-			if (files != null) {
-				return files.values();
-			}
-			return Collections.emptyList();
-		} finally {
-			fileLock.release();
+		if (!isContainerLoaded(id)) {
+			return null;
+		}
+		Map<String, File> files = filesByContainer.get(id);
+		if (files != null) {
+			return files.values();
 		}
+		return Collections.emptyList();
 	}
 
-	public static Collection<Element> searchElements(String pattern,
-			MatchRule matchRule, int elementType, int trueFlags,
-			int falseFlags, String qualifier, String parent, int[] filesId,
-			int containersId[], String natureId, int limit) {
+	/**
+	 * Searches for elements in the cache, and passes them to the handler as
+	 * soon as they're found.
+	 * 
+	 * @param limit
+	 *            Maximal number of elements to pass to the handler (
+	 *            <code>0</code> - unlimited)
+	 * @param orderByName
+	 *            Whether elements should be passed to the handler in the
+	 *            order of their names (ignoring case)
+	 * @param monitor
+	 *            Progress monitor checked before every element is passed to
+	 *            the handler (may be <code>null</code>)
+	 */
+	public static void searchElements(String pattern,
+			final MatchRule matchRule, int elementType, final int trueFlags,
+			final int falseFlags, final String qualifier, final String parent,
+			int[] filesId, int containersId[], String natureId,
+			final int limit, boolean orderByName,
+			final IElementHandler handler, final IProgressMonitor monitor) {
 
 		Set<Integer> filesIds = new HashSet<Integer>();
 		if (filesId != null) {
@@ -286,95 +468,164 @@ public class H2Cache {
 				filesIds.add(fileId);
 			}
 		} else if (containersId != null) {
-			containerLock.acquire();
-			try {
-				for (int containerId : containersId) {
-					Collection<File> files = selectFilesByContainerId(containerId);
+			for (int containerId : containersId) {
+				Collection<File> files = selectFilesByContainerId(containerId);
+				if (files != null) {
 					for (File file : files) {
 						filesIds.add(file.getId());
 					}
 				}
-			} finally {
-				containerLock.release();
 			}
 		}
+		if ((filesId != null || containersId != null) && filesIds.isEmpty()) {
+			return;
+		}
 
-		elementLock.acquire();
-		try {
-			Set<String> patternSet = null;
-			Pattern posixPattern = null;
+		ElementIndex index = elementsMap.get(new Schema().getTableName(
+				elementType, natureId, false));
+		if (index == null) {
+			return;
+		}
 
-			// Pre-cache pattern's lower and upper case variants:
-			String patternLC = null;
-			String patternUC = null;
-			if (pattern != null) {
-				patternLC = pattern.toLowerCase();
-				patternUC = pattern.toUpperCase();
+		Set<String> patternSet = null;
+		Pattern posixPattern = null;
+
+		// Pre-cache pattern's lower and upper case variants:
+		String patternLC = null;
+		String patternUC = null;
+		if (pattern != null) {
+			patternLC = pattern.toLowerCase();
+			patternUC = pattern.toUpperCase();
+		}
+
+		if (matchRule == MatchRule.SET) {
+			patternSet = new HashSet<String>();
+			String[] parts = pattern.split(",");
+			for (String part : parts) {
+				if (part.length() > 0) {
+					patternSet.add(part.toLowerCase());
+				}
 			}
+		} else if (matchRule == MatchRule.PATTERN) {
+			posixPattern = createPosixPattern(pattern);
+		}
 
-			if (matchRule == MatchRule.SET) {
-				patternSet = new HashSet<String>();
-				String[] parts = pattern.split(",");
-				for (String part : parts) {
-					if (part.length() > 0) {
-						patternSet.add(part.toLowerCase());
-					}
+		boolean hasPattern = pattern != null && pattern.length() > 0;
+
+		// Files of the searched containers are visited directly only when
+		// there's no name to look up in the sorted index:
+		final boolean visitFiles = filesId != null
+				|| (containersId != null && !hasPattern);
+		final Set<Integer> fFilesIds = containersId != null && !visitFiles ? filesIds
+				: null;
+
+		// Camel-case names and file elements are not sorted by name, so
+		// matching elements are collected and sorted before they're passed
+		// to the handler:
+		final List<Element> collected = orderByName
+				&& (visitFiles || (hasPattern && matchRule == MatchRule.CAMEL_CASE)) ? new ArrayList<Element>()
+				: null;
+
+		final String fPattern = pattern;
+		final Set<String> fPatternSet = patternSet;
+		final Pattern fPosixPattern = posixPattern;
+		final String fPatternLC = patternLC;
+		final String fPatternUC = patternUC;
+
+		IElementVisitor visitor = new IElementVisitor() {
+			int count;
+
+			public boolean visit(Element element) {
+				if (monitor != null && monitor.isCanceled()) {
+					return false;
 				}
-			} else if (matchRule == MatchRule.PATTERN) {
-				posixPattern = createPosixPattern(pattern);
-			}
-
-			List<Element> result = new LinkedList<Element>();
-			Map<Integer, List<Element>> elementsByFile = elementsMap
-					.get(elementType);
-			if (elementsByFile != null) {
-
-				if (filesIds.size() == 0) {
-					Iterator<List<Element>> i = elementsByFile.values()
-							.iterator();
-					while (i.hasNext()) {
-						searchInElements(i.next(), result, pattern, matchRule,
-								trueFlags, falseFlags, qualifier, parent,
-								patternSet, posixPattern, patternLC, patternUC,
-								limit);
-					}
-				} else {
-					for (Integer fileId : filesIds) {
-						searchInElements(elementsByFile.get(fileId), result,
-								pattern, matchRule, trueFlags, falseFlags,
-								qualifier, parent, patternSet, posixPattern,
-								patternLC, patternUC, limit);
+				if (fFilesIds != null
+						&& !fFilesIds.contains(element.getFileId())) {
+					return true;
+				}
+				if (elementMatches(element, fPattern, matchRule, trueFlags,
+						falseFlags, qualifier, parent, fPatternSet,
+						fPosixPattern, fPatternLC, fPatternUC)) {
+					if (collected != null) {
+						collected.add(element);
+						return true;
 					}
+					handler.handle(element);
+					return limit <= 0 || ++count < limit;
 				}
+				return true;
 			}
-			return result;
+		};
+
+		if (visitFiles) {
+			index.visitFiles(filesIds, visitor);
+		} else if (!hasPattern) {
+			visitAll(index, orderByName, visitor);
+		} else if (matchRule == MatchRule.EXACT) {
+			visitByName(index, new String[] { pattern }, true, orderByName,
+					visitor);
+		} else if (matchRule == MatchRule.PREFIX) {
+			visitByName(index, new String[] { pattern }, false, orderByName,
+					visitor);
+		} else if (matchRule == MatchRule.CAMEL_CASE) {
+			index.visitByCamelCase(patternUC, visitor);
+		} else if (matchRule == MatchRule.SET) {
+			visitByName(index, patternSet.toArray(new String[patternSet
+					.size()]), true, orderByName, visitor);
+		} else if (matchRule == MatchRule.PATTERN) {
+			int wildcard = indexOfWildcard(pattern);
+			if (wildcard == -1) {
+				visitByName(index, new String[] { pattern }, true,
+						orderByName, visitor);
+			} else if (wildcard > 0) {
+				visitByName(index, new String[] { pattern.substring(0,
+						wildcard) }, false, orderByName, visitor);
+			} else {
+				visitAll(index, orderByName, visitor);
+			}
+		} else {
+			visitAll(index, orderByName, visitor);
+		}
 
-		} finally {
-			elementLock.release();
+		if (collected != null) {
+			Collections.sort(collected, ElementIndex.NAME_COMPARATOR);
+			int count = 0;
+			for (Element element : collected) {
+				if ((limit > 0 && count++ >= limit)
+						|| (monitor != null && monitor.isCanceled())) {
+					break;
+				}
+				handler.handle(element);
+			}
 		}
 	}
 
-	private static void searchInElements(List<Element> elements,
-			List<Element> result, String pattern, MatchRule matchRule,
-			int trueFlags, int falseFlags, String qualifier, String parent,
-			Set<String> patternSet, Pattern posixPattern, String patternLC,
-			String patternUC, int limit) {
+	private static void visitByName(ElementIndex index, String[] prefixes,
+			boolean exact, boolean ordered, IElementVisitor visitor) {
+		if (ordered) {
+			index.visitByNameOrdered(prefixes, exact, visitor);
+		} else {
+			index.visitByName(prefixes, exact, visitor);
+		}
+	}
 
-		if (elements != null) {
-			Iterator<Element> i = elements.iterator();
-			while (i.hasNext()) {
-				Element element = i.next();
-				if (elementMatches(element, pattern, matchRule, trueFlags,
-						falseFlags, qualifier, parent, patternSet,
-						posixPattern, patternLC, patternUC)) {
+	private static void visitAll(ElementIndex index, boolean ordered,
+			IElementVisitor visitor) {
+		if (ordered) {
+			index.visitByNameOrdered(new String[] { "" }, false, visitor);
+		} else {
+			index.visitAll(visitor);
+		}
+	}
 
-					result.add(element);
-					if (--limit == 0) {
-						break;
-					}
-				}
+	private static int indexOfWildcard(String pattern) {
+		for (int i = 0; i < pattern.length(); ++i) {
+			char ch = pattern.charAt(i);
+			if (ch == '*' || ch == '?') {
+				return i;
 			}
 		}
+		return -1;
 	}
 
 	private static boolean elementMatches(Element element, String pattern,
@@ -456,69 +707,211 @@ public class H2Cache {
 		return str.regionMatches(ignoreCase, 0, prefix, 0, prefix.length());
 	}
 
+	/**
+	 * Returns whether the whole index is loaded into the cache
+	 */
 	public static boolean isLoaded() {
-		loadedLock.acquire();
-		try {
-			return isLoaded;
-		} finally {
-			loadedLock.release();
+		return isLoaded;
+	}
+
+	/**
+	 * Returns whether the given container is loaded into the cache
+	 */
+	public static boolean isContainerLoaded(int containerId) {
+		return loadedContainers.containsKey(containerId);
+	}
+
+	/**
+	 * Checks whether the container is loaded, and marks it as recently used
+	 */
+	private static boolean accessContainer(int containerId) {
+		ContainerInfo info = loadedContainers.get(containerId);
+		if (info != null) {
+			info.lastAccess = System.currentTimeMillis();
+			return true;
 		}
+		loader.prioritize(containerId);
+		return false;
 	}
 
+	/**
+	 * Checks whether search in the given files or containers can be performed
+	 * using the cache. If some container is not loaded yet, it's moved to the
+	 * head of the loading queue.
+	 * 
+	 * @param filesId
+	 *            Files to search in, or <code>null</code>
+	 * @param containersId
+	 *            Containers to search in, or <code>null</code>
+	 */
+	public static boolean isLoaded(int[] filesId, int[] containersId) {
+		boolean loaded = true;
+		if (filesId != null) {
+			for (int fileId : filesId) {
+				File file = fileById.get(fileId);
+				if (file == null) {
+					return isLoaded;
+				}
+				loaded &= accessContainer(file.getContainerId());
+			}
+			return loaded;
+		}
+		if (containersId != null) {
+			for (int containerId : containersId) {
+				loaded &= accessContainer(containerId);
+			}
+			return loaded;
+		}
+		return isLoaded;
+	}
+
+	/**
+	 * Returns estimated amount of memory used by cached elements in bytes
+	 */
+	public static long getMemoryUsage() {
+		return memoryUsage.get();
+	}
+
+	/**
+	 * Starts loading the cache in background
+	 */
 	public static void load() {
-		loadedLock.acquire();
-		try {
-			if (!isLoaded) {
-				try {
-					DbFactory dbFactory = DbFactory.getInstance();
-					Connection connection = dbFactory.createConnection();
-					try {
-						IElementDao elementDao = dbFactory.getElementDao();
-						elementDao.search(connection, null, MatchRule.PREFIX,
-								IModelElement.FIELD, 0, 0, null, null, null,
-								null, "org.eclipse.php.core.PHPNature", 0,
-								false, new IElementHandler() {
-									public void handle(Element element) {
-									}
-								}, new NullProgressMonitor());
-
-						elementDao.search(connection, null, MatchRule.PREFIX,
-								IModelElement.TYPE, 0, 0, null, null, null,
-								null, "org.eclipse.php.core.PHPNature", 0,
-								false, new IElementHandler() {
-									public void handle(Element element) {
-									}
-								}, new NullProgressMonitor());
-
-						elementDao.search(connection, null, MatchRule.PREFIX,
-								IModelElement.METHOD, 0, 0, null, null, null,
-								null, "org.eclipse.php.core.PHPNature", 0,
-								false, new IElementHandler() {
-									public void handle(Element element) {
-									}
-								}, new NullProgressMonitor());
-
-						elementDao.search(connection, null, MatchRule.PREFIX,
-								IModelElement.IMPORT_DECLARATION, 0, 0, null,
-								null, null, null,
-								"org.eclipse.php.core.PHPNature", 0, false,
-								new IElementHandler() {
-									public void handle(Element element) {
-									}
-								}, new NullProgressMonitor());
-					} finally {
-						connection.close();
+		memoryLimit = Platform.getPreferencesService().getInt(
+				H2Index.PLUGIN_ID, H2IndexPreferences.CACHE_MEMORY_LIMIT, 0,
+				null) * 1024L;
+		if (!isLoaded) {
+			loader.schedule();
+		}
+	}
+
+	/**
+	 * Stops loading the cache
+	 */
+	public static void cancelLoad() {
+		loader.cancel();
+	}
+
+	/**
+	 * Adds container contents read by {@link H2CacheLoader}, skipping files
+	 * that were modified since the loading has started.
+	 */
+	static void containerLoaded(int containerId, List<File> files,
+			Map<String, List<Element>> elements) {
+		PerformanceNode p = RuntimePerformanceMonitor.begin();
+		ContainerInfo info = new ContainerInfo();
+		synchronized (loadLock) {
+			if (!containerById.containsKey(containerId)
+					|| loadedContainers.containsKey(containerId)) {
+				// deleted or loaded meanwhile
+				return;
+			}
+			for (File file : files) {
+				if (!touchedFiles.containsKey(file.getId())) {
+					addFile(file);
+				}
+			}
+			// elements of modified files are already accounted
+			for (File file : files) {
+				if (touchedFiles.containsKey(file.getId())) {
+					for (ElementIndex index : elementsMap.values()) {
+						for (Element element : index.getElements(file.getId())) {
+							info.memory.addAndGet(estimateSize(element));
+						}
 					}
-				} catch (SQLException e) {
-					if (H2Index.DEBUG) {
-						e.printStackTrace();
+				}
+			}
+			long size = 0;
+			for (Map.Entry<String, List<Element>> entry : elements.entrySet()) {
+				ElementIndex index = getElementIndex(entry.getKey());
+				for (Element element : entry.getValue()) {
+					if (!touchedFiles.containsKey(element.getFileId())) {
+						element = compact(element);
+						index.add(element);
+						size += estimateSize(element);
 					}
-				} finally {
-					isLoaded = true;
 				}
 			}
-		} finally {
-			loadedLock.release();
+			info.memory.addAndGet(size);
+			loadedContainers.put(containerId, info);
+			memoryAdded(size);
+		}
+		elementsModified();
+		p.done(PERFORMANCE_KIND, CACHE_LOAD, info.memory.get());
+	}
+
+	/**
+	 * Evicts containers that were not accessed for the longest time until
+	 * memory usage drops below 3/4 of the limit
+	 */
+	private static void evictColdContainers() {
+		long limit = memoryLimit;
+		if (limit <= 0 || memoryUsage.get() <= limit) {
+			return;
+		}
+		PerformanceNode p = RuntimePerformanceMonitor.begin();
+		long evicted = 0;
+		synchronized (loadLock) {
+			List<Map.Entry<Integer, ContainerInfo>> entries = new ArrayList<Map.Entry<Integer, ContainerInfo>>(
+					loadedContainers.entrySet());
+			Collections.sort(entries,
+					new Comparator<Map.Entry<Integer, ContainerInfo>>() {
+						public int compare(Map.Entry<Integer, ContainerInfo> e1,
+								Map.Entry<Integer, ContainerInfo> e2) {
+							long t1 = e1.getValue().lastAccess;
+							long t2 = e2.getValue().lastAccess;
+							return t1 < t2 ? -1 : (t1 == t2 ? 0 : 1);
+						}
+					});
+			long target = limit / 4 * 3;
+			for (Map.Entry<Integer, ContainerInfo> entry : entries) {
+				if (memoryUsage.get() <= target) {
+					break;
+				}
+				evicted += entry.getValue().memory.get();
+				evictContainer(entry.getKey());
+			}
+		}
+		if (evicted > 0) {
+			p.done(PERFORMANCE_KIND, CACHE_EVICTION, evicted);
+		}
+	}
+
+	private static void evictContainer(int containerId) {
+		// track modifications again, since the container may be reloaded:
+		isLoaded = false;
+		Map<String, File> files = filesByContainer.get(containerId);
+		if (files != null) {
+			Set<Integer> filesIds = new HashSet<Integer>();
+			for (File file : files.values()) {
+				touchedFiles.remove(file.getId());
+				filesIds.add(file.getId());
+			}
+			memoryUsage.addAndGet(-doDeleteElementsByFileIds(filesIds));
+		}
+		// files are removed only after their elements, see getContainerInfo()
+		loadedContainers.remove(containerId);
+		if (files != null) {
+			for (File file : files.values()) {
+				fileById.remove(file.getId());
+			}
+			filesByContainer.remove(containerId);
+		}
+		elementsModified();
+	}
+
+	/**
+	 * Called by {@link H2CacheLoader} when all containers are loaded
+	 */
+	static void loadCompleted() {
+		synchronized (loadLock) {
+			for (Integer containerId : containerById.keySet()) {
+				if (!loadedContainers.containsKey(containerId)) {
+					// some containers were evicted
+					return;
+				}
+			}
+			isLoaded = true;
+			touchedFiles.clear();
 		}
 	}
 }
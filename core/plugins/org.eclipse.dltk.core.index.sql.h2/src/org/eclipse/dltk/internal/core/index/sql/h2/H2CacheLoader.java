@@ -0,0 +1,247 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Sage and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Sage - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.dltk.internal.core.index.sql.h2;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.dltk.core.index.sql.Container;
+import org.eclipse.dltk.core.index.sql.DbFactory;
+import org.eclipse.dltk.core.index.sql.Element;
+import org.eclipse.dltk.core.index.sql.File;
+import org.eclipse.dltk.core.index.sql.h2.H2Index;
+import org.eclipse.osgi.util.NLS;
+
+/**
+ * Background job that loads {@link H2Cache} container by container. Element
+ * tables are discovered from the database schema, so elements of all language
+ * natures that were ever indexed are loaded. Until the container is loaded,
+ * searches in this container are performed using SQL.
+ *
+ * @author michael
+ */
+public class H2CacheLoader extends Job {
+
+	private static final String Q_SELECT_CONTAINERS = "SELECT * FROM CONTAINERS WHERE PATH NOT LIKE '" //$NON-NLS-1$
+			+ H2Cache.DETACHED_PREFIX + "%';"; //$NON-NLS-1$
+	private static final String Q_SELECT_FILES = "SELECT * FROM FILES WHERE CONTAINER_ID=?;"; //$NON-NLS-1$
+	private static final String Q_SELECT_TABLES = "SELECT TABLE_NAME FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_SCHEMA=SCHEMA() AND TABLE_NAME LIKE 'D\\_%';"; //$NON-NLS-1$
+	private static final String Q_SELECT_ELEMENTS = "SELECT * FROM {0} WHERE FILE_ID IN(SELECT ID FROM FILES WHERE CONTAINER_ID=?);"; //$NON-NLS-1$
+
+	/** Containers waiting to be loaded */
+	private final LinkedList<Integer> queue = new LinkedList<Integer>();
+
+	/**
+	 * Whether all containers are being loaded, or only the requested ones
+	 * (after they were evicted from the cache)
+	 */
+	private volatile boolean warmUp = true;
+
+	public H2CacheLoader() {
+		super("Loading index cache"); //$NON-NLS-1$
+		setSystem(true);
+		setPriority(LONG);
+	}
+
+	/**
+	 * Moves the given container to the head of the loading queue, so it's
+	 * loaded next.
+	 */
+	public void prioritize(int containerId) {
+		synchronized (queue) {
+			Integer id = Integer.valueOf(containerId);
+			if (!queue.isEmpty() && queue.getFirst().equals(id)) {
+				return;
+			}
+			queue.remove(id);
+			queue.addFirst(id);
+		}
+		if (!warmUp) {
+			schedule();
+		}
+	}
+
+	protected IStatus run(IProgressMonitor monitor) {
+		DbFactory dbFactory = DbFactory.getInstance();
+		if (dbFactory == null) {
+			return Status.OK_STATUS;
+		}
+		try {
+			Connection connection = dbFactory.createConnection();
+			try {
+				List<String> tables = selectDeclarationTables(connection);
+
+				Integer containerId;
+				while ((containerId = nextContainer(connection)) != null) {
+					if (monitor.isCanceled()) {
+						return Status.CANCEL_STATUS;
+					}
+					if (!H2Cache.isContainerLoaded(containerId)) {
+						loadContainer(connection, containerId, tables);
+					}
+				}
+			} finally {
+				connection.close();
+			}
+			warmUp = false;
+			H2Cache.loadCompleted();
+
+		} catch (SQLException e) {
+			H2Index.error("An exception was thrown while loading index cache", //$NON-NLS-1$
+					e);
+		}
+		return Status.OK_STATUS;
+	}
+
+	/**
+	 * Returns next container to load. During the warm-up, when the queue is
+	 * empty, it's filled with containers that were not loaded yet (including
+	 * containers created since the loading has started).
+	 */
+	private Integer nextContainer(Connection connection) throws SQLException {
+		synchronized (queue) {
+			if (queue.isEmpty() && warmUp) {
+				Statement statement = connection.createStatement();
+				try {
+					ResultSet result = statement
+							.executeQuery(Q_SELECT_CONTAINERS);
+					try {
+						while (result.next()) {
+							Container container = new Container(result
+									.getInt(1), result.getString(2));
+							if (!H2Cache.isContainerLoaded(container.getId())) {
+								H2Cache.addContainer(container);
+								queue.add(container.getId());
+							}
+						}
+					} finally {
+						result.close();
+					}
+				} finally {
+					statement.close();
+				}
+			}
+			return queue.poll();
+		}
+	}
+
+	private List<String> selectDeclarationTables(Connection connection)
+			throws SQLException {
+		List<String> tables = new ArrayList<String>();
+		Statement statement = connection.createStatement();
+		try {
+			ResultSet result = statement.executeQuery(Q_SELECT_TABLES);
+			try {
+				while (result.next()) {
+					tables.add(result.getString(1));
+				}
+			} finally {
+				result.close();
+			}
+		} finally {
+			statement.close();
+		}
+		return tables;
+	}
+
+	private void loadContainer(Connection connection, int containerId,
+			List<String> tables) throws SQLException {
+
+		List<File> files = new ArrayList<File>();
+		PreparedStatement statement = connection
+				.prepareStatement(Q_SELECT_FILES);
+		try {
+			statement.setInt(1, containerId);
+			ResultSet result = statement.executeQuery();
+			try {
+				while (result.next()) {
+					files.add(H2FileDao.createFile(result));
+				}
+			} finally {
+				result.close();
+			}
+		} finally {
+			statement.close();
+		}
+
+		Map<String, List<Element>> elements = new HashMap<String, List<Element>>();
+		if (!files.isEmpty()) {
+			for (String tableName : tables) {
+				List<Element> tableElements = selectElements(connection,
+						tableName, containerId);
+				if (tableElements != null) {
+					elements.put(tableName, tableElements);
+				}
+			}
+		}
+
+		H2Cache.containerLoaded(containerId, files, elements);
+	}
+
+	private List<Element> selectElements(Connection connection,
+			String tableName, int containerId) throws SQLException {
+
+		// Table name is <prefix>_<nature>_<element type>, see Schema
+		int elementType;
+		try {
+			elementType = Integer.parseInt(tableName.substring(tableName
+					.lastIndexOf('_') + 1));
+		} catch (NumberFormatException e) {
+			return null;
+		}
+
+		List<Element> elements = new ArrayList<Element>();
+		PreparedStatement statement = connection.prepareStatement(NLS.bind(
+				Q_SELECT_ELEMENTS, tableName));
+		try {
+			statement.setInt(1, containerId);
+			ResultSet result = statement.executeQuery();
+			try {
+				while (result.next()) {
+					int columnIndex = 1; // skip ID
+					int flags = result.getInt(++columnIndex);
+					int offset = result.getInt(++columnIndex);
+					int length = result.getInt(++columnIndex);
+					int nameOffset = result.getInt(++columnIndex);
+					int nameLength = result.getInt(++columnIndex);
+					String name = result.getString(++columnIndex);
+					String camelCaseName = result.getString(++columnIndex);
+					String metadata = result.getString(++columnIndex);
+					String qualifier = result.getString(++columnIndex);
+					String parent = result.getString(++columnIndex);
+					int fileId = result.getInt(++columnIndex);
+
+					elements.add(new Element(elementType, flags, offset,
+							length, nameOffset, nameLength, name,
+							camelCaseName, metadata, qualifier, parent, fileId,
+							false));
+				}
+			} finally {
+				result.close();
+			}
+		} finally {
+			statement.close();
+		}
+		return elements;
+	}
+}
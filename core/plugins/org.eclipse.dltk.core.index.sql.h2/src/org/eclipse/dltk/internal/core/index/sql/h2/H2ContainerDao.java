@@ -16,6 +16,8 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.eclipse.dltk.core.index.sql.Container;
 import org.eclipse.dltk.core.index.sql.IContainerDao;
@@ -33,6 +35,10 @@ public class H2ContainerDao implements IContainerDao {
 	private static final String Q_SELECT_BY_ID = "SELECT * FROM CONTAINERS WHERE ID=?;"; //$NON-NLS-1$
 	private static final String Q_DELETE_BY_PATH = "DELETE FROM CONTAINERS WHERE PATH=?;"; //$NON-NLS-1$
 	private static final String Q_DELETE_BY_ID = "DELETE FROM CONTAINERS WHERE ID=?;"; //$NON-NLS-1$
+	private static final String Q_UPDATE_PATH = "UPDATE CONTAINERS SET PATH=? WHERE ID=?;"; //$NON-NLS-1$
+	private static final String Q_SELECT_DETACHED = "SELECT * FROM CONTAINERS WHERE PATH LIKE '" //$NON-NLS-1$
+			+ H2Cache.DETACHED_PREFIX + "%';"; //$NON-NLS-1$
+	private static final String Q_SELECT_BY_PATH_PREFIX = "SELECT * FROM CONTAINERS WHERE LEFT(PATH, ?)=?;"; //$NON-NLS-1$
 
 	public Container insert(Connection connection, String path)
 			throws SQLException {
@@ -151,4 +157,101 @@ public class H2ContainerDao implements IContainerDao {
 
 		H2Cache.deleteContainerByPath(path);
 	}
+
+	public Container rename(Connection connection, Container container,
+			String path) throws SQLException {
+
+		updatePath(connection, container.getId(), path);
+
+		Container renamed = new Container(container.getId(), path);
+		H2Cache.renameContainer(container, renamed);
+		return renamed;
+	}
+
+	public void detach(Connection connection, Container container)
+			throws SQLException {
+
+		updatePath(connection, container.getId(), H2Cache.DETACHED_PREFIX
+				+ container.getId());
+
+		H2Cache.deleteContainerById(container.getId());
+	}
+
+	public Container replace(Connection connection, Container container,
+			String path) throws SQLException {
+
+		Container existing = selectByPath(connection, path);
+		try {
+			if (existing != null) {
+				updatePath(connection, existing.getId(),
+						H2Cache.DETACHED_PREFIX + existing.getId());
+			}
+			updatePath(connection, container.getId(), path);
+			connection.commit();
+		} catch (SQLException e) {
+			connection.rollback();
+			throw e;
+		}
+
+		if (existing != null) {
+			H2Cache.deleteContainerById(existing.getId());
+		}
+		Container renamed = new Container(container.getId(), path);
+		H2Cache.renameContainer(container, renamed);
+		return renamed;
+	}
+
+	private void updatePath(Connection connection, int id, String path)
+			throws SQLException {
+
+		PreparedStatement statement = connection
+				.prepareStatement(Q_UPDATE_PATH);
+		try {
+			int param = 0;
+			statement.setString(++param, path);
+			statement.setInt(++param, id);
+			statement.executeUpdate();
+		} finally {
+			statement.close();
+		}
+	}
+
+	public Container[] selectDetached(Connection connection)
+			throws SQLException {
+
+		Statement statement = connection.createStatement();
+		try {
+			return toContainers(statement.executeQuery(Q_SELECT_DETACHED));
+		} finally {
+			statement.close();
+		}
+	}
+
+	public Container[] selectByPathPrefix(Connection connection, String prefix)
+			throws SQLException {
+
+		PreparedStatement statement = connection
+				.prepareStatement(Q_SELECT_BY_PATH_PREFIX);
+		try {
+			int param = 0;
+			statement.setInt(++param, prefix.length());
+			statement.setString(++param, prefix);
+			return toContainers(statement.executeQuery());
+		} finally {
+			statement.close();
+		}
+	}
+
+	private Container[] toContainers(ResultSet result) throws SQLException {
+		List<Container> containers = new ArrayList<Container>();
+		try {
+			while (result.next()) {
+				containers.add(new Container(result.getInt(1), result
+						.getString(2)));
+			}
+		} finally {
+			result.close();
+		}
+		return containers.toArray(new Container[containers.size()]);
+	}
 }
@@ -15,9 +15,9 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
-import java.util.Collection;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.regex.Pattern;
 
@@ -52,11 +52,12 @@ public class H2ElementDao implements IElementDao {
 	private static final Map<String, String> D_INSERT_QUERY_CACHE = new HashMap<String, String>();
 
 	private final ModelManager modelManager;
-	private final Map<String, PreparedStatement> batchStatements;
+	/** Insert statements by queries, per connection preparing them */
+	private final Map<Connection, Map<String, PreparedStatement>> batchStatements;
 
 	public H2ElementDao() {
 		this.modelManager = ModelManager.getModelManager();
-		this.batchStatements = new HashMap<String, PreparedStatement>();
+		this.batchStatements = new HashMap<Connection, Map<String, PreparedStatement>>();
 	}
 
 	private String getTableName(Connection connection, int elementType,
@@ -71,7 +72,7 @@ public class H2ElementDao implements IElementDao {
 	}
 
 	private void insertBatch(Connection connection,
-			PreparedStatement statement, int type, int flags, int offset,
+			PreparedStatement statement, String tableName, int type, int flags, int offset,
 			int length, int nameOffset, int nameLength, String name,
 			String metadata, String qualifier, String parent, int fileId,
 			String natureId, boolean isReference) throws SQLException {
@@ -120,9 +121,9 @@ public class H2ElementDao implements IElementDao {
 		statement.addBatch();
 
 		if (!isReference) {
-			H2Cache.addElement(new Element(type, flags, offset, length,
-					nameOffset, nameLength, name, camelCaseName, metadata,
-					qualifier, parent, fileId, isReference));
+			H2Cache.addElement(tableName, new Element(type, flags, offset,
+					length, nameOffset, nameLength, name, camelCaseName,
+					metadata, qualifier, parent, fileId, isReference));
 		}
 	}
 
@@ -149,35 +150,121 @@ public class H2ElementDao implements IElementDao {
 		}
 
 		synchronized (batchStatements) {
-			PreparedStatement statement = batchStatements.get(query);
+			Map<String, PreparedStatement> statements = batchStatements
+					.get(connection);
+			if (statements == null) {
+				statements = new HashMap<String, PreparedStatement>();
+				batchStatements.put(connection, statements);
+			}
+			PreparedStatement statement = statements.get(query);
 			if (statement == null) {
 				statement = connection.prepareStatement(query);
-				batchStatements.put(query, statement);
+				statements.put(query, statement);
 			}
-			insertBatch(connection, statement, type, flags, offset, length,
-					nameOffset, nameLength, name, metadata, qualifier, parent,
-					fileId, natureId, isReference);
+			insertBatch(connection, statement, tableName, type, flags,
+					offset, length, nameOffset, nameLength, name, metadata,
+					qualifier, parent, fileId, natureId, isReference);
 		}
 	}
 
 	public void commitInsertions() throws SQLException {
 		synchronized (batchStatements) {
-			try {
-				for (PreparedStatement statement : batchStatements.values()) {
-					try {
+			Connection[] connections = batchStatements.keySet().toArray(
+					new Connection[batchStatements.size()]);
+			for (Connection connection : connections) {
+				commitInsertions(connection);
+			}
+		}
+	}
+
+	public void commitInsertions(Connection connection) throws SQLException {
+		synchronized (batchStatements) {
+			Map<String, PreparedStatement> statements = batchStatements
+					.remove(connection);
+			if (statements == null) {
+				return;
+			}
+			SQLException error = null;
+			for (PreparedStatement statement : statements.values()) {
+				try {
+					if (error == null) {
 						statement.executeBatch();
-					} finally {
-						statement.close();
 					}
+				} catch (SQLException e) {
+					error = e;
+				} finally {
+					statement.close();
 				}
-			} finally {
-				batchStatements.clear();
+			}
+			if (error != null) {
+				throw error;
 			}
 		}
 	}
 
-	private String escapeBackslash(String pattern) {
-		return pattern.replaceAll("\\\\", "\\\\\\\\");
+	public void flushInsertions(Connection connection) throws SQLException {
+		synchronized (batchStatements) {
+			Map<String, PreparedStatement> statements = batchStatements
+					.get(connection);
+			if (statements != null) {
+				for (PreparedStatement statement : statements.values()) {
+					statement.executeBatch();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Escapes characters that have special meaning in the LIKE pattern (using
+	 * default escape character, which is backslash).
+	 */
+	private String escapeLikePattern(String pattern) {
+		StringBuilder buf = new StringBuilder(pattern.length());
+		for (int i = 0; i < pattern.length(); ++i) {
+			char ch = pattern.charAt(i);
+			if (ch == '\\' || ch == '%' || ch == '_') {
+				buf.append('\\');
+			}
+			buf.append(ch);
+		}
+		return buf.toString();
+	}
+
+	private int indexOfWildcard(String pattern) {
+		for (int i = 0; i < pattern.length(); ++i) {
+			char ch = pattern.charAt(i);
+			if (ch == '*' || ch == '?') {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Appends range condition on the given column, which matches all values
+	 * starting with the given prefix. Unlike the <code>LIKE</code> operator,
+	 * such condition is always resolved by the index on the column. Columns
+	 * have <code>VARCHAR_IGNORECASE</code> type, which is compared using
+	 * {@link String#compareToIgnoreCase(String)}, so the upper bound is
+	 * calculated on the prefix folded the same way: character by character,
+	 * independently of the default locale.
+	 */
+	private void appendPrefixRange(StringBuilder query, List<String> params,
+			String column, String prefix) {
+		query.append(" AND ").append(column).append(">=?");
+		params.add(prefix);
+
+		char[] upperBound = prefix.toCharArray();
+		for (int i = 0; i < upperBound.length; ++i) {
+			upperBound[i] = Character.toLowerCase(Character
+					.toUpperCase(upperBound[i]));
+		}
+		int last = upperBound.length - 1;
+		if (upperBound[last] < Character.MAX_VALUE) {
+			++upperBound[last];
+			query.append(" AND ").append(column).append("<?");
+			params.add(new String(upperBound));
+		}
 	}
 
 	public void search(Connection connection, String pattern,
@@ -187,127 +274,159 @@ public class H2ElementDao implements IElementDao {
 			boolean isReference, IElementHandler handler,
 			IProgressMonitor monitor) throws SQLException {
 
+		search(connection, pattern, matchRule, elementType, trueFlags,
+				falseFlags, qualifier, parent, filesId, containersId,
+				natureId, limit, isReference, false, handler, monitor);
+	}
+
+	public void search(Connection connection, String pattern,
+			MatchRule matchRule, int elementType, int trueFlags,
+			int falseFlags, String qualifier, String parent, int[] filesId,
+			int containersId[], String natureId, int limit,
+			boolean isReference, boolean orderByName,
+			IElementHandler handler, IProgressMonitor monitor)
+			throws SQLException {
+
 		long timeStamp = System.currentTimeMillis();
 		int count = 0;
 
-		if (!isReference && H2Cache.isLoaded()) {
-			Collection<Element> elements = H2Cache.searchElements(pattern,
-					matchRule, elementType, trueFlags, falseFlags, qualifier,
-					parent, filesId, containersId, natureId, limit);
-			if (elements != null && elements.size() > 0) {
-				for (Element element : elements) {
-					handler.handle(element);
-				}
-			}
+		if (!isReference && H2Cache.isLoaded(filesId, containersId)) {
+			H2Cache.searchElements(pattern, matchRule, elementType,
+					trueFlags, falseFlags, qualifier, parent, filesId,
+					containersId, natureId, limit, orderByName, handler,
+					monitor);
 			return;
 		}
 
 		String tableName = getTableName(connection, elementType, natureId,
 				isReference);
 
-		Statement statement = connection.createStatement();
-		try {
-			StringBuilder query = new StringBuilder("SELECT * FROM ")
-					.append(tableName);
-
-			// Dummy pattern
-			query.append(" WHERE 1=1");
-
-			// Name patterns
-			if (pattern != null && pattern.length() > 0) {
-				if (isReference && matchRule == MatchRule.CAMEL_CASE) {
-					H2Index
-							.warn("MatchRule.CAMEL_CASE is not supported by element references search."); //$NON-NLS-1$
-					matchRule = MatchRule.EXACT;
-				}
+		List<String> params = new ArrayList<String>();
+		StringBuilder query = new StringBuilder("SELECT * FROM ")
+				.append(tableName);
 
-				// Exact pattern
-				if (matchRule == MatchRule.EXACT) {
-					query.append(" AND NAME='").append(pattern).append('\'');
-				}
-				// Prefix
-				else if (matchRule == MatchRule.PREFIX) {
-					query.append(" AND NAME LIKE '").append(
-							escapeBackslash(pattern)).append("%'");
-				}
-				// Camel-case
-				else if (matchRule == MatchRule.CAMEL_CASE) {
-					query.append(" AND CC_NAME LIKE '").append(
-							escapeBackslash(pattern)).append("%'");
-				}
-				// Set of names
-				else if (matchRule == MatchRule.SET) {
-					String[] patternSet = SEPARATOR_PATTERN.split(pattern);
-					query.append(" AND NAME IN (");
-					for (int i = 0; i < patternSet.length; ++i) {
-						if (i > 0) {
-							query.append(',');
-						}
-						query.append('\'').append(patternSet[i]).append('\'');
-					}
-					query.append(')');
-				}
-				// POSIX pattern
-				else if (matchRule == MatchRule.PATTERN) {
-					query.append(" AND NAME LIKE '").append(
-							escapeBackslash(pattern).replace('*', '%').replace(
-									'?', '_')).append("'");
-				}
-			}
+		// Dummy pattern
+		query.append(" WHERE 1=1");
 
-			// Flags
-			if (trueFlags != 0) {
-				query.append(" AND BITAND(FLAGS,").append(trueFlags).append(
-						") <> 0");
-			}
-			if (falseFlags != 0) {
-				query.append(" AND BITAND(FLAGS,").append(falseFlags).append(
-						") = 0");
+		// Name patterns
+		if (pattern != null && pattern.length() > 0) {
+			if (isReference && matchRule == MatchRule.CAMEL_CASE) {
+				H2Index
+						.warn("MatchRule.CAMEL_CASE is not supported by element references search."); //$NON-NLS-1$
+				matchRule = MatchRule.EXACT;
 			}
 
-			// Qualifier
-			if (qualifier != null && qualifier.length() > 0) {
-				query.append(" AND QUALIFIER='").append(qualifier).append('\'');
+			// Exact pattern
+			if (matchRule == MatchRule.EXACT) {
+				query.append(" AND NAME=?");
+				params.add(pattern);
 			}
-			// Parent
-			if (parent != null && parent.length() > 0) {
-				query.append(" AND PARENT='").append(parent).append('\'');
+			// Prefix
+			else if (matchRule == MatchRule.PREFIX) {
+				appendPrefixRange(query, params, "NAME", pattern);
+				query.append(" AND NAME LIKE ?");
+				params.add(escapeLikePattern(pattern) + '%');
 			}
-
-			// Files or container paths
-			if (filesId != null) {
-				query.append(" AND FILE_ID IN(");
-				for (int i = 0; i < filesId.length; ++i) {
+			// Camel-case
+			else if (matchRule == MatchRule.CAMEL_CASE) {
+				appendPrefixRange(query, params, "CC_NAME", pattern);
+				query.append(" AND CC_NAME LIKE ?");
+				params.add(escapeLikePattern(pattern) + '%');
+			}
+			// Set of names
+			else if (matchRule == MatchRule.SET) {
+				String[] patternSet = SEPARATOR_PATTERN.split(pattern);
+				query.append(" AND NAME IN (");
+				for (int i = 0; i < patternSet.length; ++i) {
 					if (i > 0) {
-						query.append(",");
+						query.append(',');
 					}
-					query.append(filesId[i]);
+					query.append('?');
+					params.add(patternSet[i]);
 				}
-				query.append(")");
-
-			} else if (containersId != null) {
-				query
-						.append(" AND FILE_ID IN(SELECT ID FROM FILES WHERE CONTAINER_ID IN(");
-				for (int i = 0; i < containersId.length; ++i) {
-					if (i > 0) {
-						query.append(",");
-					}
-					query.append(containersId[i]);
+				query.append(')');
+			}
+			// POSIX pattern
+			else if (matchRule == MatchRule.PATTERN) {
+				int wildcard = indexOfWildcard(pattern);
+				if (wildcard > 0) {
+					appendPrefixRange(query, params, "NAME", pattern
+							.substring(0, wildcard));
 				}
-				query.append("))");
+				query.append(" AND NAME LIKE ?");
+				params.add(escapeLikePattern(pattern).replace('*', '%')
+						.replace('?', '_'));
 			}
+		}
+
+		// Flags
+		if (trueFlags != 0) {
+			query.append(" AND BITAND(FLAGS,").append(trueFlags).append(
+					") <> 0");
+		}
+		if (falseFlags != 0) {
+			query.append(" AND BITAND(FLAGS,").append(falseFlags).append(
+					") = 0");
+		}
 
-			// Records limit
-			if (limit > 0) {
-				query.append(" LIMIT ").append(limit);
+		// Qualifier
+		if (qualifier != null && qualifier.length() > 0) {
+			query.append(" AND QUALIFIER=?");
+			params.add(qualifier);
+		}
+		// Parent
+		if (parent != null && parent.length() > 0) {
+			query.append(" AND PARENT=?");
+			params.add(parent);
+		}
+
+		// Files or container paths
+		if (filesId != null) {
+			query.append(" AND FILE_ID IN(");
+			for (int i = 0; i < filesId.length; ++i) {
+				if (i > 0) {
+					query.append(",");
+				}
+				query.append(filesId[i]);
 			}
-			query.append(";");
+			query.append(")");
+
+		} else if (containersId != null) {
+			query
+					.append(" AND FILE_ID IN(SELECT ID FROM FILES WHERE CONTAINER_ID IN(");
+			for (int i = 0; i < containersId.length; ++i) {
+				if (i > 0) {
+					query.append(",");
+				}
+				query.append(containersId[i]);
+			}
+			query.append("))");
+		}
+
+		// Ordering (NAME column ignores case)
+		if (orderByName) {
+			query.append(" ORDER BY NAME");
+		}
+
+		// Records limit
+		if (limit > 0) {
+			query.append(" LIMIT ").append(limit);
+		}
+		query.append(";");
 
-			if (H2Index.DEBUG) {
-				System.out.println("Query: " + query.toString());
+		if (H2Index.DEBUG) {
+			System.out.println("Query: " + query.toString() + " " + params);
+		}
+
+		PreparedStatement statement = connection.prepareStatement(query
+				.toString());
+		try {
+			int param = 0;
+			for (String value : params) {
+				statement.setString(++param, value);
 			}
 
-			ResultSet result = statement.executeQuery(query.toString());
+			ResultSet result = statement.executeQuery();
 			try {
 				while (result.next()) {
 					++count;
@@ -352,9 +471,6 @@ public class H2ElementDao implements IElementDao {
 							length, nameOffset, nameLength, modelManager
 									.intern(name), camelCaseName, metadata,
 							qualifier, parent, fileId, isReference);
-					if (!isReference) {
-						H2Cache.addElement(element);
-					}
 
 					handler.handle(element);
 				}
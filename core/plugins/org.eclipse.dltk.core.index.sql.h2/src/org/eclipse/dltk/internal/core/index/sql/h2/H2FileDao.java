@@ -30,15 +30,22 @@ import org.eclipse.dltk.core.index.sql.IFileDao;
  */
 public class H2FileDao implements IFileDao {
 
-	private static final String Q_INSERT = "INSERT INTO FILES(PATH,TIMESTAMP,CONTAINER_ID) VALUES(?,?,?);"; //$NON-NLS-1$
+	private static final String Q_INSERT = "INSERT INTO FILES(PATH,TIMESTAMP,CONTAINER_ID,DIGEST) VALUES(?,?,?,?);"; //$NON-NLS-1$
+	private static final String Q_UPDATE_TIMESTAMP = "UPDATE FILES SET TIMESTAMP=? WHERE ID=?;"; //$NON-NLS-1$
 	private static final String Q_SELECT = "SELECT * FROM FILES WHERE PATH=? AND CONTAINER_ID=?;"; //$NON-NLS-1$
 	private static final String Q_SELECT_BY_CONTAINER_ID = "SELECT * FROM FILES WHERE CONTAINER_ID=?;"; //$NON-NLS-1$
 	private static final String Q_SELECT_BY_ID = "SELECT * FROM FILES WHERE ID=?;"; //$NON-NLS-1$
 	private static final String Q_DELETE = "DELETE FROM FILES WHERE PATH=? AND CONTAINER_ID=?;"; //$NON-NLS-1$
 	private static final String Q_DELETE_BY_ID = "DELETE FROM FILES WHERE ID=?;"; //$NON-NLS-1$
+	private static final String Q_DELETE_BY_CONTAINER_ID = "DELETE FROM FILES WHERE CONTAINER_ID=? LIMIT ?;"; //$NON-NLS-1$
 
 	public File insert(Connection connection, String path, long timestamp,
 			int containerId) throws SQLException {
+		return insert(connection, path, timestamp, null, containerId);
+	}
+
+	public File insert(Connection connection, String path, long timestamp,
+			String digest, int containerId) throws SQLException {
 
 		PreparedStatement statement = connection.prepareStatement(Q_INSERT,
 				Statement.RETURN_GENERATED_KEYS);
@@ -47,13 +54,14 @@ public class H2FileDao implements IFileDao {
 			statement.setString(++param, path);
 			statement.setLong(++param, timestamp);
 			statement.setInt(++param, containerId);
+			statement.setString(++param, digest);
 			statement.executeUpdate();
 
 			ResultSet result = statement.getGeneratedKeys();
 			try {
 				result.next();
 				File file = new File(result.getInt(1), path, timestamp,
-						containerId);
+						digest, containerId);
 				H2Cache.addFile(file);
 				return file;
 			} finally {
@@ -78,9 +86,7 @@ public class H2FileDao implements IFileDao {
 				ResultSet result = statement.executeQuery();
 				try {
 					if (result.next()) {
-						file = new File(result.getInt(1), result.getString(2),
-								result.getLong(3), result.getInt(4));
-
+						file = createFile(result);
 						H2Cache.addFile(file);
 					}
 				} finally {
@@ -93,6 +99,34 @@ public class H2FileDao implements IFileDao {
 		return file;
 	}
 
+	public File updateTimestamp(Connection connection, File file,
+			long timestamp) throws SQLException {
+
+		PreparedStatement statement = connection
+				.prepareStatement(Q_UPDATE_TIMESTAMP);
+		try {
+			int param = 0;
+			statement.setLong(++param, timestamp);
+			statement.setInt(++param, file.getId());
+			statement.executeUpdate();
+		} finally {
+			statement.close();
+		}
+
+		file = new File(file.getId(), file.getPath(), timestamp, file
+				.getDigest(), file.getContainerId());
+		H2Cache.addFile(file);
+		return file;
+	}
+
+	/**
+	 * Creates file DAO from the current row of the FILES table
+	 */
+	static File createFile(ResultSet result) throws SQLException {
+		return new File(result.getInt(1), result.getString(2), result
+				.getLong(3), result.getString(5), result.getInt(4));
+	}
+
 	public File[] selectByContainerId(Connection connection, int containerId)
 			throws SQLException {
 
@@ -108,10 +142,7 @@ public class H2FileDao implements IFileDao {
 				ResultSet result = statement.executeQuery();
 				try {
 					while (result.next()) {
-						File file = new File(result.getInt(1), result
-								.getString(2), result.getLong(3), result
-								.getInt(4));
-
+						File file = createFile(result);
 						files.add(file);
 						H2Cache.addFile(file);
 					}
@@ -137,9 +168,7 @@ public class H2FileDao implements IFileDao {
 				ResultSet result = statement.executeQuery();
 				try {
 					if (result.next()) {
-						file = new File(result.getInt(1), result.getString(2),
-								result.getLong(3), result.getInt(4));
-
+						file = createFile(result);
 						H2Cache.addFile(file);
 					}
 				} finally {
@@ -182,4 +211,19 @@ public class H2FileDao implements IFileDao {
 
 		H2Cache.deleteFileById(id);
 	}
+
+	public int deleteByContainerId(Connection connection, int containerId,
+			int limit) throws SQLException {
+
+		PreparedStatement statement = connection
+				.prepareStatement(Q_DELETE_BY_CONTAINER_ID);
+		try {
+			int param = 0;
+			statement.setInt(++param, containerId);
+			statement.setInt(++param, limit);
+			return statement.executeUpdate();
+		} finally {
+			statement.close();
+		}
+	}
 }
@@ -25,12 +25,19 @@ public class File implements Serializable {
 	private int id;
 	private String path;
 	private long timestamp;
+	private String digest;
 	private int containerId;
 
 	public File(int id, String path, long timestamp, int containerId) {
+		this(id, path, timestamp, null, containerId);
+	}
+
+	public File(int id, String path, long timestamp, String digest,
+			int containerId) {
 		this.id = id;
 		this.path = path;
 		this.timestamp = timestamp;
+		this.digest = digest;
 		this.containerId = containerId;
 	}
 
@@ -61,6 +68,15 @@ public class File implements Serializable {
 		return timestamp;
 	}
 
+	/**
+	 * Returns digest of this file contents
+	 * 
+	 * @return digest or <code>null</code> if it's unknown
+	 */
+	public String getDigest() {
+		return digest;
+	}
+
 	public int getContainerId() {
 		return containerId;
 	}
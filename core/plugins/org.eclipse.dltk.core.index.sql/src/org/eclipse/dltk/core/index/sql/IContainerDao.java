@@ -85,4 +85,81 @@ public interface IContainerDao {
 	public void deleteByPath(Connection connection, String path)
 			throws SQLException;
 
+	/**
+	 * Changes path of the container
+	 * 
+	 * @param connection
+	 *            Database connection
+	 * @param container
+	 *            Container to rename
+	 * @param path
+	 *            New container path, which must not be used by another
+	 *            container
+	 * @return container object associated with the renamed row
+	 * @throws SQLException
+	 */
+	public Container rename(Connection connection, Container container,
+			String path) throws SQLException;
+
+	/**
+	 * Replaces the container registered under the given path (if any) by the
+	 * given container: the old container is detached as in
+	 * {@link #detach(Connection, Container)} and the given one is renamed to
+	 * the path. Both changes are committed using the given connection, which
+	 * must not be in auto-commit mode. Cached containers are updated only
+	 * after the commit succeeds, otherwise the transaction is rolled back and
+	 * the cache is left as is.
+	 * 
+	 * @param connection
+	 *            Database connection
+	 * @param container
+	 *            Container to rename
+	 * @param path
+	 *            New container path
+	 * @return container object associated with the renamed row
+	 * @throws SQLException
+	 */
+	public Container replace(Connection connection, Container container,
+			String path) throws SQLException;
+
+	/**
+	 * Detaches container from its path, so neither the container nor its
+	 * elements are found by the path anymore. Container files and
+	 * elements remain in the database until they're deleted using
+	 * {@link IFileDao#deleteByContainerId(Connection, int, int)}, therefore
+	 * this operation doesn't depend on the size of the container.
+	 * 
+	 * @param connection
+	 *            Database connection
+	 * @param container
+	 *            Container to detach
+	 * @throws SQLException
+	 */
+	public void detach(Connection connection, Container container)
+			throws SQLException;
+
+	/**
+	 * Selects containers that were detached, but not deleted yet
+	 * 
+	 * @param connection
+	 *            Database connection
+	 * @return detached containers
+	 * @throws SQLException
+	 */
+	public Container[] selectDetached(Connection connection)
+			throws SQLException;
+
+	/**
+	 * Selects containers whose paths start with the given prefix
+	 * 
+	 * @param connection
+	 *            Database connection
+	 * @param prefix
+	 *            Path prefix
+	 * @return found containers
+	 * @throws SQLException
+	 */
+	public Container[] selectByPathPrefix(Connection connection, String prefix)
+			throws SQLException;
+
 }
@@ -65,12 +65,36 @@ public interface IElementDao {
 			String natureId, boolean isReference) throws SQLException;
 
 	/**
-	 * Commits previously inserted entries
+	 * Commits previously inserted entries of all connections
 	 * 
 	 * @throws SQLException
 	 */
 	void commitInsertions() throws SQLException;
 
+	/**
+	 * Commits entries previously inserted using the given connection, and
+	 * closes statements prepared for them. Entries inserted by other
+	 * connections are not affected.
+	 * 
+	 * @param connection
+	 *            Database connection
+	 * @throws SQLException
+	 */
+	void commitInsertions(Connection connection) throws SQLException;
+
+	/**
+	 * Executes entries previously inserted using the given connection, but
+	 * keeps underlying statements open, so they can be reused for the next
+	 * insertions using the same connection.
+	 * {@link #commitInsertions(Connection)} must be called when the connection
+	 * is not used for insertions anymore.
+	 * 
+	 * @param connection
+	 *            Database connection
+	 * @throws SQLException
+	 */
+	void flushInsertions(Connection connection) throws SQLException;
+
 	/**
 	 * Search elements in index.
 	 * 
@@ -123,4 +147,23 @@ public interface IElementDao {
 			int limit, boolean isReference, IElementHandler handler,
 			IProgressMonitor monitor) throws SQLException;
 
+	/**
+	 * Search for elements, passing them to the handler as soon as they're
+	 * found.
+	 * 
+	 * @param orderByName
+	 *            Whether elements should be passed to the handler in the
+	 *            order of their names (ignoring case)
+	 * @see #search(Connection, String, MatchRule, int, int, int, String,
+	 *      String, int[], int[], String, int, boolean, IElementHandler,
+	 *      IProgressMonitor)
+	 * @throws SQLException
+	 */
+	void search(Connection connection, String pattern, MatchRule matchRule,
+			int elementType, int trueFlags, int falseFlags, String qualifier,
+			String parent, int[] filesId, int containersId[], String natureId,
+			int limit, boolean isReference, boolean orderByName,
+			IElementHandler handler, IProgressMonitor monitor)
+			throws SQLException;
+
 }
\ No newline at end of file
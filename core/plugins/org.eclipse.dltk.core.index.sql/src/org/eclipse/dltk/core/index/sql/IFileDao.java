@@ -39,6 +39,40 @@ public interface IFileDao {
 	public File insert(Connection connection, String path, long timestamp,
 			int containerId) throws SQLException;
 
+	/**
+	 * Inserts new type into FILES table.
+	 * 
+	 * @param connection
+	 *            Database connection
+	 * @param path
+	 *            Element file
+	 * @param timestamp
+	 *            File last update time
+	 * @param digest
+	 *            Digest of the file contents, or <code>null</code>
+	 * @param containerId
+	 *            Container path
+	 * @return new file DAO associated with added row
+	 * @throws SQLException
+	 */
+	public File insert(Connection connection, String path, long timestamp,
+			String digest, int containerId) throws SQLException;
+
+	/**
+	 * Updates last update time of the file
+	 * 
+	 * @param connection
+	 *            Database connection
+	 * @param file
+	 *            Existing file DAO
+	 * @param timestamp
+	 *            New file last update time
+	 * @return updated file DAO
+	 * @throws SQLException
+	 */
+	public File updateTimestamp(Connection connection, File file,
+			long timestamp) throws SQLException;
+
 	/**
 	 * Selects file by path
 	 * 
@@ -104,4 +138,22 @@ public interface IFileDao {
 	 */
 	public void deleteById(Connection connection, int id) throws SQLException;
 
+	/**
+	 * Deletes a batch of container files from the database. This is used for
+	 * reclaiming detached containers in small transactions, so other writers
+	 * are not blocked for a long time.
+	 * 
+	 * @param connection
+	 *            Database connection
+	 * @param containerId
+	 *            Container path ID
+	 * @param limit
+	 *            Maximal number of files to delete
+	 * @return number of deleted files
+	 * @throws SQLException
+	 * @see IContainerDao#detach(Connection, Container)
+	 */
+	public int deleteByContainerId(Connection connection, int containerId,
+			int limit) throws SQLException;
+
 }
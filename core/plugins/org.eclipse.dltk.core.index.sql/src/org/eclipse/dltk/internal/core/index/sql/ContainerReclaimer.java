@@ -0,0 +1,106 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Sage and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Sage - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.dltk.internal.core.index.sql;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.dltk.core.IShutdownListener;
+import org.eclipse.dltk.core.index.sql.Container;
+import org.eclipse.dltk.core.index.sql.DbFactory;
+import org.eclipse.dltk.core.index.sql.IContainerDao;
+import org.eclipse.dltk.core.index.sql.SqlIndex;
+
+/**
+ * Background job that deletes rows of detached containers. Files are deleted
+ * in small batches, each one in its own transaction, so indexing is not
+ * blocked while a large container is being deleted.
+ * 
+ * @see IContainerDao#detach(Connection, Container)
+ * @author michael
+ */
+public class ContainerReclaimer extends Job {
+
+	/** Delay (in ms) before reclaiming, so the indexing goes first */
+	private static final long RECLAIM_DELAY = 1000;
+
+	/** Number of files deleted in one transaction */
+	private static final int BATCH_SIZE = 50;
+
+	private static ContainerReclaimer instance;
+
+	private ContainerReclaimer() {
+		super("Reclaiming removed index containers"); //$NON-NLS-1$
+		setSystem(true);
+		setPriority(DECORATE);
+	}
+
+	public static synchronized ContainerReclaimer getInstance() {
+		if (instance == null) {
+			final ContainerReclaimer reclaimer = new ContainerReclaimer();
+			SqlIndex.addShutdownListener(new IShutdownListener() {
+				public void shutdown() {
+					reclaimer.cancel();
+				}
+			});
+			// containers may be left detached by the previous session:
+			reclaimer.request();
+			instance = reclaimer;
+		}
+		return instance;
+	}
+
+	/**
+	 * Schedules reclaiming, unless it's already scheduled
+	 */
+	public void request() {
+		if (getState() != WAITING && getState() != SLEEPING) {
+			schedule(RECLAIM_DELAY);
+		}
+	}
+
+	protected IStatus run(IProgressMonitor monitor) {
+		DbFactory dbFactory = DbFactory.getInstance();
+		if (dbFactory == null) {
+			return Status.OK_STATUS;
+		}
+		try {
+			Connection connection = dbFactory.createConnection();
+			try {
+				Container[] containers;
+				while ((containers = dbFactory.getContainerDao()
+						.selectDetached(connection)).length > 0) {
+					for (Container container : containers) {
+						while (dbFactory.getFileDao().deleteByContainerId(
+								connection, container.getId(), BATCH_SIZE) == BATCH_SIZE) {
+							if (monitor.isCanceled()) {
+								return Status.CANCEL_STATUS;
+							}
+						}
+						dbFactory.getContainerDao().deleteById(connection,
+								container.getId());
+					}
+				}
+			} finally {
+				connection.close();
+			}
+		} catch (SQLException e) {
+			SqlIndex.error(
+					"An exception was thrown while reclaiming removed containers", //$NON-NLS-1$
+					e);
+		}
+		return Status.OK_STATUS;
+	}
+}
@@ -14,9 +14,12 @@ package org.eclipse.dltk.internal.core.index.sql;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 
 import org.eclipse.core.runtime.IPath;
+import org.eclipse.dltk.core.ContentDigest;
 import org.eclipse.dltk.core.DLTKLanguageManager;
 import org.eclipse.dltk.core.IDLTKLanguageToolkit;
 import org.eclipse.dltk.core.IDLTKLanguageToolkitExtension;
@@ -27,12 +30,20 @@ import org.eclipse.dltk.core.environment.IFileHandle;
 import org.eclipse.dltk.core.index.sql.Container;
 import org.eclipse.dltk.core.index.sql.DbFactory;
 import org.eclipse.dltk.core.index.sql.File;
+import org.eclipse.dltk.core.index.sql.IContainerDao;
 import org.eclipse.dltk.core.index.sql.IElementDao;
 import org.eclipse.dltk.core.index.sql.SqlIndex;
 import org.eclipse.dltk.core.index2.AbstractIndexer;
+import org.eclipse.dltk.core.index2.IIndexerContainerExtension;
+import org.eclipse.dltk.core.index2.IIndexerExtension;
+import org.eclipse.dltk.core.index2.RecordingIndexingRequestor;
 import org.eclipse.dltk.core.index2.search.ISearchEngine;
+import org.eclipse.dltk.core.metrics.Counter;
+import org.eclipse.dltk.core.metrics.Histogram;
+import org.eclipse.dltk.core.metrics.Metrics;
 import org.eclipse.dltk.internal.core.ExternalSourceModule;
 import org.eclipse.dltk.internal.core.SourceModule;
+import org.eclipse.dltk.internal.core.index2.IndexerManager;
 import org.eclipse.dltk.internal.core.util.Util;
 import org.eclipse.osgi.util.NLS;
 
@@ -42,15 +53,60 @@ import org.eclipse.osgi.util.NLS;
  * @author michael
  * 
  */
-public class SqlIndexer extends AbstractIndexer {
+public class SqlIndexer extends AbstractIndexer implements
+		IIndexerExtension, IIndexerContainerExtension {
+
+	/** Maximum number of documents written in one transaction in bulk mode */
+	private static final int BULK_COMMIT_SIZE = 500;
+
+	/** Maximum time (in ms) a transaction is kept open in bulk mode */
+	private static final long BULK_COMMIT_INTERVAL = 5000;
+
+	/** Path prefix of containers being rebuilt */
+	private static final String STAGING_PREFIX = "#staging/"; //$NON-NLS-1$
+
+	private static final Histogram INDEX_TIME = Metrics
+			.histogram("sql.indexDocument"); //$NON-NLS-1$
+	/** Documents (re-)indexed, unchanged documents are not counted */
+	private static final Counter INDEXED_DOCUMENTS = Metrics
+			.counter("sql.documents.indexed"); //$NON-NLS-1$
+	/** Transactions committed in bulk mode before its end */
+	private static final Counter BULK_COMMITS = Metrics
+			.counter("sql.bulk.commits"); //$NON-NLS-1$
 
 	private Connection connection;
 	private File file;
 	private String natureId;
 	private IElementDao elementDao;
 
+	private final int bulkCommitSize;
+	private final long bulkCommitInterval;
+	private boolean bulkMode;
+	private int uncommittedDocuments;
+	private long lastCommitTime;
+
+	/** Containers being rebuilt by their paths */
+	private final Map<String, Container> stagingContainers = new HashMap<String, Container>();
+
+	/**
+	 * Identifiers of the containers being rebuilt by all the indexers, other
+	 * staging containers were left by interrupted rebuilds
+	 */
+	private static final Set<Integer> activeStagingContainers = new HashSet<Integer>();
+
 	public SqlIndexer() {
+		this(BULK_COMMIT_SIZE, BULK_COMMIT_INTERVAL);
+	}
+
+	/**
+	 * Creates the indexer committing the transaction in bulk mode after the
+	 * given number of documents or the given time (in ms), whichever comes
+	 * first.
+	 */
+	public SqlIndexer(int bulkCommitSize, long bulkCommitInterval) {
 		elementDao = DbFactory.getInstance().getElementDao();
+		this.bulkCommitSize = bulkCommitSize;
+		this.bulkCommitInterval = bulkCommitInterval;
 	}
 
 	public void addDeclaration(DeclarationInfo info) {
@@ -85,16 +141,23 @@ public class SqlIndexer extends AbstractIndexer {
 	}
 
 	public void indexDocument(ISourceModule sourceModule) {
+		indexDocument(sourceModule, null);
+	}
+
+	public void indexDocument(ISourceModule sourceModule,
+			RecordingIndexingRequestor elements) {
 
 		final IFileHandle fileHandle = EnvironmentPathUtils
 				.getFile(sourceModule);
 
+		final long start = System.nanoTime();
 		try {
 			DbFactory dbFactory = DbFactory.getInstance();
-			connection = dbFactory.createConnection();
-			try {
+			if (connection == null) {
+				connection = dbFactory.createConnection();
 				connection.setAutoCommit(false);
-
+			}
+			try {
 				IDLTKLanguageToolkit toolkit = DLTKLanguageManager
 						.getLanguageToolkit(sourceModule);
 				if (toolkit == null) {
@@ -110,8 +173,12 @@ public class SqlIndexer extends AbstractIndexer {
 					containerPath = sourceModule.getAncestor(
 							IModelElement.PROJECT_FRAGMENT).getPath();
 				}
-				Container container = dbFactory.getContainerDao().insert(
-						connection, containerPath.toString());
+				Container container = stagingContainers.get(containerPath
+						.toString());
+				if (container == null) {
+					container = dbFactory.getContainerDao().insert(
+							connection, containerPath.toString());
+				}
 
 				String relativePath;
 				if (toolkit instanceof IDLTKLanguageToolkitExtension
@@ -130,9 +197,29 @@ public class SqlIndexer extends AbstractIndexer {
 
 				File existing = dbFactory.getFileDao().select(connection,
 						relativePath, container.getId());
+				if (existing != null
+						&& existing.getTimestamp() == lastModified) {
+					// File is not updated - nothing to do
+					return;
+				}
+
+				String digest = null;
+				if (IndexerManager.isDigestChangeDetection()) {
+					if (elements == null) {
+						// parse the contents the digest is computed of
+						elements = recordDocument(sourceModule, true);
+					}
+					digest = elements.getContentDigest();
+					if (digest == null) {
+						digest = ContentDigest.compute(sourceModule);
+					}
+				}
+
 				if (existing != null) {
-					if (existing.getTimestamp() == lastModified) {
-						// File is not updated - nothing to do
+					if (digest != null && digest.equals(existing.getDigest())) {
+						// File contents are not changed:
+						dbFactory.getFileDao().updateTimestamp(connection,
+								existing, lastModified);
 						return;
 					}
 					// Re-index:
@@ -140,18 +227,73 @@ public class SqlIndexer extends AbstractIndexer {
 							existing.getId());
 				}
 				file = dbFactory.getFileDao().insert(connection, relativePath,
-						lastModified, container.getId());
+						lastModified, digest, container.getId());
+				INDEXED_DOCUMENTS.increment();
 
-				super.indexDocument(sourceModule);
+				if (elements != null) {
+					elements.replay(this);
+				} else {
+					super.indexDocument(sourceModule);
+				}
 
 			} finally {
-				elementDao.commitInsertions();
-				connection.commit();
-				connection.close();
+				if (bulkMode) {
+					++uncommittedDocuments;
+					long elapsed = System.currentTimeMillis() - lastCommitTime;
+					if (uncommittedDocuments >= bulkCommitSize
+							|| elapsed >= bulkCommitInterval) {
+						commitBulk();
+					}
+				} else {
+					closeConnection();
+				}
 			}
 		} catch (Exception e) {
 			SqlIndex
 					.error("An exception was thrown while indexing document", e);
+		} finally {
+			INDEX_TIME.recordSince(start);
+		}
+	}
+
+	public void beginBulkIndexing() {
+		bulkMode = true;
+		uncommittedDocuments = 0;
+		lastCommitTime = System.currentTimeMillis();
+	}
+
+	public void endBulkIndexing() {
+		bulkMode = false;
+		if (connection != null) {
+			try {
+				closeConnection();
+			} catch (SQLException e) {
+				SqlIndex.error(
+						"An exception was thrown while committing documents",
+						e);
+			}
+		}
+	}
+
+	/**
+	 * Commits pending insertions, while keeping the connection and the
+	 * prepared statements open for next documents.
+	 */
+	private void commitBulk() throws SQLException {
+		elementDao.flushInsertions(connection);
+		connection.commit();
+		BULK_COMMITS.increment();
+		uncommittedDocuments = 0;
+		lastCommitTime = System.currentTimeMillis();
+	}
+
+	private void closeConnection() throws SQLException {
+		try {
+			elementDao.commitInsertions(connection);
+			connection.commit();
+		} finally {
+			connection.close();
+			connection = null;
 		}
 	}
 
@@ -184,13 +326,78 @@ public class SqlIndexer extends AbstractIndexer {
 		return null;
 	}
 
+	public Map<String, String> getDocumentDigests(IPath containerPath) {
+		try {
+			DbFactory dbFactory = DbFactory.getInstance();
+			Connection connection = dbFactory.createConnection();
+			try {
+				Container container = dbFactory.getContainerDao()
+						.selectByPath(connection, containerPath.toString());
+				if (container != null) {
+					File[] files = dbFactory.getFileDao().selectByContainerId(
+							connection, container.getId());
+					Map<String, String> digests = new HashMap<String, String>();
+					for (File file : files) {
+						digests.put(file.getPath(), file.getDigest());
+					}
+					return digests;
+				}
+			} finally {
+				connection.close();
+			}
+		} catch (SQLException e) {
+			SqlIndex
+					.error(
+							"An exception thrown while analyzing source module changes",
+							e);
+		}
+		return null;
+	}
+
+	public void updateDocumentTimestamps(IPath containerPath,
+			Map<String, Long> timestamps) {
+		try {
+			DbFactory dbFactory = DbFactory.getInstance();
+			Connection connection = dbFactory.createConnection();
+			try {
+				connection.setAutoCommit(false);
+				Container container = dbFactory.getContainerDao()
+						.selectByPath(connection, containerPath.toString());
+				if (container != null) {
+					File[] files = dbFactory.getFileDao().selectByContainerId(
+							connection, container.getId());
+					for (File file : files) {
+						Long timestamp = timestamps.get(file.getPath());
+						if (timestamp != null) {
+							dbFactory.getFileDao().updateTimestamp(connection,
+									file, timestamp.longValue());
+						}
+					}
+				}
+				connection.commit();
+			} finally {
+				connection.close();
+			}
+		} catch (SQLException e) {
+			SqlIndex.error(NLS.bind(
+					"An exception thrown while updating files of ''{0}''",
+					containerPath.toString()), e);
+		}
+	}
+
 	public void removeContainer(IPath containerPath) {
 		try {
 			DbFactory dbFactory = DbFactory.getInstance();
 			Connection connection = dbFactory.createConnection();
 			try {
-				dbFactory.getContainerDao().deleteByPath(connection,
+				IContainerDao containerDao = dbFactory.getContainerDao();
+				Container container = containerDao.selectByPath(connection,
 						containerPath.toString());
+				if (container != null) {
+					// Rows are deleted in background, see ContainerReclaimer
+					containerDao.detach(connection, container);
+					ContainerReclaimer.getInstance().request();
+				}
 			} finally {
 				connection.close();
 			}
@@ -229,6 +436,114 @@ public class SqlIndexer extends AbstractIndexer {
 		}
 	}
 
+	public void beginContainerRebuild(IPath containerPath) {
+		String path = containerPath.toString();
+		try {
+			DbFactory dbFactory = DbFactory.getInstance();
+			Connection connection = dbFactory.createConnection();
+			try {
+				IContainerDao containerDao = dbFactory.getContainerDao();
+				synchronized (activeStagingContainers) {
+					reclaimStagingContainers(connection, containerDao, path);
+					Container staging = containerDao.insert(connection,
+							STAGING_PREFIX + path);
+					stagingContainers.put(path, staging);
+					activeStagingContainers.add(Integer.valueOf(staging
+							.getId()));
+				}
+			} finally {
+				connection.close();
+			}
+		} catch (SQLException e) {
+			SqlIndex.error(NLS.bind(
+					"An exception thrown while rebuilding container ''{0}''",
+					path), e);
+		}
+	}
+
+	/**
+	 * Detaches the staging containers left by interrupted rebuilds, in this
+	 * or a previous session, and the staging container of the path if it is
+	 * being rebuilt by another indexer. Must hold the lock of
+	 * {@link #activeStagingContainers}.
+	 */
+	private static void reclaimStagingContainers(Connection connection,
+			IContainerDao containerDao, String path) throws SQLException {
+		boolean detached = false;
+		String stagingPath = STAGING_PREFIX + path;
+		for (Container staging : containerDao.selectByPathPrefix(connection,
+				STAGING_PREFIX)) {
+			if (staging.getPath().equals(stagingPath)
+					|| !activeStagingContainers.contains(Integer
+							.valueOf(staging.getId()))) {
+				activeStagingContainers.remove(Integer.valueOf(staging
+						.getId()));
+				containerDao.detach(connection, staging);
+				detached = true;
+			}
+		}
+		if (detached) {
+			ContainerReclaimer.getInstance().request();
+		}
+	}
+
+	public void commitContainerRebuild(IPath containerPath) {
+		String path = containerPath.toString();
+		Container staging = stagingContainers.remove(path);
+		if (staging == null) {
+			return;
+		}
+		try {
+			DbFactory dbFactory = DbFactory.getInstance();
+			Connection connection = dbFactory.createConnection();
+			try {
+				connection.setAutoCommit(false);
+				synchronized (activeStagingContainers) {
+					if (activeStagingContainers.remove(Integer.valueOf(staging
+							.getId()))) {
+						dbFactory.getContainerDao().replace(connection,
+								staging, path);
+					}
+				}
+			} finally {
+				connection.close();
+			}
+			ContainerReclaimer.getInstance().request();
+		} catch (SQLException e) {
+			SqlIndex.error(NLS.bind(
+					"An exception thrown while rebuilding container ''{0}''",
+					path), e);
+		}
+	}
+
+	public void abortContainerRebuild(IPath containerPath) {
+		String path = containerPath.toString();
+		Container staging = stagingContainers.remove(path);
+		if (staging == null) {
+			return;
+		}
+		try {
+			DbFactory dbFactory = DbFactory.getInstance();
+			Connection connection = dbFactory.createConnection();
+			try {
+				synchronized (activeStagingContainers) {
+					if (activeStagingContainers.remove(Integer.valueOf(staging
+							.getId()))) {
+						dbFactory.getContainerDao().detach(connection,
+								staging);
+					}
+				}
+			} finally {
+				connection.close();
+			}
+			ContainerReclaimer.getInstance().request();
+		} catch (SQLException e) {
+			SqlIndex.error(NLS.bind(
+					"An exception thrown while rebuilding container ''{0}''",
+					path), e);
+		}
+	}
+
 	public ISearchEngine createSearchEngine() {
 		return new SqlSearchEngine();
 	}
@@ -35,8 +35,11 @@ import org.eclipse.dltk.core.index.sql.Element;
 import org.eclipse.dltk.core.index.sql.File;
 import org.eclipse.dltk.core.index.sql.IElementHandler;
 import org.eclipse.dltk.core.index.sql.SqlIndex;
-import org.eclipse.dltk.core.index2.search.ISearchEngine;
+import org.eclipse.dltk.core.index2.search.ISearchEngineExtension;
 import org.eclipse.dltk.core.index2.search.ISearchRequestor;
+import org.eclipse.dltk.core.metrics.Counter;
+import org.eclipse.dltk.core.metrics.Histogram;
+import org.eclipse.dltk.core.metrics.Metrics;
 import org.eclipse.dltk.core.search.IDLTKSearchScope;
 import org.eclipse.dltk.internal.core.ArchiveFolder;
 import org.eclipse.dltk.internal.core.BuiltinScriptFolder;
@@ -51,13 +54,28 @@ import org.eclipse.dltk.internal.core.search.DLTKWorkspaceScope;
  * @author michael
  * @since 2.0
  */
-public class SqlSearchEngine implements ISearchEngine {
+public class SqlSearchEngine implements ISearchEngineExtension {
+
+	private static final Histogram SEARCH_TIME = Metrics
+			.histogram("sql.search"); //$NON-NLS-1$
+	private static final Counter MATCHES = Metrics
+			.counter("sql.search.matches"); //$NON-NLS-1$
 
 	public void search(int elementType, String qualifier, String elementName,
 			int trueFlags, int falseFlags, int limit, SearchFor searchFor,
 			MatchRule matchRule, IDLTKSearchScope scope,
 			final ISearchRequestor requestor, IProgressMonitor monitor) {
 
+		search(elementType, qualifier, elementName, trueFlags, falseFlags,
+				limit, searchFor, matchRule, false, scope, requestor, monitor);
+	}
+
+	public void search(int elementType, String qualifier, String elementName,
+			int trueFlags, int falseFlags, int limit, SearchFor searchFor,
+			MatchRule matchRule, boolean orderByName, IDLTKSearchScope scope,
+			final ISearchRequestor requestor, IProgressMonitor monitor) {
+
+		final long start = System.nanoTime();
 		try {
 			DbFactory dbFactory = DbFactory.getInstance();
 			if (dbFactory == null) {
@@ -70,7 +88,7 @@ public class SqlSearchEngine implements ISearchEngine {
 			try {
 				String natureId = scope.getLanguageToolkit().getNatureId();
 				ElementHandler elementHandler = new ElementHandler(connection,
-						scope, requestor);
+						scope, requestor, limit, monitor);
 
 				// Calculate filtering by container:
 				int[] containersId = null;
@@ -146,20 +164,24 @@ public class SqlSearchEngine implements ISearchEngine {
 					dbFactory.getElementDao().search(connection, elementName,
 							matchRule, elementType, trueFlags, falseFlags,
 							qualifier, null, filesId, containersId, natureId,
-							limit, false, elementHandler, monitor);
+							limit, false, orderByName, elementHandler, monitor);
 				}
-				if (searchForRefs) {
+				if (searchForRefs && !elementHandler.isDone()) {
 					dbFactory.getElementDao().search(connection, elementName,
 							matchRule, elementType, trueFlags, falseFlags,
 							qualifier, null, filesId, containersId, natureId,
-							limit, true, elementHandler, monitor);
+							elementHandler.getRemaining(), true, orderByName,
+							elementHandler, monitor);
 				}
+				MATCHES.add(elementHandler.count);
 			} finally {
 				connection.close();
 			}
 		} catch (SQLException e) {
 			SqlIndex.error("An exception has thrown while performing a search",
 					e);
+		} finally {
+			SEARCH_TIME.recordSince(start);
 		}
 	}
 
@@ -172,16 +194,42 @@ public class SqlSearchEngine implements ISearchEngine {
 		private Connection connection;
 		private ISearchRequestor searchRequestor;
 		private IDLTKSearchScope scope;
+		private int limit;
+		private IProgressMonitor monitor;
+		private int count;
 
 		public ElementHandler(Connection connection, IDLTKSearchScope scope,
-				ISearchRequestor searchRequestor) {
+				ISearchRequestor searchRequestor, int limit,
+				IProgressMonitor monitor) {
 
 			this.connection = connection;
 			this.scope = scope;
 			this.searchRequestor = searchRequestor;
+			this.limit = limit;
+			this.monitor = monitor;
+		}
+
+		/**
+		 * Returns whether the limit of reported matches is reached, or the
+		 * search is cancelled
+		 */
+		public boolean isDone() {
+			return (limit > 0 && count >= limit)
+					|| (monitor != null && monitor.isCanceled());
+		}
+
+		/**
+		 * Returns number of matches that still may be reported (
+		 * <code>0</code> - unlimited)
+		 */
+		public int getRemaining() {
+			return limit > 0 ? limit - count : 0;
 		}
 
 		public void handle(Element element) {
+			if (isDone()) {
+				return;
+			}
 			try {
 				DbFactory dbFactory = DbFactory.getInstance();
 
@@ -288,6 +336,7 @@ public class SqlSearchEngine implements ISearchEngine {
 				String metadata, String qualifier, String parent,
 				ISourceModule sourceModule, boolean isReference) {
 
+			++count;
 			searchRequestor.match(elementType, flags, offset, length,
 					nameOffset, nameLength, elementName, metadata, qualifier,
 					parent, sourceModule, isReference);
@@ -0,0 +1,445 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Sage and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Sage - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.dltk.ast.parser;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.dltk.core.DLTKCore;
+
+/**
+ * File of serialized ASTs keyed by the paths and the digests of the source
+ * module contents. Records are appended to the end of the file, which is
+ * mapped into memory for reading once, the records appended later are read
+ * from the file channel at their positions. When the file gets bigger than
+ * the limit, the most recently used half is copied into the file of the next
+ * generation and the old file is deleted, so a mapped file is never modified
+ * in place.
+ * <p>
+ * Record layout: key (UTF), length of data (int), data. Keys are read when
+ * the file is opened, data only when it is requested.
+ * </p>
+ * <p>
+ * Only the keys are accessed under the lock. Records are read and written
+ * outside of it by positional channel operations: the writer reserves the
+ * space for the record under the lock, and the record becomes visible when
+ * it is written. Records read or written while the file is replaced by
+ * compaction are lost, so they are treated as not cached.
+ * </p>
+ */
+class ASTCacheStore {
+
+	private static final String SIGNATURE = "DLTK AST CACHE 2"; //$NON-NLS-1$
+	private static final String PREFIX = "ast."; //$NON-NLS-1$
+	private static final String SUFFIX = ".cache"; //$NON-NLS-1$
+
+	private static class Entry {
+		final long offset;
+		final int length;
+
+		Entry(long offset, int length) {
+			this.offset = offset;
+			this.length = length;
+		}
+	}
+
+	private final File directory;
+	private final String format;
+	private final long sizeLimit;
+	private final boolean mapped;
+
+	// key -> Entry, least recently used first
+	private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(
+			16, 0.75f, true);
+
+	private boolean opened;
+	private int generation;
+	private RandomAccessFile file;
+	private long length;
+	private ByteBuffer buffer;
+	// records being written outside the lock
+	private int pendingWrites;
+
+	ASTCacheStore(File directory, String format, long sizeLimit,
+			boolean mapped) {
+		this.directory = directory;
+		this.format = format;
+		this.sizeLimit = sizeLimit;
+		this.mapped = mapped;
+	}
+
+	/**
+	 * Returns the data stored by the key, or <code>null</code> if not found
+	 */
+	byte[] get(String key) {
+		final Entry entry;
+		final RandomAccessFile source;
+		final ByteBuffer mappedBuffer;
+		synchronized (this) {
+			try {
+				open();
+				entry = entries.get(key);
+				if (entry == null) {
+					return null;
+				}
+				if (mapped && buffer == null && pendingWrites == 0) {
+					buffer = file.getChannel().map(
+							FileChannel.MapMode.READ_ONLY, 0, length);
+				}
+			} catch (IOException e) {
+				DLTKCore.error("Failed to read AST cache " + directory, e); //$NON-NLS-1$
+				reset();
+				return null;
+			}
+			source = file;
+			mappedBuffer = buffer;
+		}
+		try {
+			return read(source, mappedBuffer, entry);
+		} catch (IOException e) {
+			synchronized (this) {
+				if (file == source) {
+					DLTKCore.error("Failed to read AST cache " + directory, e); //$NON-NLS-1$
+					reset();
+				}
+				// otherwise the file was replaced meanwhile
+				return null;
+			}
+		}
+	}
+
+	void put(String key, byte[] data) {
+		if (data.length > sizeLimit / 4) {
+			return; // wouldn't survive the next compaction anyway
+		}
+		final byte[] record = toRecord(key, data);
+		final RandomAccessFile target;
+		final long position;
+		synchronized (this) {
+			try {
+				open();
+			} catch (IOException e) {
+				DLTKCore.error("Failed to write AST cache " + directory, e); //$NON-NLS-1$
+				reset();
+				return;
+			}
+			if (entries.containsKey(key)) {
+				return;
+			}
+			target = file;
+			position = length;
+			length += record.length;
+			++pendingWrites;
+		}
+		IOException failure = null;
+		try {
+			write(target, position, record);
+		} catch (IOException e) {
+			failure = e;
+		}
+		synchronized (this) {
+			--pendingWrites;
+			if (file != target) {
+				// the file was replaced meanwhile, the record is lost
+				return;
+			}
+			try {
+				if (failure != null) {
+					throw failure;
+				}
+				entries.put(key, new Entry(position + record.length
+						- data.length, data.length));
+				if (length > sizeLimit) {
+					compact();
+				}
+			} catch (IOException e) {
+				DLTKCore.error("Failed to write AST cache " + directory, e); //$NON-NLS-1$
+				reset();
+			}
+		}
+	}
+
+	synchronized void remove(String key) {
+		// data stays in the file until the next compaction
+		entries.remove(key);
+	}
+
+	synchronized int size() {
+		return entries.size();
+	}
+
+	synchronized void close() {
+		if (file != null) {
+			try {
+				file.close();
+			} catch (IOException e) {
+				// ignore
+			}
+			file = null;
+		}
+		buffer = null;
+		entries.clear();
+		opened = false;
+	}
+
+	private void open() throws IOException {
+		if (opened) {
+			return;
+		}
+		opened = true;
+		directory.mkdirs();
+		generation = 0;
+		final File[] files = directory.listFiles();
+		if (files != null) {
+			for (int i = 0; i < files.length; ++i) {
+				final int g = getGeneration(files[i].getName());
+				if (g > generation) {
+					generation = g;
+				}
+			}
+			// older generations could be left if they were mapped
+			for (int i = 0; i < files.length; ++i) {
+				final int g = getGeneration(files[i].getName());
+				if (g > 0 && g < generation) {
+					files[i].delete();
+				}
+			}
+		}
+		if (generation == 0 || !load(getFile(generation))) {
+			getFile(generation).delete();
+			create(++generation);
+		}
+	}
+
+	/**
+	 * Reads the keys of the file, returns <code>false</code> if the file is
+	 * not readable or has another format
+	 */
+	private boolean load(File cacheFile) throws IOException {
+		final DataInputStream in;
+		try {
+			in = new DataInputStream(new BufferedInputStream(
+					new FileInputStream(cacheFile), 8192));
+		} catch (IOException e) {
+			return false;
+		}
+		long position;
+		try {
+			if (!SIGNATURE.equals(in.readUTF()) || !format.equals(in.readUTF())) {
+				return false;
+			}
+			position = headerLength();
+			try {
+				for (;;) {
+					final String key = in.readUTF();
+					if (key.length() == 0) {
+						// space reserved for the record which was not written
+						break;
+					}
+					final int dataLength = in.readInt();
+					final long offset = position + utfLength(key) + 4;
+					skipFully(in, dataLength);
+					entries.put(key, new Entry(offset, dataLength));
+					position = offset + dataLength;
+				}
+			} catch (EOFException e) {
+				// the last record could be written partially
+			}
+		} catch (IOException e) {
+			entries.clear();
+			return false;
+		} finally {
+			in.close();
+		}
+		file = new RandomAccessFile(cacheFile, "rw"); //$NON-NLS-1$
+		file.setLength(position);
+		length = position;
+		return true;
+	}
+
+	private void create(int newGeneration) throws IOException {
+		file = new RandomAccessFile(getFile(newGeneration), "rw"); //$NON-NLS-1$
+		file.setLength(0);
+		file.writeUTF(SIGNATURE);
+		file.writeUTF(format);
+		length = headerLength();
+	}
+
+	private long headerLength() {
+		return utfLength(SIGNATURE) + utfLength(format);
+	}
+
+	private Entry append(RandomAccessFile output, String key, byte[] data)
+			throws IOException {
+		final byte[] record = toRecord(key, data);
+		write(output, length, record);
+		final Entry entry = new Entry(length + record.length - data.length,
+				data.length);
+		length += record.length;
+		return entry;
+	}
+
+	private static byte[] toRecord(String key, byte[] data) {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream(
+				utfLength(key) + 4 + data.length);
+		final DataOutputStream out = new DataOutputStream(bytes);
+		try {
+			out.writeUTF(key);
+			out.writeInt(data.length);
+			out.write(data);
+		} catch (IOException e) {
+			// not thrown by ByteArrayOutputStream
+		}
+		return bytes.toByteArray();
+	}
+
+	private static void write(RandomAccessFile output, long position,
+			byte[] record) throws IOException {
+		final FileChannel channel = output.getChannel();
+		final ByteBuffer source = ByteBuffer.wrap(record);
+		while (source.hasRemaining()) {
+			channel.write(source, position + source.position());
+		}
+	}
+
+	private static byte[] read(RandomAccessFile source,
+			ByteBuffer mappedBuffer, Entry entry) throws IOException {
+		final byte[] data = new byte[entry.length];
+		if (mappedBuffer != null
+				&& entry.offset + entry.length <= mappedBuffer.capacity()) {
+			final ByteBuffer slice = mappedBuffer.duplicate();
+			slice.position((int) entry.offset);
+			slice.get(data);
+			return data;
+		}
+		// not mapped, or appended after the file was mapped
+		final FileChannel channel = source.getChannel();
+		final ByteBuffer target = ByteBuffer.wrap(data);
+		while (target.hasRemaining()) {
+			if (channel.read(target, entry.offset + target.position()) < 0) {
+				throw new EOFException();
+			}
+		}
+		return data;
+	}
+
+	/**
+	 * Copies the most recently used entries, up to the half of the size
+	 * limit, into the file of the next generation
+	 */
+	private void compact() throws IOException {
+		final List<Map.Entry<String, Entry>> recent = new ArrayList<Map.Entry<String, Entry>>(
+				entries.entrySet());
+		long kept = 0;
+		int first = recent.size();
+		while (first > 0) {
+			final Entry entry = recent.get(first - 1).getValue();
+			if (kept + entry.length > sizeLimit / 2) {
+				break;
+			}
+			kept += entry.length;
+			--first;
+		}
+		final RandomAccessFile oldFile = file;
+		final File oldCacheFile = getFile(generation);
+		final LinkedHashMap<String, Entry> copied = new LinkedHashMap<String, Entry>();
+		// written in the order of use, so the order is restored when loaded
+		create(++generation);
+		try {
+			for (Iterator<Map.Entry<String, Entry>> i = recent.subList(first,
+					recent.size()).iterator(); i.hasNext();) {
+				final Map.Entry<String, Entry> entry = i.next();
+				final byte[] data = new byte[entry.getValue().length];
+				oldFile.seek(entry.getValue().offset);
+				oldFile.readFully(data);
+				copied.put(entry.getKey(), append(file, entry.getKey(), data));
+			}
+		} finally {
+			oldFile.close();
+		}
+		buffer = null;
+		entries.clear();
+		entries.putAll(copied);
+		oldCacheFile.delete();
+	}
+
+	private void reset() {
+		close();
+		final File[] files = directory.listFiles();
+		if (files != null) {
+			for (int i = 0; i < files.length; ++i) {
+				if (getGeneration(files[i].getName()) > 0) {
+					files[i].delete();
+				}
+			}
+		}
+	}
+
+	private File getFile(int fileGeneration) {
+		return new File(directory, PREFIX + fileGeneration + SUFFIX);
+	}
+
+	private static int getGeneration(String fileName) {
+		if (fileName.startsWith(PREFIX) && fileName.endsWith(SUFFIX)) {
+			try {
+				return Integer.parseInt(fileName.substring(PREFIX.length(),
+						fileName.length() - SUFFIX.length()));
+			} catch (NumberFormatException e) {
+				// not a cache file
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Returns the number of bytes written by
+	 * {@link java.io.DataOutput#writeUTF(String)}
+	 */
+	private static int utfLength(String value) {
+		int length = 2;
+		for (int i = 0; i < value.length(); ++i) {
+			final char c = value.charAt(i);
+			if (c >= 0x0001 && c <= 0x007F) {
+				length += 1;
+			} else if (c > 0x07FF) {
+				length += 3;
+			} else {
+				length += 2;
+			}
+		}
+		return length;
+	}
+
+	private static void skipFully(DataInputStream in, int count)
+			throws IOException {
+		while (count > 0) {
+			final int skipped = in.skipBytes(count);
+			if (skipped <= 0) {
+				throw new EOFException();
+			}
+			count -= skipped;
+		}
+	}
+}
@@ -0,0 +1,41 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Sage and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Sage - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.dltk.ast.parser;
+
+import org.eclipse.dltk.compiler.problem.ProblemCollector;
+import org.eclipse.dltk.core.ISourceModule;
+
+/**
+ * Extension of {@link IASTCache} storing the ASTs by the key computed from
+ * the contents the source module is parsed from. The key is computed once
+ * before the AST is restored and the same key is used to store the parsed
+ * AST, so the contents are read once and the AST is never stored for the
+ * contents it was not parsed from, even if the file is changed meanwhile.
+ *
+ * @since 2.0
+ */
+public interface IASTCacheExtension extends IASTCache {
+
+	/**
+	 * Returns the key of the AST parsed from the specified contents of the
+	 * source module, or <code>null</code> if it should not be cached.
+	 */
+	String getKey(ISourceModule module, char[] contents);
+
+	/**
+	 * Returns the AST stored by the key, or <code>null</code> if it is not
+	 * cached
+	 */
+	ASTCacheEntry restoreModule(String key);
+
+	void storeModule(String key, IModuleDeclaration moduleDeclaration,
+			ProblemCollector problems);
+}
@@ -0,0 +1,208 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Sage and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Sage - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.dltk.ast.parser;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+
+import org.eclipse.dltk.compiler.problem.ProblemCollector;
+import org.eclipse.dltk.compiler.problem.ProblemSerializer;
+import org.eclipse.dltk.core.ContentDigest;
+import org.eclipse.dltk.core.DLTKCore;
+import org.eclipse.dltk.core.ISourceModule;
+import org.eclipse.dltk.core.ModelException;
+
+/**
+ * {@link IASTCache} keeping the ASTs on disk between sessions, so source
+ * modules which were not changed are not parsed again after restart. ASTs
+ * are stored by the path and the digest of the contents they were parsed
+ * from together with the problems reported by the parser, in the file which
+ * size is limited by {@link DLTKCore#AST_CACHE_SIZE}. The file is mapped
+ * into memory if {@link DLTKCore#INDEX_MEMORY_MAPPING} is enabled.
+ * <p>
+ * AST nodes are language specific, so languages contribute the subclass
+ * implementing the serialization of their ASTs to the
+ * <code>org.eclipse.dltk.core.astCache</code> extension point.
+ * </p>
+ *
+ * @since 2.0
+ */
+public abstract class PersistentASTCache implements IASTCacheExtension {
+
+	private ASTCacheStore store;
+	private boolean storeCreated;
+
+	/**
+	 * Returns the identifier of the format written by
+	 * {@link #writeModule(IModuleDeclaration, DataOutputStream)}, which is
+	 * changed whenever ASTs written by the previous versions can't be read.
+	 */
+	protected abstract String getFormat();
+
+	/**
+	 * Writes the AST, returns <code>false</code> if it can't be written and
+	 * should not be cached
+	 */
+	protected abstract boolean writeModule(IModuleDeclaration module,
+			DataOutputStream out) throws IOException;
+
+	/**
+	 * Reads the AST written by
+	 * {@link #writeModule(IModuleDeclaration, DataOutputStream)}
+	 */
+	protected abstract IModuleDeclaration readModule(DataInputStream in)
+			throws IOException;
+
+	/**
+	 * Returns the directory of the cache files, which is unique for each
+	 * subclass.
+	 */
+	protected File getDirectory() {
+		return DLTKCore.getDefault().getStateLocation().append("astCache") //$NON-NLS-1$
+				.append(getClass().getName()).toFile();
+	}
+
+	public ASTCacheEntry restoreModule(ISourceModule module) {
+		final String key = getKey(module);
+		return key != null ? restoreModule(key) : null;
+	}
+
+	public void storeModule(ISourceModule module,
+			IModuleDeclaration moduleDeclaration, ProblemCollector problems) {
+		final String key = getKey(module);
+		if (key != null) {
+			storeModule(key, moduleDeclaration, problems);
+		}
+	}
+
+	/**
+	 * Problems and ASTs could refer to the file they were parsed from, so
+	 * modules with the same contents but different paths don't share the
+	 * entries. Working copies are parsed from the buffer, not from the file,
+	 * so they are not cached.
+	 */
+	public String getKey(ISourceModule module, char[] contents) {
+		if (contents == null || module.isWorkingCopy() || getStore() == null) {
+			return null;
+		}
+		return module.getPath().toString() + '\n'
+				+ ContentDigest.compute(contents);
+	}
+
+	public ASTCacheEntry restoreModule(String key) {
+		final ASTCacheStore store = getStore();
+		if (store == null) {
+			return null;
+		}
+		final byte[] data = store.get(key);
+		if (data == null) {
+			return null;
+		}
+		final DataInputStream in = new DataInputStream(
+				new ByteArrayInputStream(data));
+		try {
+			final ASTCacheEntry entry = new ASTCacheEntry();
+			if (in.readBoolean()) {
+				entry.problems = new ProblemCollector();
+				ProblemSerializer.read(entry.problems, in);
+			}
+			entry.module = readModule(in);
+			if (entry.module == null) {
+				store.remove(key);
+				return null;
+			}
+			return entry;
+		} catch (IOException e) {
+			DLTKCore.error("Failed to restore AST of " //$NON-NLS-1$
+					+ key.substring(0, key.indexOf('\n')), e);
+			store.remove(key);
+			return null;
+		}
+	}
+
+	public void storeModule(String key, IModuleDeclaration moduleDeclaration,
+			ProblemCollector problems) {
+		final ASTCacheStore store = getStore();
+		if (store == null) {
+			return;
+		}
+		if (problems != null && !ProblemSerializer.isSupported(problems)) {
+			return;
+		}
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final DataOutputStream out = new DataOutputStream(bytes);
+		try {
+			out.writeBoolean(problems != null);
+			if (problems != null) {
+				ProblemSerializer.write(problems, out);
+			}
+			if (!writeModule(moduleDeclaration, out)) {
+				return;
+			}
+			out.flush();
+		} catch (IOException e) {
+			if (DLTKCore.DEBUG) {
+				e.printStackTrace();
+			}
+			return;
+		}
+		store.put(key, bytes.toByteArray());
+	}
+
+	/**
+	 * Returns the key of the current contents of the source module, or
+	 * <code>null</code> if they can't be read.
+	 */
+	private String getKey(ISourceModule module) {
+		if (module.isWorkingCopy() || getStore() == null) {
+			return null;
+		}
+		try {
+			return getKey(module, module.getSourceAsCharArray());
+		} catch (ModelException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Returns the store, or <code>null</code> if caching is disabled
+	 */
+	private synchronized ASTCacheStore getStore() {
+		if (!storeCreated) {
+			storeCreated = true;
+			final long sizeLimit = getSizeLimit();
+			if (sizeLimit > 0) {
+				store = new ASTCacheStore(getDirectory(), getFormat(),
+						sizeLimit, DLTKCore.ENABLED.equals(DLTKCore
+								.getOption(DLTKCore.INDEX_MEMORY_MAPPING)));
+			}
+		}
+		return store;
+	}
+
+	private static long getSizeLimit() {
+		final String value = DLTKCore.getOption(DLTKCore.AST_CACHE_SIZE);
+		if (value != null) {
+			try {
+				final long megabytes = Long.parseLong(value.trim());
+				// mapped positions are int
+				return Math.min(megabytes * 1024 * 1024, Integer.MAX_VALUE);
+			} catch (NumberFormatException e) {
+				// use default
+			}
+		}
+		return 64 * 1024 * 1024;
+	}
+}
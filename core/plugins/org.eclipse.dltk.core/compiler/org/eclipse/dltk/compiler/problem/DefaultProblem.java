@@ -279,6 +279,16 @@ public class DefaultProblem extends CategorizedProblem {
 		return this.startPosition;
 	}
 
+	/**
+	 * Answer the severity of the problem, combination of the
+	 * {@link ProblemSeverities} flags
+	 * 
+	 * @since 2.0
+	 */
+	public int getSeverity() {
+		return this.severity;
+	}
+
 	/*
 	 * Helper method: checks the severity to see if the Error bit is set.
 	 * 
@@ -0,0 +1,141 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Sage and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Sage - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.dltk.compiler.problem;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.List;
+
+import org.eclipse.dltk.compiler.problem.ProblemCollector.TaskInfo;
+
+/**
+ * Writes problems collected by {@link ProblemCollector} in a compact binary
+ * form and reads them back. Only {@link DefaultProblem}s and tasks are
+ * supported, since other problems could have any marker type and attributes.
+ *
+ * @since 2.0
+ */
+public class ProblemSerializer {
+
+	private static final byte PROBLEM = 0;
+	private static final byte TASK = 1;
+
+	private ProblemSerializer() {
+	}
+
+	/**
+	 * Answers whether all the collected problems could be written
+	 */
+	public static boolean isSupported(ProblemCollector collector) {
+		for (IProblem problem : collector.problems) {
+			if (problem.getClass() != DefaultProblem.class
+					&& !(problem instanceof TaskInfo)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Writes the collected problems, which must be supported
+	 *
+	 * @see #isSupported(ProblemCollector)
+	 */
+	public static void write(ProblemCollector collector, DataOutput out)
+			throws IOException {
+		final List<IProblem> problems = collector.problems;
+		out.writeInt(problems.size());
+		for (IProblem problem : problems) {
+			if (problem instanceof TaskInfo) {
+				out.writeByte(TASK);
+				writeString(out, problem.getMessage());
+				out.writeInt(problem.getSourceLineNumber());
+				out.writeInt(((TaskInfo) problem).getPriority());
+				out.writeInt(problem.getSourceStart());
+				out.writeInt(problem.getSourceEnd());
+			} else {
+				final DefaultProblem p = (DefaultProblem) problem;
+				out.writeByte(PROBLEM);
+				writeString(out, p.getOriginatingFileName());
+				writeString(out, p.getMessage());
+				out.writeInt(p.getID());
+				final String[] arguments = p.getArguments();
+				if (arguments == null) {
+					out.writeInt(-1);
+				} else {
+					out.writeInt(arguments.length);
+					for (int i = 0; i < arguments.length; ++i) {
+						writeString(out, arguments[i]);
+					}
+				}
+				out.writeInt(p.getSeverity());
+				out.writeInt(p.getSourceStart());
+				out.writeInt(p.getSourceEnd());
+				out.writeInt(p.getSourceLineNumber());
+				out.writeInt(p.getColumn());
+			}
+		}
+	}
+
+	/**
+	 * Reads the problems into the collector
+	 */
+	public static void read(ProblemCollector collector, DataInput in)
+			throws IOException {
+		final int count = in.readInt();
+		for (int i = 0; i < count; ++i) {
+			final byte kind = in.readByte();
+			if (kind == TASK) {
+				final String message = readString(in);
+				final int lineNumber = in.readInt();
+				final int priority = in.readInt();
+				final int charStart = in.readInt();
+				final int charEnd = in.readInt();
+				collector.reportTask(message, lineNumber, priority, charStart,
+						charEnd);
+			} else if (kind == PROBLEM) {
+				final String fileName = readString(in);
+				final String message = readString(in);
+				final int id = in.readInt();
+				final int argumentCount = in.readInt();
+				String[] arguments = null;
+				if (argumentCount >= 0) {
+					arguments = new String[argumentCount];
+					for (int j = 0; j < argumentCount; ++j) {
+						arguments[j] = readString(in);
+					}
+				}
+				final int severity = in.readInt();
+				final int start = in.readInt();
+				final int end = in.readInt();
+				final int line = in.readInt();
+				final int column = in.readInt();
+				collector.reportProblem(new DefaultProblem(fileName, message,
+						id, arguments, severity, start, end, line, column));
+			} else {
+				throw new IOException("Unknown problem kind " + kind); //$NON-NLS-1$
+			}
+		}
+	}
+
+	private static void writeString(DataOutput out, String value)
+			throws IOException {
+		out.writeBoolean(value != null);
+		if (value != null) {
+			out.writeUTF(value);
+		}
+	}
+
+	private static String readString(DataInput in) throws IOException {
+		return in.readBoolean() ? in.readUTF() : null;
+	}
+}
@@ -12,8 +12,11 @@
 package org.eclipse.dltk.core.environment;
 
 import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
 
 import org.eclipse.core.filesystem.EFS;
+import org.eclipse.core.filesystem.IFileInfo;
 import org.eclipse.core.filesystem.IFileStore;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IPath;
@@ -50,6 +53,37 @@ public class FileHandles {
 		return result;
 	}
 
+	/**
+	 * Returns the last modification times of the files in the folder by their
+	 * names, fetched by one request to the file system, or <code>null</code>
+	 * if it is not supported by the folder or failed.
+	 * 
+	 * @since 2.0
+	 */
+	public static Map<String, Long> getChildTimestamps(IFileHandle folder) {
+		if (!(folder instanceof IFileStoreProvider)) {
+			return null;
+		}
+		try {
+			final IFileInfo[] infos = ((IFileStoreProvider) folder)
+					.getFileStore().childInfos(EFS.NONE, null);
+			final Map<String, Long> timestamps = new HashMap<String, Long>(
+					infos.length * 4 / 3 + 1);
+			for (IFileInfo info : infos) {
+				if (info.exists() && !info.isDirectory()) {
+					timestamps.put(info.getName(), new Long(info
+							.getLastModified()));
+				}
+			}
+			return timestamps;
+		} catch (CoreException e) {
+			if (DLTKCore.DEBUG) {
+				e.printStackTrace();
+			}
+			return null;
+		}
+	}
+
 	public static IPath asPath(IFileHandle handle, IEnvironment environment)
 			throws CoreException {
 		if (environment.getId().equals(handle.getEnvironmentId())) {
@@ -11,9 +11,12 @@
  *******************************************************************************/
 package org.eclipse.dltk.core.index2;
 
+import org.eclipse.dltk.core.ContentDigest;
+import org.eclipse.dltk.core.DLTKCore;
 import org.eclipse.dltk.core.DLTKLanguageManager;
 import org.eclipse.dltk.core.IDLTKLanguageToolkit;
 import org.eclipse.dltk.core.ISourceModule;
+import org.eclipse.dltk.core.ModelException;
 import org.eclipse.dltk.internal.core.index2.IndexerManager;
 
 /**
@@ -32,18 +35,111 @@ public abstract class AbstractIndexer implements IIndexer, IIndexingRequestor {
 	}
 
 	public void indexDocument(ISourceModule sourceModule) {
+		parseDocument(sourceModule, this);
+	}
+
+	/**
+	 * Indexes document using elements that were already collected by
+	 * {@link #parseDocument(ISourceModule, IIndexingRequestor)}. Default
+	 * implementation just passes recorded elements to this indexer.
+	 *
+	 * @param sourceModule
+	 *            Source module
+	 * @param elements
+	 *            Elements recorded while parsing the source module
+	 */
+	public void indexDocument(ISourceModule sourceModule,
+			RecordingIndexingRequestor elements) {
+		elements.replay(this);
+	}
+
+	/**
+	 * Notifies this indexer that a number of documents is going to be indexed
+	 * one after another, so it may group writes to the index storage instead
+	 * of flushing them after every document. Each call must be followed by a
+	 * call to {@link #endBulkIndexing()}. Default implementation does nothing.
+	 */
+	public void beginBulkIndexing() {
+	}
+
+	/**
+	 * Notifies this indexer that bulk indexing is finished, so all pending
+	 * writes must be flushed to the index storage. Default implementation does
+	 * nothing.
+	 */
+	public void endBulkIndexing() {
+	}
+
+	/**
+	 * Parses source module using indexing parser contributed for its language,
+	 * and reports elements to the given requestor. This method doesn't access
+	 * index storage, therefore it can be called concurrently from different
+	 * threads, each with its own requestor, if the indexing parser is
+	 * thread safe.
+	 * 
+	 * @see IIndexingParserExtension
+	 *
+	 * @param sourceModule
+	 *            Source module
+	 * @param requestor
+	 *            Indexing requestor
+	 */
+	public void parseDocument(ISourceModule sourceModule,
+			IIndexingRequestor requestor) {
+		IIndexingParser parser = getIndexingParser(sourceModule);
+		if (parser != null) {
+			parser.parseSourceModule(sourceModule, requestor);
+		}
+	}
+
+	/**
+	 * Parses source module like
+	 * {@link #parseDocument(ISourceModule, IIndexingRequestor)} does, and
+	 * records the elements. If <code>computeDigest</code> is set, the digest
+	 * of the contents is recorded as well, and if the indexing parser
+	 * implements {@link IIndexingParserExtension2}, the contents are read
+	 * once for both.
+	 * 
+	 * @param sourceModule
+	 *            Source module
+	 * @param computeDigest
+	 *            Whether the digest of the contents should be recorded
+	 * @return recorded elements
+	 */
+	public RecordingIndexingRequestor recordDocument(
+			ISourceModule sourceModule, boolean computeDigest) {
+		RecordingIndexingRequestor requestor = new RecordingIndexingRequestor();
+		IIndexingParser parser = getIndexingParser(sourceModule);
+		if (computeDigest) {
+			if (parser instanceof IIndexingParserExtension2) {
+				try {
+					char[] contents = sourceModule.getSourceAsCharArray();
+					requestor.setContentDigest(ContentDigest.compute(contents));
+					((IIndexingParserExtension2) parser).parseSourceModule(
+							sourceModule, contents, requestor);
+					return requestor;
+				} catch (ModelException e) {
+					if (DLTKCore.DEBUG) {
+						e.printStackTrace();
+					}
+				}
+			}
+			requestor.setContentDigest(ContentDigest.compute(sourceModule));
+		}
+		if (parser != null) {
+			parser.parseSourceModule(sourceModule, requestor);
+		}
+		return requestor;
+	}
+
+	private IIndexingParser getIndexingParser(ISourceModule sourceModule) {
 		IDLTKLanguageToolkit toolkit = DLTKLanguageManager
 				.getLanguageToolkit(sourceModule);
 		if (toolkit == null) {
-			return;
+			return null;
 		}
 		IIndexerParticipant participant = IndexerManager.getIndexerParticipant(
 				this, toolkit.getNatureId());
-		if (participant != null) {
-			IIndexingParser parser = participant.getIndexingParser();
-			if (parser != null) {
-				parser.parseSourceModule(sourceModule, this);
-			}
-		}
+		return participant != null ? participant.getIndexingParser() : null;
 	}
 }
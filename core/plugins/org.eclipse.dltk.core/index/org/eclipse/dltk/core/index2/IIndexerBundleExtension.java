@@ -0,0 +1,63 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Sage and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Sage - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.dltk.core.index2;
+
+import java.io.File;
+import java.util.Map;
+
+import org.eclipse.core.runtime.IPath;
+
+/**
+ * Optional interface implemented by indexers that can export all documents of
+ * a library container into a read-only bundle, and import the bundle into
+ * another container of the same library instead of indexing it. Bundles are
+ * shared by workspaces, see
+ * {@link org.eclipse.dltk.core.search.indexing.IndexBundles}. Documents are
+ * stored in the bundle by their paths relative to the container, so the
+ * bundle doesn't depend on the container location.
+ *
+ * @since 2.0
+ */
+public interface IIndexerBundleExtension {
+
+	/**
+	 * Returns the identifier of the bundle format, which is changed whenever
+	 * bundles written by the previous versions can't be imported.
+	 */
+	public String getBundleFormat();
+
+	/**
+	 * Writes all documents of the container into the bundle file
+	 *
+	 * @param containerPath
+	 *            Container path
+	 * @param bundle
+	 *            Bundle file
+	 * @return whether the bundle was written
+	 */
+	public boolean exportContainer(IPath containerPath, File bundle);
+
+	/**
+	 * Replaces documents of the container with the documents of the bundle
+	 *
+	 * @param containerPath
+	 *            Container path
+	 * @param bundle
+	 *            Bundle file
+	 * @param timestamps
+	 *            Modification time of the imported documents by their
+	 *            relative paths, as documents of the bundle were indexed from
+	 *            the files of another location
+	 * @return whether the bundle was imported
+	 */
+	public boolean importContainer(IPath containerPath, File bundle,
+			Map<String, Long> timestamps);
+}
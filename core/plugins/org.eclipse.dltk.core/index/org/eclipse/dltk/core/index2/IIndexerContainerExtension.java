@@ -0,0 +1,55 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Sage and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Sage - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.dltk.core.index2;
+
+import org.eclipse.core.runtime.IPath;
+
+/**
+ * Optional interface implemented by indexers that can build new contents of a
+ * container aside of the existing ones, and then replace the container at
+ * once. Searches keep using the old contents of the container until the
+ * rebuild is committed, and the old contents are removed from the index in
+ * background.
+ * <p>
+ * Documents of the container indexed between
+ * {@link #beginContainerRebuild(IPath)} and
+ * {@link #commitContainerRebuild(IPath)} by the same indexer instance are
+ * written to the new contents of the container.
+ * </p>
+ * 
+ * @since 2.0
+ */
+public interface IIndexerContainerExtension {
+
+	/**
+	 * Starts building new contents of the container
+	 * 
+	 * @param containerPath
+	 *            Container path
+	 */
+	public void beginContainerRebuild(IPath containerPath);
+
+	/**
+	 * Replaces the container with its new contents
+	 * 
+	 * @param containerPath
+	 *            Container path
+	 */
+	public void commitContainerRebuild(IPath containerPath);
+
+	/**
+	 * Discards new contents of the container, keeping the old ones
+	 * 
+	 * @param containerPath
+	 *            Container path
+	 */
+	public void abortContainerRebuild(IPath containerPath);
+}
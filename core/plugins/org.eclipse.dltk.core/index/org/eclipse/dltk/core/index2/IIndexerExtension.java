@@ -0,0 +1,50 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Sage and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Sage - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.dltk.core.index2;
+
+import java.util.Map;
+
+import org.eclipse.core.runtime.IPath;
+
+/**
+ * Optional interface implemented by indexers that store digests of indexed
+ * documents, so documents whose modification time has changed but contents
+ * remained the same don't need to be re-indexed.
+ *
+ * @see org.eclipse.dltk.core.ContentDigest
+ * @since 2.0
+ */
+public interface IIndexerExtension {
+
+	/**
+	 * Returns digests of existing container documents in index
+	 *
+	 * @param containerPath
+	 *            Container path
+	 * @return map where the key is a document path relative to the container
+	 *         path, value - digest of the document contents (or
+	 *         <code>null</code> if digest is unknown)
+	 */
+	public Map<String, String> getDocumentDigests(IPath containerPath);
+
+	/**
+	 * Updates last modification time of the indexed documents, whose contents
+	 * didn't change. All documents are updated at once.
+	 *
+	 * @param containerPath
+	 *            Container path
+	 * @param timestamps
+	 *            map where the key is a document path relative to the
+	 *            container path, value - new modification time
+	 */
+	public void updateDocumentTimestamps(IPath containerPath,
+			Map<String, Long> timestamps);
+}
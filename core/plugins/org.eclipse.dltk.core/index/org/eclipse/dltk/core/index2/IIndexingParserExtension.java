@@ -0,0 +1,38 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Sage and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Sage - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.dltk.core.index2;
+
+import org.eclipse.dltk.core.ISourceModule;
+
+/**
+ * Optional interface implemented by indexing parsers which could parse
+ * different source modules concurrently.
+ * <p>
+ * If the {@link org.eclipse.dltk.core.DLTKCore#INDEXER_PARALLELISM} option
+ * allows more than one thread, source modules of a container are parsed by
+ * worker threads only if the indexing parsers of all their languages answer
+ * <code>true</code>, otherwise they are parsed one after another. Each worker
+ * reports the elements to its own requestor, but the parser must not share
+ * state between the threads, like a language parser cached per nature.
+ * </p>
+ * 
+ * @since 2.0
+ */
+public interface IIndexingParserExtension extends IIndexingParser {
+
+	/**
+	 * Answers whether
+	 * {@link IIndexingParser#parseSourceModule(ISourceModule, IIndexingRequestor)}
+	 * could be called for different source modules concurrently.
+	 */
+	boolean isThreadSafe();
+
+}
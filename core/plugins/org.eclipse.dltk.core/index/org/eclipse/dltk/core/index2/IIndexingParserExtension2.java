@@ -0,0 +1,34 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Sage and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Sage - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.dltk.core.index2;
+
+import org.eclipse.dltk.core.ISourceModule;
+
+/**
+ * Optional interface implemented by indexing parsers which could parse
+ * contents of the source module read by the indexer. When changes are
+ * detected by digests of the contents (see
+ * {@link org.eclipse.dltk.core.DLTKCore#INDEXER_CHANGE_DETECTION}), the
+ * indexer reads the contents once for both the digest and the parser.
+ * 
+ * @since 2.0
+ */
+public interface IIndexingParserExtension2 extends IIndexingParser {
+
+	/**
+	 * Parses the given contents of the source module, like
+	 * {@link IIndexingParser#parseSourceModule(ISourceModule, IIndexingRequestor)}
+	 * does with the contents it reads itself.
+	 */
+	void parseSourceModule(ISourceModule module, char[] contents,
+			IIndexingRequestor requestor);
+
+}
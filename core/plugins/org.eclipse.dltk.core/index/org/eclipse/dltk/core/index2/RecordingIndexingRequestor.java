@@ -0,0 +1,73 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Sage and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Sage - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.dltk.core.index2;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Indexing requestor that keeps all reported elements in memory, so they can
+ * be passed later to another requestor. This allows parsing source modules
+ * and writing results into the index on different threads.
+ *
+ * @since 2.0
+ */
+public class RecordingIndexingRequestor implements IIndexingRequestor {
+
+	private final List<DeclarationInfo> declarations = new ArrayList<DeclarationInfo>();
+	private final List<ReferenceInfo> references = new ArrayList<ReferenceInfo>();
+	private String contentDigest;
+
+	public void addDeclaration(DeclarationInfo info) {
+		declarations.add(info);
+	}
+
+	public void addReference(ReferenceInfo info) {
+		references.add(info);
+	}
+
+	public List<DeclarationInfo> getDeclarations() {
+		return declarations;
+	}
+
+	public List<ReferenceInfo> getReferences() {
+		return references;
+	}
+
+	/**
+	 * Returns digest of the source module contents computed along with
+	 * parsing, or <code>null</code> if it wasn't computed
+	 * 
+	 * @see org.eclipse.dltk.core.ContentDigest
+	 */
+	public String getContentDigest() {
+		return contentDigest;
+	}
+
+	public void setContentDigest(String contentDigest) {
+		this.contentDigest = contentDigest;
+	}
+
+	/**
+	 * Reports all recorded elements to the given requestor
+	 *
+	 * @param requestor
+	 *            Indexing requestor
+	 */
+	public void replay(IIndexingRequestor requestor) {
+		for (DeclarationInfo info : declarations) {
+			requestor.addDeclaration(info);
+		}
+		for (ReferenceInfo info : references) {
+			requestor.addReference(info);
+		}
+	}
+}
@@ -0,0 +1,70 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Sage and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Sage - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.dltk.core.index2.search;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.dltk.core.IModelElement;
+import org.eclipse.dltk.core.search.IDLTKSearchScope;
+
+/**
+ * Optional interface implemented by search engines that stream results.
+ * Matches are reported to the requestor as soon as they're found, without
+ * collecting all results first, so the search can be terminated early: it
+ * stops once <code>limit</code> results are reported, or once the progress
+ * monitor is cancelled (requestor may cancel it from
+ * {@link ISearchRequestor#match}).
+ *
+ * @author michael
+ * @since 2.0
+ */
+public interface ISearchEngineExtension extends ISearchEngine {
+
+	/**
+	 * Search for model elements in index, streaming the results.
+	 *
+	 * @param elementType
+	 *            Element type ({@link IModelElement#TYPE},
+	 *            {@link IModelElement#METHOD},{@link IModelElement#FIELD},etc.)
+	 * @param qualifier
+	 *            Element qualifier (package name)
+	 * @param elementName
+	 *            Element name pattern
+	 * @param trueFlags
+	 *            Logical OR of flags that must exist in element flags bitset.
+	 *            Set to <code>0</code> to disable filtering by trueFlags.
+	 * @param falseFlags
+	 *            Logical OR of flags that must not exist in the element flags
+	 *            bitset. Set to <code>0</code> to disable filtering by
+	 *            falseFlags.
+	 * @param limit
+	 *            Limit number of results for declarations and references
+	 *            together (<code>0</code> - unlimited)
+	 * @param searchFor
+	 *            Whether to search for declarations, references or both
+	 * @param matchRule
+	 *            Element name match rule
+	 * @param orderByName
+	 *            Whether results should be reported in the order of element
+	 *            names (ignoring case). Declarations are reported before
+	 *            references.
+	 * @param scope
+	 *            Search scope
+	 * @param requestor
+	 *            Search requestor
+	 * @param monitor
+	 *            Progress monitor, which is checked before every result is
+	 *            reported (may be <code>null</code>)
+	 */
+	public void search(int elementType, String qualifier, String elementName,
+			int trueFlags, int falseFlags, int limit, SearchFor searchFor,
+			MatchRule matchRule, boolean orderByName, IDLTKSearchScope scope,
+			ISearchRequestor requestor, IProgressMonitor monitor);
+}
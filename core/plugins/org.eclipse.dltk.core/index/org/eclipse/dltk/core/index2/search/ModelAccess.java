@@ -16,6 +16,8 @@ import java.util.LinkedList;
 import java.util.List;
 
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.ProgressMonitorWrapper;
 import org.eclipse.dltk.core.DLTKLanguageManager;
 import org.eclipse.dltk.core.IDLTKLanguageToolkit;
 import org.eclipse.dltk.core.IField;
@@ -42,6 +44,17 @@ import org.eclipse.dltk.internal.core.index2.IndexerManager;
  */
 public class ModelAccess {
 
+	/**
+	 * Receives model elements as soon as they're found in index
+	 */
+	public interface IElementRequestor<T extends IModelElement> {
+
+		/**
+		 * @return <code>false</code> to stop the search
+		 */
+		boolean accept(T element);
+	}
+
 	/**
 	 * Finds field elements in index. Element qualifier (package name) will be
 	 * calculated from the field name.
@@ -269,6 +282,58 @@ public class ModelAccess {
 			int falseFlags, IDLTKSearchScope scope, final Collection<T> result,
 			IProgressMonitor monitor) {
 
+		return findElements(elementType, qualifier, name, matchRule,
+				trueFlags, falseFlags, 0, false, scope,
+				new IElementRequestor<T>() {
+					public boolean accept(T element) {
+						result.add(element);
+						return true;
+					}
+				}, monitor);
+	}
+
+	/**
+	 * Finds elements in index, and reports them to the requestor one by one,
+	 * so the caller may process the first results while the search goes on,
+	 * or stop the search once it has enough results.
+	 * 
+	 * @param elementType
+	 *            Element type ({@link IModelElement#TYPE},
+	 *            {@link IModelElement#METHOD}, {@link IModelElement#FIELD})
+	 * @param qualifier
+	 *            Element qualifier (package name)
+	 * @param name
+	 *            Element name
+	 * @param matchRule
+	 *            Match rule
+	 * @param trueFlags
+	 *            Logical OR of flags that must exist in element flags bitset.
+	 *            Set to <code>0</code> to disable filtering by trueFlags.
+	 * @param falseFlags
+	 *            Logical OR of flags that must not exist in the element flags
+	 *            bitset. Set to <code>0</code> to disable filtering by
+	 *            falseFlags.
+	 * @param limit
+	 *            Maximal number of elements to report (<code>0</code> -
+	 *            unlimited)
+	 * @param orderByName
+	 *            Whether to report elements in the order of their names. This
+	 *            is only supported by search engines implementing
+	 *            {@link ISearchEngineExtension}.
+	 * @param scope
+	 *            Search scope
+	 * @param requestor
+	 *            Requestor receiving the found elements
+	 * @param monitor
+	 *            Progress monitor
+	 * @return <code>false</code> in case error has occurred.
+	 */
+	public <T extends IModelElement> boolean findElements(int elementType,
+			String qualifier, String name, MatchRule matchRule, int trueFlags,
+			int falseFlags, final int limit, boolean orderByName,
+			IDLTKSearchScope scope, final IElementRequestor<T> requestor,
+			IProgressMonitor monitor) {
+
 		IDLTKLanguageToolkit toolkit = scope.getLanguageToolkit();
 		if (toolkit == null) {
 			return false;
@@ -282,30 +347,65 @@ public class ModelAccess {
 			return false;
 		}
 
-		searchEngine.search(elementType, qualifier, name, trueFlags,
-				falseFlags, 0, SearchFor.DECLARATIONS, matchRule, scope,
-				new ISearchRequestor() {
-
-					@SuppressWarnings("unchecked")
-					public void match(int elementType, int flags, int offset,
-							int length, int nameOffset, int nameLength,
-							String elementName, String metadata,
-							String qualifier, String parent,
-							ISourceModule sourceModule, boolean isReference) {
-
-						IModelElement element = elementResolver.resolve(
-								elementType, flags, offset, length, nameOffset,
-								nameLength, elementName, metadata, qualifier,
-								parent, sourceModule);
-						if (element != null) {
-							result.add((T) element);
-						}
+		final SearchMonitor searchMonitor = new SearchMonitor(monitor);
+		ISearchRequestor searchRequestor = new ISearchRequestor() {
+			private int count;
+
+			@SuppressWarnings("unchecked")
+			public void match(int elementType, int flags, int offset,
+					int length, int nameOffset, int nameLength,
+					String elementName, String metadata, String qualifier,
+					String parent, ISourceModule sourceModule,
+					boolean isReference) {
+
+				if (searchMonitor.isCanceled()) {
+					return;
+				}
+				IModelElement element = elementResolver.resolve(elementType,
+						flags, offset, length, nameOffset, nameLength,
+						elementName, metadata, qualifier, parent, sourceModule);
+				if (element != null) {
+					if (!requestor.accept((T) element)
+							|| (limit > 0 && ++count >= limit)) {
+						searchMonitor.stop();
 					}
-				}, monitor);
+				}
+			}
+		};
 
+		if (searchEngine instanceof ISearchEngineExtension) {
+			((ISearchEngineExtension) searchEngine).search(elementType,
+					qualifier, name, trueFlags, falseFlags, limit,
+					SearchFor.DECLARATIONS, matchRule, orderByName, scope,
+					searchRequestor, searchMonitor);
+		} else {
+			searchEngine.search(elementType, qualifier, name, trueFlags,
+					falseFlags, limit, SearchFor.DECLARATIONS, matchRule,
+					scope, searchRequestor, searchMonitor);
+		}
 		return true;
 	}
 
+	/**
+	 * Progress monitor, which is cancelled when the caller's monitor is
+	 * cancelled, or when the search requestor doesn't need more results
+	 */
+	private static class SearchMonitor extends ProgressMonitorWrapper {
+		private volatile boolean stopped;
+
+		SearchMonitor(IProgressMonitor monitor) {
+			super(monitor != null ? monitor : new NullProgressMonitor());
+		}
+
+		void stop() {
+			stopped = true;
+		}
+
+		public boolean isCanceled() {
+			return stopped || super.isCanceled();
+		}
+	}
+
 	/**
 	 * Converts old-style search flags to MatchRule.
 	 * 
@@ -12,6 +12,7 @@
 package org.eclipse.dltk.internal.core.index2;
 
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.Map;
 
 import org.eclipse.core.resources.IResource;
@@ -23,6 +24,7 @@ import org.eclipse.dltk.core.ISourceModule;
 import org.eclipse.dltk.core.environment.EnvironmentPathUtils;
 import org.eclipse.dltk.core.environment.IFileHandle;
 import org.eclipse.dltk.core.index2.IIndexer;
+import org.eclipse.dltk.core.index2.IIndexerExtension;
 import org.eclipse.dltk.core.index2.ProjectIndexer2;
 import org.eclipse.dltk.core.search.indexing.AbstractJob;
 import org.eclipse.dltk.internal.core.ExternalSourceModule;
@@ -127,6 +129,10 @@ public abstract class AbstractIndexRequest extends AbstractJob {
 
 		toRemove.addAll(documentNames.keySet());
 
+		boolean useDigest = indexer instanceof IIndexerExtension
+				&& IndexerManager.isDigestChangeDetection();
+		Map<ISourceModule, Long> modified = new HashMap<ISourceModule, Long>();
+
 		for (ISourceModule sourceModule : sourceModules) {
 			String relativePath = Util.relativePath(sourceModule.getPath(),
 					containerPath.segmentCount());
@@ -134,12 +140,59 @@ public abstract class AbstractIndexRequest extends AbstractJob {
 					false);
 
 			if (toRemove.remove(relativePath)) {
-				if (documentNames.get(relativePath) < handle.lastModified()) {
+				long lastModified = handle.lastModified();
+				long timestamp = documentNames.get(relativePath);
+				if (useDigest) {
+					if (timestamp != lastModified) {
+						modified.put(sourceModule, lastModified);
+					}
+				} else if (timestamp < lastModified) {
 					toReindex.add(sourceModule);
 				}
 			} else {
 				toReindex.add(sourceModule);
 			}
 		}
+
+		if (!modified.isEmpty()) {
+			analyzeContentChanges(containerPath, (IIndexerExtension) indexer,
+					modified, toReindex);
+		}
+	}
+
+	/**
+	 * Compares digests of source modules whose modification time has changed
+	 * with the digests stored in index. Source modules with the same contents
+	 * are not re-indexed, only their modification time is updated.
+	 */
+	private void analyzeContentChanges(IPath containerPath,
+			IIndexerExtension indexer, Map<ISourceModule, Long> modified,
+			Collection<ISourceModule> toReindex) {
+
+		Map<String, String> storedDigests = indexer
+				.getDocumentDigests(containerPath);
+		if (storedDigests == null) {
+			toReindex.addAll(modified.keySet());
+			return;
+		}
+
+		Map<ISourceModule, String> digests = IndexerManager
+				.computeDigests(modified.keySet());
+
+		Map<String, Long> unchanged = new HashMap<String, Long>();
+		for (Map.Entry<ISourceModule, Long> entry : modified.entrySet()) {
+			ISourceModule sourceModule = entry.getKey();
+			String relativePath = Util.relativePath(sourceModule.getPath(),
+					containerPath.segmentCount());
+			String digest = digests.get(sourceModule);
+			if (digest != null && digest.equals(storedDigests.get(relativePath))) {
+				unchanged.put(relativePath, entry.getValue());
+			} else {
+				toReindex.add(sourceModule);
+			}
+		}
+		if (!unchanged.isEmpty()) {
+			indexer.updateDocumentTimestamps(containerPath, unchanged);
+		}
 	}
 }
@@ -11,21 +11,33 @@
  *******************************************************************************/
 package org.eclipse.dltk.internal.core.index2;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
 import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.dltk.core.DLTKLanguageManager;
+import org.eclipse.dltk.core.IDLTKLanguageToolkit;
 import org.eclipse.dltk.core.IModelElement;
 import org.eclipse.dltk.core.IModelElementVisitor;
 import org.eclipse.dltk.core.IProjectFragment;
 import org.eclipse.dltk.core.ISourceModule;
 import org.eclipse.dltk.core.ModelException;
 import org.eclipse.dltk.core.environment.EnvironmentManager;
+import org.eclipse.dltk.core.environment.EnvironmentPathUtils;
 import org.eclipse.dltk.core.environment.IEnvironment;
+import org.eclipse.dltk.core.environment.IFileHandle;
+import org.eclipse.dltk.core.index2.IIndexer;
+import org.eclipse.dltk.core.index2.IIndexerBundleExtension;
 import org.eclipse.dltk.core.index2.ProjectIndexer2;
+import org.eclipse.dltk.core.search.indexing.IndexBundles;
 import org.eclipse.dltk.internal.core.BuiltinSourceModule;
 import org.eclipse.dltk.internal.core.ExternalSourceModule;
+import org.eclipse.dltk.internal.core.util.Util;
 
 /**
  * Request for indexing external project
@@ -49,8 +61,66 @@ public class ExternalProjectFragmentRequest extends AbstractIndexRequest {
 
 	protected void run() throws CoreException, IOException {
 		final Set<ISourceModule> sourceModules = getExternalSourceModules();
+		final IPath containerPath = fragment.getPath();
+		final String bundleKey = getBundleKey(containerPath, sourceModules);
+		if (bundleKey != null
+				&& importBundle(containerPath, bundleKey, sourceModules)) {
+			return;
+		}
 		projectIndexer.request(new SourceModulesRequest(projectIndexer,
-				fragment.getPath(), sourceModules, progressJob));
+				containerPath, sourceModules, progressJob, bundleKey));
+	}
+
+	/**
+	 * Returns the key of the bundle of the library, if the indexer supports
+	 * bundles and the library is indexed for the first time, or
+	 * <code>null</code> otherwise. Archives are not bundled, since their
+	 * documents are named by absolute paths.
+	 */
+	private String getBundleKey(IPath containerPath,
+			Set<ISourceModule> sourceModules) {
+		IIndexer indexer = IndexerManager.getIndexer();
+		if (!(indexer instanceof IIndexerBundleExtension)
+				|| sourceModules.isEmpty() || fragment.isArchive()
+				|| IndexBundles.getDirectory() == null) {
+			return null;
+		}
+		Map<String, Long> documents = indexer.getDocuments(containerPath);
+		if (documents != null && !documents.isEmpty()) {
+			return null;
+		}
+		IDLTKLanguageToolkit toolkit = DLTKLanguageManager
+				.getLanguageToolkit(fragment);
+		if (toolkit == null) {
+			return null;
+		}
+		return IndexerManager.computeContainerDigest(indexer.getClass()
+				.getName()
+				+ '/' + toolkit.getNatureId() + '/'
+				+ ((IIndexerBundleExtension) indexer).getBundleFormat(),
+				containerPath, sourceModules);
+	}
+
+	/**
+	 * Imports the existing bundle into the container, returns whether the
+	 * container doesn't need to be indexed.
+	 */
+	private boolean importBundle(IPath containerPath, String bundleKey,
+			Set<ISourceModule> sourceModules) {
+		File bundle = IndexBundles.find(bundleKey);
+		if (bundle == null) {
+			return false;
+		}
+		Map<String, Long> timestamps = new HashMap<String, Long>();
+		for (ISourceModule sourceModule : sourceModules) {
+			IFileHandle handle = EnvironmentPathUtils.getFile(sourceModule,
+					false);
+			timestamps.put(Util.relativePath(sourceModule.getPath(),
+					containerPath.segmentCount()), handle == null ? 0 : handle
+					.lastModified());
+		}
+		return ((IIndexerBundleExtension) IndexerManager.getIndexer())
+				.importContainer(containerPath, bundle, timestamps);
 	}
 
 	protected IEnvironment getEnvironment() {
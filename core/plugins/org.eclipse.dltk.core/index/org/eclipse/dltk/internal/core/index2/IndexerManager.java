@@ -11,16 +11,24 @@
  *******************************************************************************/
 package org.eclipse.dltk.internal.core.index2;
 
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
 
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IConfigurationElement;
+import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.Platform;
+import org.eclipse.dltk.core.ContentDigest;
 import org.eclipse.dltk.core.DLTKCore;
+import org.eclipse.dltk.core.ISourceModule;
 import org.eclipse.dltk.core.index2.AbstractIndexer;
 import org.eclipse.dltk.core.index2.IIndexer;
 import org.eclipse.dltk.core.index2.IIndexerParticipant;
+import org.eclipse.dltk.internal.core.util.WorkerPool;
 
 /**
  * Indexer instances manager
@@ -40,7 +48,11 @@ public class IndexerManager {
 	private static final String ID_ATTR = "id"; //$NON-NLS-1$
 	private static final String TARGET_ID_ATTR = "targetId"; //$NON-NLS-1$
 
-	private static IConfigurationElement indexer;
+	/** Name of the indexer worker threads */
+	static final String WORKER_THREAD = "DLTK Indexing Worker"; //$NON-NLS-1$
+
+	/** Indexers by their ID, in the order they were contributed */
+	private static Map<String, IConfigurationElement> indexers = new LinkedHashMap<String, IConfigurationElement>();
 	private static Map<String, Map<String, IConfigurationElement>> indexerParticipants = new HashMap<String, Map<String, IConfigurationElement>>();
 
 	static {
@@ -49,8 +61,10 @@ public class IndexerManager {
 		for (IConfigurationElement element : elements) {
 			String name = element.getName();
 			if (INDEXER_ATTR.equals(name)) {
-				indexer = element;
-				break;
+				String id = element.getAttribute(ID_ATTR);
+				if (!indexers.containsKey(id)) {
+					indexers.put(id, element);
+				}
 			}
 		}
 
@@ -70,8 +84,13 @@ public class IndexerManager {
 		}
 	}
 
+	/**
+	 * Returns the indexer selected by {@link DLTKCore#INDEXER_ID} option, or
+	 * the first contributed indexer if there's no such indexer
+	 */
 	public static IIndexer getIndexer() {
 		try {
+			IConfigurationElement indexer = getIndexerElement();
 			if (indexer != null) {
 				AbstractIndexer instance = (AbstractIndexer) indexer
 						.createExecutableExtension(CLASS_ATTR);
@@ -87,6 +106,22 @@ public class IndexerManager {
 		return null;
 	}
 
+	private static IConfigurationElement getIndexerElement() {
+		String id = DLTKCore.getOption(DLTKCore.INDEXER_ID);
+		if (id != null && id.length() > 0) {
+			IConfigurationElement element = indexers.get(id);
+			if (element != null) {
+				return element;
+			}
+		}
+		Iterator<IConfigurationElement> i = indexers.values().iterator();
+		return i.hasNext() ? i.next() : null;
+	}
+
+	/**
+	 * Returns the participant contributed for the given indexer and language
+	 * nature, or <code>null</code> if there's no such participant
+	 */
 	public static IIndexerParticipant getIndexerParticipant(IIndexer indexer,
 			String natureId) {
 
@@ -107,4 +142,63 @@ public class IndexerManager {
 		}
 		return null;
 	}
+
+	/**
+	 * Returns whether source modules should be re-indexed only when digest
+	 * of their contents changes
+	 * 
+	 * @see DLTKCore#INDEXER_CHANGE_DETECTION
+	 */
+	public static boolean isDigestChangeDetection() {
+		return DLTKCore.INDEXER_CHANGE_DETECTION_DIGEST.equals(DLTKCore
+				.getOption(DLTKCore.INDEXER_CHANGE_DETECTION));
+	}
+
+	/**
+	 * Computes digests of the source modules using the number of threads
+	 * specified by {@link DLTKCore#INDEXER_PARALLELISM}
+	 *
+	 * @see ContentDigest#compute(Collection, ExecutorService)
+	 */
+	public static Map<ISourceModule, String> computeDigests(
+			Collection<ISourceModule> sourceModules) {
+		ExecutorService executor = createDigestPool(sourceModules);
+		try {
+			return ContentDigest.compute(sourceModules, executor);
+		} finally {
+			if (executor != null) {
+				executor.shutdownNow();
+			}
+		}
+	}
+
+	/**
+	 * Computes digest of the container using the number of threads specified
+	 * by {@link DLTKCore#INDEXER_PARALLELISM}
+	 *
+	 * @see ContentDigest#computeContainer(String, IPath, Collection,
+	 *      ExecutorService)
+	 */
+	public static String computeContainerDigest(String format,
+			IPath containerPath, Collection<ISourceModule> sourceModules) {
+		ExecutorService executor = createDigestPool(sourceModules);
+		try {
+			return ContentDigest.computeContainer(format, containerPath,
+					sourceModules, executor);
+		} finally {
+			if (executor != null) {
+				executor.shutdownNow();
+			}
+		}
+	}
+
+	private static ExecutorService createDigestPool(
+			Collection<ISourceModule> sourceModules) {
+		int parallelism = WorkerPool
+				.getParallelism(DLTKCore.INDEXER_PARALLELISM);
+		if (parallelism <= 1 || sourceModules.size() <= 1) {
+			return null;
+		}
+		return WorkerPool.create(WORKER_THREAD, parallelism);
+	}
 }
@@ -11,6 +11,7 @@
  *******************************************************************************/
 package org.eclipse.dltk.internal.core.index2;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -18,12 +19,30 @@ import java.util.Comparator;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
 
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.dltk.core.DLTKCore;
+import org.eclipse.dltk.core.DLTKLanguageManager;
+import org.eclipse.dltk.core.IDLTKLanguageToolkit;
 import org.eclipse.dltk.core.ISourceModule;
+import org.eclipse.dltk.core.index2.AbstractIndexer;
 import org.eclipse.dltk.core.index2.IIndexer;
+import org.eclipse.dltk.core.index2.IIndexerBundleExtension;
+import org.eclipse.dltk.core.index2.IIndexerContainerExtension;
+import org.eclipse.dltk.core.index2.IIndexerParticipant;
+import org.eclipse.dltk.core.index2.IIndexingParser;
+import org.eclipse.dltk.core.index2.IIndexingParserExtension;
 import org.eclipse.dltk.core.index2.ProjectIndexer2;
+import org.eclipse.dltk.core.index2.RecordingIndexingRequestor;
+import org.eclipse.dltk.core.search.indexing.IndexBundles;
+import org.eclipse.dltk.internal.core.util.OrderedWorkQueue;
+import org.eclipse.dltk.internal.core.util.WorkerPool;
+import org.eclipse.osgi.util.NLS;
 
 /**
  * Request for re-indexing a set of source modules. First, source modules are
@@ -35,14 +54,33 @@ import org.eclipse.dltk.core.index2.ProjectIndexer2;
  */
 public class SourceModulesRequest extends AbstractIndexRequest {
 
+	/**
+	 * Minimal number of removed and changed documents, for which the whole
+	 * container is rebuilt
+	 */
+	private static final int REBUILD_THRESHOLD = 500;
+
 	private final IPath containerPath;
 	private final Set<ISourceModule> sourceModules;
+	private final String bundleKey;
 
 	public SourceModulesRequest(ProjectIndexer2 indexer, IPath containerPath,
 			Set<ISourceModule> sourceModules, ProgressJob progressJob) {
+		this(indexer, containerPath, sourceModules, progressJob, null);
+	}
+
+	/**
+	 * @param bundleKey
+	 *            Key of the bundle, which the indexed container is exported
+	 *            to, or <code>null</code>
+	 */
+	public SourceModulesRequest(ProjectIndexer2 indexer, IPath containerPath,
+			Set<ISourceModule> sourceModules, ProgressJob progressJob,
+			String bundleKey) {
 		super(indexer, progressJob);
 		this.containerPath = containerPath;
 		this.sourceModules = sourceModules;
+		this.bundleKey = bundleKey;
 	}
 
 	protected String getName() {
@@ -62,6 +100,18 @@ public class SourceModulesRequest extends AbstractIndexRequest {
 		analyzeSourceModuleChanges(containerPath, sourceModules, toRemove,
 				toReindex);
 
+		IIndexerContainerExtension rebuilder = null;
+		if (indexer instanceof IIndexerContainerExtension
+				&& isRebuildWorthwhile(toRemove, toReindex)) {
+			// Build new container contents aside of the old ones, so neither
+			// old documents are deleted one by one, nor searches see the
+			// container half-indexed:
+			rebuilder = (IIndexerContainerExtension) indexer;
+			rebuilder.beginContainerRebuild(containerPath);
+			toRemove.clear();
+			toReindex = new ArrayList<ISourceModule>(sourceModules);
+		}
+
 		for (final String path : toRemove) {
 			indexer.removeDocument(containerPath, path);
 		}
@@ -73,12 +123,171 @@ public class SourceModulesRequest extends AbstractIndexRequest {
 			}
 		});
 
+		boolean completed = false;
+		try {
+			if (toReindex.size() > 1 && indexer instanceof AbstractIndexer) {
+				AbstractIndexer abstractIndexer = (AbstractIndexer) indexer;
+				abstractIndexer.beginBulkIndexing();
+				try {
+					int parallelism = WorkerPool
+							.getParallelism(DLTKCore.INDEXER_PARALLELISM);
+					if (parallelism > 1
+							&& isThreadSafe(abstractIndexer, toReindex)) {
+						indexParallel(abstractIndexer, toReindex, parallelism);
+					} else {
+						indexSequential(abstractIndexer, toReindex);
+					}
+				} finally {
+					abstractIndexer.endBulkIndexing();
+				}
+			} else {
+				indexSequential(indexer, toReindex);
+			}
+			completed = !isCancelled;
+		} finally {
+			// the old contents are kept if indexing failed or was cancelled
+			if (rebuilder != null) {
+				if (completed) {
+					rebuilder.commitContainerRebuild(containerPath);
+				} else {
+					rebuilder.abortContainerRebuild(containerPath);
+				}
+			}
+		}
+
+		if (bundleKey != null && !isCancelled
+				&& indexer instanceof IIndexerBundleExtension) {
+			exportBundle((IIndexerBundleExtension) indexer);
+		}
+	}
+
+	/**
+	 * Publishes the indexed container as the bundle, unless another workspace
+	 * did it meanwhile.
+	 */
+	private void exportBundle(IIndexerBundleExtension indexer) {
+		if (IndexBundles.find(bundleKey) != null) {
+			return;
+		}
+		try {
+			File tempFile = IndexBundles.createTempFile(bundleKey);
+			try {
+				if (indexer.exportContainer(containerPath, tempFile)) {
+					IndexBundles.publish(tempFile, bundleKey);
+				}
+			} finally {
+				tempFile.delete(); // unless published
+			}
+		} catch (IOException e) {
+			DLTKCore.error(NLS.bind(
+					Messages.SourceModulesRequest_errorExporting,
+					containerPath), e);
+		}
+	}
+
+	/**
+	 * Returns whether the container should be rebuilt from scratch, rather
+	 * than updated document by document. This is the case when most of its
+	 * documents are removed or changed, for example when an interpreter
+	 * library is replaced with its different version. Containers indexed for
+	 * the first time are built aside as well, so they become visible to
+	 * searches only when complete.
+	 */
+	private boolean isRebuildWorthwhile(Set<String> toRemove,
+			List<ISourceModule> toReindex) {
+		int changed = toRemove.size() + toReindex.size();
+		return changed >= REBUILD_THRESHOLD
+				&& changed * 4 >= (sourceModules.size() + toRemove.size()) * 3;
+	}
+
+	private void indexSequential(IIndexer indexer,
+			List<ISourceModule> toReindex) {
 		for (final ISourceModule sourceModule : toReindex) {
+			if (isCancelled) {
+				return;
+			}
 			reportToProgress(sourceModule);
 			indexer.indexDocument(sourceModule);
 		}
 	}
 
+	/**
+	 * Answers whether the indexing parsers of all the languages of the source
+	 * modules could be called concurrently
+	 * 
+	 * @see IIndexingParserExtension
+	 */
+	private static boolean isThreadSafe(AbstractIndexer indexer,
+			List<ISourceModule> sourceModules) {
+		Set<String> natures = new HashSet<String>();
+		for (ISourceModule sourceModule : sourceModules) {
+			IDLTKLanguageToolkit toolkit = DLTKLanguageManager
+					.getLanguageToolkit(sourceModule);
+			if (toolkit == null || !natures.add(toolkit.getNatureId())) {
+				continue;
+			}
+			IIndexerParticipant participant = IndexerManager
+					.getIndexerParticipant(indexer, toolkit.getNatureId());
+			if (participant == null) {
+				continue;
+			}
+			IIndexingParser parser = participant.getIndexingParser();
+			if (parser != null
+					&& !(parser instanceof IIndexingParserExtension && ((IIndexingParserExtension) parser)
+							.isThreadSafe())) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Parses source modules on a bounded pool of worker threads, while
+	 * elements produced by the parsers are written into the index by the
+	 * current thread only, preserving the order of source modules. If parsing
+	 * of any source module fails, or the current thread is interrupted, the
+	 * whole request fails, so the container being rebuilt is not committed
+	 * without that source module.
+	 */
+	private void indexParallel(final AbstractIndexer indexer,
+			List<ISourceModule> toReindex, int parallelism)
+			throws CoreException {
+
+		final boolean computeDigest = IndexerManager.isDigestChangeDetection();
+		OrderedWorkQueue<ISourceModule, RecordingIndexingRequestor> queue = new OrderedWorkQueue<ISourceModule, RecordingIndexingRequestor>(
+				IndexerManager.WORKER_THREAD, parallelism, toReindex.iterator()) {
+			protected RecordingIndexingRequestor process(
+					ISourceModule sourceModule) {
+				return indexer.recordDocument(sourceModule, computeDigest);
+			}
+		};
+		try {
+			while (!isCancelled && queue.hasNext()) {
+				ISourceModule sourceModule = queue.next();
+				RecordingIndexingRequestor elements;
+				try {
+					elements = queue.get();
+				} catch (ExecutionException e) {
+					IStatus status = new Status(IStatus.ERROR,
+							DLTKCore.PLUGIN_ID, NLS.bind(
+									Messages.SourceModulesRequest_errorParsing,
+									sourceModule.getPath()), e.getCause());
+					DLTKCore.getDefault().getLog().log(status);
+					throw new CoreException(status);
+				}
+				reportToProgress(sourceModule);
+				indexer.indexDocument(sourceModule, elements);
+			}
+		} catch (InterruptedException e) {
+			// the container being rebuilt is not committed
+			Thread.currentThread().interrupt();
+			throw new OperationCanceledException();
+		} finally {
+			// the modules not written yet are not needed anymore
+			queue.shutdown();
+		}
+	}
+
 	public boolean belongsTo(String jobFamily) {
 		return jobFamily.equals(containerPath.toString());
 	}
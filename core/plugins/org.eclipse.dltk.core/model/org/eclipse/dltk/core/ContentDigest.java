@@ -0,0 +1,229 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Sage and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Sage - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.dltk.core;
+
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.osgi.util.NLS;
+
+/**
+ * Computes digests of source module contents, which are used for detecting
+ * changed source modules when {@link DLTKCore#INDEXER_CHANGE_DETECTION} is
+ * set to {@link DLTKCore#INDEXER_CHANGE_DETECTION_DIGEST} and as the keys of
+ * {@link org.eclipse.dltk.ast.parser.PersistentASTCache}. The digest is
+ * computed from the characters of the contents, the same ones the parsers
+ * read, so the parser and the digest could share the contents read once.
+ *
+ * @since 2.0
+ */
+public class ContentDigest {
+
+	private static final String ALGORITHM = "SHA-1"; //$NON-NLS-1$
+	private static final int BUFFER_SIZE = 8192;
+	private static final String UTF8 = "UTF-8"; //$NON-NLS-1$
+	private static final char[] HEX = "0123456789abcdef".toCharArray(); //$NON-NLS-1$
+
+	private ContentDigest() {
+	}
+
+	/**
+	 * Computes digest of the source module contents
+	 *
+	 * @param sourceModule
+	 *            Source module
+	 * @return hexadecimal digest string, or <code>null</code> if contents
+	 *         can't be read
+	 */
+	public static String compute(ISourceModule sourceModule) {
+		try {
+			return compute(sourceModule.getSourceAsCharArray());
+		} catch (ModelException e) {
+			if (DLTKCore.DEBUG) {
+				e.printStackTrace();
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * Computes digest of the source module contents, which were already read
+	 * by the caller
+	 *
+	 * @param contents
+	 *            Source module contents
+	 * @return hexadecimal digest string
+	 */
+	public static String compute(char[] contents) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance(ALGORITHM);
+			CharsetEncoder encoder = Charset.forName(UTF8).newEncoder()
+					.onMalformedInput(CodingErrorAction.REPLACE)
+					.onUnmappableCharacter(CodingErrorAction.REPLACE);
+			CharBuffer in = CharBuffer.wrap(contents);
+			ByteBuffer out = ByteBuffer.allocate(BUFFER_SIZE);
+			CoderResult result;
+			do {
+				result = encoder.encode(in, out, true);
+				update(digest, out);
+			} while (result.isOverflow());
+			do {
+				result = encoder.flush(out);
+				update(digest, out);
+			} while (result.isOverflow());
+			return toHex(digest.digest());
+		} catch (NoSuchAlgorithmException e) {
+			DLTKCore.error(e);
+			return null;
+		}
+	}
+
+	private static void update(MessageDigest digest, ByteBuffer buffer) {
+		digest.update(buffer.array(), 0, buffer.position());
+		buffer.clear();
+	}
+
+	/**
+	 * Computes digests of the given source modules
+	 *
+	 * @param sourceModules
+	 *            Source modules
+	 * @param executor
+	 *            Executor to compute digests with, or <code>null</code> to
+	 *            compute them by the current thread
+	 * @return map of source module to its digest, source modules whose
+	 *         contents can't be read are not included. If the current thread
+	 *         is interrupted, the digests not computed yet are not included
+	 *         either, and the interrupted status is kept.
+	 */
+	public static Map<ISourceModule, String> compute(
+			Collection<ISourceModule> sourceModules, ExecutorService executor) {
+
+		Map<ISourceModule, String> result = new HashMap<ISourceModule, String>();
+		if (executor == null || sourceModules.size() <= 1) {
+			for (ISourceModule sourceModule : sourceModules) {
+				String digest = compute(sourceModule);
+				if (digest != null) {
+					result.put(sourceModule, digest);
+				}
+			}
+			return result;
+		}
+
+		List<Future<String>> futures = new ArrayList<Future<String>>(
+				sourceModules.size());
+		try {
+			for (final ISourceModule sourceModule : sourceModules) {
+				futures.add(executor.submit(new Callable<String>() {
+					public String call() {
+						return compute(sourceModule);
+					}
+				}));
+			}
+			int i = 0;
+			for (ISourceModule sourceModule : sourceModules) {
+				try {
+					String digest = futures.get(i++).get();
+					if (digest != null) {
+						result.put(sourceModule, digest);
+					}
+				} catch (ExecutionException e) {
+					DLTKCore.error(NLS.bind(
+							"An exception is thrown while reading ''{0}''", //$NON-NLS-1$
+							sourceModule.getPath()), e.getCause());
+				}
+			}
+		} catch (InterruptedException e) {
+			// digests of the rest source modules are unknown
+			Thread.currentThread().interrupt();
+			for (Future<String> future : futures) {
+				future.cancel(true);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Computes digest identifying the index of the container built in the
+	 * given format. Source modules are identified by their paths relative to
+	 * the container and by their contents, so the digest doesn't depend on the
+	 * location of the container.
+	 *
+	 * @param format
+	 *            Identifier of the index format
+	 * @param containerPath
+	 *            Container path
+	 * @param sourceModules
+	 *            Source modules of the container
+	 * @param executor
+	 *            Executor to compute digests with, or <code>null</code> to
+	 *            compute them by the current thread
+	 * @return hexadecimal digest string, or <code>null</code> if contents of
+	 *         some source module can't be read
+	 */
+	public static String computeContainer(String format, IPath containerPath,
+			Collection<ISourceModule> sourceModules, ExecutorService executor) {
+
+		Map<ISourceModule, String> digests = compute(sourceModules, executor);
+		if (digests.size() != sourceModules.size()) {
+			return null;
+		}
+		String[] entries = new String[digests.size()];
+		int i = 0;
+		for (Map.Entry<ISourceModule, String> entry : digests.entrySet()) {
+			entries[i++] = entry.getKey().getPath().removeFirstSegments(
+					containerPath.segmentCount()).makeRelative().toString()
+					+ '\n' + entry.getValue();
+		}
+		Arrays.sort(entries);
+		try {
+			MessageDigest digest = MessageDigest.getInstance(ALGORITHM);
+			digest.update(format.getBytes(UTF8));
+			for (i = 0; i < entries.length; ++i) {
+				digest.update((byte) '\n');
+				digest.update(entries[i].getBytes(UTF8));
+			}
+			return toHex(digest.digest());
+		} catch (NoSuchAlgorithmException e) {
+			DLTKCore.error(e);
+		} catch (UnsupportedEncodingException e) {
+			DLTKCore.error(e);
+		}
+		return null;
+	}
+
+	private static String toHex(byte[] bytes) {
+		char[] chars = new char[bytes.length * 2];
+		for (int i = 0; i < bytes.length; ++i) {
+			chars[i * 2] = HEX[(bytes[i] >> 4) & 0xf];
+			chars[i * 2 + 1] = HEX[bytes[i] & 0xf];
+		}
+		return new String(chars);
+	}
+}
@@ -355,12 +355,159 @@ public class DLTKCore extends Plugin {
 	 */
 	public static final String BUILDER_ENABLED = PLUGIN_ID + ".builder"; //$NON-NLS-1$					
 
+	/**
+	 * Possible configurable option ID. Value is the number of threads used
+	 * for building source modules by the build participants which are thread
+	 * safe, see {@link org.eclipse.dltk.core.builder.IBuildParticipantExtension4}.
+	 * Values less than or equal to <code>1</code> mean that source modules
+	 * are built sequentially.
+	 * 
+	 * @since 2.0
+	 */
+	public static final String BUILDER_PARALLELISM = PLUGIN_ID
+			+ ".builder.parallelism"; //$NON-NLS-1$
+
 	/**
 	 * Possible configurable option ID. Value should be {@link #ENABLED} or
 	 * {@link #DISABLED}.
 	 */
 	public static final String INDEXER_ENABLED = PLUGIN_ID + ".indexer"; //$NON-NLS-1$					
 
+	/**
+	 * Possible configurable option ID. Value is the number of threads used
+	 * for parsing source modules while indexing. Values less than or equal to
+	 * <code>1</code> mean that source modules are parsed sequentially.
+	 * 
+	 * @since 2.0
+	 */
+	public static final String INDEXER_PARALLELISM = PLUGIN_ID
+			+ ".indexer.parallelism"; //$NON-NLS-1$
+
+	/**
+	 * Possible configurable option ID. Value should be
+	 * {@link #INDEXER_CHANGE_DETECTION_TIMESTAMP} or
+	 * {@link #INDEXER_CHANGE_DETECTION_DIGEST}.
+	 * 
+	 * @since 2.0
+	 */
+	public static final String INDEXER_CHANGE_DETECTION = PLUGIN_ID
+			+ ".indexer.changeDetection"; //$NON-NLS-1$
+
+	/**
+	 * Value of the {@link #INDEXER_CHANGE_DETECTION} option: source module is
+	 * re-indexed whenever its modification time changes.
+	 * 
+	 * @since 2.0
+	 */
+	public static final String INDEXER_CHANGE_DETECTION_TIMESTAMP = "timestamp"; //$NON-NLS-1$
+
+	/**
+	 * Value of the {@link #INDEXER_CHANGE_DETECTION} option: source module is
+	 * re-indexed only when digest of its contents changes.
+	 * 
+	 * @since 2.0
+	 */
+	public static final String INDEXER_CHANGE_DETECTION_DIGEST = "digest"; //$NON-NLS-1$
+
+	/**
+	 * Possible configurable option ID. Value is the ID of the indexer
+	 * contributed to the <code>org.eclipse.dltk.core.indexer</code> extension
+	 * point, which is used for indexing source modules. If there's no indexer
+	 * with this ID, the first contributed indexer is used.
+	 * 
+	 * @since 2.0
+	 */
+	public static final String INDEXER_ID = PLUGIN_ID + ".indexer.id"; //$NON-NLS-1$
+
+	/**
+	 * Possible configurable option ID. Value should be {@link #ENABLED} or
+	 * {@link #DISABLED}. When enabled, search index files are mapped into
+	 * memory once and queried by many search threads concurrently, otherwise
+	 * index files are read using streams and queries to the same index are
+	 * serialized. Disabled by default on Windows, where mapped index files
+	 * can't be replaced until they're garbage collected.
+	 * 
+	 * @since 2.0
+	 */
+	public static final String INDEX_MEMORY_MAPPING = PLUGIN_ID
+			+ ".index.memoryMapping"; //$NON-NLS-1$
+
+	/**
+	 * Possible configurable option ID. Value is the path of the local
+	 * directory shared by workspaces, where read-only index bundles of
+	 * libraries are stored. Bundles are named by the digest of the library
+	 * contents, so the library indexed once is attached to the containers of
+	 * any location without parsing it again. Empty value, which is the
+	 * default, disables bundles.
+	 * 
+	 * @since 2.0
+	 */
+	public static final String INDEX_BUNDLE_LOCATION = PLUGIN_ID
+			+ ".index.bundleLocation"; //$NON-NLS-1$
+
+	/**
+	 * Possible configurable option ID. Value is the maximum total size (in
+	 * megabytes) of the index bundles in {@link #INDEX_BUNDLE_LOCATION},
+	 * least recently used bundles are removed when it is exceeded. Value
+	 * <code>0</code> means no limit.
+	 * 
+	 * @since 2.0
+	 */
+	public static final String INDEX_BUNDLE_SIZE = PLUGIN_ID
+			+ ".index.bundleSize"; //$NON-NLS-1$
+
+	/**
+	 * Possible configurable option ID. Value is the number of threads used
+	 * for querying search indexes in parallel. Values less than or equal to
+	 * <code>1</code> mean that indexes are queried sequentially.
+	 * 
+	 * @since 2.0
+	 */
+	public static final String SEARCH_PARALLELISM = PLUGIN_ID
+			+ ".search.parallelism"; //$NON-NLS-1$
+
+	/**
+	 * Possible configurable option ID. Value is the number of threads
+	 * executing indexing jobs. If there are more than one then one of them is
+	 * reserved for short jobs like reconciling the edited source module, so
+	 * they don't wait for the indexing of the whole project or library.
+	 * <p>
+	 * Default is <code>1</code>. Jobs of different containers could run
+	 * concurrently when the value is greater, so it should only be increased
+	 * if the source element parsers of all the installed languages could be
+	 * used by several threads at once, as the indexer shares one parser
+	 * instance per language. With one thread the waiting short jobs are
+	 * still started first, and the projects are indexed before the libraries.
+	 * </p>
+	 * 
+	 * @since 2.0
+	 */
+	public static final String INDEXING_THREADS = PLUGIN_ID
+			+ ".indexing.threads"; //$NON-NLS-1$
+
+	/**
+	 * Possible configurable option ID. Value is the maximum size (in
+	 * megabytes) of the files of each
+	 * {@link org.eclipse.dltk.ast.parser.PersistentASTCache}, least recently
+	 * used ASTs are evicted when it is exceeded. Value <code>0</code>
+	 * disables these caches.
+	 * 
+	 * @since 2.0
+	 */
+	public static final String AST_CACHE_SIZE = PLUGIN_ID + ".astCache.size"; //$NON-NLS-1$
+
+	/**
+	 * Possible configurable option ID. Value is the estimated amount of memory
+	 * (in megabytes) used by the cached ASTs and other information of the
+	 * source modules, least frequently used modules are evicted when it is
+	 * exceeded. Value <code>0</code> sets it to the eighth of the maximum heap
+	 * size. The change takes effect after restart.
+	 * 
+	 * @since 2.0
+	 */
+	public static final String SOURCE_MODULE_CACHE_SIZE = PLUGIN_ID
+			+ ".sourceModuleCache.size"; //$NON-NLS-1$
+
 	/**
 	 * Possible project configurable option ID. Value is the identifier of
 	 * contributed {@link org.eclipse.dltk.ast.parser.ISourceParser}.
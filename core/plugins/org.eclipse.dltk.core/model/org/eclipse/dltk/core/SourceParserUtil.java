@@ -4,6 +4,7 @@ import org.eclipse.dltk.ast.declarations.ModuleDeclaration;
 import org.eclipse.dltk.ast.declarations.ModuleDeclarationWrapper;
 import org.eclipse.dltk.ast.parser.ASTCacheManager;
 import org.eclipse.dltk.ast.parser.IASTCache;
+import org.eclipse.dltk.ast.parser.IASTCacheExtension;
 import org.eclipse.dltk.ast.parser.IModuleDeclaration;
 import org.eclipse.dltk.ast.parser.ISourceParser;
 import org.eclipse.dltk.ast.parser.ISourceParserConstants;
@@ -47,6 +48,11 @@ public class SourceParserUtil {
 		final String astKey;
 		final ISourceModuleInfo mifo = ModelManager.getModelManager()
 				.getSourceModuleInfoCache().get(module);
+		IASTCache[] providers = null;
+		String[] cacheKeys = null;
+		// contents the persistence cache keys are computed from
+		char[] contents = null;
+		boolean keyed = false;
 		if (mifo != null && useASTCaching) {
 			errorKey = getKey(ERRORS, 0);
 			astKey = getKey(AST, 0);
@@ -62,11 +68,27 @@ public class SourceParserUtil {
 			}
 			if (moduleDeclaration == null && useASTPersistenceCaching) {
 				// Try to retrieve information from persistence cache.
-				IASTCache[] providers = ASTCacheManager.getProviders(toolkit
-						.getNatureId());
+				providers = ASTCacheManager.getProviders(toolkit.getNatureId());
 				if (providers != null) {
-					for (IASTCache provider : providers) {
-						ASTCacheEntry restored = provider.restoreModule(module);
+					cacheKeys = new String[providers.length];
+					for (int i = 0; i < providers.length; ++i) {
+						final IASTCache provider = providers[i];
+						final ASTCacheEntry restored;
+						if (provider instanceof IASTCacheExtension) {
+							final IASTCacheExtension extension = (IASTCacheExtension) provider;
+							if (contents == null) {
+								contents = getContents(module);
+							}
+							cacheKeys[i] = extension.getKey(module, contents);
+							if (cacheKeys[i] != null) {
+								keyed = true;
+								restored = extension.restoreModule(cacheKeys[i]);
+							} else {
+								restored = null;
+							}
+						} else {
+							restored = provider.restoreModule(module);
+						}
 						if (restored != null) {
 							if (reporter != null) {
 								if (restored.problems != null) {
@@ -104,7 +126,10 @@ public class SourceParserUtil {
 				final ProblemCollector collector = mifo != null ? new ProblemCollector()
 						: null;
 				final IModuleSource source;
-				if (module instanceof IModuleSource) {
+				if (keyed) {
+					// parse the contents the AST is stored for
+					source = createSource(module, contents);
+				} else if (module instanceof IModuleSource) {
 					source = (IModuleSource) module;
 				} else {
 					source = new IModuleSource() {
@@ -144,12 +169,20 @@ public class SourceParserUtil {
 					mifo.put(astKey, moduleDeclaration);
 					if (useASTPersistenceCaching) {
 						// Store to persistence cache
-						IASTCache[] providers = ASTCacheManager
-								.getProviders(toolkit.getNatureId());
 						if (providers != null) {
-							for (IASTCache provider : providers) {
-								provider.storeModule(module, moduleDeclaration,
-										collector);
+							for (int i = 0; i < providers.length; ++i) {
+								final IASTCache provider = providers[i];
+								if (provider instanceof IASTCacheExtension) {
+									if (cacheKeys[i] != null) {
+										((IASTCacheExtension) provider)
+												.storeModule(cacheKeys[i],
+														moduleDeclaration,
+														collector);
+									}
+								} else {
+									provider.storeModule(module,
+											moduleDeclaration, collector);
+								}
 							}
 						}
 					}
@@ -164,6 +197,40 @@ public class SourceParserUtil {
 		return moduleDeclaration;
 	}
 
+	/**
+	 * Returns the contents of the source module, or <code>null</code> if
+	 * they can't be read
+	 */
+	private static char[] getContents(ISourceModule module) {
+		try {
+			return module.getSourceAsCharArray();
+		} catch (ModelException e) {
+			return null;
+		}
+	}
+
+	private static IModuleSource createSource(final ISourceModule module,
+			final char[] contents) {
+		return new IModuleSource() {
+
+			public String getFileName() {
+				return module.getPath().toString();
+			}
+
+			public String getSourceContents() {
+				return new String(contents);
+			}
+
+			public IModelElement getModelElement() {
+				return module;
+			}
+
+			public char[] getContentsAsCharArray() {
+				return contents;
+			}
+		};
+	}
+
 	public static ModuleDeclaration getModuleDeclaration(ISourceModule module) {
 		return getModuleDeclaration(module, null,
 				ISourceParserConstants.DEFAULT);
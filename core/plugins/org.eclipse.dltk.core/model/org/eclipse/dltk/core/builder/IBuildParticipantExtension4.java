@@ -0,0 +1,37 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Sage and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Sage - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.dltk.core.builder;
+
+/**
+ * Optional interface implemented by build participants which could build
+ * different source modules concurrently.
+ * <p>
+ * If the {@link org.eclipse.dltk.core.DLTKCore#BUILDER_PARALLELISM} option
+ * allows more than one thread, source modules are passed to the leading
+ * participants answering <code>true</code> by worker threads, each module
+ * is still built by the participants in their order. The
+ * {@link IBuildContext} of the module is used by one thread at a time, so the
+ * AST parsed by the previous participant is shared as usual, but state kept
+ * by the participant itself must be thread safe.
+ * </p>
+ *
+ * @since 2.0
+ */
+public interface IBuildParticipantExtension4 extends IBuildParticipant {
+
+	/**
+	 * Answers whether {@link IBuildParticipant#build(IBuildContext)} and
+	 * {@link IBuildParticipantExtension2#buildExternalModule(IBuildContext)}
+	 * could be called for different modules concurrently.
+	 */
+	boolean isThreadSafe();
+
+}
@@ -11,6 +11,9 @@
  *******************************************************************************/
 package org.eclipse.dltk.core.builder;
 
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.eclipse.core.resources.IProject;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IConfigurationElement;
 import org.eclipse.core.runtime.IExecutableExtension;
@@ -35,7 +38,8 @@ public class ParserBuildParticipantFactory extends AbstractBuildParticipantType
 			final ISourceParser parser = DLTKLanguageManager.getSourceParser(
 					project.getProject(), natureId);
 			if (parser != null) {
-				return new ParserBuildParticipant(parser);
+				return new ParserBuildParticipant(project.getProject(),
+						natureId, parser);
 			}
 		}
 		return null;
@@ -48,12 +52,42 @@ public class ParserBuildParticipantFactory extends AbstractBuildParticipantType
 		natureId = config.getAttribute("nature"); //$NON-NLS-1$
 	}
 
-	private static class ParserBuildParticipant implements IBuildParticipant {
+	private static class ParserBuildParticipant implements IBuildParticipant,
+			IBuildParticipantExtension4 {
+
+		private final IProject project;
+		private final String natureId;
+
+		/**
+		 * The parser created by the factory, it is used by the first thread
+		 * building modules, which is not necessarily the thread that created
+		 * this participant
+		 */
+		private final AtomicReference<ISourceParser> firstParser;
 
-		private final ISourceParser parser;
+		/*
+		 * parsers are not required to be thread safe, so each thread building
+		 * modules concurrently uses its own parser
+		 */
+		private final ThreadLocal<ISourceParser> parsers = new ThreadLocal<ISourceParser>() {
+			protected ISourceParser initialValue() {
+				final ISourceParser parser = firstParser.getAndSet(null);
+				if (parser != null) {
+					return parser;
+				}
+				return DLTKLanguageManager.getSourceParser(project, natureId);
+			}
+		};
+
+		public ParserBuildParticipant(IProject project, String natureId,
+				ISourceParser parser) {
+			this.project = project;
+			this.natureId = natureId;
+			this.firstParser = new AtomicReference<ISourceParser>(parser);
+		}
 
-		public ParserBuildParticipant(ISourceParser parser) {
-			this.parser = parser;
+		public boolean isThreadSafe() {
+			return true;
 		}
 
 		public void build(IBuildContext context) throws CoreException {
@@ -78,7 +112,7 @@ public class ParserBuildParticipantFactory extends AbstractBuildParticipantType
 			// create problem collector
 			final ProblemCollector problemCollector = new ProblemCollector();
 			// parse
-			moduleDeclaration = parser.parse((IModuleSource) context
+			moduleDeclaration = parsers.get().parse((IModuleSource) context
 					.getSourceModule(), problemCollector);
 			// put result to the cache
 			SourceParserUtil.putModuleToCache(cacheEntry, moduleDeclaration,
@@ -11,7 +11,7 @@ import org.eclipse.dltk.core.DLTKCore;
 import org.eclipse.dltk.core.environment.IFileHandle;
 
 public abstract class AbstractContentCache implements IContentCache {
-	public synchronized String getCacheEntryAttributeString(IFileHandle handle,
+	public String getCacheEntryAttributeString(IFileHandle handle,
 			String attribute) {
 		return getCacheEntryAttributeString(handle, attribute, false);
 	}
@@ -19,7 +19,7 @@ public abstract class AbstractContentCache implements IContentCache {
 	/**
 	 * @since 2.0
 	 */
-	public synchronized String getCacheEntryAttributeString(IFileHandle handle,
+	public String getCacheEntryAttributeString(IFileHandle handle,
 			String attribute, boolean localonly) {
 		InputStream stream = getCacheEntryAttribute(handle, attribute,
 				localonly);
@@ -70,7 +70,7 @@ public abstract class AbstractContentCache implements IContentCache {
 		return false;
 	}
 
-	public synchronized long getCacheEntryAttributeLong(IFileHandle handle,
+	public long getCacheEntryAttributeLong(IFileHandle handle,
 			String attribute) {
 		return getCacheEntryAttributeLong(handle, attribute, false);
 	}
@@ -78,7 +78,7 @@ public abstract class AbstractContentCache implements IContentCache {
 	/**
 	 * @since 2.0
 	 */
-	public synchronized long getCacheEntryAttributeLong(IFileHandle handle,
+	public long getCacheEntryAttributeLong(IFileHandle handle,
 			String attribute, boolean localonly) {
 		InputStream stream = getCacheEntryAttribute(handle, attribute,
 				localonly);
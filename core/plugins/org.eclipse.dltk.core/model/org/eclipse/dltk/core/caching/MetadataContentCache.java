@@ -11,8 +11,11 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
 import java.util.zip.CRC32;
@@ -27,6 +30,7 @@ import org.eclipse.dltk.core.caching.cache.CacheEntryAttribute;
 import org.eclipse.dltk.core.caching.cache.CacheFactory;
 import org.eclipse.dltk.core.caching.cache.CacheIndex;
 import org.eclipse.dltk.core.environment.EnvironmentManager;
+import org.eclipse.dltk.core.environment.FileHandles;
 import org.eclipse.dltk.core.environment.IEnvironment;
 import org.eclipse.dltk.core.environment.IFileHandle;
 import org.eclipse.emf.common.util.EList;
@@ -36,11 +40,32 @@ import org.eclipse.emf.ecore.xmi.impl.XMIResourceImpl;
 
 /**
  * This class is designed to store any kind of information into metadata cache.
+ * <p>
+ * The index of the cache is kept in a binary journal for each environment
+ * (see {@link MetadataIndexJournal}), which is loaded when the environment is
+ * accessed first time. The index written by the previous versions as a
+ * single XMI file is converted to the journals when the cache is initialized.
+ * </p>
+ * <p>
+ * Entries are validated against the timestamps of all the files of their
+ * folder, which are fetched by one request and reused for
+ * {@link #FOLDER_STAMP_DELTA}, so validating the entries of a library folder
+ * doesn't access the (possibly remote) file system for each of them. The
+ * timestamps are fetched without holding the lock of the cache. Files
+ * missing from them, because they were created later or the file system
+ * can't fetch them, are checked by themselves once until they expire. A file
+ * modified after its timestamp was fetched is detected only when it expires,
+ * so until then the attributes of its previous contents are returned;
+ * {@link #updateFolderTimestamps(IFileHandle)} refreshes them immediately.
+ * </p>
  */
 public class MetadataContentCache extends AbstractContentCache {
-	private static final int DAY_IN_MILIS = 60;// 1000 * 60 * 60 * 24;
 	private static final int SAVE_DELTA = 1000 * 60; // Minute
-	private Resource indexResource = null;
+	/** Maximum time a modified file could stay undetected */
+	private static final int FOLDER_STAMP_DELTA = 1000 * 10; // 10 seconds
+	private static final int MAX_FOLDER_STAMPS = 256;
+	private static final String JOURNAL_FILE = "index.journal"; //$NON-NLS-1$
+	private boolean initialized = false;
 	private long newSaveTime = 0;
 
 	private static class EntryKey {
@@ -85,7 +110,36 @@ public class MetadataContentCache extends AbstractContentCache {
 		}
 	}
 
+	/**
+	 * Timestamps of the files of the folder, fetched by one request
+	 */
+	private static class FolderStamp {
+		final long time;
+		final Map<String, Long> timestamps;
+		// files missing from the timestamps -> checked timestamp
+		final Map<String, Long> checked = new HashMap<String, Long>();
+
+		public FolderStamp(long time, Map<String, Long> timestamps) {
+			this.time = time;
+			this.timestamps = timestamps;
+		}
+	}
+
+	// folder -> timestamps of its files, least recently used first
+	private Map<EntryKey, FolderStamp> folderStamps = new LinkedHashMap<EntryKey, FolderStamp>(
+			16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(
+				Map.Entry<EntryKey, FolderStamp> eldest) {
+			return size() > MAX_FOLDER_STAMPS;
+		}
+	};
+
 	private Map<EntryKey, CacheEntry> entryCache = new HashMap<EntryKey, CacheEntry>();
+	// environment -> journal of its index
+	private Map<String, MetadataIndexJournal> journals = new HashMap<String, MetadataIndexJournal>();
 	private IPath cacheLocation;
 	private CRC32 checksum = new CRC32();
 
@@ -94,72 +148,195 @@ public class MetadataContentCache extends AbstractContentCache {
 	}
 
 	private synchronized void initialize() {
-		if (indexResource == null) {
+		if (!initialized) {
+			initialized = true;
 			File file = new File(cacheLocation.toOSString());
 			if (!file.exists()) {
 				file.mkdir();
 			}
+			migrateIndex();
+		}
+	}
 
-			IPath indexFile = cacheLocation.append("index");
-			indexResource = new XMIResourceImpl();
-			indexFileHandle = new File(indexFile.toOSString());
-			if (indexFileHandle.exists()) {
-				try {
-					BufferedInputStream loadStream = new BufferedInputStream(
-							new FileInputStream(indexFileHandle), 4096);
-					indexResource.load(loadStream, null);
-					loadStream.close();
-				} catch (Exception e) {
-					save(false);
-					if (DLTKCore.DEBUG) {
-						// e.printStackTrace();
-					}
-				}
+	/**
+	 * Converts the XMI index written by the previous versions into the
+	 * journals
+	 */
+	private void migrateIndex() {
+		File indexFile = new File(cacheLocation.append("index").toOSString()); //$NON-NLS-1$
+		if (!indexFile.exists()) {
+			return;
+		}
+		Resource indexResource = new XMIResourceImpl();
+		try {
+			BufferedInputStream loadStream = new BufferedInputStream(
+					new FileInputStream(indexFile), 4096);
+			try {
+				indexResource.load(loadStream, null);
+			} finally {
+				loadStream.close();
 			}
 			EList<EObject> contents = indexResource.getContents();
 			for (EObject eObject : contents) {
 				CacheIndex index = (CacheIndex) eObject;
+				MetadataIndexJournal journal = createJournal(index
+						.getEnvironment());
+				journal.setIndex(index);
+				journals.put(index.getEnvironment(), journal);
 				// String to entry cache.
 				EList<CacheEntry> entries = index.getEntries();
 				for (CacheEntry cacheEntry : entries) {
+					cacheEntry.setLastAccessTime(0);
 					entryCache.put(makeKey(cacheEntry), cacheEntry);
 				}
 			}
+			save(false);
+		} catch (Exception e) {
+			if (DLTKCore.DEBUG) {
+				e.printStackTrace();
+			}
 		}
+		indexFile.delete();
 	}
 
-	private synchronized CacheEntry getEntry(IFileHandle handle) {
+	/**
+	 * Returns the journal of the environment, its index is loaded if needed
+	 */
+	private MetadataIndexJournal getJournal(String environmentId) {
+		MetadataIndexJournal journal = journals.get(environmentId);
+		if (journal == null) {
+			journal = createJournal(environmentId);
+			journals.put(environmentId, journal);
+			EList<CacheEntry> entries = journal.getIndex().getEntries();
+			for (CacheEntry cacheEntry : entries) {
+				entryCache.put(makeKey(cacheEntry), cacheEntry);
+			}
+		}
+		return journal;
+	}
+
+	private MetadataIndexJournal createJournal(String environmentId) {
+		File journalFile = new File(getEnvironmentFolder(environmentId)
+				.append(JOURNAL_FILE).toOSString());
+		return new MetadataIndexJournal(journalFile, environmentId);
+	}
+
+	/**
+	 * Loads the journals of all the environments
+	 */
+	private void loadJournals() {
+		File[] folders = new File(cacheLocation.toOSString()).listFiles();
+		if (folders == null) {
+			return;
+		}
+		for (int i = 0; i < folders.length; ++i) {
+			File journalFile = new File(folders[i], JOURNAL_FILE);
+			if (journalFile.isFile()) {
+				String environmentId = MetadataIndexJournal
+						.readEnvironment(journalFile);
+				if (environmentId != null) {
+					getJournal(environmentId);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the timestamp of the file to validate its entry against, which
+	 * is fetched before the lock is taken as it could access the remote file
+	 * system
+	 */
+	private long getTimestamp(IFileHandle handle) {
+		return getTimestamp(handle, System.currentTimeMillis());
+	}
+
+	/**
+	 * Returns the entry of the file, validated against the timestamp. Called
+	 * with the lock held, the entry could be removed or replaced once it is
+	 * released, so the entry is not used after that.
+	 */
+	private CacheEntry getEntry(IFileHandle handle, long timestamp) {
 		initialize();
+		MetadataIndexJournal journal = getJournal(handle.getEnvironmentId());
 		EntryKey key = makeKey(handle);
-		if (entryCache.containsKey(key)) {
-			CacheEntry entry = entryCache.get(key);
-			long accessTime = entry.getLastAccessTime();
-			long timeMillis = System.currentTimeMillis();
-			if (timeMillis - accessTime > DAY_IN_MILIS) {
-				long entryTimestamp = entry.getTimestamp() / 1000;
-				long handleTimestamp = getHandleLastModification(handle) / 1000;
-				if (entryTimestamp == handleTimestamp) {
-					entry.setLastAccessTime(timeMillis);
-					return entry;
-				} else {
-					entry.setLastAccessTime(timeMillis);
-					removeCacheEntry(entry, key);
-				}
-			} else {
-				entry.setLastAccessTime(timeMillis);
-				return entry;
+		long timeMillis = System.currentTimeMillis();
+		CacheEntry cached = entryCache.get(key);
+		if (cached != null) {
+			cached.setLastAccessTime(timeMillis);
+			if (cached.getTimestamp() / 1000 == timestamp / 1000) {
+				return cached;
 			}
+			removeCacheEntry(cached, key);
 		}
-		CacheIndex index = getCacheIndex(handle.getEnvironmentId());
+		CacheIndex index = journal.getIndex();
 		CacheEntry entry = CacheFactory.eINSTANCE.createCacheEntry();
 		entry.setPath(handle.getPath().toPortableString());
-		entry.setTimestamp(getHandleLastModification(handle));
+		entry.setTimestamp(timestamp);
 		index.getEntries().add(entry);
-		entry.setLastAccessTime(System.currentTimeMillis());
+		journal.entryAdded(entry);
+		entry.setLastAccessTime(timeMillis);
 		entryCache.put(key, entry);
 		return entry;
 	}
 
+	/**
+	 * Returns the timestamp of the file, from the timestamps of its folder.
+	 * Files missing from them are checked by themselves, and the result is
+	 * kept with the timestamps of the folder until they expire.
+	 */
+	private long getTimestamp(IFileHandle handle, long timeMillis) {
+		IFileHandle parent = handle.getParent();
+		if (parent == null) {
+			return getHandleLastModification(handle);
+		}
+		FolderStamp stamp = getFolderStamp(parent, timeMillis, false);
+		String name = handle.getName();
+		Long timestamp = stamp.timestamps.get(name);
+		if (timestamp == null) {
+			synchronized (this) {
+				timestamp = stamp.checked.get(name);
+			}
+			if (timestamp == null) {
+				// not supported or created after the timestamps were fetched
+				timestamp = Long.valueOf(getHandleLastModification(handle));
+				synchronized (this) {
+					stamp.checked.put(name, timestamp);
+				}
+			}
+		}
+		return timestamp.longValue();
+	}
+
+	/**
+	 * Returns the timestamps of the files of the folder, which are fetched if
+	 * they are older than {@link #FOLDER_STAMP_DELTA} or refresh is requested.
+	 * They are empty if they could not be fetched in one request or the folder
+	 * is empty. The timestamps are fetched without holding the lock, so they
+	 * could be fetched by several threads at the same time.
+	 */
+	private FolderStamp getFolderStamp(IFileHandle folder, long timeMillis,
+			boolean refresh) {
+		EntryKey key = makeKey(folder);
+		FolderStamp stamp;
+		synchronized (this) {
+			stamp = folderStamps.get(key);
+		}
+		if (refresh || stamp == null
+				|| timeMillis - stamp.time > FOLDER_STAMP_DELTA) {
+			Map<String, Long> timestamps = FileHandles
+					.getChildTimestamps(folder);
+			if (timestamps == null) {
+				// not retried until expired, files are checked one by one
+				timestamps = Collections.emptyMap();
+			}
+			stamp = new FolderStamp(timeMillis, timestamps);
+			synchronized (this) {
+				folderStamps.put(key, stamp);
+			}
+		}
+		return stamp;
+	}
+
 	private long getHandleLastModification(IFileHandle handle) {
 		final IEnvironment environment = handle.getEnvironment();
 		if (environment != null && environment.isLocal()) {
@@ -179,21 +356,6 @@ public class MetadataContentCache extends AbstractContentCache {
 		return handle.lastModified();
 	}
 
-	private CacheIndex getCacheIndex(String environmentId) {
-		EList<EObject> contents = indexResource.getContents();
-		for (EObject eObject : contents) {
-			CacheIndex index = (CacheIndex) eObject;
-			if (index.getEnvironment().equals(environmentId)) {
-				return index;
-			}
-		}
-		CacheIndex index = CacheFactory.eINSTANCE.createCacheIndex();
-		index.setEnvironment(environmentId);
-		index.setLastIndex(0);
-		contents.add(index);
-		return index;
-	}
-
 	private void removeCacheEntry(CacheEntry entry, EntryKey key) {
 		if (entry == null || key == null) {
 			return;
@@ -206,6 +368,7 @@ public class MetadataContentCache extends AbstractContentCache {
 		attributes.clear();
 		CacheIndex index = (CacheIndex) entry.eContainer();
 		index.getEntries().remove(entry);
+		getJournal(index.getEnvironment()).entryRemoved(entry);
 		entryCache.remove(key);
 	}
 
@@ -229,10 +392,9 @@ public class MetadataContentCache extends AbstractContentCache {
 	}
 
 	long changeCount = 0;
-	private File indexFileHandle;
 
 	public synchronized void save(boolean countSaves) {
-		if (indexResource == null) {
+		if (!initialized) {
 			return;
 		}
 		if (countSaves) {
@@ -243,16 +405,14 @@ public class MetadataContentCache extends AbstractContentCache {
 				return;
 			}
 		}
-		try {
-			Map<String, Object> options = new HashMap<String, Object>();
-			options.put(Resource.OPTION_SAVE_ONLY_IF_CHANGED, Boolean.TRUE);
-			BufferedOutputStream outStream = new BufferedOutputStream(
-					new FileOutputStream(indexFileHandle), 4096);
-			indexResource.save(outStream, options);
-			outStream.close();
-		} catch (IOException e) {
-			if (DLTKCore.DEBUG) {
-				e.printStackTrace();
+		for (Iterator<MetadataIndexJournal> i = journals.values().iterator(); i
+				.hasNext();) {
+			try {
+				i.next().flush();
+			} catch (IOException e) {
+				if (DLTKCore.DEBUG) {
+					e.printStackTrace();
+				}
 			}
 		}
 	}
@@ -263,9 +423,9 @@ public class MetadataContentCache extends AbstractContentCache {
 			return null;
 		}
 		File file = null;
-		CacheEntry entry = null;
+		long timestamp = getTimestamp(handle);
 		synchronized (this) {
-			entry = getEntry(handle);
+			CacheEntry entry = getEntry(handle, timestamp);
 			EList<CacheEntryAttribute> attributes = entry.getAttributes();
 			for (CacheEntryAttribute cacheEntryAttribute : attributes) {
 				if (cacheEntryAttribute.getName().equals(attribute)) {
@@ -300,7 +460,7 @@ public class MetadataContentCache extends AbstractContentCache {
 		return null;
 	}
 
-	public synchronized OutputStream getCacheEntryAttributeOutputStream(
+	public OutputStream getCacheEntryAttributeOutputStream(
 			IFileHandle handle, String attribute) {
 		File file = getEntryAsFile(handle, attribute);
 		try {
@@ -317,34 +477,36 @@ public class MetadataContentCache extends AbstractContentCache {
 		if (handle == null) {
 			return null;
 		}
-		CacheEntry entry = getEntry(handle);
-		File file = null;
-		EList<CacheEntryAttribute> attributes = entry.getAttributes();
-		for (CacheEntryAttribute cacheEntryAttribute : attributes) {
-			if (cacheEntryAttribute.getName().equals(attribute)) {
-				file = new File(cacheLocation.append(
-						cacheEntryAttribute.getLocation()).toOSString());
-				return file;
+		long timestamp = getTimestamp(handle);
+		synchronized (this) {
+			CacheEntry entry = getEntry(handle, timestamp);
+			File file = null;
+			EList<CacheEntryAttribute> attributes = entry.getAttributes();
+			for (CacheEntryAttribute cacheEntryAttribute : attributes) {
+				if (cacheEntryAttribute.getName().equals(attribute)) {
+					file = new File(cacheLocation.append(
+							cacheEntryAttribute.getLocation()).toOSString());
+					return file;
+				}
 			}
-		}
 
-		IPath location = generateNewLocation(handle.getPath(), handle
-				.getEnvironmentId());
-		CacheEntryAttribute attrEntry = CacheFactory.eINSTANCE
-				.createCacheEntryAttribute();
-		attrEntry.setLocation(location.toPortableString());
-		attrEntry.setName(attribute);
-		entry.getAttributes().add(attrEntry);
-		save(true);
-		file = new File(cacheLocation.append(location).toOSString());
-		return file;
+			IPath location = generateNewLocation(handle.getPath(), handle
+					.getEnvironmentId());
+			CacheEntryAttribute attrEntry = CacheFactory.eINSTANCE
+					.createCacheEntryAttribute();
+			attrEntry.setLocation(location.toPortableString());
+			attrEntry.setName(attribute);
+			entry.getAttributes().add(attrEntry);
+			getJournal(handle.getEnvironmentId()).attributeAdded(entry,
+					attrEntry);
+			save(true);
+			file = new File(cacheLocation.append(location).toOSString());
+			return file;
+		}
 	}
 
 	private IPath generateNewLocation(IPath path, String environment) {
-		checksum.reset();
-		checksum.update(environment.getBytes());
-		IPath indexPath = cacheLocation.append(Long.toString(checksum
-				.getValue()));
+		IPath indexPath = getEnvironmentFolder(environment);
 		File indexFolderFile = new File(indexPath.toOSString());
 		if (!indexFolderFile.exists()) {
 			indexFolderFile.mkdir();
@@ -357,7 +519,8 @@ public class MetadataContentCache extends AbstractContentCache {
 		if (!folderFile.exists()) {
 			folderFile.mkdir();
 		}
-		CacheIndex index = getCacheIndex(environment);
+		MetadataIndexJournal journal = getJournal(environment);
+		CacheIndex index = journal.getIndex();
 		IPath location = null;
 		long i = index.getLastIndex() + 1;
 		while (true) {
@@ -365,25 +528,37 @@ public class MetadataContentCache extends AbstractContentCache {
 			File file = new File(location.toOSString());
 			if (!file.exists()) {
 				index.setLastIndex(i);
+				journal.lastIndexChanged(i);
 				return location.removeFirstSegments(
 						cacheLocation.segmentCount()).setDevice(null);
 			}
 		}
 	}
 
-	public synchronized void removeCacheEntryAttributes(IFileHandle handle,
+	private IPath getEnvironmentFolder(String environment) {
+		checksum.reset();
+		checksum.update(environment.getBytes());
+		return cacheLocation.append(Long.toString(checksum.getValue()));
+	}
+
+	public void removeCacheEntryAttributes(IFileHandle handle,
 			String attribute) {
 		if (handle == null) {
 			return;
 		}
-		CacheEntry entry = getEntry(handle);
-		EList<CacheEntryAttribute> attributes = entry.getAttributes();
-		for (CacheEntryAttribute cacheEntryAttribute : attributes) {
-			if (cacheEntryAttribute.getName().equals(attribute)) {
-				removeAttribute(cacheEntryAttribute);
-				attributes.remove(cacheEntryAttribute);
-				save(true);
-				return;
+		long timestamp = getTimestamp(handle);
+		synchronized (this) {
+			CacheEntry entry = getEntry(handle, timestamp);
+			EList<CacheEntryAttribute> attributes = entry.getAttributes();
+			for (CacheEntryAttribute cacheEntryAttribute : attributes) {
+				if (cacheEntryAttribute.getName().equals(attribute)) {
+					removeAttribute(cacheEntryAttribute);
+					attributes.remove(cacheEntryAttribute);
+					getJournal(handle.getEnvironmentId()).attributeRemoved(
+							entry, cacheEntryAttribute);
+					save(true);
+					return;
+				}
 			}
 		}
 	}
@@ -392,6 +567,8 @@ public class MetadataContentCache extends AbstractContentCache {
 		if (handle == null) {
 			return;
 		}
+		initialize();
+		getJournal(handle.getEnvironmentId());
 		EntryKey key = makeKey(handle);
 		if (entryCache.containsKey(key)) {
 			CacheEntry entry = entryCache.get(key);
@@ -402,6 +579,7 @@ public class MetadataContentCache extends AbstractContentCache {
 
 	public synchronized void clear() {
 		initialize();
+		loadJournals();
 		Set<EntryKey> keySet = new HashSet<EntryKey>(entryCache.keySet());
 		for (EntryKey k : keySet) {
 			removeCacheEntry(entryCache.get(k), k);
@@ -421,12 +599,21 @@ public class MetadataContentCache extends AbstractContentCache {
 	 * @since 2.0
 	 */
 	public void updateFolderTimestamps(IFileHandle parent) {
+		initialize();
+		// entries are validated against these timestamps when accessed
+		long timeMillis = System.currentTimeMillis();
+		if (!getFolderStamp(parent, timeMillis, true).timestamps.isEmpty()) {
+			return;
+		}
 		IFileHandle[] children = parent.getChildren();
 		if (children == null) {
 			return;
 		}
 		for (IFileHandle child : children) {
-			getEntry(child);
+			long timestamp = getTimestamp(child, timeMillis);
+			synchronized (this) {
+				getEntry(child, timestamp);
+			}
 		}
 
 	}
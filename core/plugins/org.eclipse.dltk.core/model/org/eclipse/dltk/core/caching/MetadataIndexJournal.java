@@ -0,0 +1,373 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Sage and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Sage - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.dltk.core.caching;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.eclipse.dltk.core.DLTKCore;
+import org.eclipse.dltk.core.caching.cache.CacheEntry;
+import org.eclipse.dltk.core.caching.cache.CacheEntryAttribute;
+import org.eclipse.dltk.core.caching.cache.CacheFactory;
+import org.eclipse.dltk.core.caching.cache.CacheIndex;
+
+/**
+ * Binary journal of the {@link CacheIndex} of one environment. Changes are
+ * collected in memory and appended to the end of the file when
+ * {@link #flush()} is called, so saving the index takes the time proportional
+ * to the number of changes instead of the number of entries. When the journal
+ * gets twice as big as the index, it is replaced by the snapshot of the
+ * index.
+ * <p>
+ * File layout: signature (UTF), environment (UTF), records. Each record is
+ * the operation byte followed by its arguments. The last record could be
+ * written partially, then it is ignored and truncated.
+ * </p>
+ * <p>
+ * The snapshot replaces the journal only after it is completely written, so
+ * the journal is never lost if the compaction fails.
+ * </p>
+ */
+class MetadataIndexJournal {
+
+	private static final String SIGNATURE = "DLTK METADATA INDEX 1"; //$NON-NLS-1$
+
+	private static final byte ENTRY = 1;
+	private static final byte REMOVE_ENTRY = 2;
+	private static final byte ATTRIBUTE = 3;
+	private static final byte REMOVE_ATTRIBUTE = 4;
+	private static final byte LAST_INDEX = 5;
+
+	/** Journals with less records are never compacted */
+	private static final int COMPACT_THRESHOLD = 4096;
+
+	private final File file;
+	private final String environment;
+	private CacheIndex index;
+
+	private final ByteArrayOutputStream pendingBytes = new ByteArrayOutputStream();
+	private final DataOutputStream pending = new DataOutputStream(pendingBytes);
+	private int records;
+	private boolean rewrite;
+
+	MetadataIndexJournal(File file, String environment) {
+		this.file = file;
+		this.environment = environment;
+	}
+
+	/**
+	 * Returns the index, which is loaded from the file when called the first
+	 * time
+	 */
+	CacheIndex getIndex() {
+		if (index == null) {
+			index = CacheFactory.eINSTANCE.createCacheIndex();
+			index.setEnvironment(environment);
+			index.setLastIndex(0);
+			final File old = getSibling(".old"); //$NON-NLS-1$
+			if (!file.exists() && old.exists()) {
+				// interrupted compaction
+				old.renameTo(file);
+			}
+			if (file.exists()) {
+				try {
+					load();
+				} catch (IOException e) {
+					DLTKCore.error("Failed to load metadata index " + file, e); //$NON-NLS-1$
+					index.getEntries().clear();
+					file.delete();
+					records = 0;
+				}
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * Replaces the index by the given one, which is written on the next
+	 * {@link #flush()}. Used to migrate the index from the previous format.
+	 */
+	void setIndex(CacheIndex newIndex) {
+		index = newIndex;
+		pendingBytes.reset();
+		rewrite = true;
+	}
+
+	void entryAdded(CacheEntry entry) {
+		try {
+			pending.writeByte(ENTRY);
+			pending.writeUTF(entry.getPath());
+			pending.writeLong(entry.getTimestamp());
+		} catch (IOException e) {
+			// not thrown by ByteArrayOutputStream
+		}
+		++records;
+	}
+
+	void entryRemoved(CacheEntry entry) {
+		try {
+			pending.writeByte(REMOVE_ENTRY);
+			pending.writeUTF(entry.getPath());
+		} catch (IOException e) {
+			// not thrown by ByteArrayOutputStream
+		}
+		++records;
+	}
+
+	void attributeAdded(CacheEntry entry, CacheEntryAttribute attribute) {
+		try {
+			pending.writeByte(ATTRIBUTE);
+			pending.writeUTF(entry.getPath());
+			pending.writeUTF(attribute.getName());
+			pending.writeUTF(attribute.getLocation());
+		} catch (IOException e) {
+			// not thrown by ByteArrayOutputStream
+		}
+		++records;
+	}
+
+	void attributeRemoved(CacheEntry entry, CacheEntryAttribute attribute) {
+		try {
+			pending.writeByte(REMOVE_ATTRIBUTE);
+			pending.writeUTF(entry.getPath());
+			pending.writeUTF(attribute.getName());
+		} catch (IOException e) {
+			// not thrown by ByteArrayOutputStream
+		}
+		++records;
+	}
+
+	void lastIndexChanged(long lastIndex) {
+		try {
+			pending.writeByte(LAST_INDEX);
+			pending.writeLong(lastIndex);
+		} catch (IOException e) {
+			// not thrown by ByteArrayOutputStream
+		}
+		++records;
+	}
+
+	/**
+	 * Writes the pending changes to the file, or the snapshot of the index if
+	 * the journal is too big
+	 */
+	void flush() throws IOException {
+		if (index == null) {
+			return;
+		}
+		if (rewrite
+				|| (records > COMPACT_THRESHOLD && records > 2 * getLiveRecords())) {
+			compact();
+		} else if (pendingBytes.size() != 0) {
+			if (!file.exists()) {
+				writeSnapshot(file);
+				return;
+			}
+			final FileOutputStream out = new FileOutputStream(file, true);
+			try {
+				pendingBytes.writeTo(out);
+			} finally {
+				out.close();
+			}
+			pendingBytes.reset();
+		}
+	}
+
+	/**
+	 * Returns the number of records in the snapshot of the index
+	 */
+	private int getLiveRecords() {
+		int count = 1;
+		for (Iterator<CacheEntry> i = index.getEntries().iterator(); i
+				.hasNext();) {
+			count += 1 + i.next().getAttributes().size();
+		}
+		return count;
+	}
+
+	/**
+	 * Replaces the journal by the snapshot of the index. The snapshot is
+	 * written to the temporary file and the old journal is kept until the
+	 * snapshot is renamed, if it fails the old journal is restored and the
+	 * compaction is retried on the next {@link #flush()}.
+	 */
+	private void compact() throws IOException {
+		final File temp = getSibling(".tmp"); //$NON-NLS-1$
+		final File old = getSibling(".old"); //$NON-NLS-1$
+		boolean compacted = false;
+		try {
+			writeSnapshot(temp);
+			old.delete();
+			if (file.exists() && !file.renameTo(old)) {
+				throw new IOException("Failed to rename " + file); //$NON-NLS-1$
+			}
+			if (!temp.renameTo(file)) {
+				old.renameTo(file);
+				throw new IOException("Failed to rename " + temp); //$NON-NLS-1$
+			}
+			old.delete();
+			compacted = true;
+		} finally {
+			if (!compacted) {
+				temp.delete();
+				rewrite = true;
+			}
+		}
+	}
+
+	private File getSibling(String suffix) {
+		return new File(file.getParentFile(), file.getName() + suffix);
+	}
+
+	private void writeSnapshot(File target) throws IOException {
+		rewrite = false;
+		pendingBytes.reset();
+		records = 0;
+		addSnapshotRecords();
+		target.getParentFile().mkdirs();
+		final DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(target), 8192));
+		try {
+			out.writeUTF(SIGNATURE);
+			out.writeUTF(environment);
+			pendingBytes.writeTo(out);
+		} finally {
+			out.close();
+		}
+		pendingBytes.reset();
+	}
+
+	/**
+	 * Adds the records creating the whole index
+	 */
+	private void addSnapshotRecords() {
+		lastIndexChanged(index.getLastIndex());
+		for (Iterator<CacheEntry> i = index.getEntries().iterator(); i
+				.hasNext();) {
+			final CacheEntry entry = i.next();
+			entryAdded(entry);
+			for (Iterator<CacheEntryAttribute> j = entry.getAttributes()
+					.iterator(); j.hasNext();) {
+				attributeAdded(entry, j.next());
+			}
+		}
+	}
+
+	private void load() throws IOException {
+		final byte[] data;
+		final RandomAccessFile input = new RandomAccessFile(file, "r"); //$NON-NLS-1$
+		try {
+			data = new byte[(int) input.length()];
+			input.readFully(data);
+		} finally {
+			input.close();
+		}
+		final ByteArrayInputStream bytes = new ByteArrayInputStream(data);
+		final DataInputStream in = new DataInputStream(bytes);
+		if (!SIGNATURE.equals(in.readUTF())
+				|| !environment.equals(in.readUTF())) {
+			throw new IOException("Unknown format or environment"); //$NON-NLS-1$
+		}
+		final Map<String, CacheEntry> entries = new HashMap<String, CacheEntry>();
+		int position = data.length - bytes.available();
+		try {
+			for (;;) {
+				final byte op = in.readByte();
+				if (op == ENTRY) {
+					final String path = in.readUTF();
+					final long timestamp = in.readLong();
+					CacheEntry entry = entries.get(path);
+					if (entry == null) {
+						entry = CacheFactory.eINSTANCE.createCacheEntry();
+						entry.setPath(path);
+						entries.put(path, entry);
+					}
+					entry.setTimestamp(timestamp);
+				} else if (op == REMOVE_ENTRY) {
+					entries.remove(in.readUTF());
+				} else if (op == ATTRIBUTE) {
+					final CacheEntry entry = entries.get(in.readUTF());
+					final String name = in.readUTF();
+					final String location = in.readUTF();
+					if (entry != null) {
+						final CacheEntryAttribute attribute = CacheFactory.eINSTANCE
+								.createCacheEntryAttribute();
+						attribute.setName(name);
+						attribute.setLocation(location);
+						entry.getAttributes().add(attribute);
+					}
+				} else if (op == REMOVE_ATTRIBUTE) {
+					final CacheEntry entry = entries.get(in.readUTF());
+					final String name = in.readUTF();
+					if (entry != null) {
+						for (Iterator<CacheEntryAttribute> i = entry
+								.getAttributes().iterator(); i.hasNext();) {
+							if (name.equals(i.next().getName())) {
+								i.remove();
+								break;
+							}
+						}
+					}
+				} else if (op == LAST_INDEX) {
+					index.setLastIndex(in.readLong());
+				} else {
+					throw new IOException("Unknown record " + op); //$NON-NLS-1$
+				}
+				++records;
+				position = data.length - bytes.available();
+			}
+		} catch (EOFException e) {
+			// the last record could be written partially
+		}
+		if (position != data.length) {
+			final RandomAccessFile output = new RandomAccessFile(file, "rw"); //$NON-NLS-1$
+			try {
+				output.setLength(position);
+			} finally {
+				output.close();
+			}
+		}
+		index.getEntries().addAll(entries.values());
+	}
+
+	/**
+	 * Returns the environment of the journal file, or <code>null</code> if it
+	 * can't be read
+	 */
+	static String readEnvironment(File journalFile) {
+		try {
+			final DataInputStream in = new DataInputStream(
+					new FileInputStream(journalFile));
+			try {
+				if (SIGNATURE.equals(in.readUTF())) {
+					return in.readUTF();
+				}
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			// not a journal
+		}
+		return null;
+	}
+}
@@ -0,0 +1,58 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Sage and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Sage - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.dltk.core.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counter updated without locking. Could also be decremented, to track the
+ * current number of something, like the queued jobs.
+ *
+ * @see Metrics#counter(String)
+ * @since 2.0
+ */
+public final class Counter {
+
+	private final String name;
+	private final AtomicLong value = new AtomicLong();
+
+	Counter(String name) {
+		this.name = name;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public void increment() {
+		value.incrementAndGet();
+	}
+
+	public void decrement() {
+		value.decrementAndGet();
+	}
+
+	public void add(long delta) {
+		value.addAndGet(delta);
+	}
+
+	public long get() {
+		return value.get();
+	}
+
+	void reset() {
+		value.set(0);
+	}
+
+	public String toString() {
+		return name + '=' + value.get();
+	}
+}
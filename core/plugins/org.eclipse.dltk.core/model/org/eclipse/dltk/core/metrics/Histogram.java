@@ -0,0 +1,125 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Sage and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Sage - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.dltk.core.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Distribution of latencies (in microseconds) recorded without locking.
+ * Values are counted in buckets of powers of two, so percentiles are
+ * approximated by the upper bound of their bucket, which is at most twice the
+ * exact value.
+ *
+ * @see Metrics#histogram(String)
+ * @since 2.0
+ */
+public final class Histogram {
+
+	/**
+	 * Bucket <code>i</code> counts the values less than <code>2^i</code>
+	 * which are not counted by the previous buckets
+	 */
+	private static final int BUCKETS = 64;
+
+	private final String name;
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong sum = new AtomicLong();
+	private final AtomicLong max = new AtomicLong();
+
+	Histogram(String name) {
+		this.name = name;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Records the value in microseconds
+	 */
+	public void record(long micros) {
+		if (micros < 0)
+			micros = 0;
+		buckets.incrementAndGet(64 - Long.numberOfLeadingZeros(micros));
+		count.incrementAndGet();
+		sum.addAndGet(micros);
+		long current;
+		while (micros > (current = max.get())) {
+			if (max.compareAndSet(current, micros))
+				break;
+		}
+	}
+
+	/**
+	 * Records the time elapsed since the given {@link System#nanoTime()}
+	 */
+	public void recordSince(long startNanos) {
+		record((System.nanoTime() - startNanos) / 1000);
+	}
+
+	public long getCount() {
+		return count.get();
+	}
+
+	/**
+	 * Answers the total of the recorded values in microseconds
+	 */
+	public long getSum() {
+		return sum.get();
+	}
+
+	public long getMax() {
+		return max.get();
+	}
+
+	public long getMean() {
+		long n = count.get();
+		return n == 0 ? 0 : sum.get() / n;
+	}
+
+	/**
+	 * Answers the upper bound of the percentile (0..100) of the recorded
+	 * values
+	 */
+	public long getPercentile(double percentile) {
+		long[] counts = new long[BUCKETS];
+		long total = 0;
+		for (int i = 0; i < BUCKETS; i++)
+			total += counts[i] = buckets.get(i);
+		if (total == 0)
+			return 0;
+		long rank = (long) Math.ceil(total * percentile / 100);
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += counts[i];
+			if (seen >= rank && counts[i] != 0)
+				return Math.min(i == 0 ? 0 : (1L << i) - 1, max.get());
+		}
+		return max.get();
+	}
+
+	void reset() {
+		for (int i = 0; i < BUCKETS; i++)
+			buckets.set(i, 0);
+		count.set(0);
+		sum.set(0);
+		max.set(0);
+	}
+
+	public String toString() {
+		return name + " count=" + getCount() + " mean=" + getMean() //$NON-NLS-1$ //$NON-NLS-2$
+				+ "us p50=" + getPercentile(50) + "us p90=" //$NON-NLS-1$ //$NON-NLS-2$
+				+ getPercentile(90) + "us p99=" + getPercentile(99) //$NON-NLS-1$
+				+ "us max=" + getMax() + "us"; //$NON-NLS-1$ //$NON-NLS-2$
+	}
+}
@@ -0,0 +1,28 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Sage and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Sage - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.dltk.core.metrics;
+
+import java.util.Map;
+
+/**
+ * Values computed only when the metrics are collected, like the sizes of the
+ * index files.
+ *
+ * @see Metrics#register(IGauges)
+ * @since 2.0
+ */
+public interface IGauges {
+
+	/**
+	 * Puts the current values into the map by their names
+	 */
+	public void collect(Map<String, Long> values);
+}
@@ -0,0 +1,148 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Sage and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Sage - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.dltk.core.metrics;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.eclipse.dltk.core.DLTKCore;
+
+/**
+ * Registry of the counters and latency histograms of the indexing and search
+ * infrastructure. Instrumented classes keep the counters and histograms they
+ * update in static fields, so updating them takes neither a lock nor a
+ * lookup.
+ * <p>
+ * Current values are answered by {@link #collect()} and printed by
+ * {@link #dump(PrintWriter)}, for example from a headless test or a console
+ * command.
+ * </p>
+ *
+ * @since 2.0
+ */
+public class Metrics {
+
+	private static final ConcurrentHashMap<String, Counter> counters = new ConcurrentHashMap<String, Counter>();
+	private static final ConcurrentHashMap<String, Histogram> histograms = new ConcurrentHashMap<String, Histogram>();
+	private static final CopyOnWriteArrayList<IGauges> gauges = new CopyOnWriteArrayList<IGauges>();
+
+	private Metrics() {
+	}
+
+	/**
+	 * Answers the counter with the given name, which is created if needed
+	 */
+	public static Counter counter(String name) {
+		Counter counter = counters.get(name);
+		if (counter == null) {
+			Counter created = new Counter(name);
+			counter = counters.putIfAbsent(name, created);
+			if (counter == null)
+				counter = created;
+		}
+		return counter;
+	}
+
+	/**
+	 * Answers the histogram with the given name, which is created if needed
+	 */
+	public static Histogram histogram(String name) {
+		Histogram histogram = histograms.get(name);
+		if (histogram == null) {
+			Histogram created = new Histogram(name);
+			histogram = histograms.putIfAbsent(name, created);
+			if (histogram == null)
+				histogram = created;
+		}
+		return histogram;
+	}
+
+	public static void register(IGauges values) {
+		gauges.addIfAbsent(values);
+	}
+
+	public static void unregister(IGauges values) {
+		gauges.remove(values);
+	}
+
+	/**
+	 * Answers the current values sorted by their names. Histograms are
+	 * answered as their <code>count</code>, <code>mean</code>,
+	 * <code>p50</code>, <code>p90</code>, <code>p99</code> and
+	 * <code>max</code> values, with the name of histogram as the prefix.
+	 */
+	public static Map<String, Long> collect() {
+		Map<String, Long> values = new TreeMap<String, Long>();
+		for (Iterator<Counter> i = counters.values().iterator(); i.hasNext();) {
+			Counter counter = i.next();
+			values.put(counter.getName(), new Long(counter.get()));
+		}
+		for (Iterator<Histogram> i = histograms.values().iterator(); i
+				.hasNext();) {
+			Histogram histogram = i.next();
+			String name = histogram.getName();
+			values.put(name + ".count", new Long(histogram.getCount())); //$NON-NLS-1$
+			values.put(name + ".mean", new Long(histogram.getMean())); //$NON-NLS-1$
+			values.put(name + ".p50", new Long(histogram.getPercentile(50))); //$NON-NLS-1$
+			values.put(name + ".p90", new Long(histogram.getPercentile(90))); //$NON-NLS-1$
+			values.put(name + ".p99", new Long(histogram.getPercentile(99))); //$NON-NLS-1$
+			values.put(name + ".max", new Long(histogram.getMax())); //$NON-NLS-1$
+		}
+		for (Iterator<IGauges> i = gauges.iterator(); i.hasNext();) {
+			try {
+				i.next().collect(values);
+			} catch (RuntimeException e) {
+				DLTKCore.error("Failed to collect metrics", e); //$NON-NLS-1$
+			}
+		}
+		return values;
+	}
+
+	/**
+	 * Prints the current values, one per line
+	 */
+	public static void dump(PrintWriter writer) {
+		Map<String, Long> values = collect();
+		for (Iterator<Map.Entry<String, Long>> i = values.entrySet()
+				.iterator(); i.hasNext();) {
+			Map.Entry<String, Long> entry = i.next();
+			writer.print(entry.getKey());
+			writer.print(' ');
+			writer.println(entry.getValue());
+		}
+		writer.flush();
+	}
+
+	/**
+	 * Answers the current values, one per line
+	 */
+	public static String dump() {
+		StringWriter writer = new StringWriter();
+		dump(new PrintWriter(writer));
+		return writer.toString();
+	}
+
+	/**
+	 * Resets all the counters and histograms, gauges are not affected
+	 */
+	public static void reset() {
+		for (Iterator<Counter> i = counters.values().iterator(); i.hasNext();)
+			i.next().reset();
+		for (Iterator<Histogram> i = histograms.values().iterator(); i
+				.hasNext();)
+			i.next().reset();
+	}
+}
@@ -13,6 +13,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 
+import org.eclipse.core.runtime.Platform;
 import org.eclipse.core.runtime.preferences.AbstractPreferenceInitializer;
 import org.eclipse.core.runtime.preferences.DefaultScope;
 import org.eclipse.core.runtime.preferences.IEclipsePreferences;
@@ -46,7 +47,21 @@ public class DLTKCorePreferenceInitializer extends
 				DLTKCore.ENABLED);
 		defaultOptionsMap.put(DLTKCore.FILE_CACHE, FileCacheStub.ID);
 		defaultOptionsMap.put(DLTKCore.INDEXER_ENABLED, DLTKCore.ENABLED);
+		defaultOptionsMap.put(DLTKCore.INDEXER_PARALLELISM, "1"); //$NON-NLS-1$
+		defaultOptionsMap.put(DLTKCore.INDEXER_CHANGE_DETECTION,
+				DLTKCore.INDEXER_CHANGE_DETECTION_TIMESTAMP);
+		defaultOptionsMap.put(DLTKCore.INDEXER_ID,
+				"org.eclipse.dltk.core.index.sql.indexer"); //$NON-NLS-1$
+		defaultOptionsMap.put(DLTKCore.INDEX_MEMORY_MAPPING, Platform.OS_WIN32
+				.equals(Platform.getOS()) ? DLTKCore.DISABLED : DLTKCore.ENABLED);
+		defaultOptionsMap.put(DLTKCore.INDEX_BUNDLE_LOCATION, ""); //$NON-NLS-1$
+		defaultOptionsMap.put(DLTKCore.INDEX_BUNDLE_SIZE, "1024"); //$NON-NLS-1$
+		defaultOptionsMap.put(DLTKCore.SEARCH_PARALLELISM, "1"); //$NON-NLS-1$
+		defaultOptionsMap.put(DLTKCore.INDEXING_THREADS, "1"); //$NON-NLS-1$
 		defaultOptionsMap.put(DLTKCore.BUILDER_ENABLED, DLTKCore.ENABLED);
+		defaultOptionsMap.put(DLTKCore.BUILDER_PARALLELISM, "1"); //$NON-NLS-1$
+		defaultOptionsMap.put(DLTKCore.AST_CACHE_SIZE, "64"); //$NON-NLS-1$
+		defaultOptionsMap.put(DLTKCore.SOURCE_MODULE_CACHE_SIZE, "0"); //$NON-NLS-1$
 
 		// encoding setting comes from resource plug-in
 		optionNames.add(DLTKCore.CORE_ENCODING);
@@ -9,13 +9,19 @@
  *******************************************************************************/
 package org.eclipse.dltk.internal.core;
 
-import java.lang.ref.SoftReference;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.eclipse.dltk.ast.ASTNode;
+import org.eclipse.dltk.ast.ASTVisitor;
+import org.eclipse.dltk.compiler.problem.ProblemCollector;
 import org.eclipse.dltk.core.DLTKCore;
 import org.eclipse.dltk.core.ElementChangedEvent;
-import org.eclipse.dltk.core.IElementCacheListener;
 import org.eclipse.dltk.core.IElementChangedListener;
 import org.eclipse.dltk.core.IModelElement;
 import org.eclipse.dltk.core.IModelElementDelta;
@@ -24,73 +30,184 @@ import org.eclipse.dltk.core.IProjectFragment;
 import org.eclipse.dltk.core.ISourceModule;
 import org.eclipse.dltk.core.ISourceModuleInfoCache;
 import org.eclipse.dltk.core.ModelException;
+import org.eclipse.dltk.core.metrics.Counter;
+import org.eclipse.dltk.core.metrics.IGauges;
+import org.eclipse.dltk.core.metrics.Metrics;
 
 /**
  * Used to cache some source module information. All information related to
  * source module are removed, then source module are changed.
+ * <p>
+ * The cache is bounded by the estimated weight of the cached values (ASTs are
+ * weighted by the number of their nodes) instead of the number of modules,
+ * the budget is configured by {@link DLTKCore#SOURCE_MODULE_CACHE_SIZE}. When
+ * it is exceeded the least recently used modules are evicted, but a module
+ * which was not admitted yet replaces them only if it was requested more
+ * often recently (TinyLFU admission), so a single pass over many modules
+ * (like a search or a full build) does not flush the modules being edited.
+ * </p>
+ * <p>
+ * Cached modules are looked up without locking, the requests are recorded in
+ * a queue which is applied to the frequency sketch and to the recency order
+ * under the lock of the cache, before the modules are evicted or when enough
+ * requests are queued.
+ * </p>
  * 
  * @author haiodo
  * 
  */
 public class SourceModuleInfoCache implements ISourceModuleInfoCache {
-	private final ElementCache cache;
-	static long allAccess = 0;
-	static long miss = 0;
-	static long closes = 0;
+
+	/** Estimated weight of the module entry itself */
+	private static final int ENTRY_WEIGHT = 256;
+	/** Estimated weight of the AST node */
+	private static final int NODE_WEIGHT = 64;
+	/** Estimated weight of the reported problem */
+	private static final int PROBLEM_WEIGHT = 128;
+	/** Weight of the values which size is unknown */
+	private static final int VALUE_WEIGHT = 1024;
+	/** Number of the queued requests applied by the requesting thread */
+	private static final int DRAIN_THRESHOLD = 64;
+
+	private static final Counter hits = Metrics
+			.counter("sourceModuleCache.hits"); //$NON-NLS-1$
+	private static final Counter misses = Metrics
+			.counter("sourceModuleCache.misses"); //$NON-NLS-1$
+	private static final Counter evictions = Metrics
+			.counter("sourceModuleCache.evictions"); //$NON-NLS-1$
+	private static final Counter rejections = Metrics
+			.counter("sourceModuleCache.rejections"); //$NON-NLS-1$
+
+	private final long budget;
+	// module -> SourceModuleInfo
+	private final ConcurrentHashMap<ISourceModule, SourceModuleInfo> entries = new ConcurrentHashMap<ISourceModule, SourceModuleInfo>(
+			256);
+	// requested modules not applied to the order and to the sketch yet
+	private final ConcurrentLinkedQueue<SourceModuleInfo> requests = new ConcurrentLinkedQueue<SourceModuleInfo>();
+	private final AtomicInteger pendingRequests = new AtomicInteger();
+
+	// guarded by the cache:
+	// module -> SourceModuleInfo, least recently used first
+	private final LinkedHashMap<ISourceModule, SourceModuleInfo> order = new LinkedHashMap<ISourceModule, SourceModuleInfo>(
+			256, 0.75f, true);
+	private final FrequencySketch sketch;
+	private long weight;
+
+	private final IGauges gauges = new IGauges() {
+		public void collect(Map<String, Long> values) {
+			synchronized (SourceModuleInfoCache.this) {
+				values.put("sourceModuleCache.weight", new Long(weight)); //$NON-NLS-1$
+				values.put("sourceModuleCache.size", new Long(entries.size())); //$NON-NLS-1$
+			}
+			values.put("sourceModuleCache.budget", new Long(budget)); //$NON-NLS-1$
+		}
+	};
 
 	public SourceModuleInfoCache() {
-		// set the size of the caches in function of the maximum amount of
-		// memory available
-		// long maxMemory = Runtime.getRuntime().freeMemory();
-		// if max memory is infinite, set the ratio to 4d which corresponds to
-		// the 256MB that Eclipse defaults to
-		// (see https://bugs.eclipse.org/bugs/show_bug.cgi?id=111299)
-		double ratio = 50; // 128000000
-
-		this.cache = new ElementCache(
-				(int) (ModelCache.DEFAULT_ROOT_SIZE * ratio));
-		this.cache.setLoadFactor(0.90);
-		this.cache.addListener(new IElementCacheListener() {
-			public void close(Object element) {
-				closes++;
-			}
-		});
+		this.budget = getBudget();
+		// most of the cached modules have ASTs of a few thousands of nodes
+		this.sketch = new FrequencySketch((int) Math.min(budget / 65536,
+				1 << 20));
 	}
 
 	public void start() {
 		DLTKCore.addElementChangedListener(changedListener);
+		Metrics.register(gauges);
 	}
 
 	public void stop() {
 		DLTKCore.removeElementChangedListener(changedListener);
-	}
-
-	private final ISourceModuleInfo cacheGet(ISourceModule module) {
-		allAccess++;
-		final SoftReference ref = (SoftReference) cache.get(module);
-		return ref != null ? (ISourceModuleInfo) ref.get() : null;
+		Metrics.unregister(gauges);
 	}
 
 	public ISourceModuleInfo get(ISourceModule module) {
-		if (DLTKCore.VERBOSE) {
-			System.out.println("Filling ratio:" + this.cache.fillingRatio()); //$NON-NLS-1$
-		}
-		ISourceModuleInfo info = cacheGet(module);
-		if (info == null) {
-			miss++;
-			info = new SourceModuleInfo();
-			cache.put(module, new SoftReference(info));
-			cache.ensureSpaceLimit(1, module);
+		SourceModuleInfo info = entries.get(module);
+		if (info != null) {
+			hits.increment();
+			requests.add(info);
+			if (pendingRequests.incrementAndGet() >= DRAIN_THRESHOLD) {
+				synchronized (this) {
+					drainRequests();
+				}
+			}
+			return info;
+		}
+		synchronized (this) {
+			drainRequests();
+			sketch.increment(module);
+			info = entries.get(module);
+			if (info != null) {
+				// added by another thread meanwhile
+				hits.increment();
+				order.get(module);
+				return info;
+			}
+			misses.increment();
+			info = new SourceModuleInfo(module);
+			entries.put(module, info);
+			order.put(module, info);
+			weightChanged(info, ENTRY_WEIGHT);
+			if (DLTKCore.PERFOMANCE) {
+				System.out.println("SourceModuleInfoCache: hits:" + hits.get() //$NON-NLS-1$
+						+ " misses:" + misses.get() + " evictions:" //$NON-NLS-1$ //$NON-NLS-2$
+						+ evictions.get() + " weight:" + weight); //$NON-NLS-1$
+			}
 			return info;
 		}
-		// this.cache.printStats();
-		if (DLTKCore.PERFOMANCE) {
-			System.out.println("SourceModuleInfoCache: access:" + allAccess //$NON-NLS-1$
-					+ " ok:" + (100.0f * (allAccess - miss) / allAccess) //$NON-NLS-1$
-					+ "% closes:" + closes); //$NON-NLS-1$
-			System.out.println("Filling ratio:" + this.cache.fillingRatio()); //$NON-NLS-1$
+	}
+
+	/**
+	 * Applies the queued requests to the frequency sketch and to the recency
+	 * order, must hold the lock of the cache
+	 */
+	private void drainRequests() {
+		SourceModuleInfo info;
+		while ((info = requests.poll()) != null) {
+			pendingRequests.decrementAndGet();
+			sketch.increment(info.module);
+			if (!info.removed) {
+				// moves the module to the end of the access order
+				order.get(info.module);
+			}
+		}
+	}
+
+	/**
+	 * Accounts the changed weight of the module and evicts modules if the
+	 * budget is exceeded
+	 */
+	synchronized void weightChanged(SourceModuleInfo info, long delta) {
+		if (info.removed) {
+			// values of the evicted modules are not cached anymore
+			return;
+		}
+		info.weight += delta;
+		weight += delta;
+		if (weight > budget) {
+			drainRequests();
+		}
+		while (weight > budget && !order.isEmpty()) {
+			final SourceModuleInfo eldest = order.values().iterator().next();
+			if (!info.admitted && eldest != info) {
+				if (sketch.frequency(info.module) <= sketch
+						.frequency(eldest.module)) {
+					// not requested more often than the modules it replaces
+					discard(info);
+					rejections.increment();
+					break;
+				}
+				info.admitted = true;
+			}
+			discard(eldest);
+			evictions.increment();
 		}
-		return info;
+	}
+
+	private void discard(SourceModuleInfo info) {
+		entries.remove(info.module);
+		order.remove(info.module);
+		info.removed = true;
+		weight -= info.weight;
 	}
 
 	private IElementChangedListener changedListener = new IElementChangedListener() {
@@ -159,8 +276,23 @@ public class SourceModuleInfoCache implements ISourceModuleInfoCache {
 		}
 	};
 
-	private static class SourceModuleInfo implements ISourceModuleInfo {
+	/**
+	 * Cached information of the module, values are kept with their estimated
+	 * weights, which are accounted by the cache.
+	 */
+	private class SourceModuleInfo implements ISourceModuleInfo {
+		final ISourceModule module;
 		private Map<Object, Object> map;
+		private Map<Object, Integer> weights;
+
+		// guarded by the cache
+		long weight;
+		boolean admitted;
+		boolean removed;
+
+		SourceModuleInfo(ISourceModule module) {
+			this.module = module;
+		}
 
 		public synchronized Object get(Object key) {
 			if (map == null) {
@@ -169,16 +301,37 @@ public class SourceModuleInfoCache implements ISourceModuleInfoCache {
 			return map.get(key);
 		}
 
-		public synchronized void put(Object key, Object value) {
-			if (map == null) {
-				map = new HashMap<Object, Object>();
+		public void put(Object key, Object value) {
+			// estimated outside of the locks, it could traverse the whole AST
+			final int valueWeight = estimateWeight(value);
+			final int delta;
+			synchronized (this) {
+				if (map == null) {
+					map = new HashMap<Object, Object>();
+					weights = new HashMap<Object, Integer>();
+				}
+				map.put(key, value);
+				final Integer oldWeight = weights.put(key, new Integer(
+						valueWeight));
+				delta = valueWeight
+						- (oldWeight != null ? oldWeight.intValue() : 0);
+			}
+			if (delta != 0) {
+				weightChanged(this, delta);
 			}
-			map.put(key, value);
 		}
 
-		public synchronized void remove(Object key) {
-			if (map != null) {
+		public void remove(Object key) {
+			final Integer oldWeight;
+			synchronized (this) {
+				if (map == null) {
+					return;
+				}
 				map.remove(key);
+				oldWeight = weights.remove(key);
+			}
+			if (oldWeight != null && oldWeight.intValue() != 0) {
+				weightChanged(this, -oldWeight.intValue());
 			}
 		}
 
@@ -187,17 +340,146 @@ public class SourceModuleInfoCache implements ISourceModuleInfoCache {
 		}
 	}
 
-	public void remove(ISourceModule element) {
+	/**
+	 * Estimates the number of bytes retained by the value
+	 */
+	private static int estimateWeight(Object value) {
+		if (value instanceof ASTNode) {
+			final ASTNode node = (ASTNode) value;
+			final int[] count = new int[1];
+			try {
+				node.traverse(new ASTVisitor() {
+					public boolean visitGeneral(ASTNode n) throws Exception {
+						++count[0];
+						return true;
+					}
+				});
+				return (int) Math.min((long) count[0] * NODE_WEIGHT,
+						Integer.MAX_VALUE);
+			} catch (Exception e) {
+				// estimate by the source length
+				return Math.max(node.sourceEnd() - node.sourceStart(), 0)
+						* 2 + VALUE_WEIGHT;
+			}
+		} else if (value instanceof ProblemCollector) {
+			return ((ProblemCollector) value).getProblems().size()
+					* PROBLEM_WEIGHT + ENTRY_WEIGHT;
+		} else {
+			return VALUE_WEIGHT;
+		}
+	}
+
+	/**
+	 * Returns the budget in bytes, if not configured it is the eighth of the
+	 * maximum heap size
+	 */
+	private static long getBudget() {
+		final String value = DLTKCore
+				.getOption(DLTKCore.SOURCE_MODULE_CACHE_SIZE);
+		if (value != null) {
+			try {
+				final long megabytes = Long.parseLong(value.trim());
+				if (megabytes > 0) {
+					return megabytes * 1024 * 1024;
+				}
+			} catch (NumberFormatException e) {
+				// use default
+			}
+		}
+		long maxMemory = Runtime.getRuntime().maxMemory();
+		if (maxMemory == Long.MAX_VALUE) {
+			// 256MB that Eclipse defaults to
+			maxMemory = 256 * 1024 * 1024;
+		}
+		return maxMemory / 8;
+	}
+
+	/**
+	 * Approximate counts of the recent requests of the modules (count-min
+	 * sketch with 4-bit counters), all counts are halved after the number of
+	 * requests reaches ten times the width of the table, so the modules which
+	 * were popular long ago are forgotten.
+	 */
+	private static class FrequencySketch {
+		private static final int[] SEEDS = { 0x97CB3127, 0xB492B66F,
+				0x9AE16A3B, 0xCBF29CE4 };
+		private static final int MAX_COUNT = 15;
+
+		private final byte[] table;
+		private final int mask;
+		private final int sampleSize;
+		private int additions;
+
+		FrequencySketch(int expectedSize) {
+			int width = 1024;
+			while (width < expectedSize) {
+				width <<= 1;
+			}
+			table = new byte[width];
+			mask = width - 1;
+			sampleSize = 10 * width;
+		}
+
+		void increment(Object element) {
+			final int hash = spread(element.hashCode());
+			boolean added = false;
+			for (int i = 0; i < SEEDS.length; ++i) {
+				final int index = indexOf(hash, i);
+				if (table[index] < MAX_COUNT) {
+					++table[index];
+					added = true;
+				}
+			}
+			if (added && ++additions >= sampleSize) {
+				for (int i = 0; i < table.length; ++i) {
+					table[i] >>= 1;
+				}
+				additions /= 2;
+			}
+		}
+
+		int frequency(Object element) {
+			final int hash = spread(element.hashCode());
+			int frequency = MAX_COUNT;
+			for (int i = 0; i < SEEDS.length; ++i) {
+				frequency = Math.min(frequency, table[indexOf(hash, i)]);
+			}
+			return frequency;
+		}
+
+		private int indexOf(int hash, int i) {
+			int h = (hash + SEEDS[i]) * SEEDS[i];
+			h ^= h >>> 16;
+			return h & mask;
+		}
+
+		private static int spread(int h) {
+			h ^= h >>> 17;
+			h *= 0xED5AD4BB;
+			h ^= h >>> 11;
+			return h;
+		}
+	}
+
+	public synchronized void remove(ISourceModule element) {
 		if (DEBUG) {
 			System.out.println("[Cache] remove " + element.getElementName()); //$NON-NLS-1$
 		}
-		cache.remove(element);
-		cache.resetSpaceLimit(ModelCache.DEFAULT_ROOT_SIZE, element);
+		final SourceModuleInfo info = entries.get(element);
+		if (info != null) {
+			discard(info);
+		}
 	}
 
 	private static final boolean DEBUG = false;
 
-	public void clear() {
-		this.cache.flush();
+	public synchronized void clear() {
+		for (Iterator<SourceModuleInfo> i = order.values().iterator(); i
+				.hasNext();) {
+			i.next().removed = true;
+		}
+		entries.clear();
+		order.clear();
+		weight = 0;
 	}
 }
@@ -11,6 +11,9 @@
  *******************************************************************************/
 package org.eclipse.dltk.internal.core.builder;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import org.eclipse.core.resources.IMarker;
 import org.eclipse.core.resources.IResource;
 import org.eclipse.core.runtime.CoreException;
@@ -50,19 +53,20 @@ public class BuildProblemReporter extends ProblemCollector {
 				} else {
 					markerType = DefaultProblem.MARKER_TYPE_PROBLEM;
 				}
-				final IMarker m = resource.createMarker(markerType);
+				// attributes are set at once, so the marker is changed once
+				final Map<String, Object> attributes = new HashMap<String, Object>();
 				if (problem.getSourceLineNumber() >= 0) {
-					m.setAttribute(IMarker.LINE_NUMBER, problem
-							.getSourceLineNumber() + 1);
+					attributes.put(IMarker.LINE_NUMBER, new Integer(problem
+							.getSourceLineNumber() + 1));
 				}
-				m.setAttribute(IMarker.MESSAGE, problem.getMessage());
+				attributes.put(IMarker.MESSAGE, problem.getMessage());
 				if (problem.getSourceStart() >= 0) {
-					m
-							.setAttribute(IMarker.CHAR_START, problem
-									.getSourceStart());
+					attributes.put(IMarker.CHAR_START, new Integer(problem
+							.getSourceStart()));
 				}
 				if (problem.getSourceEnd() >= 0) {
-					m.setAttribute(IMarker.CHAR_END, problem.getSourceEnd());
+					attributes.put(IMarker.CHAR_END, new Integer(problem
+							.getSourceEnd()));
 				}
 				if (DefaultProblem.MARKER_TYPE_PROBLEM.equals(markerType)) {
 					int severity = IMarker.SEVERITY_INFO;
@@ -71,22 +75,24 @@ public class BuildProblemReporter extends ProblemCollector {
 					} else if (problem.isWarning()) {
 						severity = IMarker.SEVERITY_WARNING;
 					}
-					m.setAttribute(IMarker.SEVERITY, severity);
+					attributes.put(IMarker.SEVERITY, new Integer(severity));
 				} else {
-					m.setAttribute(IMarker.USER_EDITABLE, Boolean.FALSE);
+					attributes.put(IMarker.USER_EDITABLE, Boolean.FALSE);
 					if (problem instanceof TaskInfo) {
-						m.setAttribute(IMarker.PRIORITY, ((TaskInfo) problem)
-								.getPriority());
+						attributes.put(IMarker.PRIORITY, new Integer(
+								((TaskInfo) problem).getPriority()));
 					}
 				}
 				if (problem.getID() != 0) {
-					m.setAttribute(IScriptModelMarker.ID, problem.getID());
+					attributes.put(IScriptModelMarker.ID, new Integer(problem
+							.getID()));
 				}
 				final String[] arguments = problem.getArguments();
 				if (arguments != null && arguments.length != 0) {
-					m.setAttribute(IScriptModelMarker.ARGUMENTS, Util
+					attributes.put(IScriptModelMarker.ARGUMENTS, Util
 							.getProblemArgumentsForMarker(arguments));
 				}
+				resource.createMarker(markerType).setAttributes(attributes);
 			}
 			problems.clear();
 		} catch (CoreException e) {
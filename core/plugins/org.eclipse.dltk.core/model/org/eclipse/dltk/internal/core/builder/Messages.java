@@ -19,6 +19,7 @@ public class Messages extends NLS {
 	public static String ScriptBuilder_scanningProject;
 	public static String ScriptBuilder_scanningProjectFolder;
 	public static String BuildParticipantManager_buildParticipantCreateError;
+	public static String StandardScriptBuilder_errorBuilding;
 	public static String StandardScriptBuilder_errorBuildingExternalModule;
 	public static String StandardScriptBuilder_errorBuildingModule;
 	public static String StandardScriptBuilder_errorCleaning;
@@ -10,16 +10,19 @@
 package org.eclipse.dltk.internal.core.builder;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
 
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.IResource;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.SubProgressMonitor;
 import org.eclipse.dltk.compiler.problem.DefaultProblem;
@@ -34,8 +37,11 @@ import org.eclipse.dltk.core.builder.IBuildParticipant;
 import org.eclipse.dltk.core.builder.IBuildParticipantExtension;
 import org.eclipse.dltk.core.builder.IBuildParticipantExtension2;
 import org.eclipse.dltk.core.builder.IBuildParticipantExtension3;
+import org.eclipse.dltk.core.builder.IBuildParticipantExtension4;
 import org.eclipse.dltk.core.builder.IScriptBuilder;
 import org.eclipse.dltk.core.builder.IScriptBuilderExtension;
+import org.eclipse.dltk.internal.core.util.OrderedWorkQueue;
+import org.eclipse.dltk.internal.core.util.WorkerPool;
 import org.eclipse.osgi.util.NLS;
 
 public class StandardScriptBuilder implements IScriptBuilder,
@@ -59,42 +65,33 @@ public class StandardScriptBuilder implements IScriptBuilder,
 
 	public void buildExternalElements(IScriptProject project,
 			List<ISourceModule> externalElements, IProgressMonitor monitor,
-			int buildType) {
+			final int buildType) {
 		beginBuild(buildType, monitor);
 		final List<IBuildParticipantExtension2> extensions = selectExtension(IBuildParticipantExtension2.class);
 
 		if (extensions != null) {
-			int remainingWork = externalElements.size();
-			for (Iterator<ISourceModule> j = externalElements.iterator(); j
-					.hasNext();) {
-				if (monitor.isCanceled())
-					return;
-				final ISourceModule module = j.next();
-				monitor
-						.subTask(NLS
-								.bind(
-										Messages.ValidatorBuilder_buildExternalModuleSubTask,
-										String.valueOf(remainingWork), module
-												.getElementName()));
-				final ExternalModuleBuildContext context = new ExternalModuleBuildContext(
-						module, buildType);
-				try {
-					for (int i = 0; i < extensions.size(); ++i) {
-						if (monitor.isCanceled()) {
-							return;
+			buildModules(externalElements, extensions, new ModuleBuilder(
+					Messages.ValidatorBuilder_buildExternalModuleSubTask) {
+				AbstractBuildContext createContext(ISourceModule module) {
+					return new ExternalModuleBuildContext(module, buildType);
+				}
+
+				void build(AbstractBuildContext context, int first, int last,
+						IProgressMonitor monitor) {
+					try {
+						for (int i = first; i < last; ++i) {
+							if (monitor.isCanceled()) {
+								return;
+							}
+							extensions.get(i).buildExternalModule(context);
 						}
-						extensions.get(i).buildExternalModule(context);
+					} catch (CoreException e) {
+						DLTKCore.error(NLS.bind(
+								Messages.StandardScriptBuilder_errorBuildingExternalModule,
+								context.getSourceModule().getElementName()), e);
 					}
-				} catch (CoreException e) {
-					DLTKCore
-							.error(
-									NLS
-											.bind(
-													Messages.StandardScriptBuilder_errorBuildingExternalModule,
-													module.getElementName()), e);
 				}
-				--remainingWork;
-			}
+			}, monitor);
 		}
 	}
 
@@ -145,30 +142,158 @@ public class StandardScriptBuilder implements IScriptBuilder,
 
 	private List<IProblemReporter> reporters = null;
 
-	private void buildNatureModules(IScriptProject project, int buildType,
-			final List<ISourceModule> modules, IProgressMonitor monitor) {
+	private void buildNatureModules(IScriptProject project,
+			final int buildType, final List<ISourceModule> modules,
+			IProgressMonitor monitor) {
 		beginBuild(buildType, monitor);
 		if (participants.length == 0) {
 			return;
 		}
-		int counter = 0;
 		reporters = new ArrayList<IProblemReporter>(modules.size());
+		buildModules(modules, Arrays.asList(participants), new ModuleBuilder(
+				Messages.ValidatorBuilder_buildModuleSubTask) {
+			AbstractBuildContext createContext(ISourceModule module) {
+				final SourceModuleBuildContext context = new SourceModuleBuildContext(
+						module, buildType);
+				return context.reporter != null ? context : null;
+			}
+
+			void build(AbstractBuildContext context, int first, int last,
+					IProgressMonitor monitor) {
+				buildModule(context, first, last);
+			}
+
+			void built(AbstractBuildContext context) {
+				reporters.add(((SourceModuleBuildContext) context).reporter);
+			}
+		}, monitor);
+	}
+
+	/**
+	 * Builds source modules by the participants of one kind
+	 */
+	private static abstract class ModuleBuilder {
+
+		final String subTaskTemplate;
+
+		ModuleBuilder(String subTaskTemplate) {
+			this.subTaskTemplate = subTaskTemplate;
+		}
+
+		/**
+		 * Returns the context of the module, or <code>null</code> if the
+		 * module should not be built
+		 */
+		abstract AbstractBuildContext createContext(ISourceModule module);
+
+		/**
+		 * Calls the participants from <code>first</code> (inclusive) to
+		 * <code>last</code> (exclusive)
+		 */
+		abstract void build(AbstractBuildContext context, int first,
+				int last, IProgressMonitor monitor);
+
+		/**
+		 * Called by the builder thread when the module is built by all
+		 * participants, in the order of source modules
+		 */
+		void built(AbstractBuildContext context) {
+			// override if needed
+		}
+	}
+
+	/**
+	 * Builds source modules sequentially, or concurrently by the leading
+	 * participants which are thread safe, if it is allowed by
+	 * {@link DLTKCore#BUILDER_PARALLELISM}.
+	 */
+	private void buildModules(List<ISourceModule> modules,
+			List<?> moduleParticipants, ModuleBuilder builder,
+			IProgressMonitor monitor) {
+		int threadSafe = 0;
+		while (threadSafe < moduleParticipants.size()) {
+			final Object participant = moduleParticipants.get(threadSafe);
+			if (!(participant instanceof IBuildParticipantExtension4 && ((IBuildParticipantExtension4) participant)
+					.isThreadSafe())) {
+				break;
+			}
+			++threadSafe;
+		}
+		final int parallelism = WorkerPool
+				.getParallelism(DLTKCore.BUILDER_PARALLELISM);
+		if (parallelism > 1 && threadSafe != 0 && modules.size() > 1) {
+			buildParallel(modules, moduleParticipants.size(), threadSafe,
+					parallelism, builder, monitor);
+			return;
+		}
+		int remainingWork = modules.size();
 		for (Iterator<ISourceModule> j = modules.iterator(); j.hasNext();) {
 			if (monitor.isCanceled())
 				return;
 			final ISourceModule module = j.next();
-			monitor.subTask(NLS.bind(
-					Messages.ValidatorBuilder_buildModuleSubTask, String
-							.valueOf(modules.size() - counter), module
-							.getElementName()));
-			final SourceModuleBuildContext context = new SourceModuleBuildContext(
-					module, buildType);
-			if (context.reporter != null) {
-				buildModule(context);
-				reporters.add(context.reporter);
+			monitor.subTask(NLS.bind(builder.subTaskTemplate, String
+					.valueOf(remainingWork), module.getElementName()));
+			final AbstractBuildContext context = builder.createContext(module);
+			if (context != null) {
+				builder.build(context, 0, moduleParticipants.size(), monitor);
+				builder.built(context);
 			}
 			monitor.worked(1);
-			++counter;
+			--remainingWork;
+		}
+	}
+
+	/**
+	 * Builds source modules by the first <code>threadSafe</code> participants
+	 * on a bounded pool of worker threads, while the remaining participants
+	 * are called by the current thread only, preserving the order of source
+	 * modules. Each context is passed to the current thread when the workers
+	 * are done with it, so the AST parsed by the worker is reused. If a worker
+	 * fails, the source module is built again by the current thread, so the
+	 * failure is reported the same way as by the sequential build.
+	 */
+	private void buildParallel(List<ISourceModule> modules,
+			int participantCount, final int threadSafe, int parallelism,
+			final ModuleBuilder builder, final IProgressMonitor monitor) {
+		OrderedWorkQueue<ISourceModule, AbstractBuildContext> queue = new OrderedWorkQueue<ISourceModule, AbstractBuildContext>(
+				"DLTK Build Worker", parallelism, modules.iterator()) { //$NON-NLS-1$
+			protected AbstractBuildContext process(ISourceModule module) {
+				final AbstractBuildContext context = builder
+						.createContext(module);
+				if (context != null) {
+					builder.build(context, 0, threadSafe, monitor);
+				}
+				return context;
+			}
+		};
+		try {
+			int remainingWork = modules.size();
+			while (!monitor.isCanceled() && queue.hasNext()) {
+				ISourceModule module = queue.next();
+				monitor.subTask(NLS.bind(builder.subTaskTemplate, String
+						.valueOf(remainingWork--), module.getElementName()));
+				AbstractBuildContext context;
+				int first = threadSafe;
+				try {
+					context = queue.get();
+				} catch (ExecutionException e) {
+					DLTKCore.error(NLS.bind(
+							Messages.StandardScriptBuilder_errorBuilding,
+							module.getPath()), e.getCause());
+					context = builder.createContext(module);
+					first = 0;
+				}
+				if (context != null) {
+					builder.build(context, first, participantCount, monitor);
+					builder.built(context);
+				}
+				monitor.worked(1);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new OperationCanceledException();
+		} finally {
+			queue.shutdown();
 		}
 	}
 
@@ -212,8 +337,8 @@ public class StandardScriptBuilder implements IScriptBuilder,
 		}
 	}
 
-	private void buildModule(IBuildContext context) {
-		for (int k = 0; k < participants.length; ++k) {
+	private void buildModule(IBuildContext context, int first, int last) {
+		for (int k = first; k < last; ++k) {
 			final IBuildParticipant participant = participants[k];
 			try {
 				participant.build(context);
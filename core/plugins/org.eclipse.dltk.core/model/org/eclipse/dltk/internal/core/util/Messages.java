@@ -128,6 +128,7 @@ public class Messages extends NLS {
 	public static String manager_indexingTask;
 	public static String manager_filesToIndex;
 	public static String manager_indexingInProgress;
+	public static String manager_mergingIndexSegments;
 
 	public static String exception_wrongFormat;
 
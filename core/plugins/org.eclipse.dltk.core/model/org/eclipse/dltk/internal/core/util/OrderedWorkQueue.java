@@ -0,0 +1,108 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Sage and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Sage - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.dltk.internal.core.util;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Processes items on a bounded pool of worker threads, while the results are
+ * consumed by the current thread in the order of items. At most
+ * <code>parallelism * 2</code> results are waiting to be consumed, so memory
+ * held by them is bounded.
+ *
+ * <pre>
+ * try {
+ * 	while (queue.hasNext()) {
+ * 		T item = queue.next();
+ * 		R result = queue.get();
+ * 		...
+ * 	}
+ * } finally {
+ * 	queue.shutdown();
+ * }
+ * </pre>
+ */
+public abstract class OrderedWorkQueue<T, R> {
+
+	private final ExecutorService executor;
+	private final int window;
+	private final Iterator<T> items;
+	private final LinkedList<T> pendingItems = new LinkedList<T>();
+	private final LinkedList<Future<R>> pendingResults = new LinkedList<Future<R>>();
+	private Future<R> current;
+
+	public OrderedWorkQueue(String threadName, int parallelism,
+			Iterator<T> items) {
+		this.executor = WorkerPool.create(threadName, parallelism);
+		this.window = parallelism * 2;
+		this.items = items;
+	}
+
+	/**
+	 * Processes the item, called by the worker threads
+	 */
+	protected abstract R process(T item) throws Exception;
+
+	public boolean hasNext() {
+		return items.hasNext() || !pendingItems.isEmpty();
+	}
+
+	/**
+	 * Returns the next item to be consumed, submitting the following ones to
+	 * the workers
+	 */
+	public T next() {
+		while (items.hasNext() && pendingItems.size() < window) {
+			final T item = items.next();
+			pendingItems.add(item);
+			pendingResults.add(executor.submit(new Callable<R>() {
+				public R call() throws Exception {
+					return process(item);
+				}
+			}));
+		}
+		current = pendingResults.removeFirst();
+		return pendingItems.removeFirst();
+	}
+
+	/**
+	 * Waits for the result of the item returned by the last {@link #next()}
+	 * call. Interruption is detected even if the result is already available.
+	 *
+	 * @throws ExecutionException
+	 *             if processing of the item failed
+	 * @throws InterruptedException
+	 *             if the current thread was interrupted while waiting
+	 */
+	public R get() throws InterruptedException, ExecutionException {
+		if (Thread.interrupted()) {
+			throw new InterruptedException();
+		}
+		return current.get();
+	}
+
+	/**
+	 * Stops the workers, the results not consumed yet are discarded
+	 */
+	public void shutdown() {
+		for (Future<R> future : pendingResults) {
+			future.cancel(true);
+		}
+		pendingItems.clear();
+		pendingResults.clear();
+		executor.shutdownNow();
+	}
+}
@@ -0,0 +1,74 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Sage and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Sage - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.dltk.internal.core.util;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import org.eclipse.dltk.core.DLTKCore;
+
+/**
+ * Worker threads shared by the indexer, the builder and the search engine.
+ */
+public class WorkerPool {
+
+	private WorkerPool() {
+	}
+
+	/**
+	 * Returns number of threads configured by the specified option, or 1 if
+	 * the option is not set or is not a number
+	 *
+	 * @see DLTKCore#INDEXER_PARALLELISM
+	 * @see DLTKCore#BUILDER_PARALLELISM
+	 * @see DLTKCore#SEARCH_PARALLELISM
+	 */
+	public static int getParallelism(String optionName) {
+		String value = DLTKCore.getOption(optionName);
+		if (value != null) {
+			try {
+				return Integer.parseInt(value.trim());
+			} catch (NumberFormatException e) {
+				// use default
+			}
+		}
+		return 1;
+	}
+
+	/**
+	 * Creates factory of daemon threads named
+	 * <code>threadName #&lt;n&gt;</code>
+	 */
+	public static ThreadFactory createThreadFactory(final String threadName,
+			final int priority) {
+		return new ThreadFactory() {
+			private int count;
+
+			public synchronized Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, threadName + " #" //$NON-NLS-1$
+						+ (++count));
+				thread.setDaemon(true);
+				thread.setPriority(priority);
+				return thread;
+			}
+		};
+	}
+
+	/**
+	 * Creates fixed pool of daemon worker threads of slightly lower priority
+	 * than normal. Caller is responsible for shutting the pool down.
+	 */
+	public static ExecutorService create(String threadName, int parallelism) {
+		return Executors.newFixedThreadPool(parallelism, createThreadFactory(
+				threadName, Thread.NORM_PRIORITY - 1));
+	}
+}
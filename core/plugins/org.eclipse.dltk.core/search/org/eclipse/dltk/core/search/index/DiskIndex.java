@@ -12,6 +12,7 @@ package org.eclipse.dltk.core.search.index;
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.File;
@@ -19,6 +20,14 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.io.UTFDataFormatException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.regex.Pattern;
 
 import org.eclipse.dltk.compiler.CharOperation;
@@ -26,6 +35,9 @@ import org.eclipse.dltk.compiler.util.HashtableOfIntValues;
 import org.eclipse.dltk.compiler.util.HashtableOfObject;
 import org.eclipse.dltk.compiler.util.SimpleLookupTable;
 import org.eclipse.dltk.compiler.util.SimpleSet;
+import org.eclipse.dltk.core.DLTKCore;
+import org.eclipse.dltk.core.metrics.Counter;
+import org.eclipse.dltk.core.metrics.Metrics;
 import org.eclipse.dltk.core.search.SearchPattern;
 import org.eclipse.dltk.core.search.indexing.IIndexConstants;
 import org.eclipse.dltk.internal.core.util.Messages;
@@ -44,9 +56,6 @@ public class DiskIndex {
 
 	private int[] chunkOffsets;
 
-	private int documentReferenceSize; // 1, 2 or more bytes... depends on # of
-	// document names
-
 	private int startOfCategoryTables;
 
 	private HashtableOfIntValues categoryOffsets;
@@ -60,9 +69,27 @@ public class DiskIndex {
 	// int[] of document #'s) or
 	// offset if not read yet
 
-	private char[] cachedCategoryName;
+	private volatile char[] cachedCategoryName;
+
+	/*
+	 * When the index file is mapped into memory, category tables and document
+	 * names are decoded from the mapped buffer without holding the monitor,
+	 * so the same index can be queried by many threads concurrently. Cached
+	 * tables are shared between threads and are never modified.
+	 */
+	private final boolean mapped;
+
+	private final Object mapLock = new Object();
+
+	private volatile ByteBuffer mappedBuffer;
+
+	private volatile AtomicReferenceArray<String[]> mappedChunks;
 
-	public static final String SIGNATURE = "DLTK INDEX VERSION 1.012"; //$NON-NLS-1$
+	private volatile ConcurrentHashMap<String, HashtableOfObject> mappedTables;
+
+	private final ConcurrentHashMap<String, CategoryBlocks> categoryBlocks = new ConcurrentHashMap<String, CategoryBlocks>();
+
+	public static final String SIGNATURE = "DLTK INDEX VERSION 1.014"; //$NON-NLS-1$
 
 	public final static boolean DEBUG = false;
 
@@ -72,6 +99,47 @@ public class DiskIndex {
 
 	private static final int CHUNK_SIZE = 100;
 
+	/** Number of words in the block of category table */
+	private static final int BLOCK_SIZE = 32;
+
+	private static final int CATEGORY_HEADER_SIZE = 16;
+
+	private static final int LARGE_ARRAY_SIZE = 256;
+
+	private static final Counter CATEGORY_HITS = Metrics
+			.counter("index.categoryTables.hits"); //$NON-NLS-1$
+	private static final Counter CATEGORY_MISSES = Metrics
+			.counter("index.categoryTables.misses"); //$NON-NLS-1$
+	/**
+	 * Chunks of document names decoded, they are cached until the index is
+	 * closed
+	 */
+	private static final Counter CHUNK_READS = Metrics
+			.counter("index.chunks.reads"); //$NON-NLS-1$
+
+	/**
+	 * Header and block index of the category table
+	 */
+	private static class CategoryBlocks {
+
+		final int offset;
+		final int size;
+		final char[][] firstWords;
+		final int[] blockOffsets; // relative to blocksStart
+		final int blocksStart;
+		final int blocksLength;
+
+		CategoryBlocks(int offset, int size, char[][] firstWords,
+				int[] blockOffsets, int blocksStart, int blocksLength) {
+			this.offset = offset;
+			this.size = size;
+			this.firstWords = firstWords;
+			this.blockOffsets = blockOffsets;
+			this.blocksStart = blocksStart;
+			this.blocksLength = blocksLength;
+		}
+	}
+
 	static class IntList {
 
 		int size;
@@ -109,71 +177,62 @@ public class DiskIndex {
 		this.numberOfChunks = -1;
 		this.sizeOfLastChunk = -1;
 		this.chunkOffsets = null;
-		this.documentReferenceSize = -1;
 		this.cacheUserCount = -1;
 		this.cachedChunks = null;
 		this.categoryTables = null;
 		this.cachedCategoryName = null;
 		this.categoryOffsets = null;
+		this.mapped = DLTKCore.ENABLED.equals(DLTKCore
+				.getOption(DLTKCore.INDEX_MEMORY_MAPPING));
 	}
 
-	SimpleSet addDocumentNames(String substring, MemoryIndex memoryIndex)
+	SimpleSet addDocumentNames(String substring, SimpleSet results,
+			MemoryIndex memoryIndex, SimpleSet hiddenDocuments)
 			throws IOException {
 		// must skip over documents which have been added/changed/deleted in the
-		// memory index
+		// memory index or in the newer segments
 		String[] docNames = readAllDocumentNames();
-		SimpleSet results = new SimpleSet(docNames.length);
-		if (substring == null) {
-			if (memoryIndex == null) {
-				for (int i = 0, l = docNames.length; i < l; i++)
-					results.add(docNames[i]);
-			} else {
-				SimpleLookupTable docsToRefs = memoryIndex.docsToReferences;
-				for (int i = 0, l = docNames.length; i < l; i++) {
-					String docName = docNames[i];
-					if (!docsToRefs.containsKey(docName))
-						results.add(docName);
-				}
-			}
-		} else {
-			if (memoryIndex == null) {
-				for (int i = 0, l = docNames.length; i < l; i++)
-					if (docNames[i].startsWith(substring, 0))
-						results.add(docNames[i]);
-			} else {
-				SimpleLookupTable docsToRefs = memoryIndex.docsToReferences;
-				for (int i = 0, l = docNames.length; i < l; i++) {
-					String docName = docNames[i];
-					if (docName.startsWith(substring, 0)
-							&& !docsToRefs.containsKey(docName))
-						results.add(docName);
-				}
-			}
+		if (results == null)
+			results = new SimpleSet(docNames.length);
+		for (int i = 0, l = docNames.length; i < l; i++) {
+			String docName = docNames[i];
+			if ((substring == null || docName.startsWith(substring, 0))
+					&& !isHidden(docName, memoryIndex, hiddenDocuments))
+				results.add(docName);
 		}
 		return results;
 	}
 
+	private static boolean isHidden(String docName, MemoryIndex memoryIndex,
+			SimpleSet hiddenDocuments) {
+		return (memoryIndex != null && memoryIndex.docsToReferences
+				.containsKey(docName))
+				|| (hiddenDocuments != null && hiddenDocuments
+						.includes(docName));
+	}
+
 	private HashtableOfObject addQueryResult(HashtableOfObject results,
 			char[] word, HashtableOfObject wordsToDocNumbers,
-			MemoryIndex memoryIndex) throws IOException {
+			MemoryIndex memoryIndex, SimpleSet hiddenDocuments)
+			throws IOException {
 		// must skip over documents which have been added/changed/deleted in the
-		// memory index
+		// memory index or in the newer segments
 		if (results == null)
 			results = new HashtableOfObject(13);
 		EntryResult result = (EntryResult) results.get(word);
-		if (memoryIndex == null) {
+		if (memoryIndex == null && hiddenDocuments == null) {
 			if (result == null)
-				results.put(word, new EntryResult(word, wordsToDocNumbers));
+				results.put(word, new EntryResult(word, wordsToDocNumbers,
+						this));
 			else
-				result.addDocumentTable(wordsToDocNumbers);
+				result.addDocumentTable(wordsToDocNumbers, this);
 		} else {
-			SimpleLookupTable docsToRefs = memoryIndex.docsToReferences;
 			if (result == null)
 				result = new EntryResult(word, null);
-			int[] docNumbers = readDocumentNumbers(wordsToDocNumbers.get(word));
-			for (int i = 0, l = docNumbers.length; i < l; i++) {
-				String docName = readDocumentName(docNumbers[i]);
-				if (!docsToRefs.containsKey(docName))
+			String[] docNames = readDocumentNames(wordsToDocNumbers.get(word));
+			for (int i = 0, l = docNames.length; i < l; i++) {
+				String docName = docNames[i];
+				if (!isHidden(docName, memoryIndex, hiddenDocuments))
 					result.addDocumentName(docName);
 			}
 			if (!result.isEmpty())
@@ -183,13 +242,13 @@ public class DiskIndex {
 	}
 
 	HashtableOfObject addQueryResults(char[][] categories, char[] key,
-			int matchRule, MemoryIndex memoryIndex) throws IOException {
+			int matchRule, HashtableOfObject results, MemoryIndex memoryIndex,
+			SimpleSet hiddenDocuments) throws IOException {
 		// assumes sender has called startQuery() & will call stopQuery() when
 		// finished
 		if (this.categoryOffsets == null)
-			return null; // file is empty
+			return results; // file is empty
 
-		HashtableOfObject results = null; // initialized if needed
 		if (key == null) {
 			for (int i = 0, l = categories.length; i < l; i++) {
 				HashtableOfObject wordsToDocNumbers = readCategoryTable(
@@ -203,7 +262,8 @@ public class DiskIndex {
 					for (int j = 0, m = words.length; j < m; j++)
 						if (words[j] != null)
 							results = addQueryResult(results, words[j],
-									wordsToDocNumbers, memoryIndex);
+									wordsToDocNumbers, memoryIndex,
+									hiddenDocuments);
 				}
 			}
 			if (results != null && this.cachedChunks == null)
@@ -212,18 +272,19 @@ public class DiskIndex {
 			switch (matchRule) {
 			case SearchPattern.R_EXACT_MATCH | SearchPattern.R_CASE_SENSITIVE:
 				for (int i = 0, l = categories.length; i < l; i++) {
-					HashtableOfObject wordsToDocNumbers = readCategoryTable(
-							categories[i], false);
+					HashtableOfObject wordsToDocNumbers = readCategoryWords(
+							categories[i], key, false);
 					if (wordsToDocNumbers != null
 							&& wordsToDocNumbers.containsKey(key))
 						results = addQueryResult(results, key,
-								wordsToDocNumbers, memoryIndex);
+								wordsToDocNumbers, memoryIndex,
+								hiddenDocuments);
 				}
 				break;
 			case SearchPattern.R_PREFIX_MATCH | SearchPattern.R_CASE_SENSITIVE:
 				for (int i = 0, l = categories.length; i < l; i++) {
-					HashtableOfObject wordsToDocNumbers = readCategoryTable(
-							categories[i], false);
+					HashtableOfObject wordsToDocNumbers = readCategoryWords(
+							categories[i], key, true);
 					if (wordsToDocNumbers != null) {
 						char[][] words = wordsToDocNumbers.keyTable;
 						for (int j = 0, m = words.length; j < m; j++) {
@@ -231,7 +292,8 @@ public class DiskIndex {
 							if (word != null && key[0] == word[0]
 									&& CharOperation.prefixEquals(key, word))
 								results = addQueryResult(results, word,
-										wordsToDocNumbers, memoryIndex);
+										wordsToDocNumbers, memoryIndex,
+										hiddenDocuments);
 						}
 					}
 				}
@@ -263,7 +325,8 @@ public class DiskIndex {
 								if (regexpPattern.matcher(
 										new String(decodedWord)).matches()) {
 									results = addQueryResult(results, word,
-											wordsToDocNumbers, memoryIndex);
+											wordsToDocNumbers, memoryIndex,
+											hiddenDocuments);
 								}
 							}
 						}
@@ -271,9 +334,22 @@ public class DiskIndex {
 				}
 				break;
 			default:
+				char[] start = getRangeStart(key, matchRule);
+				char[] firstChars = null;
+				if (start != null
+						&& (matchRule & SearchPattern.R_CASE_SENSITIVE) == 0)
+					firstChars = CaseVariants.get(start[0]);
 				for (int i = 0, l = categories.length; i < l; i++) {
-					HashtableOfObject wordsToDocNumbers = readCategoryTable(
-							categories[i], false);
+					HashtableOfObject wordsToDocNumbers;
+					if (start == null)
+						wordsToDocNumbers = readCategoryTable(categories[i],
+								false);
+					else if (firstChars == null)
+						wordsToDocNumbers = readCategoryWords(categories[i],
+								start, true);
+					else
+						wordsToDocNumbers = readCategoryWords(categories[i],
+								firstChars);
 					if (wordsToDocNumbers != null) {
 						char[][] words = wordsToDocNumbers.keyTable;
 						for (int j = 0, m = words.length; j < m; j++) {
@@ -281,7 +357,8 @@ public class DiskIndex {
 							if (word != null
 									&& Index.isMatch(key, word, matchRule)) {
 								results = addQueryResult(results, word,
-										wordsToDocNumbers, memoryIndex);
+										wordsToDocNumbers, memoryIndex,
+										hiddenDocuments);
 							}
 						}
 					}
@@ -289,13 +366,23 @@ public class DiskIndex {
 			}
 		}
 
-		if (results == null)
-			return null;
 		return results;
 	}
 
 	private void cacheDocumentNames() throws IOException {
 		// will need all document names so get them now
+		if (this.mapped) {
+			AtomicReferenceArray<String[]> chunks = getMappedChunks();
+			ByteBuffer buffer = null;
+			for (int i = 0; i < this.numberOfChunks; i++) {
+				if (chunks.get(i) == null) {
+					if (buffer == null)
+						buffer = getMappedBuffer();
+					chunks.set(i, readChunk(buffer, i));
+				}
+			}
+			return;
+		}
 		this.cachedChunks = new String[this.numberOfChunks][];
 		DataInputStream stream = new DataInputStream(new BufferedInputStream(
 				new FileInputStream(getIndexFile()),
@@ -612,7 +699,8 @@ public class DiskIndex {
 					}
 				}
 			}
-			onDisk.categoryTables.put(categoryName, null); // flush cached
+			if (onDisk.categoryTables != null) // not used when mapped
+				onDisk.categoryTables.put(categoryName, null); // flush cached
 			// table
 		}
 		writeCategoryTable(categoryName, wordsToDocs, stream);
@@ -620,6 +708,20 @@ public class DiskIndex {
 
 	DiskIndex mergeWith(MemoryIndex memoryIndex) throws IOException {
 		// assume write lock is held
+		DiskIndex newDiskIndex = writeMergedIndex(memoryIndex, this.fileName
+				+ ".tmp"); //$NON-NLS-1$
+		if (newDiskIndex != this)
+			newDiskIndex.replace(this);
+		return newDiskIndex;
+	}
+
+	/**
+	 * Writes this index merged with the memory index into a new file, or
+	 * returns this index if there is nothing to merge. This index is only
+	 * read, so it can be queried meanwhile.
+	 */
+	DiskIndex writeMergedIndex(MemoryIndex memoryIndex, String newFileName)
+			throws IOException {
 		// compute & write out new docNames
 		String[] docNames = readAllDocumentNames();
 		int previousLength = docNames.length;
@@ -642,12 +744,12 @@ public class DiskIndex {
 			// deleted documents that had never been saved
 
 			// index is now empty since all the saved documents were removed
-			DiskIndex newDiskIndex = new DiskIndex(this.fileName);
+			DiskIndex newDiskIndex = new DiskIndex(newFileName);
 			newDiskIndex.initialize(false);
 			return newDiskIndex;
 		}
 
-		DiskIndex newDiskIndex = new DiskIndex(this.fileName + ".tmp"); //$NON-NLS-1$
+		DiskIndex newDiskIndex = new DiskIndex(newFileName);
 		File newIndexFile = newDiskIndex.getIndexFile();
 		try {
 			newDiskIndex.initializeFrom(this, newIndexFile);
@@ -687,39 +789,103 @@ public class DiskIndex {
 				stream.close();
 			}
 			newDiskIndex.writeOffsetToHeader(offsetToHeader);
+		} catch (IOException e) {
+			if (newIndexFile.exists() && !newIndexFile.delete())
+				if (DEBUG)
+					System.out
+							.println("writeMergedIndex - Failed to delete temp index " + newDiskIndex.fileName); //$NON-NLS-1$
+			throw e;
+		}
+		return newDiskIndex;
+	}
 
-			// rename file by deleting previous index file & renaming temp one
-			File old = getIndexFile();
+	/**
+	 * Replaces the file of the old index with the file of this index, which is
+	 * renamed to the name of the old file.
+	 */
+	void replace(DiskIndex oldIndex) throws IOException {
+		File newIndexFile = getIndexFile();
+		try {
+			// rename file by deleting previous index file & renaming temp one,
+			// the mapping of the previous index remains readable
+			File old = oldIndex.getIndexFile();
 			if (old.exists() && !old.delete()) {
 				if (DEBUG)
 					System.out
-							.println("mergeWith - Failed to delete " + this.fileName); //$NON-NLS-1$
+							.println("replace - Failed to delete " + oldIndex.fileName); //$NON-NLS-1$
 				throw new IOException(
-						"Failed to delete index file " + this.fileName); //$NON-NLS-1$
+						"Failed to delete index file " + oldIndex.fileName); //$NON-NLS-1$
 			}
 			if (!newIndexFile.renameTo(old)) {
 				if (DEBUG)
 					System.out
-							.println("mergeWith - Failed to rename " + this.fileName); //$NON-NLS-1$
+							.println("replace - Failed to rename " + oldIndex.fileName); //$NON-NLS-1$
 				throw new IOException(
-						"Failed to rename index file " + this.fileName); //$NON-NLS-1$
+						"Failed to rename index file " + oldIndex.fileName); //$NON-NLS-1$
 			}
 		} catch (IOException e) {
 			if (newIndexFile.exists() && !newIndexFile.delete())
 				if (DEBUG)
 					System.out
-							.println("mergeWith - Failed to delete temp index " + newDiskIndex.fileName); //$NON-NLS-1$
+							.println("replace - Failed to delete temp index " + this.fileName); //$NON-NLS-1$
 			throw e;
 		}
+		this.fileName = oldIndex.fileName;
+	}
 
-		newDiskIndex.fileName = this.fileName;
-		return newDiskIndex;
+	/**
+	 * Copies the entries of this index into the memory index, replacing the
+	 * entries of the same documents. Documents listed under the removals
+	 * category are removed from the memory index.
+	 */
+	void copyInto(MemoryIndex memoryIndex, char[] removalsCategory)
+			throws IOException {
+		String[] docNames = readAllDocumentNames();
+		for (int i = 0, l = docNames.length; i < l; i++)
+			memoryIndex.remove(docNames[i]);
+		if (this.categoryOffsets == null)
+			return; // file is empty
+
+		char[][] categoryNames = this.categoryOffsets.keyTable;
+		for (int i = 0, l = categoryNames.length; i < l; i++) {
+			char[] categoryName = categoryNames[i];
+			if (categoryName == null
+					|| CharOperation.equals(categoryName, removalsCategory))
+				continue;
+			HashtableOfObject wordsToDocs = readCategoryTable(categoryName,
+					true);
+			char[][] words = wordsToDocs.keyTable;
+			Object[] docNumbers = wordsToDocs.valueTable;
+			for (int j = 0, m = words.length; j < m; j++) {
+				if (words[j] != null) {
+					int[] numbers = (int[]) docNumbers[j];
+					for (int k = 0, n = numbers.length; k < n; k++)
+						memoryIndex.addIndexEntry(categoryName, words[j],
+								docNames[numbers[k]]);
+				}
+			}
+		}
 	}
 
-	private synchronized String[] readAllDocumentNames() throws IOException {
+	String[] readAllDocumentNames() throws IOException {
 		if (this.numberOfChunks <= 0)
 			return new String[0];
+		if (!this.mapped)
+			return readAllDocumentNamesFromFile();
+
+		ByteBuffer buffer = getMappedBuffer();
+		buffer.position(this.chunkOffsets[0]);
+		int lastIndex = this.numberOfChunks - 1;
+		String[] docNames = new String[lastIndex * CHUNK_SIZE
+				+ sizeOfLastChunk];
+		for (int i = 0; i < this.numberOfChunks; i++)
+			readChunk(docNames, buffer, i * CHUNK_SIZE,
+					i < lastIndex ? CHUNK_SIZE : sizeOfLastChunk);
+		return docNames;
+	}
 
+	private synchronized String[] readAllDocumentNamesFromFile()
+			throws IOException {
 		DataInputStream stream = new DataInputStream(new BufferedInputStream(
 				new FileInputStream(getIndexFile()),
 				this.numberOfChunks > 5 ? 4096 : 2048));
@@ -737,11 +903,45 @@ public class DiskIndex {
 		}
 	}
 
-	private synchronized HashtableOfObject readCategoryTable(
+	private HashtableOfObject readCategoryTable(char[] categoryName,
+			boolean readDocNumbers) throws IOException {
+		if (!this.mapped)
+			return readCategoryTableFromFile(categoryName, readDocNumbers);
+
+		// result will be null if categoryName is unknown
+		CategoryBlocks blocks = readCategoryBlocks(categoryName);
+		if (blocks == null)
+			return null;
+
+		ConcurrentHashMap<String, HashtableOfObject> tables = getMappedTables();
+		String tableName = new String(categoryName);
+		HashtableOfObject categoryTable = tables.get(tableName);
+		if (categoryTable != null) {
+			CATEGORY_HITS.increment();
+			if (readDocNumbers) // resolve remaining document number arrays
+				// in a copy, since cached table can be used by other threads
+				categoryTable = readDocumentNumbers(categoryTable,
+						blocks.offset, true);
+			return categoryTable;
+		}
+
+		CATEGORY_MISSES.increment();
+		categoryTable = readBlocks(blocks, 0, blocks.firstWords.length - 1,
+				null, false, new HashtableOfObject(blocks.size));
+		if (readDocNumbers)
+			readDocumentNumbers(categoryTable, blocks.offset, false);
+		tables.putIfAbsent(tableName, categoryTable);
+		// cache the table as long as its not too big
+		this.cachedCategoryName = categoryTable.elementSize < 10000 ? categoryName
+				: null;
+		return categoryTable;
+	}
+
+	private synchronized HashtableOfObject readCategoryTableFromFile(
 			char[] categoryName, boolean readDocNumbers) throws IOException {
 		// result will be null if categoryName is unknown
-		int offset = this.categoryOffsets.get(categoryName);
-		if (offset == HashtableOfIntValues.NO_VALUE)
+		CategoryBlocks blocks = readCategoryBlocks(categoryName);
+		if (blocks == null)
 			return null;
 
 		if (this.categoryTables == null) {
@@ -750,112 +950,289 @@ public class DiskIndex {
 			HashtableOfObject cachedTable = (HashtableOfObject) this.categoryTables
 					.get(categoryName);
 			if (cachedTable != null) {
-				if (readDocNumbers) { // must cache remaining document number
+				CATEGORY_HITS.increment();
+				if (readDocNumbers) // must cache remaining document number
 					// arrays
-					Object[] arrayOffsets = cachedTable.valueTable;
-					for (int i = 0, l = arrayOffsets.length; i < l; i++)
-						if (arrayOffsets[i] instanceof Integer)
-							arrayOffsets[i] = readDocumentNumbers(arrayOffsets[i]);
-				}
+					readDocumentNumbers(cachedTable, blocks.offset, false);
 				return cachedTable;
 			}
 		}
 
-		DataInputStream stream = new DataInputStream(new BufferedInputStream(
-				new FileInputStream(getIndexFile()), 2048));
-		HashtableOfObject categoryTable = null;
-		char[][] matchingWords = null;
-		int count = 0;
-		int firstOffset = -1;
-		try {
-			stream.skip(offset);
-			int size = stream.readInt();
-			try {
-				if (size < 0) { // DEBUG
-					System.err
-							.println("-------------------- DEBUG --------------------"); //$NON-NLS-1$
-					System.err.println("file = " + getIndexFile()); //$NON-NLS-1$
-					System.err.println("offset = " + offset); //$NON-NLS-1$
-					System.err.println("size = " + size); //$NON-NLS-1$
-					System.err
-							.println("--------------------   END   --------------------"); //$NON-NLS-1$
+		CATEGORY_MISSES.increment();
+		HashtableOfObject categoryTable = readBlocks(blocks, 0,
+				blocks.firstWords.length - 1, null, false,
+				new HashtableOfObject(blocks.size));
+		if (readDocNumbers)
+			readDocumentNumbers(categoryTable, blocks.offset, false);
+		this.categoryTables.put(categoryName, categoryTable);
+		// cache the table as long as its not too big
+		// in practise, some tables can be greater than 500K when the
+		// contain more than 10K elements
+		this.cachedCategoryName = categoryTable.elementSize < 10000 ? categoryName
+				: null;
+		return categoryTable;
+	}
+
+	/**
+	 * Returns the characters all the words matching the key start with, or
+	 * <code>null</code> if the matching words could start with any
+	 * characters. For case insensitive rules only the first character is
+	 * returned, the words start with any of its case variants.
+	 */
+	private static char[] getRangeStart(char[] key, int matchRule) {
+		int length = 0;
+		if ((matchRule & SearchPattern.R_PATTERN_MATCH) != 0) {
+			while (length < key.length && key[length] != '*'
+					&& key[length] != '?')
+				length++;
+		} else {
+			length = key.length;
+		}
+		if ((matchRule & SearchPattern.R_CAMELCASE_MATCH) != 0
+				|| (matchRule & SearchPattern.R_CASE_SENSITIVE) == 0)
+			length = Math.min(length, 1);
+		return length == 0 ? null : CharOperation.subarray(key, 0, length);
+	}
+
+	/**
+	 * Characters equal to each other ignoring case, as compared by
+	 * {@link CharOperation}
+	 */
+	private static class CaseVariants {
+		private static final Map<Character, char[]> variants = new HashMap<Character, char[]>();
+
+		static {
+			Map<Character, StringBuffer> groups = new HashMap<Character, StringBuffer>();
+			for (int i = Character.MIN_VALUE; i <= Character.MAX_VALUE; i++) {
+				char c = (char) i;
+				Character lowerCase = new Character(Character.toLowerCase(c));
+				if (lowerCase.charValue() != c) {
+					StringBuffer group = groups.get(lowerCase);
+					if (group == null) {
+						group = new StringBuffer();
+						group.append(lowerCase.charValue());
+						groups.put(lowerCase, group);
+					}
+					group.append(c);
 				}
-				categoryTable = new HashtableOfObject(size);
-			} catch (OutOfMemoryError oom) {
-				// DEBUG
-				oom.printStackTrace();
-				System.err
-						.println("-------------------- DEBUG --------------------"); //$NON-NLS-1$
-				System.err.println("file = " + getIndexFile()); //$NON-NLS-1$
-				System.err.println("offset = " + offset); //$NON-NLS-1$
-				System.err.println("size = " + size); //$NON-NLS-1$
-				System.err
-						.println("--------------------   END   --------------------"); //$NON-NLS-1$
-				throw oom;
 			}
-			int largeArraySize = 256;
-			for (int i = 0; i < size; i++) {
-				char[] word = Util.readUTF(stream);
-				int arrayOffset = stream.readInt();
-				// if arrayOffset is:
-				// <= 0 then the array size == 1 with the value -> -arrayOffset
-				// > 1 & < 256 then the size of the array is > 1 & < 256, the
-				// document array follows immediately
-				// 256 if the array size >= 256 followed by another int which is
-				// the offset to the array (written prior to the table)
-				if (arrayOffset <= 0) {
-					categoryTable.put(word, new int[] { -arrayOffset }); // store
-					// 1
-					// element
-					// array
-					// by
-					// negating
-					// documentNumber
-				} else if (arrayOffset < largeArraySize) {
-					categoryTable.put(word, readDocumentArray(stream,
-							arrayOffset)); // read in-lined array providing
-					// size
+			for (Map.Entry<Character, StringBuffer> entry : groups.entrySet()) {
+				char[] group = entry.getValue().toString().toCharArray();
+				Arrays.sort(group);
+				variants.put(entry.getKey(), group);
+			}
+		}
+
+		/**
+		 * Returns the characters equal to the given one ignoring case, in
+		 * ascending order
+		 */
+		static char[] get(char c) {
+			char[] group = variants.get(new Character(Character
+					.toLowerCase(c)));
+			return group != null ? group : new char[] { c };
+		}
+	}
+
+	/**
+	 * Returns the words of the category which start with any of the given
+	 * characters. Words of the sorted category table starting with each
+	 * character are contiguous, so only the blocks containing them are
+	 * decoded, unless the whole table is already cached.
+	 */
+	private HashtableOfObject readCategoryWords(char[] categoryName,
+			char[] firstChars) throws IOException {
+		HashtableOfObject cachedTable = getCachedCategoryTable(categoryName);
+		if (cachedTable != null)
+			return cachedTable;
+
+		// result will be null if categoryName is unknown
+		CategoryBlocks blocks = readCategoryBlocks(categoryName);
+		if (blocks == null)
+			return null;
+
+		HashtableOfObject table = new HashtableOfObject(13);
+		for (int i = 0; i < firstChars.length; i++)
+			readBlocks(blocks, new char[] { firstChars[i] }, true, table);
+		return table;
+	}
+
+	/**
+	 * Returns the words of the category which are equal to the key or start
+	 * with the key. Only the blocks of the category table which may contain
+	 * such words are decoded, unless the whole table is already cached.
+	 */
+	private HashtableOfObject readCategoryWords(char[] categoryName,
+			char[] key, boolean prefix) throws IOException {
+		HashtableOfObject cachedTable = getCachedCategoryTable(categoryName);
+		if (cachedTable != null)
+			return cachedTable;
+
+		// result will be null if categoryName is unknown
+		CategoryBlocks blocks = readCategoryBlocks(categoryName);
+		if (blocks == null)
+			return null;
+
+		return readBlocks(blocks, key, prefix, new HashtableOfObject(
+				prefix ? 13 : 1));
+	}
+
+	/**
+	 * Adds the words which are equal to the key or start with the key to the
+	 * table, decoding only the blocks which may contain such words
+	 */
+	private HashtableOfObject readBlocks(CategoryBlocks blocks, char[] key,
+			boolean prefix, HashtableOfObject table) throws IOException {
+		// the last block starting with a word <= key
+		char[][] firstWords = blocks.firstWords;
+		int low = 0;
+		int high = firstWords.length - 1;
+		while (low < high) {
+			int mid = (low + high + 1) >>> 1;
+			if (Util.compare(firstWords[mid], key) <= 0)
+				low = mid;
+			else
+				high = mid - 1;
+		}
+		int last = low;
+		if (prefix)
+			while (last + 1 < firstWords.length
+					&& CharOperation.prefixEquals(key, firstWords[last + 1]))
+				last++;
+		return readBlocks(blocks, low, last, key, prefix, table);
+	}
+
+	private HashtableOfObject getCachedCategoryTable(char[] categoryName) {
+		if (this.mapped) {
+			ConcurrentHashMap<String, HashtableOfObject> tables = this.mappedTables;
+			return tables == null ? null : tables.get(new String(categoryName));
+		}
+		synchronized (this) {
+			return this.categoryTables == null ? null
+					: (HashtableOfObject) this.categoryTables.get(categoryName);
+		}
+	}
+
+	private CategoryBlocks readCategoryBlocks(char[] categoryName)
+			throws IOException {
+		int offset = this.categoryOffsets.get(categoryName);
+		if (offset == HashtableOfIntValues.NO_VALUE)
+			return null;
+
+		String name = new String(categoryName);
+		CategoryBlocks blocks = this.categoryBlocks.get(name);
+		if (blocks == null) {
+			// must be same order as writeCategoryTable()
+			ByteBuffer buffer = readRegion(offset, CATEGORY_HEADER_SIZE);
+			int size = buffer.getInt();
+			int blockCount = buffer.getInt();
+			int indexLength = buffer.getInt();
+			int blocksLength = buffer.getInt();
+			int indexStart = offset + CATEGORY_HEADER_SIZE;
+			buffer = readRegion(indexStart, indexLength);
+			char[][] firstWords = new char[blockCount][];
+			int[] blockOffsets = new int[blockCount];
+			for (int i = 0; i < blockCount; i++) {
+				firstWords[i] = readUTF(buffer);
+				blockOffsets[i] = buffer.getInt();
+			}
+			blocks = new CategoryBlocks(offset, size, firstWords,
+					blockOffsets, indexStart + indexLength, blocksLength);
+			this.categoryBlocks.putIfAbsent(name, blocks);
+		}
+		return blocks;
+	}
+
+	/**
+	 * Decodes the blocks from <code>first</code> to <code>last</code> and adds
+	 * the words matching the key to the table, or all the words if the key is
+	 * <code>null</code>.
+	 */
+	private HashtableOfObject readBlocks(CategoryBlocks blocks, int first,
+			int last, char[] key, boolean prefix, HashtableOfObject table)
+			throws IOException {
+		if (first > last)
+			return table; // empty category
+		int[] blockOffsets = blocks.blockOffsets;
+		int start = blockOffsets[first];
+		int end = last + 1 < blockOffsets.length ? blockOffsets[last + 1]
+				: blocks.blocksLength;
+		ByteBuffer buffer = readRegion(blocks.blocksStart + start, end - start);
+		for (int i = first; i <= last; i++) {
+			char[] word = blocks.firstWords[i];
+			int count = Math.min(BLOCK_SIZE, blocks.size - i * BLOCK_SIZE);
+			for (int j = 0; j < count; j++) {
+				if (j > 0) {
+					int prefixLength = buffer.get() & 0xFF;
+					char[] suffix = readUTF(buffer);
+					char[] next = new char[prefixLength + suffix.length];
+					System.arraycopy(word, 0, next, 0, prefixLength);
+					System.arraycopy(suffix, 0, next, prefixLength,
+							suffix.length);
+					word = next;
+				}
+				if (key == null
+						|| (prefix ? CharOperation.prefixEquals(key, word)
+								: CharOperation.equals(key, word))) {
+					table.put(word, readArrayOffset(buffer));
+				} else if (Util.compare(word, key) > 0) {
+					return table; // words are sorted
 				} else {
-					arrayOffset = stream.readInt(); // read actual offset
-					if (readDocNumbers) {
-						if (matchingWords == null)
-							matchingWords = new char[size][];
-						if (count == 0)
-							firstOffset = arrayOffset;
-						matchingWords[count++] = word;
-					}
-					categoryTable.put(word, new Integer(arrayOffset)); // offset
-					// to
-					// array
-					// in
-					// the
-					// file
+					skipArrayOffset(buffer);
 				}
 			}
-			this.categoryTables.put(categoryName, categoryTable);
-			// cache the table as long as its not too big
-			// in practise, some tables can be greater than 500K when the
-			// contain more than 10K elements
-			this.cachedCategoryName = categoryTable.elementSize < 10000 ? categoryName
-					: null;
-		} finally {
-			stream.close();
 		}
+		return table;
+	}
 
-		if (matchingWords != null && count > 0) {
-			stream = new DataInputStream(new BufferedInputStream(
-					new FileInputStream(getIndexFile()), 2048));
-			try {
-				stream.skip(firstOffset);
-				for (int i = 0; i < count; i++)
-					// each array follows the previous one
-					categoryTable.put(matchingWords[i], readDocumentArray(
-							stream, stream.readInt()));
-			} finally {
-				stream.close();
-			}
+	private Object readArrayOffset(ByteBuffer buffer) {
+		int arrayOffset = buffer.getInt();
+		// if arrayOffset is:
+		// <= 0 then the array size == 1 with the value -> -arrayOffset
+		// > 1 & < 256 then the size of the array is > 1 & < 256, the
+		// document array follows immediately
+		// 256 if the array size >= 256 followed by another int which is
+		// the offset to the array (written prior to the table)
+		if (arrayOffset <= 0)
+			return new int[] { -arrayOffset }; // store 1 element array by
+		// negating documentNumber
+		if (arrayOffset < LARGE_ARRAY_SIZE)
+			return readDocumentArray(buffer, arrayOffset); // read in-lined
+		// array providing size
+		return new Integer(buffer.getInt()); // offset to array in the file
+	}
+
+	private void skipArrayOffset(ByteBuffer buffer) {
+		int arrayOffset = buffer.getInt();
+		if (arrayOffset >= LARGE_ARRAY_SIZE)
+			buffer.getInt();
+		else
+			for (int i = 0; i < arrayOffset; i++)
+				while (buffer.get() < 0) {
+					// skip to the last byte of the number
+				}
+	}
+
+	/**
+	 * Returns the contents of the index file from the offset, position 0 of
+	 * the returned buffer corresponds to the offset.
+	 */
+	private ByteBuffer readRegion(int offset, int length) throws IOException {
+		if (this.mapped) {
+			ByteBuffer buffer = getMappedBuffer();
+			buffer.limit(offset + length);
+			buffer.position(offset);
+			return buffer.slice();
 		}
-		return categoryTable;
+		byte[] bytes = new byte[length];
+		RandomAccessFile file = new RandomAccessFile(this.fileName, "r"); //$NON-NLS-1$
+		try {
+			file.seek(offset);
+			file.readFully(bytes);
+		} finally {
+			file.close();
+		}
+		return ByteBuffer.wrap(bytes);
 	}
 
 	private void readChunk(String[] docNames, DataInputStream stream,
@@ -868,51 +1245,124 @@ public class DiskIndex {
 			// beginning
 			int end = stream.readUnsignedByte(); // number of identical
 			// characters at the end
-			String next = stream.readUTF();
-			if (start > 0) {
-				if (end > 0) {
-					int length = current.length();
-					next = current.substring(0, start) + next
-							+ current.substring(length - end, length);
-				} else {
-					next = current.substring(0, start) + next;
-				}
-			} else if (end > 0) {
-				int length = current.length();
-				next = next + current.substring(length - end, length);
-			}
+			String next = expandName(current, start, end, stream.readUTF());
 			docNames[index++] = next;
 			current = next;
 		}
 	}
 
-	private int[] readDocumentArray(DataInputStream stream, int arraySize)
+	private String[] readChunk(ByteBuffer buffer, int chunkNumber)
 			throws IOException {
-		int[] result = new int[arraySize];
-		switch (this.documentReferenceSize) {
-		case 1:
-			for (int i = 0; i < arraySize; i++)
-				result[i] = stream.readUnsignedByte();
-			break;
-		case 2:
-			for (int i = 0; i < arraySize; i++)
-				result[i] = stream.readUnsignedShort();
-			break;
-		default:
-			for (int i = 0; i < arraySize; i++)
-				result[i] = stream.readInt();
-			break;
+		int size = chunkNumber == this.numberOfChunks - 1 ? this.sizeOfLastChunk
+				: CHUNK_SIZE;
+		String[] docNames = new String[size];
+		buffer.position(this.chunkOffsets[chunkNumber]);
+		readChunk(docNames, buffer, 0, size);
+		return docNames;
+	}
+
+	private void readChunk(String[] docNames, ByteBuffer buffer, int index,
+			int size) throws IOException {
+		String current = new String(readUTF(buffer));
+		docNames[index++] = current;
+		for (int i = 1; i < size; i++) {
+			int start = buffer.get() & 0xFF;
+			int end = buffer.get() & 0xFF;
+			String next = expandName(current, start, end, new String(
+					readUTF(buffer)));
+			docNames[index++] = next;
+			current = next;
+		}
+	}
+
+	/**
+	 * Restores the document name stored as the difference with the previous
+	 * name in the chunk
+	 */
+	private static String expandName(String current, int start, int end,
+			String next) {
+		if (start > 0) {
+			if (end > 0) {
+				int length = current.length();
+				next = current.substring(0, start) + next
+						+ current.substring(length - end, length);
+			} else {
+				next = current.substring(0, start) + next;
+			}
+		} else if (end > 0) {
+			int length = current.length();
+			next = next + current.substring(length - end, length);
 		}
+		return next;
+	}
+
+	private int[] readDocumentArray(ByteBuffer buffer, int arraySize) {
+		int[] result = new int[arraySize];
+		int documentNumber = 0;
+		for (int i = 0; i < arraySize; i++)
+			result[i] = documentNumber += readVarInt(buffer);
 		return result;
 	}
 
-	synchronized String readDocumentName(int docNumber) throws IOException {
+	/**
+	 * Returns names of the documents which reference the word in the category.
+	 */
+	String[] readDocumentNames(char[] categoryName, char[] word)
+			throws IOException {
+		if (this.categoryOffsets == null)
+			return new String[0]; // file is empty
+		HashtableOfObject wordsToDocNumbers = readCategoryWords(categoryName,
+				word, false);
+		if (wordsToDocNumbers == null || !wordsToDocNumbers.containsKey(word))
+			return new String[0];
+		return readDocumentNames(wordsToDocNumbers.get(word));
+	}
+
+	/**
+	 * Returns names of the documents in the array. Large arrays are not
+	 * cached, so their document numbers are decoded straight into names.
+	 */
+	String[] readDocumentNames(Object arrayOffset) throws IOException {
+		if (arrayOffset instanceof int[]) {
+			int[] numbers = (int[]) arrayOffset;
+			String[] names = new String[numbers.length];
+			for (int i = 0, l = numbers.length; i < l; i++)
+				names[i] = readDocumentName(numbers[i]);
+			return names;
+		}
+
+		ByteBuffer buffer = readLargeArray(((Integer) arrayOffset).intValue());
+		String[] names = new String[buffer.getInt()];
+		int documentNumber = 0;
+		for (int i = 0, l = names.length; i < l; i++)
+			names[i] = readDocumentName(documentNumber += readVarInt(buffer));
+		return names;
+	}
+
+	String readDocumentName(int docNumber) throws IOException {
+		if (!this.mapped)
+			return readDocumentNameFromFile(docNumber);
+
+		AtomicReferenceArray<String[]> chunks = getMappedChunks();
+		int chunkNumber = docNumber / CHUNK_SIZE;
+		String[] chunk = chunks.get(chunkNumber);
+		if (chunk == null) {
+			CHUNK_READS.increment();
+			chunk = readChunk(getMappedBuffer(), chunkNumber);
+			chunks.set(chunkNumber, chunk);
+		}
+		return chunk[docNumber - (chunkNumber * CHUNK_SIZE)];
+	}
+
+	private synchronized String readDocumentNameFromFile(int docNumber)
+			throws IOException {
 		if (this.cachedChunks == null)
 			this.cachedChunks = new String[this.numberOfChunks][];
 
 		int chunkNumber = docNumber / CHUNK_SIZE;
 		String[] chunk = this.cachedChunks[chunkNumber];
 		if (chunk == null) {
+			CHUNK_READS.increment();
 			boolean isLastChunk = chunkNumber == this.numberOfChunks - 1;
 			int start = this.chunkOffsets[chunkNumber];
 			int numberOfBytes = (isLastChunk ? this.startOfCategoryTables
@@ -938,21 +1388,76 @@ public class DiskIndex {
 		return chunk[docNumber - (chunkNumber * CHUNK_SIZE)];
 	}
 
-	synchronized int[] readDocumentNumbers(Object arrayOffset)
-			throws IOException {
+	int[] readDocumentNumbers(Object arrayOffset) throws IOException {
 		// arrayOffset is either a cached array of docNumbers or an Integer
 		// offset in the file
 		if (arrayOffset instanceof int[])
 			return (int[]) arrayOffset;
 
-		DataInputStream stream = new DataInputStream(new BufferedInputStream(
-				new FileInputStream(getIndexFile()), 2048));
+		ByteBuffer buffer = readLargeArray(((Integer) arrayOffset).intValue());
+		return readDocumentArray(buffer, buffer.getInt());
+	}
+
+	/**
+	 * Returns the large document array written at the offset, the buffer is
+	 * positioned at the size of the array.
+	 */
+	private ByteBuffer readLargeArray(int arrayOffset) throws IOException {
+		if (this.mapped) {
+			ByteBuffer buffer = getMappedBuffer();
+			buffer.position(arrayOffset + 4);
+			return buffer;
+		}
+		RandomAccessFile file = new RandomAccessFile(this.fileName, "r"); //$NON-NLS-1$
 		try {
-			stream.skip(((Integer) arrayOffset).intValue());
-			return readDocumentArray(stream, stream.readInt());
+			file.seek(arrayOffset);
+			byte[] bytes = new byte[file.readInt() + 4];
+			file.readFully(bytes);
+			return ByteBuffer.wrap(bytes);
 		} finally {
-			stream.close();
+			file.close();
+		}
+	}
+
+	/**
+	 * Replaces offsets of large document arrays in the category table with
+	 * the arrays, which are written before the table at
+	 * <code>tableOffset</code>. Returns the table itself, or its copy if
+	 * <code>copy</code> is set.
+	 */
+	private HashtableOfObject readDocumentNumbers(HashtableOfObject table,
+			int tableOffset, boolean copy) throws IOException {
+		Object[] arrayOffsets = table.valueTable;
+		int firstOffset = -1;
+		for (int i = 0, l = arrayOffsets.length; i < l; i++) {
+			if (arrayOffsets[i] instanceof Integer) {
+				int offset = ((Integer) arrayOffsets[i]).intValue();
+				if (firstOffset == -1 || offset < firstOffset)
+					firstOffset = offset;
+			}
+		}
+		if (firstOffset == -1)
+			return table;
+
+		// arrays follow each other, so read all of them at once
+		ByteBuffer buffer = readRegion(firstOffset, tableOffset - firstOffset);
+		HashtableOfObject result = copy ? new HashtableOfObject(
+				table.elementSize) : table;
+		char[][] words = table.keyTable;
+		for (int i = 0, l = words.length; i < l; i++) {
+			if (words[i] != null) {
+				Object o = arrayOffsets[i];
+				if (o instanceof Integer) {
+					buffer.position(((Integer) o).intValue() - firstOffset + 4);
+					o = readDocumentArray(buffer, buffer.getInt());
+					if (!copy)
+						arrayOffsets[i] = o;
+				}
+				if (copy)
+					result.put(words[i], o);
+			}
 		}
+		return result;
 	}
 
 	private void readHeaderInfo(RandomAccessFile file) throws IOException {
@@ -961,7 +1466,6 @@ public class DiskIndex {
 		// must be same order as writeHeaderInfo()
 		this.numberOfChunks = file.readInt();
 		this.sizeOfLastChunk = file.readUnsignedByte();
-		this.documentReferenceSize = file.readUnsignedByte();
 
 		this.chunkOffsets = new int[this.numberOfChunks];
 		for (int i = 0; i < this.numberOfChunks; i++)
@@ -980,6 +1484,131 @@ public class DiskIndex {
 		this.categoryTables = new HashtableOfObject(3);
 	}
 
+	/**
+	 * Decodes a string written by {@link Util#writeUTF} or
+	 * {@link DataOutputStream#writeUTF}
+	 */
+	static char[] readUTF(ByteBuffer buffer) throws IOException {
+		int utflen = buffer.getShort() & 0xFFFF;
+		char[] str = new char[utflen];
+		int count = 0;
+		int strlen = 0;
+		while (count < utflen) {
+			int c = buffer.get() & 0xFF;
+			switch (c >> 4) {
+			case 0:
+			case 1:
+			case 2:
+			case 3:
+			case 4:
+			case 5:
+			case 6:
+			case 7:
+				// xxxxxxx
+				count++;
+				str[strlen++] = (char) c;
+				break;
+			case 12:
+			case 13: {
+				// 110x xxxx 10xx xxxx
+				count += 2;
+				if (count > utflen)
+					throw new UTFDataFormatException();
+				int char2 = buffer.get();
+				if ((char2 & 0xC0) != 0x80)
+					throw new UTFDataFormatException();
+				str[strlen++] = (char) (((c & 0x1F) << 6) | (char2 & 0x3F));
+				break;
+			}
+			case 14: {
+				// 1110 xxxx 10xx xxxx 10xx xxxx
+				count += 3;
+				if (count > utflen)
+					throw new UTFDataFormatException();
+				int char2 = buffer.get();
+				int char3 = buffer.get();
+				if (((char2 & 0xC0) != 0x80) || ((char3 & 0xC0) != 0x80))
+					throw new UTFDataFormatException();
+				str[strlen++] = (char) (((c & 0x0F) << 12)
+						| ((char2 & 0x3F) << 6) | (char3 & 0x3F));
+				break;
+			}
+			default:
+				// 10xx xxxx, 1111 xxxx
+				throw new UTFDataFormatException();
+			}
+		}
+		if (strlen < utflen) {
+			System.arraycopy(str, 0, str = new char[strlen], 0, strlen);
+		}
+		return str;
+	}
+
+	/**
+	 * Returns the view of the mapped index file with its own position, so
+	 * the caller can read from it without synchronization. The file is mapped
+	 * on the first call.
+	 */
+	private ByteBuffer getMappedBuffer() throws IOException {
+		ByteBuffer buffer = this.mappedBuffer;
+		if (buffer == null) {
+			synchronized (this.mapLock) {
+				buffer = this.mappedBuffer;
+				if (buffer == null) {
+					RandomAccessFile file = new RandomAccessFile(this.fileName,
+							"r"); //$NON-NLS-1$
+					try {
+						FileChannel channel = file.getChannel();
+						buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+								channel.size());
+					} finally {
+						file.close(); // mapping remains valid
+					}
+					this.mappedBuffer = buffer;
+				}
+			}
+		}
+		return buffer.duplicate();
+	}
+
+	boolean isMapped() {
+		return this.mapped;
+	}
+
+	/**
+	 * Maps the index file into memory, if not done yet, so the index can be
+	 * read after the file is replaced.
+	 */
+	void map() throws IOException {
+		if (this.mapped)
+			getMappedBuffer();
+	}
+
+	private AtomicReferenceArray<String[]> getMappedChunks() {
+		AtomicReferenceArray<String[]> chunks = this.mappedChunks;
+		if (chunks == null) {
+			synchronized (this.mapLock) {
+				chunks = this.mappedChunks;
+				if (chunks == null)
+					this.mappedChunks = chunks = new AtomicReferenceArray<String[]>(
+							this.numberOfChunks);
+			}
+		}
+		return chunks;
+	}
+
+	private ConcurrentHashMap<String, HashtableOfObject> getMappedTables() {
+		ConcurrentHashMap<String, HashtableOfObject> tables = this.mappedTables;
+		if (tables == null) {
+			synchronized (this.mapLock) {
+				tables = this.mappedTables;
+				if (tables == null)
+					this.mappedTables = tables = new ConcurrentHashMap<String, HashtableOfObject>();
+			}
+		}
+		return tables;
+	}
+
 	synchronized void startQuery() {
 		this.cacheUserCount++;
 	}
@@ -989,6 +1618,20 @@ public class DiskIndex {
 			// clear cached items
 			this.cacheUserCount = -1;
 			this.cachedChunks = null;
+			this.mappedChunks = null;
+			ConcurrentHashMap<String, HashtableOfObject> tables = this.mappedTables;
+			if (tables != null) {
+				char[] categoryName = this.cachedCategoryName;
+				HashtableOfObject cachedTable = categoryName == null ? null
+						: tables.get(new String(categoryName));
+				if (cachedTable == null) {
+					this.mappedTables = null;
+				} else if (tables.size() > 1) {
+					tables = new ConcurrentHashMap<String, HashtableOfObject>();
+					tables.put(new String(categoryName), cachedTable);
+					this.mappedTables = tables;
+				}
+			}
 			if (this.categoryTables != null) {
 				if (this.cachedCategoryName == null) {
 					this.categoryTables = null;
@@ -1021,10 +1664,6 @@ public class DiskIndex {
 			this.numberOfChunks--;
 			this.sizeOfLastChunk = CHUNK_SIZE;
 		}
-		this.documentReferenceSize = size <= 0x7F ? 1
-				: (size <= 0x7FFF ? 2 : 4); // number of bytes used to encode a
-		// reference
-
 		this.chunkOffsets = new int[this.numberOfChunks];
 		int lastIndex = this.numberOfChunks - 1;
 		for (int i = 0; i < this.numberOfChunks; i++) {
@@ -1089,15 +1728,20 @@ public class DiskIndex {
 		// the format of a category table is as follows:
 		// any document number arrays with >= 256 elements are written before
 		// the table (the offset to each array is remembered)
-		// then the number of word->int[] pairs in the table is written
-		// for each word -> int[] pair, the word is written followed by:
+		// then the number of words in the table, the number of blocks, the
+		// size of the block index and the size of the blocks are written
+		// words are sorted and split into blocks of BLOCK_SIZE words, the
+		// block index contains the first word of each block followed by the
+		// offset to the block (relative to the first block)
+		// in the block, each word except the first one is written as a byte
+		// for the number of characters shared with the previous word followed
+		// by the remaining characters, then for each word:
 		// an int <= 0 if the array size == 1
 		// an int > 1 & < 256 for the size of the array if its > 1 & < 256, the
 		// document array follows immediately
 		// 256 if the array size >= 256 followed by another int which is the
 		// offset to the array (written prior to the table)
 
-		int largeArraySize = 256;
 		Object[] values = wordsToDocs.valueTable;
 		for (int i = 0, l = values.length; i < l; i++) {
 			Object o = values[i];
@@ -1105,75 +1749,131 @@ public class DiskIndex {
 				if (o instanceof IntList)
 					o = values[i] = ((IntList) values[i]).asArray();
 				int[] documentNumbers = (int[]) o;
-				if (documentNumbers.length >= largeArraySize) {
+				if (documentNumbers.length >= LARGE_ARRAY_SIZE) {
 					values[i] = new Integer(stream.size());
-					writeDocumentNumbers(documentNumbers, stream);
+					writeDocumentNumbers(documentNumbers, stream, true);
 				}
 			}
 		}
 
+		char[][] words = new char[wordsToDocs.elementSize][];
+		int size = 0;
+		char[][] keys = wordsToDocs.keyTable;
+		for (int i = 0, l = keys.length; i < l; i++)
+			if (values[i] != null)
+				words[size++] = keys[i];
+		if (size < words.length)
+			System.arraycopy(words, 0, words = new char[size][], 0, size);
+		Util.sort(words);
+
+		ByteArrayOutputStream indexBytes = new ByteArrayOutputStream();
+		DataOutputStream index = new DataOutputStream(indexBytes);
+		ByteArrayOutputStream blockBytes = new ByteArrayOutputStream();
+		DataOutputStream blocks = new DataOutputStream(blockBytes);
+		for (int i = 0; i < size; i++) {
+			char[] word = words[i];
+			if (i % BLOCK_SIZE == 0) {
+				Util.writeUTF(index, word);
+				index.writeInt(blocks.size());
+			} else {
+				char[] previous = words[i - 1];
+				int max = Math.min(Math.min(previous.length, word.length), 255);
+				int prefixLength = 0;
+				while (prefixLength < max
+						&& previous[prefixLength] == word[prefixLength])
+					prefixLength++;
+				blocks.writeByte(prefixLength);
+				Util.writeUTF(blocks, CharOperation.subarray(word,
+						prefixLength, word.length));
+			}
+			Object o = wordsToDocs.get(word);
+			if (o instanceof int[]) {
+				int[] documentNumbers = (int[]) o;
+				if (documentNumbers.length == 1)
+					blocks.writeInt(-documentNumbers[0]); // store an array of
+				// 1 element by negating the documentNumber (can be zero)
+				else
+					writeDocumentNumbers(documentNumbers, blocks, false);
+			} else {
+				blocks.writeInt(LARGE_ARRAY_SIZE); // mark to identify that an
+				// offset follows
+				blocks.writeInt(((Integer) o).intValue()); // offset in the
+				// file of the array of document numbers
+			}
+		}
+
 		this.categoryOffsets.put(categoryName, stream.size()); // remember the
 		// offset to the
 		// start of the
 		// table
 		this.categoryTables.put(categoryName, null); // flush cached table
-		stream.writeInt(wordsToDocs.elementSize);
-		char[][] words = wordsToDocs.keyTable;
-		for (int i = 0, l = words.length; i < l; i++) {
-			Object o = values[i];
-			if (o != null) {
-				Util.writeUTF(stream, words[i]);
-				if (o instanceof int[]) {
-					int[] documentNumbers = (int[]) o;
-					if (documentNumbers.length == 1)
-						stream.writeInt(-documentNumbers[0]); // store an
-					// array of 1
-					// element by
-					// negating the
-					// documentNumber
-					// (can be zero)
-					else
-						writeDocumentNumbers(documentNumbers, stream);
-				} else {
-					stream.writeInt(largeArraySize); // mark to identify that
-					// an offset follows
-					stream.writeInt(((Integer) o).intValue()); // offset in the
-					// file of the
-					// array of
-					// document
-					// numbers
-				}
-			}
-		}
+		stream.writeInt(size);
+		stream.writeInt((size + BLOCK_SIZE - 1) / BLOCK_SIZE);
+		stream.writeInt(index.size());
+		stream.writeInt(blocks.size());
+		indexBytes.writeTo(stream);
+		blockBytes.writeTo(stream);
 	}
 
 	private void writeDocumentNumbers(int[] documentNumbers,
-			DataOutputStream stream) throws IOException {
+			DataOutputStream stream, boolean largeArray) throws IOException {
+		// document numbers are sorted, so only the differences between them
+		// are written, using 7 bits of each byte (the high bit is set when
+		// more bytes follow)
+		int length = documentNumbers.length;
+		Util.sort(documentNumbers);
+		if (largeArray) { // large arrays are read at once, so their size in
+			// bytes is written first
+			int byteLength = 0;
+			for (int i = 0, previous = 0; i < length; i++) {
+				byteLength += varIntLength(documentNumbers[i] - previous);
+				previous = documentNumbers[i];
+			}
+			stream.writeInt(byteLength);
+		}
 		// must store length as a positive int to detect in-lined array of 1
 		// element
-		int length = documentNumbers.length;
 		stream.writeInt(length);
-		Util.sort(documentNumbers);
-		switch (this.documentReferenceSize) {
-		case 1:
-			for (int i = 0; i < length; i++)
-				stream.writeByte(documentNumbers[i]);
-			break;
-		case 2:
-			for (int i = 0; i < length; i++)
-				stream.writeShort(documentNumbers[i]);
-			break;
-		default:
-			for (int i = 0; i < length; i++)
-				stream.writeInt(documentNumbers[i]);
-			break;
+		for (int i = 0, previous = 0; i < length; i++) {
+			writeVarInt(documentNumbers[i] - previous, stream);
+			previous = documentNumbers[i];
+		}
+	}
+
+	private static void writeVarInt(int value, DataOutputStream stream)
+			throws IOException {
+		while ((value & ~0x7F) != 0) {
+			stream.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		stream.writeByte(value);
+	}
+
+	private static int varIntLength(int value) {
+		int length = 1;
+		while ((value & ~0x7F) != 0) {
+			value >>>= 7;
+			length++;
+		}
+		return length;
+	}
+
+	private static int readVarInt(ByteBuffer buffer) {
+		int b = buffer.get();
+		if (b >= 0)
+			return b;
+		int value = b & 0x7F;
+		int shift = 7;
+		while ((b = buffer.get()) < 0) {
+			value |= (b & 0x7F) << shift;
+			shift += 7;
 		}
+		return value | (b << shift);
 	}
 
 	private void writeHeaderInfo(DataOutputStream stream) throws IOException {
 		stream.writeInt(this.numberOfChunks);
 		stream.writeByte(this.sizeOfLastChunk);
-		stream.writeByte(this.documentReferenceSize);
 
 		// apend the file with chunk offsets
 		for (int i = 0; i < this.numberOfChunks; i++)
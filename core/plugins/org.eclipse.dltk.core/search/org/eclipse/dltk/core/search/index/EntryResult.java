@@ -18,12 +18,20 @@ public class EntryResult {
 
 	private HashtableOfObject[] documentTables;
 
+	private DiskIndex[] documentIndexes; // disk index of each document table
+
 	private SimpleSet documentNames;
 
 	public EntryResult(char[] word, HashtableOfObject table) {
+		this(word, table, null);
+	}
+
+	EntryResult(char[] word, HashtableOfObject table, DiskIndex diskIndex) {
 		this.word = word;
-		if (table != null)
+		if (table != null) {
 			this.documentTables = new HashtableOfObject[] { table };
+			this.documentIndexes = new DiskIndex[] { diskIndex };
+		}
 	}
 
 	public void addDocumentName(String documentName) {
@@ -33,17 +41,30 @@ public class EntryResult {
 	}
 
 	public void addDocumentTable(HashtableOfObject table) {
+		addDocumentTable(table, null);
+	}
+
+	void addDocumentTable(HashtableOfObject table, DiskIndex diskIndex) {
 		if (this.documentTables != null) {
 			int length = this.documentTables.length;
 			System.arraycopy(this.documentTables, 0,
 					this.documentTables = new HashtableOfObject[length + 1], 0,
 					length);
 			this.documentTables[length] = table;
+			System.arraycopy(this.documentIndexes, 0,
+					this.documentIndexes = new DiskIndex[length + 1], 0,
+					length);
+			this.documentIndexes[length] = diskIndex;
 		} else {
 			this.documentTables = new HashtableOfObject[] { table };
+			this.documentIndexes = new DiskIndex[] { diskIndex };
 		}
 	}
 
+	private static DiskIndex getDiskIndex(DiskIndex diskIndex, Index index) {
+		return diskIndex != null ? diskIndex : index.diskIndex;
+	}
+
 	public char[] getWord() {
 		return this.word;
 	}
@@ -54,19 +75,16 @@ public class EntryResult {
 			if (length == 1 && this.documentNames == null) { // have a single
 				// table
 				Object offset = this.documentTables[0].get(word);
-				int[] numbers = index.diskIndex.readDocumentNumbers(offset);
-				String[] names = new String[numbers.length];
-				for (int i = 0, l = numbers.length; i < l; i++)
-					names[i] = index.diskIndex.readDocumentName(numbers[i]);
-				return names;
+				return getDiskIndex(this.documentIndexes[0], index)
+						.readDocumentNames(offset);
 			}
 
 			for (int i = 0; i < length; i++) {
 				Object offset = this.documentTables[i].get(word);
-				int[] numbers = index.diskIndex.readDocumentNumbers(offset);
-				for (int j = 0, k = numbers.length; j < k; j++)
-					addDocumentName(index.diskIndex
-							.readDocumentName(numbers[j]));
+				String[] names = getDiskIndex(this.documentIndexes[i], index)
+						.readDocumentNames(offset);
+				for (int j = 0, k = names.length; j < k; j++)
+					addDocumentName(names[j]);
 			}
 		}
 
@@ -10,15 +10,28 @@
 package org.eclipse.dltk.core.search.index;
 
 import java.io.File;
+import java.io.FilenameFilter;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
 
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Path;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.dltk.compiler.CharOperation;
 import org.eclipse.dltk.compiler.util.HashtableOfObject;
 import org.eclipse.dltk.compiler.util.SimpleSet;
 import org.eclipse.dltk.core.DLTKCore;
+import org.eclipse.dltk.core.metrics.Histogram;
+import org.eclipse.dltk.core.metrics.Metrics;
 import org.eclipse.dltk.core.search.SearchPattern;
+import org.eclipse.dltk.core.search.indexing.IndexBundles;
 import org.eclipse.dltk.core.search.indexing.ReadWriteMonitor;
+import org.eclipse.dltk.internal.core.util.Messages;
 
 
 /**
@@ -27,8 +40,17 @@ import org.eclipse.dltk.core.search.indexing.ReadWriteMonitor;
  * 
  * Queries can search a single category or several at the same time.
  * 
- * Indexes are not synchronized structures and should only be queried/updated
- * one at a time.
+ * Indexes are updated one at a time, while owning the write lock of the
+ * monitor. Queries don't need the monitor: they read the snapshot published
+ * when the last writer released the write lock, so they neither wait for the
+ * updates nor see partially indexed documents.
+ * 
+ * Saved changes are written into small immutable delta segments, which are
+ * queried together with the disk index. Segments are merged by a background
+ * job: several segments of the same tier are merged into a segment of the
+ * next tier, and all segments are merged into the disk index once they get
+ * bigger than a part of it. Searches are only blocked while the merged files
+ * are swapped.
  */
 
 public class Index {
@@ -41,6 +63,198 @@ public class Index {
 
 	protected MemoryIndex memoryIndex;
 
+	public static final String SEGMENT_SUFFIX = ".segment"; //$NON-NLS-1$
+
+	/**
+	 * Category of the documents removed in a segment
+	 */
+	private static final char[] REMOVED_CATEGORY = "#removed".toCharArray(); //$NON-NLS-1$
+
+	private static final char[] REMOVED_KEY = "#".toCharArray(); //$NON-NLS-1$
+
+	/**
+	 * Number of segments of the same tier which are merged together
+	 */
+	private static final int MERGE_FACTOR = 4;
+
+	/**
+	 * Segments are merged into the disk index once their size exceeds
+	 * 1/MAIN_MERGE_RATIO of the disk index size
+	 */
+	private static final int MAIN_MERGE_RATIO = 4;
+
+	/**
+	 * Segments are merged into the disk index if there are more segments than
+	 * this, and tiers can't be merged
+	 */
+	private static final int MAX_SEGMENTS = 10;
+
+	/**
+	 * Delay of the merge, so segments saved in a row are merged at once
+	 */
+	private static final long MERGE_DELAY = 1000;
+
+	/**
+	 * How long the merge waits for the running queries before replacing the
+	 * files which are not mapped into memory
+	 */
+	private static final long SWAP_TIMEOUT = 1000;
+
+	private static final Segment[] NO_SEGMENTS = new Segment[0];
+
+	private static final SimpleSet[] NO_HIDDEN_DOCUMENTS = new SimpleSet[1];
+
+	/**
+	 * Delta segments saved since the last merge into the disk index, oldest
+	 * first. Replaced as a whole, while owning the write lock of the monitor.
+	 */
+	private volatile Segment[] segments = NO_SEGMENTS;
+
+	/**
+	 * Documents to skip in the disk index (at position 0) and in each segment,
+	 * since they are changed or removed in the newer segments
+	 */
+	private SimpleSet[] hiddenDocuments = NO_HIDDEN_DOCUMENTS;
+
+	private int nextGeneration = 1;
+
+	private final Object mergeLock = new Object();
+
+	private static final Histogram QUERY_TIME = Metrics
+			.histogram("index.query"); //$NON-NLS-1$
+	private static final Histogram SAVE_TIME = Metrics
+			.histogram("index.save"); //$NON-NLS-1$
+	private static final Histogram MERGE_TIME = Metrics
+			.histogram("index.merge"); //$NON-NLS-1$
+
+	private MergeJob mergeJob;
+
+	private volatile Snapshot snapshot;
+
+	private IndexMonitor indexMonitor;
+
+	/**
+	 * Files of the mapped disk indexes remain readable by the queries of the
+	 * previous snapshots when they are replaced. Otherwise the files are only
+	 * replaced while no query is running.
+	 */
+	private boolean mapped;
+
+	private final Object queryLock = new Object();
+
+	private int runningQueries; // not counted if mapped
+
+	private boolean swapping;
+
+	/**
+	 * State of the index read by the queries.
+	 */
+	private static class Snapshot {
+		final DiskIndex diskIndex;
+		final Segment[] segments;
+		final SimpleSet[] hiddenDocuments;
+		final MemoryIndex changes; // null if there are no changes
+
+		Snapshot(DiskIndex diskIndex, Segment[] segments,
+				SimpleSet[] hiddenDocuments, MemoryIndex changes) {
+			this.diskIndex = diskIndex;
+			this.segments = segments;
+			this.hiddenDocuments = hiddenDocuments;
+			this.changes = changes;
+		}
+	}
+
+	/**
+	 * Monitor publishing the changes of the writer when it releases the write
+	 * lock.
+	 */
+	private class IndexMonitor extends ReadWriteMonitor {
+		volatile Thread writer;
+
+		public void enterWrite() {
+			super.enterWrite();
+			this.writer = Thread.currentThread();
+		}
+
+		public boolean exitReadEnterWrite() {
+			if (!super.exitReadEnterWrite())
+				return false;
+			this.writer = Thread.currentThread();
+			return true;
+		}
+
+		public void exitWrite() {
+			if (Index.this.memoryIndex.shouldMerge()) {
+				try {
+					save();
+				} catch (IOException e) {
+					DLTKCore.error("Failed to save " + Index.this, e); //$NON-NLS-1$
+				}
+			}
+			publish();
+			this.writer = null;
+			super.exitWrite();
+		}
+	}
+
+	/**
+	 * Immutable delta segment, which contains the changes saved from the
+	 * memory indexes of generations <code>first..last</code>.
+	 */
+	private static class Segment {
+		final DiskIndex diskIndex;
+		final int first;
+		final int last;
+		final long size;
+		final SimpleSet documents; // changed & removed documents
+		final SimpleSet removedDocuments;
+
+		Segment(DiskIndex diskIndex, int first, int last) throws IOException {
+			this.diskIndex = diskIndex;
+			this.first = first;
+			this.last = last;
+			this.size = diskIndex.getIndexFile().length();
+			diskIndex.startQuery();
+			try {
+				this.documents = toSet(diskIndex.readAllDocumentNames());
+				this.removedDocuments = toSet(diskIndex.readDocumentNames(
+						REMOVED_CATEGORY, REMOVED_KEY));
+			} finally {
+				diskIndex.stopQuery();
+			}
+		}
+
+		/**
+		 * Segments spanning MERGE_FACTOR^n generations belong to the tier n
+		 */
+		int getTier() {
+			int tier = 0;
+			int span = (this.last - this.first + 1) / MERGE_FACTOR;
+			for (; span > 0; span /= MERGE_FACTOR)
+				tier++;
+			return tier;
+		}
+	}
+
+	private class MergeJob extends Job {
+		MergeJob() {
+			super(Messages.manager_mergingIndexSegments);
+			setSystem(true);
+		}
+
+		protected IStatus run(IProgressMonitor monitor) {
+			try {
+				while (!monitor.isCanceled() && mergeSegments(false)) {
+					// merged segment can complete the next tier
+				}
+			} catch (IOException e) {
+				if (Index.this.monitor != null)
+					DLTKCore.error("Failed to merge segments of " + Index.this, e); //$NON-NLS-1$
+			}
+			return Status.OK_STATUS;
+		}
+	}
+
 	/**
 	 * Mask used on match rule for indexing.
 	 */
@@ -99,11 +313,21 @@ public class Index {
 	public Index(String fileName, String containerPath,
 			boolean reuseExistingFile) throws IOException {
 		this.containerPath = containerPath;
-		this.monitor = new ReadWriteMonitor();
+		this.indexMonitor = new IndexMonitor();
+		this.monitor = this.indexMonitor;
 
 		this.memoryIndex = new MemoryIndex();
 		this.diskIndex = new DiskIndex(fileName);
+		this.mapped = this.diskIndex.isMapped();
+		if (!reuseExistingFile)
+			deleteSegments(this.diskIndex.getIndexFile());
 		this.diskIndex.initialize(reuseExistingFile);
+		if (reuseExistingFile) {
+			setSegments(readSegments());
+			if (this.segments.length != 0)
+				scheduleMerge();
+		}
+		publish();
 	}
 	
 	protected Index (String fileName, String containerPath) {
@@ -126,6 +350,31 @@ public class Index {
 		return this.diskIndex.getIndexFile();
 	}
 
+	/**
+	 * Returns the time the index was last saved.
+	 */
+	public long lastModified() {
+		File indexFile = getIndexFile();
+		long lastModified = indexFile != null ? indexFile.lastModified() : 0;
+		Segment[] segments = this.segments;
+		for (int i = 0; i < segments.length; i++)
+			lastModified = Math.max(lastModified, segments[i].diskIndex
+					.getIndexFile().lastModified());
+		return lastModified;
+	}
+
+	/**
+	 * Returns the size of the saved files of the index in bytes.
+	 */
+	public long getSize() {
+		File indexFile = getIndexFile();
+		long size = indexFile != null ? indexFile.length() : 0;
+		Segment[] segments = this.segments;
+		for (int i = 0; i < segments.length; i++)
+			size += segments[i].size;
+		return size;
+	}
+
 	public boolean hasChanged() {
 		return this.memoryIndex.hasChanged();
 	}
@@ -138,24 +387,25 @@ public class Index {
 	 */
 	public EntryResult[] query(char[][] categories, char[] key, int matchRule)
 			throws IOException {
-		if (this.memoryIndex.shouldMerge() && monitor.exitReadEnterWrite()) {
-			try {
-				save();
-			} finally {
-				monitor.exitWriteEnterRead();
-			}
-		}
-
-		HashtableOfObject results;
 		int rule = matchRule & MATCH_RULE_INDEX_MASK;
-		if (this.memoryIndex.hasChanged()) {
-			results = this.diskIndex.addQueryResults(categories, key, rule,
-					this.memoryIndex);
-			results = this.memoryIndex.addQueryResults(categories, key, rule,
-					results);
-		} else {
-			results = this.diskIndex.addQueryResults(categories, key, rule,
-					null);
+		HashtableOfObject results;
+		long start = System.nanoTime();
+		Snapshot snapshot = enterQuery();
+		try {
+			MemoryIndex changes = snapshot.changes;
+			Segment[] segments = snapshot.segments;
+			SimpleSet[] hidden = snapshot.hiddenDocuments;
+			results = snapshot.diskIndex.addQueryResults(categories, key,
+					rule, null, changes, hidden[0]);
+			for (int i = 0; i < segments.length; i++)
+				results = segments[i].diskIndex.addQueryResults(categories,
+						key, rule, results, changes, hidden[i + 1]);
+			if (changes != null)
+				results = changes.addQueryResults(categories, key, rule,
+						results);
+		} finally {
+			exitQuery();
+			QUERY_TIME.recordSince(start);
 		}
 		if (results == null)
 			return null;
@@ -177,12 +427,20 @@ public class Index {
 	 */
 	public String[] queryDocumentNames(String substring) throws IOException {
 		SimpleSet results;
-		if (this.memoryIndex.hasChanged()) {
-			results = this.diskIndex.addDocumentNames(substring,
-					this.memoryIndex);
-			this.memoryIndex.addDocumentNames(substring, results);
-		} else {
-			results = this.diskIndex.addDocumentNames(substring, null);
+		Snapshot snapshot = enterQuery();
+		try {
+			MemoryIndex changes = snapshot.changes;
+			Segment[] segments = snapshot.segments;
+			SimpleSet[] hidden = snapshot.hiddenDocuments;
+			results = snapshot.diskIndex.addDocumentNames(substring, null,
+					changes, hidden[0]);
+			for (int i = 0; i < segments.length; i++)
+				results = segments[i].diskIndex.addDocumentNames(substring,
+						results, changes, hidden[i + 1]);
+			if (changes != null)
+				changes.addDocumentNames(substring, results);
+		} finally {
+			exitQuery();
 		}
 		if (results.elementSize == 0)
 			return null;
@@ -200,6 +458,97 @@ public class Index {
 		this.memoryIndex.remove(containerRelativePath);
 	}
 
+	/**
+	 * Answers whether the queries must own the read lock of the monitor.
+	 * Queries of this index read the snapshot published by the last writer,
+	 * so they don't.
+	 */
+	public boolean isReadLockRequired() {
+		return false;
+	}
+
+	/**
+	 * Makes the changes of the writer visible to the queries. Must own the
+	 * write lock of the monitor.
+	 */
+	private void publish() {
+		this.snapshot = new Snapshot(this.diskIndex, this.segments,
+				this.hiddenDocuments, this.memoryIndex.hasChanged()
+						? this.memoryIndex.snapshot() : null);
+	}
+
+	/**
+	 * Returns the snapshot to query, the writer queries its own changes.
+	 */
+	private Snapshot enterQuery() {
+		if (!this.mapped) {
+			synchronized (this.queryLock) {
+				while (this.swapping) {
+					try {
+						this.queryLock.wait();
+					} catch (InterruptedException e) {
+						// ignore
+					}
+				}
+				this.runningQueries++;
+			}
+		}
+		IndexMonitor monitor = this.indexMonitor;
+		if (monitor != null && monitor.writer == Thread.currentThread())
+			return new Snapshot(this.diskIndex, this.segments,
+					this.hiddenDocuments, this.memoryIndex.hasChanged()
+							? this.memoryIndex : null);
+		return this.snapshot;
+	}
+
+	private void exitQuery() {
+		if (!this.mapped) {
+			synchronized (this.queryLock) {
+				if (this.runningQueries > 0 && --this.runningQueries == 0)
+					this.queryLock.notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Prepares replacing the files of the disk indexes, which can still be
+	 * read by the queries of the previous snapshot. Returns false if the
+	 * running queries did not finish in time. Must own the write lock of the
+	 * monitor.
+	 */
+	private boolean beginSwap(DiskIndex[] replaced) throws IOException {
+		if (this.mapped) {
+			// mapping remains valid when the file is replaced
+			for (int i = 0; i < replaced.length; i++)
+				replaced[i].map();
+			return true;
+		}
+		synchronized (this.queryLock) {
+			long end = System.currentTimeMillis() + SWAP_TIMEOUT;
+			while (this.runningQueries != 0) {
+				long remaining = end - System.currentTimeMillis();
+				if (remaining <= 0)
+					return false;
+				try {
+					this.queryLock.wait(remaining);
+				} catch (InterruptedException e) {
+					return false;
+				}
+			}
+			this.swapping = true;
+			return true;
+		}
+	}
+
+	private void endSwap() {
+		if (!this.mapped) {
+			synchronized (this.queryLock) {
+				this.swapping = false;
+				this.queryLock.notifyAll();
+			}
+		}
+	}
+
 	public void save() throws IOException {
 		// must own the write lock of the monitor
 		if (!hasChanged())
@@ -208,21 +557,474 @@ public class Index {
 		if (DLTKCore.DEBUG_INDEX) {
 			System.out.println("Index for " + this.containerPath + " (" + new Path(diskIndex.fileName).lastSegment() + ") saved"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$		
 		}
-		// int numberOfChanges = this.memoryIndex.docsToReferences.elementSize;
-		this.diskIndex = this.diskIndex.mergeWith(this.memoryIndex);
+		// only the changes are written, the disk index is merged with them
+		// later in background
+		long start = System.nanoTime();
+		int generation = this.nextGeneration++;
+		Segment segment = writeSegment(this.memoryIndex, getSegmentFileName(
+				generation, generation), generation, generation);
+		SAVE_TIME.recordSince(start);
 		this.memoryIndex = new MemoryIndex();
-//		if (numberOfChanges > 1000)
-//			System.gc(); // reclaim space if the MemoryIndex was very BIG
+		setSegments(replace(this.segments, this.segments.length,
+				this.segments.length - 1, segment)); // append
+		scheduleMerge();
+	}
+
+	/**
+	 * Saves the changes and merges all the segments into the disk index. Must
+	 * not be called while owning the monitor.
+	 */
+	public void compact() throws IOException {
+		ReadWriteMonitor monitor = this.monitor;
+		if (monitor == null)
+			return;
+		monitor.enterWrite();
+		try {
+			save();
+		} finally {
+			monitor.exitWrite();
+		}
+		mergeSegments(true);
+	}
+
+	/**
+	 * Returns the identifier of the format of the bundles exported by this
+	 * index.
+	 */
+	public String getBundleFormat() {
+		return DiskIndex.SIGNATURE;
 	}
 
-	public void startQuery() {
-		if (this.diskIndex != null)
-			this.diskIndex.startQuery();
+	/**
+	 * Replaces the contents of the index with the bundle written by
+	 * {@link #exportBundle(File)}, so the index doesn't have to be built. The
+	 * bundle is copied, so it's never modified. Must own the write lock of the
+	 * monitor.
+	 */
+	public void attachBundle(File bundle) throws IOException {
+		DiskIndex newDiskIndex = new DiskIndex(this.diskIndex.fileName
+				+ ".attach.tmp"); //$NON-NLS-1$
+		Segment[] segments = this.segments;
+		DiskIndex[] replaced = new DiskIndex[segments.length + 1];
+		for (int i = 0; i < segments.length; i++)
+			replaced[i] = segments[i].diskIndex;
+		replaced[segments.length] = this.diskIndex;
+		boolean attached = false;
+		try {
+			IndexBundles.copy(bundle, newDiskIndex.getIndexFile());
+			newDiskIndex.initialize(true); // checks the format
+			if (!beginSwap(replaced))
+				throw new IOException("Index is being queried " //$NON-NLS-1$
+						+ this.diskIndex.fileName);
+			try {
+				newDiskIndex.replace(this.diskIndex);
+				this.diskIndex = newDiskIndex;
+				this.memoryIndex = new MemoryIndex();
+				// running merge is discarded, as its segments are not current
+				setSegments(NO_SEGMENTS);
+				publish();
+				attached = true;
+			} finally {
+				endSwap();
+			}
+		} finally {
+			if (attached) {
+				for (int i = 0; i < segments.length; i++)
+					segments[i].diskIndex.getIndexFile().delete();
+			} else {
+				newDiskIndex.getIndexFile().delete();
+			}
+		}
 	}
 
-	public void stopQuery() {
-		if (this.diskIndex != null)
-			this.diskIndex.stopQuery();
+	/**
+	 * Saves and compacts the index, and writes its whole contents into the
+	 * bundle file. Returns false if the index could not be compacted, since
+	 * it's being queried or changed. Must not be called while owning the
+	 * monitor.
+	 */
+	public boolean exportBundle(File bundle) throws IOException {
+		compact();
+		ReadWriteMonitor monitor = this.monitor;
+		if (monitor == null)
+			return false;
+		monitor.enterRead();
+		try {
+			if (this.segments.length != 0 || hasChanged())
+				return false;
+			IndexBundles.copy(getIndexFile(), bundle);
+			return true;
+		} finally {
+			monitor.exitRead();
+		}
+	}
+
+	private String getSegmentFileName(int first, int last) {
+		return this.diskIndex.fileName + '.' + first + '-' + last
+				+ SEGMENT_SUFFIX;
+	}
+
+	private Segment writeSegment(MemoryIndex changes, String fileName,
+			int first, int last) throws IOException {
+		changes.recordRemovals(REMOVED_CATEGORY, REMOVED_KEY);
+		DiskIndex segmentIndex = new DiskIndex(fileName);
+		segmentIndex.initialize(false);
+		return new Segment(segmentIndex.mergeWith(changes), first, last);
+	}
+
+	private Segment[] readSegments() throws IOException {
+		File[] files = listSegmentFiles(this.diskIndex.getIndexFile());
+		if (files == null || files.length == 0)
+			return NO_SEGMENTS;
+
+		int prefixLength = this.diskIndex.getIndexFile().getName().length() + 1;
+		int[][] generations = new int[files.length][];
+		for (int i = 0; i < files.length; i++) {
+			String name = files[i].getName();
+			generations[i] = parseGenerations(name.substring(prefixLength, name
+					.length()
+					- SEGMENT_SUFFIX.length()));
+		}
+		List<Segment> segments = new ArrayList<Segment>(files.length);
+		for (int i = 0; i < files.length; i++) {
+			if (generations[i] == null || isCovered(generations, i)) {
+				// merged segment was left by an interrupted merge
+				files[i].delete();
+				continue;
+			}
+			int first = generations[i][0];
+			int last = generations[i][1];
+			DiskIndex segmentIndex = new DiskIndex(getSegmentFileName(first,
+					last));
+			segmentIndex.initialize(true);
+			segments.add(new Segment(segmentIndex, first, last));
+			if (last >= this.nextGeneration)
+				this.nextGeneration = last + 1;
+		}
+		Segment[] result = segments.toArray(new Segment[segments.size()]);
+		Arrays.sort(result, new Comparator<Segment>() {
+			public int compare(Segment segment1, Segment segment2) {
+				return segment1.last - segment2.last;
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * Returns the first and last generation encoded in the segment file name,
+	 * or <code>null</code> if the name is not valid.
+	 */
+	private static int[] parseGenerations(String range) {
+		int separator = range.indexOf('-');
+		if (separator == -1)
+			return null;
+		try {
+			return new int[] {
+					Integer.parseInt(range.substring(0, separator)),
+					Integer.parseInt(range.substring(separator + 1)) };
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	private static boolean isCovered(int[][] generations, int index) {
+		int[] range = generations[index];
+		for (int i = 0; i < generations.length; i++)
+			if (i != index && generations[i] != null
+					&& generations[i][0] <= range[0]
+					&& range[1] <= generations[i][1])
+				return true;
+		return false;
+	}
+
+	private static File[] listSegmentFiles(File indexFile) {
+		final String prefix = indexFile.getName() + '.';
+		return indexFile.getAbsoluteFile().getParentFile().listFiles(
+				new FilenameFilter() {
+					public boolean accept(File dir, String name) {
+						return name.startsWith(prefix)
+								&& name.endsWith(SEGMENT_SUFFIX);
+					}
+				});
+	}
+
+	/**
+	 * Deletes the segment files of the index file.
+	 */
+	public static void deleteSegments(File indexFile) {
+		File[] files = listSegmentFiles(indexFile);
+		if (files != null)
+			for (int i = 0; i < files.length; i++)
+				files[i].delete();
+	}
+
+	/**
+	 * Returns the name of the index file the segment file belongs to, or
+	 * <code>null</code> if the file is not a segment file.
+	 */
+	public static String getSegmentOwner(String fileName) {
+		if (!fileName.endsWith(SEGMENT_SUFFIX))
+			return null;
+		int end = fileName.lastIndexOf('.', fileName.length()
+				- SEGMENT_SUFFIX.length() - 1);
+		return end > 0 ? fileName.substring(0, end) : null;
+	}
+
+	private void setSegments(Segment[] segments) {
+		SimpleSet[] hidden = new SimpleSet[segments.length + 1];
+		SimpleSet newerDocuments = null;
+		for (int i = segments.length; i >= 0; i--) {
+			// segment must also skip its own removed documents
+			hidden[i] = union(newerDocuments,
+					i > 0 ? segments[i - 1].removedDocuments : null);
+			if (i > 0)
+				newerDocuments = union(newerDocuments,
+						segments[i - 1].documents);
+		}
+		this.hiddenDocuments = hidden;
+		this.segments = segments;
+	}
+
+	/**
+	 * Returns the segments with the segments <code>first..last</code> replaced
+	 * by the segment, which can be <code>null</code>.
+	 */
+	private static Segment[] replace(Segment[] segments, int first, int last,
+			Segment segment) {
+		int length = segments.length - (last - first + 1)
+				+ (segment != null ? 1 : 0);
+		Segment[] result = new Segment[length];
+		System.arraycopy(segments, 0, result, 0, first);
+		int next = first;
+		if (segment != null)
+			result[next++] = segment;
+		System.arraycopy(segments, last + 1, result, next, segments.length
+				- last - 1);
+		return result;
+	}
+
+	private static SimpleSet toSet(String[] values) {
+		if (values.length == 0)
+			return null;
+		SimpleSet set = new SimpleSet(values.length);
+		for (int i = 0; i < values.length; i++)
+			set.add(values[i]);
+		return set;
+	}
+
+	/**
+	 * Returns a new set with the elements of both sets, which can be
+	 * <code>null</code>, or <code>null</code> if there are no elements.
+	 */
+	private static SimpleSet union(SimpleSet set1, SimpleSet set2) {
+		int size = (set1 != null ? set1.elementSize : 0)
+				+ (set2 != null ? set2.elementSize : 0);
+		if (size == 0)
+			return null;
+		SimpleSet result = new SimpleSet(size);
+		addAll(result, set1);
+		addAll(result, set2);
+		return result;
+	}
+
+	private static void addAll(SimpleSet result, SimpleSet set) {
+		if (set != null) {
+			Object[] values = set.values;
+			for (int i = 0, l = values.length; i < l; i++)
+				if (values[i] != null)
+					result.add(values[i]);
+		}
+	}
+
+	private void scheduleMerge() {
+		if (this.mergeJob == null)
+			this.mergeJob = new MergeJob();
+		this.mergeJob.schedule(MERGE_DELAY);
+	}
+
+	/**
+	 * Merges the segments as required by the merge policy, or all of them
+	 * into the disk index if <code>all</code> is set. Returns whether the
+	 * segments were merged. Merged files are written without owning the
+	 * monitor, the write lock is only taken to swap them.
+	 */
+	boolean mergeSegments(boolean all) throws IOException {
+		synchronized (this.mergeLock) {
+			ReadWriteMonitor monitor = this.monitor;
+			Segment[] segments = this.segments;
+			if (monitor == null || segments.length == 0)
+				return false; // index was discarded or nothing to merge
+
+			int first = 0;
+			int last = segments.length - 1;
+			boolean intoDiskIndex = all || shouldMergeIntoDiskIndex(segments);
+			if (!intoDiskIndex) {
+				int[] range = selectMergeRange(segments);
+				if (range != null) {
+					first = range[0];
+					last = range[1];
+				} else if (segments.length > MAX_SEGMENTS) {
+					intoDiskIndex = true;
+				} else {
+					return false;
+				}
+			}
+
+			// changes of the newer segments replace the older ones
+			long start = System.nanoTime();
+			MemoryIndex changes = new MemoryIndex();
+			for (int i = first; i <= last; i++)
+				openDiskIndex(segments[i].diskIndex.fileName).copyInto(changes,
+						REMOVED_CATEGORY);
+
+			DiskIndex newDiskIndex = null;
+			Segment newSegment = null;
+			if (intoDiskIndex) {
+				DiskIndex diskIndex = openDiskIndex(this.diskIndex.fileName);
+				newDiskIndex = diskIndex.writeMergedIndex(changes,
+						diskIndex.fileName + ".tmp"); //$NON-NLS-1$
+				if (newDiskIndex == diskIndex)
+					newDiskIndex = null; // nothing to merge
+			} else {
+				// renamed when swapped, so it is not read if the index is
+				// reopened meanwhile
+				int firstGeneration = segments[first].first;
+				int lastGeneration = segments[last].last;
+				newSegment = writeSegment(changes, getSegmentFileName(
+						firstGeneration, lastGeneration)
+						+ ".tmp", firstGeneration, lastGeneration); //$NON-NLS-1$
+			}
+			MERGE_TIME.recordSince(start);
+
+			DiskIndex[] replaced = new DiskIndex[last - first
+					+ (intoDiskIndex ? 2 : 1)];
+			for (int i = first; i <= last; i++)
+				replaced[i - first] = segments[i].diskIndex;
+			if (intoDiskIndex)
+				replaced[replaced.length - 1] = this.diskIndex;
+			boolean merged = false;
+			try {
+				monitor.enterWrite();
+				try {
+					// index could be discarded or recreated meanwhile
+					if (this.monitor == monitor
+							&& isCurrent(segments, first, last)) {
+						if (beginSwap(replaced)) {
+							try {
+								if (newDiskIndex != null) {
+									newDiskIndex.replace(this.diskIndex);
+									this.diskIndex = newDiskIndex;
+								}
+								if (newSegment != null)
+									newSegment.diskIndex.replace(new DiskIndex(
+											getSegmentFileName(
+													newSegment.first,
+													newSegment.last)));
+								// segments saved meanwhile follow the merged
+								// ones
+								setSegments(replace(this.segments, first,
+										last, newSegment));
+								publish();
+								merged = true;
+							} finally {
+								endSwap();
+							}
+						} else {
+							scheduleMerge(); // queries are running, try later
+						}
+					}
+				} finally {
+					monitor.exitWrite();
+				}
+			} finally {
+				if (merged) {
+					for (int i = first; i <= last; i++)
+						segments[i].diskIndex.getIndexFile().delete();
+				} else {
+					if (newDiskIndex != null)
+						newDiskIndex.getIndexFile().delete();
+					if (newSegment != null)
+						newSegment.diskIndex.getIndexFile().delete();
+				}
+			}
+			return merged;
+		}
+	}
+
+	private boolean isCurrent(Segment[] segments, int first, int last) {
+		Segment[] current = this.segments;
+		for (int i = first; i <= last; i++)
+			if (i >= current.length || current[i] != segments[i]
+					|| !segments[i].diskIndex.getIndexFile().exists())
+				return false;
+		return true;
+	}
+
+	private boolean shouldMergeIntoDiskIndex(Segment[] segments) {
+		long size = 0;
+		for (int i = 0; i < segments.length; i++)
+			size += segments[i].size;
+		return size * MAIN_MERGE_RATIO > this.diskIndex.getIndexFile()
+				.length();
+	}
+
+	/**
+	 * Returns the first and last segment of the newest run of at least
+	 * {@link #MERGE_FACTOR} segments of the same tier, or <code>null</code>.
+	 */
+	private static int[] selectMergeRange(Segment[] segments) {
+		int[] range = null;
+		for (int i = 0; i < segments.length;) {
+			int tier = segments[i].getTier();
+			int j = i + 1;
+			while (j < segments.length && segments[j].getTier() == tier)
+				j++;
+			if (j - i >= MERGE_FACTOR)
+				range = new int[] { i, j - 1 };
+			i = j;
+		}
+		return range;
+	}
+
+	private static DiskIndex openDiskIndex(String fileName) throws IOException {
+		DiskIndex diskIndex = new DiskIndex(fileName);
+		if (!diskIndex.getIndexFile().exists())
+			throw new IOException("Missing index file " + fileName); //$NON-NLS-1$
+		diskIndex.initialize(true);
+		return diskIndex;
+	}
+
+	/**
+	 * Starts the queries whose results are read until
+	 * {@link #stopQuery(Object)} is called with the returned handle, the files
+	 * of the index are not replaced meanwhile. The handle pins the snapshot
+	 * queried when this method is called, so the query could be stopped by
+	 * any thread, even if the snapshot was replaced by a writer meanwhile.
+	 */
+	public Object startQuery() {
+		Snapshot snapshot = enterQuery();
+		if (snapshot != null) {
+			snapshot.diskIndex.startQuery();
+			Segment[] segments = snapshot.segments;
+			for (int i = 0; i < segments.length; i++)
+				segments[i].diskIndex.startQuery();
+		}
+		return snapshot;
+	}
+
+	/**
+	 * Stops the queries started by {@link #startQuery()}, which returned the
+	 * given handle.
+	 */
+	public void stopQuery(Object query) {
+		Snapshot snapshot = (Snapshot) query;
+		if (snapshot != null) {
+			snapshot.diskIndex.stopQuery();
+			Segment[] segments = snapshot.segments;
+			for (int i = 0; i < segments.length; i++)
+				segments[i].diskIndex.stopQuery();
+		}
+		exitQuery();
 	}
 
 	public String toString() {
@@ -36,11 +36,59 @@ public class MemoryIndex {
 
 	HashtableOfObject lastReferenceTable;
 
+	private MemoryIndex snapshot; // read only copy, null if changed since
+
+	private SimpleLookupTable sharedReferences; // document table of the copy
+
 	MemoryIndex() {
 		this.docsToReferences = new SimpleLookupTable(7);
 		this.allWords = new SimpleWordSet(7);
 	}
 
+	private MemoryIndex(SimpleLookupTable docsToReferences) {
+		this.docsToReferences = docsToReferences;
+	}
+
+	/**
+	 * Returns the read only copy of this index, which can be queried while
+	 * this index is changed. Reference tables of the documents are shared
+	 * with the copy, and copied before they are changed.
+	 */
+	MemoryIndex snapshot() {
+		if (this.snapshot == null) {
+			SimpleLookupTable references;
+			try {
+				references = (SimpleLookupTable) this.docsToReferences.clone();
+			} catch (CloneNotSupportedException e) {
+				throw new IllegalStateException(e.getMessage());
+			}
+			this.snapshot = new MemoryIndex(references);
+			this.sharedReferences = references;
+			this.lastDocumentName = null;
+			this.lastReferenceTable = null;
+		}
+		return this.snapshot;
+	}
+
+	private static HashtableOfObject copyReferences(
+			HashtableOfObject referenceTable) {
+		HashtableOfObject copy = new HashtableOfObject(
+				referenceTable.elementSize);
+		char[][] categories = referenceTable.keyTable;
+		Object[] wordSets = referenceTable.valueTable;
+		for (int i = 0, l = categories.length; i < l; i++) {
+			if (categories[i] != null) {
+				char[][] words = ((SimpleWordSet) wordSets[i]).words;
+				SimpleWordSet wordsCopy = new SimpleWordSet(words.length);
+				for (int j = 0, m = words.length; j < m; j++)
+					if (words[j] != null)
+						wordsCopy.add(words[j]);
+				copy.put(categories[i], wordsCopy);
+			}
+		}
+		return copy;
+	}
+
 	void addDocumentNames(String substring, SimpleSet results) {
 		// assumed the disk index already skipped over documents which have been
 		// added/changed/deleted
@@ -59,6 +107,7 @@ public class MemoryIndex {
 	}
 
 	void addIndexEntry(char[] category, char[] key, String documentName) {
+		this.snapshot = null;
 		HashtableOfObject referenceTable;
 		if (documentName.equals(this.lastDocumentName))
 			referenceTable = this.lastReferenceTable;
@@ -69,6 +118,10 @@ public class MemoryIndex {
 			if (referenceTable == null)
 				this.docsToReferences.put(documentName,
 						referenceTable = new HashtableOfObject(3));
+			else if (this.sharedReferences != null
+					&& this.sharedReferences.get(documentName) == referenceTable)
+				this.docsToReferences.put(documentName,
+						referenceTable = copyReferences(referenceTable));
 			this.lastDocumentName = documentName;
 			this.lastReferenceTable = referenceTable;
 		}
@@ -191,6 +244,7 @@ public class MemoryIndex {
 	}
 
 	void remove(String documentName) {
+		this.snapshot = null;
 		if (documentName.equals(this.lastDocumentName)) {
 			this.lastDocumentName = null;
 			this.lastReferenceTable = null;
@@ -198,6 +252,18 @@ public class MemoryIndex {
 		this.docsToReferences.put(documentName, null);
 	}
 
+	/**
+	 * Adds the key in the category to each removed document, so removals are
+	 * kept when the memory index is saved as a delta segment.
+	 */
+	void recordRemovals(char[] category, char[] key) {
+		Object[] paths = this.docsToReferences.keyTable;
+		Object[] referenceTables = this.docsToReferences.valueTable;
+		for (int i = 0, l = referenceTables.length; i < l; i++)
+			if (paths[i] != null && referenceTables[i] == null)
+				addIndexEntry(category, key, (String) paths[i]);
+	}
+
 	boolean shouldMerge() {
 		return this.docsToReferences.elementSize >= NUM_CHANGES;
 	}
@@ -0,0 +1,277 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Sage and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Sage - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.dltk.core.search.index;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.eclipse.dltk.compiler.CharOperation;
+import org.eclipse.dltk.internal.core.util.Util;
+
+/**
+ * Saved mixin index. The file contains the sorted document names and the
+ * sorted keys, each document record lists the numbers of its keys and each
+ * key record lists the numbers of its documents. Records are decoded on
+ * demand from the mapped (or read) file, so opening the index costs only the
+ * header.
+ *
+ * <pre>
+ * header, document count, key count,
+ * document record offsets, key record offsets,
+ * document records: name, key count, key numbers
+ * key records: key, document count, document numbers
+ * </pre>
+ */
+class MixinDiskIndex {
+
+	static final char[] HEADER = "MIXIN INDEX 0.4".toCharArray(); //$NON-NLS-1$
+
+	private static final int[] NO_NUMBERS = new int[0];
+
+	private final ByteBuffer buffer;
+	private final int documentCount;
+	private final int keyCount;
+	private final int documentOffsets;
+	private final int keyOffsets;
+	private final AtomicReferenceArray<String> documentNames;
+
+	private MixinDiskIndex(ByteBuffer buffer, int offset) {
+		this.buffer = buffer;
+		this.documentCount = buffer.getInt(offset);
+		this.keyCount = buffer.getInt(offset + 4);
+		this.documentOffsets = offset + 8;
+		this.keyOffsets = this.documentOffsets + this.documentCount * 4;
+		this.documentNames = new AtomicReferenceArray<String>(
+				this.documentCount);
+	}
+
+	/**
+	 * Opens the saved index, the file is mapped into memory if requested or
+	 * read into the heap buffer otherwise. Answers <code>null</code> if the
+	 * file has another format.
+	 */
+	static MixinDiskIndex open(File file, boolean mapped) throws IOException {
+		ByteBuffer buffer;
+		RandomAccessFile input = new RandomAccessFile(file, "r"); //$NON-NLS-1$
+		try {
+			FileChannel channel = input.getChannel();
+			int size = (int) channel.size();
+			if (mapped) {
+				buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			} else {
+				buffer = ByteBuffer.allocate(size);
+				while (buffer.hasRemaining()) {
+					if (channel.read(buffer) < 0)
+						throw new IOException("Unexpected end of mixin index " //$NON-NLS-1$
+								+ file);
+				}
+				buffer.flip();
+			}
+		} finally {
+			input.close(); // mapping remains valid
+		}
+		ByteBuffer header = buffer.duplicate();
+		try {
+			if (!CharOperation.equals(HEADER, DiskIndex.readUTF(header)))
+				return null;
+		} catch (RuntimeException e) {
+			return null; // too short
+		}
+		if (header.remaining() < 8)
+			return null;
+		MixinDiskIndex index = new MixinDiskIndex(buffer, header.position());
+		if (index.documentCount < 0 || index.keyCount < 0
+				|| index.keyOffsets + index.keyCount * 4 > buffer.limit())
+			throw new IOException("Corrupted mixin index " + file); //$NON-NLS-1$
+		return index;
+	}
+
+	int getDocumentCount() {
+		return this.documentCount;
+	}
+
+	int getKeyCount() {
+		return this.keyCount;
+	}
+
+	private ByteBuffer getRecord(int directory, int number) {
+		ByteBuffer record = this.buffer.duplicate();
+		record.position(this.buffer.getInt(directory + number * 4));
+		return record;
+	}
+
+	private static int[] readNumbers(ByteBuffer record) {
+		int count = record.getInt();
+		if (count == 0)
+			return NO_NUMBERS;
+		int[] numbers = new int[count];
+		for (int i = 0; i < count; i++)
+			numbers[i] = record.getInt();
+		return numbers;
+	}
+
+	String getDocumentName(int number) throws IOException {
+		String name = this.documentNames.get(number);
+		if (name == null) {
+			name = new String(DiskIndex.readUTF(getRecord(
+					this.documentOffsets, number)));
+			this.documentNames.set(number, name);
+		}
+		return name;
+	}
+
+	char[] getKey(int number) throws IOException {
+		return DiskIndex.readUTF(getRecord(this.keyOffsets, number));
+	}
+
+	/**
+	 * Answers the sorted numbers of the keys of the document.
+	 */
+	int[] getKeyNumbers(int documentNumber) throws IOException {
+		ByteBuffer record = getRecord(this.documentOffsets, documentNumber);
+		DiskIndex.readUTF(record);
+		return readNumbers(record);
+	}
+
+	/**
+	 * Answers the sorted numbers of the documents of the key.
+	 */
+	int[] getDocumentNumbers(int keyNumber) throws IOException {
+		ByteBuffer record = getRecord(this.keyOffsets, keyNumber);
+		DiskIndex.readUTF(record);
+		return readNumbers(record);
+	}
+
+	/**
+	 * Answers the number of the first key which is not less than the given
+	 * one.
+	 */
+	int lowerBoundKey(char[] key) throws IOException {
+		int low = 0;
+		int high = this.keyCount;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (Util.compare(getKey(middle), key) < 0)
+				low = middle + 1;
+			else
+				high = middle;
+		}
+		return low;
+	}
+
+	/**
+	 * Answers the number of the first document whose name is not less than
+	 * the given one.
+	 */
+	int lowerBoundDocument(String name) throws IOException {
+		int low = 0;
+		int high = this.documentCount;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (getDocumentName(middle).compareTo(name) < 0)
+				low = middle + 1;
+			else
+				high = middle;
+		}
+		return low;
+	}
+
+	/**
+	 * Answers the number of the document or -1 if it is not saved.
+	 */
+	int indexOfDocument(String name) throws IOException {
+		int number = lowerBoundDocument(name);
+		if (number < this.documentCount
+				&& getDocumentName(number).equals(name))
+			return number;
+		return -1;
+	}
+
+	/**
+	 * Writes the index. Documents must be sorted by
+	 * {@link String#compareTo(String)}, keys by
+	 * {@link Util#compare(char[], char[])}, and the document numbers of each
+	 * key must be sorted.
+	 */
+	static void write(File file, String[] documents, char[][] keys,
+			int[][] keyDocuments) throws IOException {
+		// reverse map, key numbers are sorted as keys are visited in order
+		int[] counts = new int[documents.length];
+		for (int i = 0; i < keyDocuments.length; i++) {
+			int[] numbers = keyDocuments[i];
+			for (int j = 0; j < numbers.length; j++)
+				counts[numbers[j]]++;
+		}
+		int[][] documentKeys = new int[documents.length][];
+		for (int i = 0; i < documents.length; i++) {
+			documentKeys[i] = counts[i] == 0 ? NO_NUMBERS : new int[counts[i]];
+			counts[i] = 0;
+		}
+		for (int i = 0; i < keyDocuments.length; i++) {
+			int[] numbers = keyDocuments[i];
+			for (int j = 0; j < numbers.length; j++) {
+				int document = numbers[j];
+				documentKeys[document][counts[document]++] = i;
+			}
+		}
+
+		int[] offsets = new int[documents.length + keys.length];
+		int directory;
+		FileOutputStream output = new FileOutputStream(file, false);
+		try {
+			DataOutputStream stream = new DataOutputStream(
+					new BufferedOutputStream(output, 8192));
+			Util.writeUTF(stream, HEADER);
+			stream.writeInt(documents.length);
+			stream.writeInt(keys.length);
+			directory = stream.size();
+			for (int i = 0; i < offsets.length; i++)
+				stream.writeInt(0); // written below
+			for (int i = 0; i < documents.length; i++) {
+				offsets[i] = stream.size();
+				Util.writeUTF(stream, documents[i].toCharArray());
+				writeNumbers(stream, documentKeys[i]);
+			}
+			for (int i = 0; i < keys.length; i++) {
+				offsets[documents.length + i] = stream.size();
+				Util.writeUTF(stream, keys[i]);
+				writeNumbers(stream, keyDocuments[i]);
+			}
+			stream.flush();
+		} finally {
+			output.close();
+		}
+
+		RandomAccessFile patch = new RandomAccessFile(file, "rw"); //$NON-NLS-1$
+		try {
+			ByteBuffer bytes = ByteBuffer.allocate(offsets.length * 4);
+			bytes.asIntBuffer().put(offsets);
+			patch.seek(directory);
+			patch.write(bytes.array());
+		} finally {
+			patch.close();
+		}
+	}
+
+	private static void writeNumbers(DataOutputStream stream, int[] numbers)
+			throws IOException {
+		stream.writeInt(numbers.length);
+		for (int i = 0; i < numbers.length; i++)
+			stream.writeInt(numbers[i]);
+	}
+}
@@ -10,35 +10,64 @@
 package org.eclipse.dltk.core.search.index;
 
 import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.DataInputStream;
-import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import org.eclipse.core.runtime.Assert;
 import org.eclipse.core.runtime.Path;
 import org.eclipse.dltk.compiler.CharOperation;
 import org.eclipse.dltk.compiler.util.HashtableOfObject;
 import org.eclipse.dltk.compiler.util.ObjectVector;
+import org.eclipse.dltk.compiler.util.SimpleLookupTable;
 import org.eclipse.dltk.compiler.util.SimpleSet;
 import org.eclipse.dltk.core.DLTKCore;
+import org.eclipse.dltk.core.metrics.Histogram;
+import org.eclipse.dltk.core.metrics.Metrics;
 import org.eclipse.dltk.core.search.IDLTKSearchScope;
+import org.eclipse.dltk.core.search.SearchPattern;
 import org.eclipse.dltk.core.search.indexing.IIndexConstants;
+import org.eclipse.dltk.core.search.indexing.IndexBundles;
 import org.eclipse.dltk.core.search.indexing.IndexManager;
+import org.eclipse.dltk.core.search.indexing.ReadWriteMonitor;
+import org.eclipse.dltk.internal.core.util.SimpleWordSet;
 import org.eclipse.dltk.internal.core.util.Util;
 
+/**
+ * Index of the mixin keys. The saved index (see {@link MixinDiskIndex}) is
+ * mapped into memory and decoded on demand, only the changes made since it
+ * was saved are kept in the tables.
+ */
 public class MixinIndex extends Index {
 
 	private static final char[] OLD_HEADER = "MIXIN INDEX 0.1".toCharArray(); //$NON-NLS-1$
 	private static final char[] OLD_HEADER_2 = "MIXIN INDEX 0.2".toCharArray(); //$NON-NLS-1$
-	private static final char[] HEADER = "MIXIN INDEX 0.3".toCharArray(); //$NON-NLS-1$
+	private static final char[] OLD_HEADER_3 = "MIXIN INDEX 0.3".toCharArray(); //$NON-NLS-1$
 
-	private final HashtableOfObject keyToDocs = new HashtableOfObject(10);
+	private static final Histogram QUERY_TIME = Metrics
+			.histogram("index.mixin.query"); //$NON-NLS-1$
+	private static final Histogram SAVE_TIME = Metrics
+			.histogram("index.mixin.save"); //$NON-NLS-1$
+
+	private MixinDiskIndex savedIndex;
+
+	/*
+	 * keys changed since the index was saved -> SimpleSet of all their
+	 * documents, replacing the saved entries of these keys
+	 */
+	private HashtableOfObject keyToDocs = new HashtableOfObject(10);
+	// documents added since the index was saved -> SimpleWordSet of keys
+	private SimpleLookupTable docToKeys = new SimpleLookupTable(10);
+	// documents added since the index was saved
 	private final SimpleSet documentNames = new SimpleSet(10);
+	// saved documents removed since the index was saved
+	private final SimpleSet removedDocuments = new SimpleSet(10);
 
 	private final String fileName;
 
@@ -64,7 +93,11 @@ public class MixinIndex extends Index {
 			System.out.println("MIXIN: addIndexEntry '" + new String(key) //$NON-NLS-1$
 					+ "' path '" + containerRelativePath + "'"); //$NON-NLS-1$ //$NON-NLS-2$
 		}
-		addIndexEntry(key, internDocName(containerRelativePath));
+		try {
+			addIndexEntry(key, internDocName(containerRelativePath));
+		} catch (IOException e) {
+			Util.log(e, "Failed to read mixin index " + this.fileName); //$NON-NLS-1$
+		}
 	}
 
 	/**
@@ -72,24 +105,65 @@ public class MixinIndex extends Index {
 	 * needed to save in the index names of all indexed documents - some
 	 * documents contains no MIXIN-related information, so this method is used
 	 * to record just the document name.
-	 * 
+	 *
 	 * @param containerRelativePath
 	 */
 	public void addDocumentName(String containerRelativePath) {
-		final int savedCount = documentNames.elementSize;
-		internDocName(containerRelativePath);
-		if (documentNames.elementSize > savedCount) {
+		try {
+			if (!isSavedDocument(containerRelativePath)
+					&& !documentNames.includes(containerRelativePath)) {
+				dirty = true;
+			}
+		} catch (IOException e) {
+			Util.log(e, "Failed to read mixin index " + this.fileName); //$NON-NLS-1$
 			dirty = true;
 		}
+		internDocName(containerRelativePath);
 	}
 
-	private void addIndexEntry(char[] key, String containerRelativePath) {
+	private void addIndexEntry(char[] key, String containerRelativePath)
+			throws IOException {
+		getChangedDocuments(key).add(containerRelativePath);
+		SimpleWordSet keys = (SimpleWordSet) docToKeys
+				.get(containerRelativePath);
+		if (keys == null) {
+			keys = new SimpleWordSet(3);
+			docToKeys.put(containerRelativePath, keys);
+		}
+		keys.add(key);
+	}
+
+	/**
+	 * Returns the documents of the key, the saved ones are copied when the key
+	 * is changed for the first time.
+	 */
+	private SimpleSet getChangedDocuments(char[] key) throws IOException {
 		SimpleSet docs = (SimpleSet) keyToDocs.get(key);
 		if (docs == null) {
 			docs = new SimpleSet(1);
+			if (savedIndex != null) {
+				int number = savedIndex.lowerBoundKey(key);
+				if (number < savedIndex.getKeyCount()
+						&& CharOperation.equals(key, savedIndex.getKey(number))) {
+					int[] docNumbers = savedIndex.getDocumentNumbers(number);
+					for (int i = 0; i < docNumbers.length; i++) {
+						docs.add(savedIndex.getDocumentName(docNumbers[i]));
+					}
+				}
+			}
 			keyToDocs.put(key, docs);
 		}
-		docs.add(containerRelativePath);
+		return docs;
+	}
+
+	/**
+	 * Answers if the document is saved and was not removed since.
+	 */
+	private boolean isSavedDocument(String containerRelativePath)
+			throws IOException {
+		return savedIndex != null
+				&& !removedDocuments.includes(containerRelativePath)
+				&& savedIndex.indexOfDocument(containerRelativePath) >= 0;
 	}
 
 	public String containerRelativePath(String documentPath) {
@@ -125,22 +199,27 @@ public class MixinIndex extends Index {
 		if (!isMixinCategory(categories))
 			return new EntryResult[0];
 		final ObjectVector results = new ObjectVector();
+		final long start = System.nanoTime();
 		performQuery(key, matchRule, results);
+		QUERY_TIME.recordSince(start);
 		final EntryResult[] entryResults = new EntryResult[results.size];
 		results.copyInto(entryResults);
 		return entryResults;
 	}
 
-	private void performQuery(char[] key, int matchRule, ObjectVector results) {
+	private void performQuery(char[] key, int matchRule, ObjectVector results)
+			throws IOException {
 		final char[][] keyTable = keyToDocs.keyTable;
 		for (int i = 0, keyLen = keyTable.length; i < keyLen; i++) {
 			final char[] nextKey = keyTable[i];
 			if (nextKey == null)
 				continue;
-			if (Index.isMatch(key, nextKey, matchRule)) {
+			final SimpleSet docs = (SimpleSet) keyToDocs.valueTable[i];
+			if (docs.elementSize != 0
+					&& Index.isMatch(key, nextKey, matchRule)) {
 				final EntryResult s = new EntryResult(nextKey, null);
 				results.add(s);
-				final Object[] docTable = ((SimpleSet) keyToDocs.valueTable[i]).values;
+				final Object[] docTable = docs.values;
 				for (int j = 0, docLen = docTable.length; j < docLen; j++) {
 					final String doc = (String) docTable[j];
 					if (doc != null) {
@@ -149,26 +228,54 @@ public class MixinIndex extends Index {
 				}
 			}
 		}
+		if (savedIndex == null)
+			return;
+		// saved keys are sorted, so only the keys starting with the literal
+		// prefix of the pattern are checked
+		final char[] prefix = getLiteralPrefix(key, matchRule);
+		int first = 0;
+		int last = savedIndex.getKeyCount();
+		if (prefix != null) {
+			first = savedIndex.lowerBoundKey(prefix);
+			if (prefix == key
+					&& (matchRule & (SearchPattern.R_PREFIX_MATCH | SearchPattern.R_PATTERN_MATCH)) == 0) {
+				last = Math.min(first + 1, last);
+			}
+		}
+		for (int i = first; i < last; i++) {
+			final char[] nextKey = savedIndex.getKey(i);
+			if (prefix != null && !CharOperation.prefixEquals(prefix, nextKey))
+				break;
+			if (keyToDocs.containsKey(nextKey)
+					|| !Index.isMatch(key, nextKey, matchRule))
+				continue;
+			final int[] docNumbers = savedIndex.getDocumentNumbers(i);
+			if (docNumbers.length == 0)
+				continue;
+			final EntryResult s = new EntryResult(nextKey, null);
+			results.add(s);
+			for (int j = 0; j < docNumbers.length; j++) {
+				s.addDocumentName(savedIndex.getDocumentName(docNumbers[j]));
+			}
+		}
 	}
 
-	private static String[] extractKeysFromTable(SimpleSet table,
-			String substring) {
-		String[] documentNames = new String[table.elementSize];
-		int count = 0;
-		final Object[] values = table.values;
-		for (int i = 0, l = values.length; i < l; i++) {
-			final String result = (String) values[i];
-			if (result != null
-					&& (substring == null || result.startsWith(substring))) {
-				documentNames[count++] = result;
+	/**
+	 * Returns the prefix of all the keys matching the pattern or
+	 * <code>null</code> if the matching keys could start with anything.
+	 */
+	private static char[] getLiteralPrefix(char[] pattern, int matchRule) {
+		if (pattern == null
+				|| (matchRule & SearchPattern.R_CASE_SENSITIVE) == 0
+				|| (matchRule & (SearchPattern.R_CAMELCASE_MATCH | SearchPattern.R_REGEXP_MATCH)) != 0)
+			return null;
+		if ((matchRule & SearchPattern.R_PATTERN_MATCH) != 0) {
+			for (int i = 0; i < pattern.length; i++) {
+				if (pattern[i] == '*' || pattern[i] == '?')
+					return CharOperation.subarray(pattern, 0, i);
 			}
 		}
-		if (count != documentNames.length) {
-			final String[] result = new String[count];
-			System.arraycopy(documentNames, 0, result, 0, count);
-			documentNames = result;
-		}
-		return documentNames;
+		return pattern;
 	}
 
 	/**
@@ -176,19 +283,58 @@ public class MixinIndex extends Index {
 	 * returns all of them.
 	 */
 	public String[] queryDocumentNames(String substring) throws IOException {
-		return extractKeysFromTable(documentNames, substring);
+		final List<String> result = new ArrayList<String>();
+		if (savedIndex != null) {
+			final int count = savedIndex.getDocumentCount();
+			int i = substring == null ? 0 : savedIndex
+					.lowerBoundDocument(substring);
+			for (; i < count; i++) {
+				final String name = savedIndex.getDocumentName(i);
+				if (substring != null && !name.startsWith(substring))
+					break;
+				if (!removedDocuments.includes(name))
+					result.add(name);
+			}
+		}
+		final Object[] values = documentNames.values;
+		for (int i = 0, l = values.length; i < l; i++) {
+			final String name = (String) values[i];
+			if (name != null
+					&& (substring == null || name.startsWith(substring))
+					&& !isSavedDocument(name)) {
+				result.add(name);
+			}
+		}
+		return result.toArray(new String[result.size()]);
 	}
 
 	public void remove(String containerRelativePath) {
 		this.dirty = true;
-		if (documentNames.remove(containerRelativePath) != null) {
-			final char[][] keyTable = keyToDocs.keyTable;
-			for (int i = 0; i < keyTable.length; i++) {
-				final SimpleSet docs = (SimpleSet) keyToDocs.valueTable[i];
-				if (docs != null) {
-					docs.remove(containerRelativePath);
+		final SimpleWordSet keys = (SimpleWordSet) docToKeys
+				.removeKey(containerRelativePath);
+		if (keys != null) {
+			final char[][] words = keys.words;
+			for (int i = 0; i < words.length; i++) {
+				if (words[i] != null) {
+					((SimpleSet) keyToDocs.get(words[i]))
+							.remove(containerRelativePath);
+				}
+			}
+		}
+		documentNames.remove(containerRelativePath);
+		try {
+			if (isSavedDocument(containerRelativePath)) {
+				removedDocuments.add(containerRelativePath);
+				// only the keys of the document are changed
+				final int[] keyNumbers = savedIndex.getKeyNumbers(savedIndex
+						.indexOfDocument(containerRelativePath));
+				for (int i = 0; i < keyNumbers.length; i++) {
+					getChangedDocuments(savedIndex.getKey(keyNumbers[i]))
+							.remove(containerRelativePath);
 				}
 			}
+		} catch (IOException e) {
+			Util.log(e, "Failed to read mixin index " + this.fileName); //$NON-NLS-1$
 		}
 	}
 
@@ -198,48 +344,179 @@ public class MixinIndex extends Index {
 			return;
 		}
 
-		File f = getIndexFile();
-		FileOutputStream fouts = new FileOutputStream(f, false);
-		BufferedOutputStream bufout = new BufferedOutputStream(fouts, 2048);
-		DataOutputStream stream = new DataOutputStream(bufout);
-		final SimpleSet allDocuments = new SimpleSet();
-		allDocuments.addAll(documentNames);
-		Util.writeUTF(stream, HEADER);
-		int keyCount = keyToDocs.elementSize;
-		stream.writeInt(keyCount);
+		final long startNanos = System.nanoTime();
+		final String[] documents = queryDocumentNames(null);
+		Util.sort(documents);
+		final Map<String, Integer> documentNumbers = new HashMap<String, Integer>();
+		for (int i = 0; i < documents.length; i++) {
+			documentNumbers.put(documents[i], new Integer(i));
+		}
+		// saved documents keep their order, removed ones are mapped to -1
+		final int[] savedToNew = new int[savedIndex != null ? savedIndex
+				.getDocumentCount() : 0];
+		for (int i = 0; i < savedToNew.length; i++) {
+			final Integer number = documentNumbers.get(savedIndex
+					.getDocumentName(i));
+			savedToNew[i] = number != null ? number.intValue() : -1;
+		}
+		final char[][] changedKeys = new char[keyToDocs.elementSize][];
+		int changedCount = 0;
 		for (int i = 0; i < keyToDocs.keyTable.length; i++) {
-			char[] key = keyToDocs.keyTable[i];
-			if (key == null)
-				continue;
-			Util.writeUTF(stream, key);
-			final SimpleSet docs = (SimpleSet) keyToDocs.valueTable[i];
-			stream.writeInt(docs.elementSize);
-			for (int j = 0; j < docs.values.length; j++) {
-				final String docName = (String) docs.values[j];
-				if (docName != null) {
-					Util.writeUTF(stream, docName.toCharArray());
-					allDocuments.remove(docName);
-				}
-			}
+			if (keyToDocs.keyTable[i] != null)
+				changedKeys[changedCount++] = keyToDocs.keyTable[i];
 		}
-		stream.writeInt(allDocuments.size());
-		for (int i = 0, docTableLen = allDocuments.values.length; i < docTableLen; ++i) {
-			String docName = (String) allDocuments.values[i];
-			if (docName != null) {
-				Util.writeUTF(stream, docName.toCharArray());
+		Util.sort(changedKeys);
+		// merge the sorted saved keys with the sorted changed keys
+		final List<char[]> keys = new ArrayList<char[]>();
+		final List<int[]> keyDocuments = new ArrayList<int[]>();
+		final int savedCount = savedIndex != null ? savedIndex.getKeyCount()
+				: 0;
+		int saved = 0;
+		int changed = 0;
+		char[] savedKey = savedCount != 0 ? savedIndex.getKey(0) : null;
+		while (savedKey != null || changed < changedCount) {
+			final int compare = savedKey == null ? 1
+					: changed == changedCount ? -1 : Util.compare(savedKey,
+							changedKeys[changed]);
+			final char[] key;
+			final int[] numbers;
+			if (compare < 0) {
+				key = savedKey;
+				numbers = renumber(savedIndex.getDocumentNumbers(saved),
+						savedToNew);
+			} else {
+				key = changedKeys[changed++];
+				numbers = getDocumentNumbers((SimpleSet) keyToDocs.get(key),
+						documentNumbers);
+			}
+			if (compare <= 0) {
+				savedKey = ++saved < savedCount ? savedIndex.getKey(saved)
+						: null;
+			}
+			if (numbers.length != 0) {
+				keys.add(key);
+				keyDocuments.add(numbers);
 			}
 		}
-		bufout.close();
-		stream.close();
-		fouts.close();
-		this.dirty = false;
+
+		final File tempFile = new File(this.fileName + ".tmp"); //$NON-NLS-1$
+		MixinDiskIndex.write(tempFile, documents, keys.toArray(new char[keys
+				.size()][]), keyDocuments.toArray(new int[keyDocuments.size()][]));
+		replaceFile(tempFile);
+		this.savedIndex = MixinDiskIndex.open(getIndexFile(), isMemoryMapped());
+		clearChanges();
+		SAVE_TIME.recordSince(startNanos);
 		if (DLTKCore.VERBOSE_MIXIN) {
 			System.out.println("Mixin index for " + this.containerPath + " (" //$NON-NLS-1$ //$NON-NLS-2$
 					+ new Path(this.fileName).lastSegment() + ") saved, took " //$NON-NLS-1$
 					+ (System.currentTimeMillis() - start));
-			System.out.println("Mixin modules: " + this.documentNames.size()); //$NON-NLS-1$
-			System.out.println("Mixin keys: " + this.keyToDocs.size()); //$NON-NLS-1$
+			System.out.println("Mixin modules: " + documents.length); //$NON-NLS-1$
+			System.out.println("Mixin keys: " + keys.size()); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * Renames the temporary file over the index file.
+	 */
+	private void replaceFile(File tempFile) throws IOException {
+		final File file = getIndexFile();
+		if (!tempFile.renameTo(file)) {
+			// the saved index could still be open, it is kept to answer the
+			// queries until the file is replaced
+			if (!(file.delete() && tempFile.renameTo(file))) {
+				tempFile.delete();
+				throw new IOException(
+						"Failed to save mixin index " + this.fileName); //$NON-NLS-1$
+			}
+			this.savedIndex = null;
+		}
+	}
+
+	private void clearChanges() {
+		this.keyToDocs = new HashtableOfObject(10);
+		this.docToKeys = new SimpleLookupTable(10);
+		this.documentNames.clear();
+		this.removedDocuments.clear();
+		this.dirty = false;
+	}
+
+	public String getBundleFormat() {
+		return new String(MixinDiskIndex.HEADER);
+	}
+
+	/**
+	 * The bundle is a saved mixin index, it's copied over the index file.
+	 */
+	public void attachBundle(File bundle) throws IOException {
+		final File tempFile = new File(this.fileName + ".attach.tmp"); //$NON-NLS-1$
+		final MixinDiskIndex attached;
+		try {
+			IndexBundles.copy(bundle, tempFile);
+			// the mapping remains valid when the file is renamed
+			attached = MixinDiskIndex.open(tempFile, isMemoryMapped());
+		} catch (IOException e) {
+			tempFile.delete();
+			throw e;
+		}
+		if (attached == null) {
+			tempFile.delete();
+			throw new IOException("Wrong format of mixin index bundle " //$NON-NLS-1$
+					+ bundle);
+		}
+		replaceFile(tempFile);
+		this.savedIndex = attached;
+		clearChanges();
+	}
+
+	/**
+	 * The changes are written to the saved index at once, there is nothing to
+	 * merge.
+	 */
+	public void compact() throws IOException {
+		ReadWriteMonitor monitor = this.monitor;
+		if (monitor == null)
+			return;
+		monitor.enterWrite();
+		try {
+			save();
+		} finally {
+			monitor.exitWrite();
+		}
+	}
+
+	private static int[] renumber(int[] savedNumbers, int[] savedToNew) {
+		final int[] numbers = new int[savedNumbers.length];
+		int count = 0;
+		for (int i = 0; i < savedNumbers.length; i++) {
+			final int number = savedToNew[savedNumbers[i]];
+			if (number >= 0)
+				numbers[count++] = number;
+		}
+		if (count != numbers.length) {
+			final int[] result = new int[count];
+			System.arraycopy(numbers, 0, result, 0, count);
+			return result;
 		}
+		return numbers;
+	}
+
+	private static int[] getDocumentNumbers(SimpleSet docs,
+			Map<String, Integer> documentNumbers) {
+		final int[] numbers = new int[docs.elementSize];
+		int count = 0;
+		final Object[] values = docs.values;
+		for (int i = 0; i < values.length; i++) {
+			if (values[i] != null) {
+				numbers[count++] = documentNumbers.get(values[i]).intValue();
+			}
+		}
+		Util.sort(numbers);
+		return numbers;
+	}
+
+	private static boolean isMemoryMapped() {
+		return DLTKCore.ENABLED.equals(DLTKCore
+				.getOption(DLTKCore.INDEX_MEMORY_MAPPING));
 	}
 
 	private void initialize(boolean reuseExistingFile) throws IOException {
@@ -249,21 +526,12 @@ public class MixinIndex extends Index {
 			if (reuseExistingFile) {
 				try {
 					monitor.enterRead();
-					DataInputStream stream = new DataInputStream(
-							new BufferedInputStream(new FileInputStream(
-									indexFile), 8192));
-					try {
-						final char[] header = Util.readUTF(stream);
-						if (CharOperation.equals(OLD_HEADER, header)) {
-							loadDocToKeyFormat(stream);
-							successful = true;
-						} else if (CharOperation.equals(OLD_HEADER_2, header)
-								|| CharOperation.equals(HEADER, header)) {
-							loadKeyToDocFormat(stream);
-							successful = true;
-						}
-					} finally {
-						stream.close();
+					this.savedIndex = MixinDiskIndex.open(indexFile,
+							isMemoryMapped());
+					if (this.savedIndex != null) {
+						successful = true;
+					} else {
+						successful = loadOldFormat(indexFile);
 					}
 				} catch (FileNotFoundException e) {
 					if (DLTKCore.DEBUG_INDEX)
@@ -286,6 +554,7 @@ public class MixinIndex extends Index {
 			}
 		}
 		if (indexFile.createNewFile()) {
+			this.dirty = true;
 			save();
 		} else {
 			if (DLTKCore.DEBUG_INDEX)
@@ -296,6 +565,30 @@ public class MixinIndex extends Index {
 		this.dirty = false;
 	}
 
+	/**
+	 * Loads the index saved in one of the previous formats into the tables,
+	 * it is converted to the current format when saved.
+	 */
+	private boolean loadOldFormat(File indexFile) throws IOException {
+		DataInputStream stream = new DataInputStream(new BufferedInputStream(
+				new FileInputStream(indexFile), 8192));
+		try {
+			final char[] header = Util.readUTF(stream);
+			if (CharOperation.equals(OLD_HEADER, header)) {
+				loadDocToKeyFormat(stream);
+			} else if (CharOperation.equals(OLD_HEADER_2, header)
+					|| CharOperation.equals(OLD_HEADER_3, header)) {
+				loadKeyToDocFormat(stream);
+			} else {
+				return false;
+			}
+		} finally {
+			stream.close();
+		}
+		this.dirty = true;
+		return true;
+	}
+
 	private void loadKeyToDocFormat(DataInputStream stream) throws IOException {
 		final int keyCount = stream.readInt();
 		for (int i = 0; i < keyCount; i++) {
@@ -330,10 +623,11 @@ public class MixinIndex extends Index {
 		return (String) documentNames.addIntern(docName);
 	}
 
-	public void startQuery() {
+	public Object startQuery() {
+		return null;
 	}
 
-	public void stopQuery() {
+	public void stopQuery(Object query) {
 	}
 
 	public String toString() {
@@ -344,6 +638,13 @@ public class MixinIndex extends Index {
 		return false;
 	}
 
+	/**
+	 * Tables of the changes are not copied for the concurrent queries.
+	 */
+	public boolean isReadLockRequired() {
+		return true;
+	}
+
 	public String getContainerPath() {
 		if (containerPath.startsWith(IndexManager.SPECIAL_MIXIN)) {
 			return containerPath.substring(IndexManager.SPECIAL_MIXIN.length());
@@ -0,0 +1,177 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Sage and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Sage - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.dltk.core.search.indexing;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.dltk.core.DLTKCore;
+
+/**
+ * Read-only index bundles stored in the directory shared by workspaces, see
+ * {@link DLTKCore#INDEX_BUNDLE_LOCATION}. The bundle contains the whole index
+ * of a library and is named by the key computed from the index format and the
+ * library contents, so it's written once and attached to the containers of
+ * the same library at any location. Bundles are written to temporary files
+ * and then renamed, so they are never read partially written. Once their
+ * total size exceeds {@link DLTKCore#INDEX_BUNDLE_SIZE}, least recently used
+ * bundles are removed when the next one is published.
+ *
+ * @since 2.0
+ */
+public class IndexBundles {
+
+	private static final String BUNDLE_SUFFIX = ".bundle"; //$NON-NLS-1$
+	private static final String TEMP_SUFFIX = ".tmp"; //$NON-NLS-1$
+	/** Age of temporary files which were not published by crashed writers */
+	private static final long TEMP_FILE_AGE = 1000 * 60 * 60 * 24; // Day
+
+	private IndexBundles() {
+	}
+
+	/**
+	 * Returns the directory of bundles or <code>null</code> if bundles are
+	 * disabled.
+	 */
+	public static File getDirectory() {
+		String location = DLTKCore.getOption(DLTKCore.INDEX_BUNDLE_LOCATION);
+		if (location == null || location.trim().length() == 0)
+			return null;
+		return new File(location.trim());
+	}
+
+	/**
+	 * Returns the bundle with the given key or <code>null</code> if it
+	 * doesn't exist. The bundle is marked used, so it is removed after the
+	 * bundles which were not used since.
+	 */
+	public static File find(String key) {
+		File directory = getDirectory();
+		if (directory == null)
+			return null;
+		File bundle = new File(directory, key + BUNDLE_SUFFIX);
+		if (!bundle.isFile())
+			return null;
+		bundle.setLastModified(System.currentTimeMillis());
+		return bundle;
+	}
+
+	/**
+	 * Creates the temporary file in the directory of bundles, where the bundle
+	 * with the given key is written before it's published.
+	 */
+	public static File createTempFile(String key) throws IOException {
+		File directory = getDirectory();
+		if (directory == null)
+			throw new IOException("Index bundles are disabled"); //$NON-NLS-1$
+		if (!directory.isDirectory() && !directory.mkdirs())
+			throw new IOException("Failed to create directory " + directory); //$NON-NLS-1$
+		return File.createTempFile(key, TEMP_SUFFIX, directory);
+	}
+
+	/**
+	 * Publishes the written temporary file as the bundle with the given key.
+	 * The file is deleted if the bundle was published meanwhile by another
+	 * workspace.
+	 */
+	public static void publish(File tempFile, String key) throws IOException {
+		File bundle = new File(tempFile.getParentFile(), key + BUNDLE_SUFFIX);
+		tempFile.setReadOnly();
+		if (!tempFile.renameTo(bundle)) {
+			tempFile.delete();
+			if (!bundle.isFile())
+				throw new IOException("Failed to publish index bundle " //$NON-NLS-1$
+						+ bundle);
+		}
+		prune(tempFile.getParentFile(), getSizeLimit());
+	}
+
+	/**
+	 * Removes least recently used bundles of the directory until their total
+	 * size doesn't exceed the limit, and temporary files older than
+	 * {@link #TEMP_FILE_AGE}. Bundles attached meanwhile by other workspaces
+	 * were already copied, so they can be removed.
+	 */
+	private static void prune(File directory, long sizeLimit) {
+		File[] files = directory.listFiles();
+		if (files == null)
+			return;
+		final long now = System.currentTimeMillis();
+		final Map<File, Long> bundles = new HashMap<File, Long>();
+		long size = 0;
+		for (int i = 0; i < files.length; ++i) {
+			String name = files[i].getName();
+			long lastModified = files[i].lastModified();
+			if (name.endsWith(BUNDLE_SUFFIX)) {
+				bundles.put(files[i], Long.valueOf(lastModified));
+				size += files[i].length();
+			} else if (name.endsWith(TEMP_SUFFIX)
+					&& now - lastModified > TEMP_FILE_AGE) {
+				files[i].delete();
+			}
+		}
+		if (sizeLimit <= 0 || size <= sizeLimit)
+			return;
+		File[] sorted = bundles.keySet().toArray(new File[bundles.size()]);
+		Arrays.sort(sorted, new Comparator<File>() {
+			public int compare(File f1, File f2) {
+				return bundles.get(f1).compareTo(bundles.get(f2));
+			}
+		});
+		for (int i = 0; i < sorted.length && size > sizeLimit; ++i) {
+			long length = sorted[i].length();
+			if (sorted[i].delete())
+				size -= length;
+		}
+	}
+
+	private static long getSizeLimit() {
+		String value = DLTKCore.getOption(DLTKCore.INDEX_BUNDLE_SIZE);
+		if (value != null) {
+			try {
+				return Long.parseLong(value.trim()) * 1024 * 1024;
+			} catch (NumberFormatException e) {
+				// use default
+			}
+		}
+		return 1024L * 1024 * 1024;
+	}
+
+	/**
+	 * Copies the contents of the file to the target file, which is created or
+	 * truncated.
+	 */
+	public static void copy(File source, File target) throws IOException {
+		FileInputStream input = new FileInputStream(source);
+		try {
+			FileOutputStream output = new FileOutputStream(target, false);
+			try {
+				FileChannel in = input.getChannel();
+				FileChannel out = output.getChannel();
+				long size = in.size();
+				long position = 0;
+				while (position < size)
+					position += in.transferTo(position, size - position, out);
+			} finally {
+				output.close();
+			}
+		} finally {
+			input.close();
+		}
+	}
+}
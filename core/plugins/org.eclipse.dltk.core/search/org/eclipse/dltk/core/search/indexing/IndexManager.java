@@ -136,8 +136,15 @@ public class IndexManager extends JobManager implements IIndexConstants {
 			if (indexesFiles != null) {
 				for (int i = 0, indexesFilesLength = indexesFiles.length; i < indexesFilesLength; i++) {
 					String fileName = indexesFiles[i].getAbsolutePath();
-					if (!knownPaths.containsKey(fileName)
-							&& fileName.toLowerCase().endsWith(".index")) { //$NON-NLS-1$
+					String segmentOwner = Index.getSegmentOwner(fileName);
+					boolean unknown;
+					if (segmentOwner != null) {
+						unknown = !knownPaths.containsKey(segmentOwner);
+					} else {
+						unknown = !knownPaths.containsKey(fileName)
+								&& fileName.toLowerCase().endsWith(".index"); //$NON-NLS-1$
+					}
+					if (unknown) {
 						if (VERBOSE) {
 							Util
 									.verbose("Deleting index file " + indexesFiles[i]); //$NON-NLS-1$
@@ -459,7 +466,8 @@ public class IndexManager extends JobManager implements IIndexConstants {
 					if (files != null) {
 						for (int i = 0, l = files.length; i < l; i++) {
 							String fileName = files[i].getAbsolutePath();
-							if (fileName.toLowerCase().endsWith(".index")) { //$NON-NLS-1$
+							if (fileName.toLowerCase().endsWith(".index") //$NON-NLS-1$
+									|| Index.getSegmentOwner(fileName) != null) {
 								if (VERBOSE) {
 									Util
 											.verbose("Deleting index file " + files[i]); //$NON-NLS-1$
@@ -493,15 +501,30 @@ public class IndexManager extends JobManager implements IIndexConstants {
 	}
 
 	/**
-	 * Advance to the next available job, once the current one has been
-	 * completed. Note: clients awaiting until the job count is zero are still
-	 * waiting at this point.
+	 * Invoked once the job has been completed. Note: clients awaiting until
+	 * the job count is zero are still waiting at this point.
 	 */
-	protected synchronized void moveToNextJob() {
+	protected void jobCompleted(IJob job) {
 		// remember that one job was executed, and we will need to save indexes
 		// at some point
 		this.needToSave = true;
-		super.moveToNextJob();
+	}
+
+	/**
+	 * Answers the number of indexing threads
+	 * 
+	 * @see DLTKCore#INDEXING_THREADS
+	 */
+	protected int getWorkerCount() {
+		final String value = DLTKCore.getOption(DLTKCore.INDEXING_THREADS);
+		if (value != null) {
+			try {
+				return Integer.parseInt(value);
+			} catch (NumberFormatException e) {
+				// ignore
+			}
+		}
+		return 1;
 	}
 
 	/**
@@ -651,6 +674,7 @@ public class IndexManager extends JobManager implements IIndexConstants {
 		if (indexFile.exists()) {
 			indexFile.delete();
 		}
+		Index.deleteSegments(indexFile);
 		final Object o = this.indexes.remove(indexLocation);
 		if (o instanceof Index) {
 			final Index index = (Index) o;
@@ -687,6 +711,7 @@ public class IndexManager extends JobManager implements IIndexConstants {
 				if (indexFile.exists()) {
 					indexFile.delete();
 				}
+				Index.deleteSegments(indexFile);
 			} else if (locations == null) {
 				max--;
 			}
@@ -734,7 +759,7 @@ public class IndexManager extends JobManager implements IIndexConstants {
 			IPath sourceFolder, char[][] inclusionPatterns,
 			char[][] exclusionPatterns) {
 		IProject project = scriptProject.getProject();
-		if (this.jobEnd > this.jobStart) {
+		if (this.awaitingJobsCount() > 1) {
 			// skip it if a job to index the project is already in the queue
 			// IndexRequest request = new IndexAllProject(project, this);
 			// ProjectIndexerManager.indexProject(project);
@@ -746,6 +771,23 @@ public class IndexManager extends JobManager implements IIndexConstants {
 				exclusionPatterns, project, this));
 	}
 
+	/**
+	 * Adds the number of the open indexes and the size of each of them, with
+	 * the container path as the suffix.
+	 */
+	protected synchronized void collectMetrics(Map<String, Long> values) {
+		super.collectMetrics(values);
+		long totalSize = 0;
+		for (Iterator i = this.indexes.values().iterator(); i.hasNext();) {
+			Index index = (Index) i.next();
+			long size = index.getSize();
+			totalSize += size;
+			values.put("index.size." + index.getContainerPath(), new Long(size)); //$NON-NLS-1$
+		}
+		values.put("index.count", new Long(this.indexes.size())); //$NON-NLS-1$
+		values.put("index.totalSize", new Long(totalSize)); //$NON-NLS-1$
+	}
+
 	/**
 	 * Flush current state
 	 */
@@ -774,22 +816,16 @@ public class IndexManager extends JobManager implements IIndexConstants {
 		// avoid bugs such as
 		// https://bugs.eclipse.org/bugs/show_bug.cgi?id=62267
 		String indexLocation = index.getIndexFile().getPath();
-		if (this.jobEnd > this.jobStart) {
-			Object containerPath = this.indexLocations
-					.keyForValue(indexLocation);
-			if (containerPath != null) {
-				synchronized (this) {
-					for (int i = this.jobEnd; i > this.jobStart; i--) { // skip
-						// the
-						// current
-						// job
-						IJob job = this.awaitingJobs[i];
-						if (job instanceof IndexRequest) {
-							if (((IndexRequest) job).containerPath
-									.equals(containerPath)) {
-								return;
-							}
-						}
+		Object containerPath = this.indexLocations.keyForValue(indexLocation);
+		if (containerPath != null) {
+			// skip the running jobs
+			IJob[] jobs = this.getAwaitingJobs();
+			for (int i = jobs.length; --i >= 0;) {
+				IJob job = jobs[i];
+				if (job instanceof IndexRequest) {
+					if (((IndexRequest) job).containerPath
+							.equals(containerPath)) {
+						return;
 					}
 				}
 			}
@@ -10,10 +10,10 @@
 package org.eclipse.dltk.core.search.indexing;
 
 import org.eclipse.core.runtime.IPath;
-import org.eclipse.dltk.internal.core.search.processing.IJob;
+import org.eclipse.dltk.internal.core.search.processing.IJobExtension;
 
 
-public abstract class IndexRequest implements IJob {
+public abstract class IndexRequest implements IJobExtension {
 	protected boolean isCancelled = false;
 	protected IPath containerPath;
 	protected IndexManager manager;
@@ -36,6 +36,12 @@ public abstract class IndexRequest implements IJob {
 		// tag the index as inconsistent
 		this.manager.aboutToUpdateIndex(this.containerPath, updatedIndexState());
 	}
+	public int getLane() {
+		return BULK;
+	}
+	public Object getContainer() {
+		return this.containerPath;
+	}
 	protected Integer updatedIndexState() {
 		return IndexManager.UPDATING_STATE;
 	}
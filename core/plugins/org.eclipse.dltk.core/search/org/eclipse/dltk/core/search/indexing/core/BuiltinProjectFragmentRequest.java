@@ -48,7 +48,7 @@ public class BuiltinProjectFragmentRequest extends
 	protected List checkChanges(Index index, Collection modules,
 			IPath containerPath, IEnvironment environment)
 			throws ModelException, IOException {
-		final long indexLastModified = index.getIndexFile().lastModified();
+		final long indexLastModified = index.lastModified();
 		if (lastModified > indexLastModified) {
 			final List changes = new ArrayList();
 			final String[] documentNames = queryDocumentNames(index);
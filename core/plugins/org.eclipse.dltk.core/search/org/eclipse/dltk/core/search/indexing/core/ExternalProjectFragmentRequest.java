@@ -11,6 +11,7 @@
  *******************************************************************************/
 package org.eclipse.dltk.core.search.indexing.core;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -27,15 +28,18 @@ import org.eclipse.dltk.core.IModelElementVisitor;
 import org.eclipse.dltk.core.IProjectFragment;
 import org.eclipse.dltk.core.ISourceModule;
 import org.eclipse.dltk.core.ModelException;
+import org.eclipse.dltk.core.caching.IContentCache;
 import org.eclipse.dltk.core.environment.EnvironmentManager;
 import org.eclipse.dltk.core.environment.EnvironmentPathUtils;
 import org.eclipse.dltk.core.environment.IEnvironment;
 import org.eclipse.dltk.core.environment.IFileHandle;
 import org.eclipse.dltk.core.search.index.Index;
 import org.eclipse.dltk.core.search.indexing.IProjectIndexer;
+import org.eclipse.dltk.core.search.indexing.IndexBundles;
 import org.eclipse.dltk.core.search.indexing.ReadWriteMonitor;
 import org.eclipse.dltk.internal.core.BuiltinSourceModule;
 import org.eclipse.dltk.internal.core.ModelManager;
+import org.eclipse.dltk.internal.core.index2.IndexerManager;
 
 public class ExternalProjectFragmentRequest extends IndexRequest {
 
@@ -53,6 +57,17 @@ public class ExternalProjectFragmentRequest extends IndexRequest {
 		return fragment.getElementName();
 	}
 
+	/**
+	 * Libraries are indexed after the projects.
+	 */
+	public int getLane() {
+		return LIBRARY;
+	}
+
+	public Object getContainer() {
+		return fragment.getPath();
+	}
+
 	protected void run() throws CoreException, IOException {
 		IEnvironment environment = EnvironmentManager.getEnvironment(fragment
 				.getScriptProject());
@@ -65,6 +80,10 @@ public class ExternalProjectFragmentRequest extends IndexRequest {
 			return;
 		}
 		final IPath containerPath = fragment.getPath();
+		final String bundleKey = getBundleKey(index, modules, containerPath);
+		if (bundleKey != null && attachBundle(index, bundleKey, modules)) {
+			return;
+		}
 		Set<IFileHandle> parentFolders = new HashSet<IFileHandle>();
 		final List<Object> changes = checkChanges(index, modules,
 				containerPath, getEnvironment(), parentFolders);
@@ -110,6 +129,91 @@ public class ExternalProjectFragmentRequest extends IndexRequest {
 				imon.exitWrite();
 			}
 		}
+		if (bundleKey != null && !isCancelled) {
+			exportBundle(index, bundleKey);
+		}
+	}
+
+	/**
+	 * Returns the key of the bundle of the library, if bundles are enabled
+	 * and the library is indexed for the first time, or <code>null</code>
+	 * otherwise. Archives are not bundled, since their documents are named by
+	 * absolute paths.
+	 */
+	private String getBundleKey(Index index, Set<ISourceModule> modules,
+			IPath containerPath) throws IOException {
+		if (modules.isEmpty() || fragment.isArchive()
+				|| IndexBundles.getDirectory() == null) {
+			return null;
+		}
+		final String[] documents = queryDocumentNames(index);
+		if (documents != null && documents.length != 0) {
+			return null;
+		}
+		return IndexerManager.computeContainerDigest(getIndexer().getClass()
+				.getName()
+				+ '/' + toolkit.getNatureId() + '/' + index.getBundleFormat(),
+				containerPath, modules);
+	}
+
+	/**
+	 * Attaches the existing bundle to the index, returns whether the index
+	 * doesn't need to be built.
+	 */
+	private boolean attachBundle(Index index, String bundleKey,
+			Set<ISourceModule> modules) {
+		final File bundle = IndexBundles.find(bundleKey);
+		if (bundle == null) {
+			return false;
+		}
+		final ReadWriteMonitor imon = index.monitor;
+		imon.enterWrite();
+		try {
+			index.attachBundle(bundle);
+		} catch (IOException e) {
+			DLTKCore.error("error attaching index bundle", e); //$NON-NLS-1$
+			return false;
+		} finally {
+			imon.exitWrite();
+		}
+		if (DEBUG) {
+			log("attached bundle " + bundle); //$NON-NLS-1$
+		}
+		if (getEnvironment() != null) {
+			// same as checkChanges() does for the indexed modules
+			final IContentCache coreCache = ModelManager.getModelManager()
+					.getCoreCache();
+			for (ISourceModule module : modules) {
+				IFileHandle handle = EnvironmentPathUtils.getFile(module,
+						false);
+				if (handle != null) {
+					coreCache.setCacheEntryAttribute(handle, "indexed", ""); //$NON-NLS-1$ //$NON-NLS-2$
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Publishes the built index as the bundle, unless another workspace did
+	 * it meanwhile.
+	 */
+	private void exportBundle(Index index, String bundleKey) {
+		if (IndexBundles.find(bundleKey) != null) {
+			return;
+		}
+		try {
+			final File tempFile = IndexBundles.createTempFile(bundleKey);
+			try {
+				if (index.exportBundle(tempFile)) {
+					IndexBundles.publish(tempFile, bundleKey);
+				}
+			} finally {
+				tempFile.delete(); // unless published
+			}
+		} catch (IOException e) {
+			DLTKCore.error("error exporting index bundle", e); //$NON-NLS-1$
+		}
 	}
 
 	protected IEnvironment getEnvironment() {
@@ -34,11 +34,13 @@ import org.eclipse.dltk.core.search.indexing.IProjectIndexer;
 import org.eclipse.dltk.core.search.indexing.ReadWriteMonitor;
 import org.eclipse.dltk.core.search.indexing.IProjectIndexer.Internal;
 import org.eclipse.dltk.internal.core.ModelManager;
+import org.eclipse.dltk.internal.core.search.processing.IJobExtension;
 
 /**
  * @since 2.0
  */
-public abstract class IndexRequest extends AbstractJob {
+public abstract class IndexRequest extends AbstractJob implements
+		IJobExtension {
 	private IProjectIndexer indexer;
 
 	public IndexRequest(IProjectIndexer indexer) {
@@ -156,6 +158,22 @@ public abstract class IndexRequest extends AbstractJob {
 		}
 	}
 
+	/**
+	 * Requests are executed in the bulk lane by default.
+	 */
+	public int getLane() {
+		return BULK;
+	}
+
+	/**
+	 * Answers the path of the container which index is updated by this
+	 * request. Default implementation answers <code>null</code>, so the request
+	 * is not executed concurrently with any other request.
+	 */
+	public Object getContainer() {
+		return null;
+	}
+
 	public int hashCode() {
 		final int prime = 31;
 		int result = 1;
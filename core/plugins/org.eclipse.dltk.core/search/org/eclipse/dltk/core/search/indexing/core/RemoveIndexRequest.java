@@ -30,6 +30,10 @@ public class RemoveIndexRequest extends IndexRequest {
 		return path.toString();
 	}
 
+	public Object getContainer() {
+		return path;
+	}
+
 	protected void run() throws CoreException, IOException {
 		getIndexer().getIndexManager().removeIndex(path);
 	}
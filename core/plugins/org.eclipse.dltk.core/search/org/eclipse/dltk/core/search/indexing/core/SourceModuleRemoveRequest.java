@@ -43,6 +43,16 @@ public class SourceModuleRemoveRequest extends IndexRequest {
 		return path;
 	}
 
+	@Override
+	public int getLane() {
+		return INTERACTIVE;
+	}
+
+	@Override
+	public Object getContainer() {
+		return project.getPath();
+	}
+
 	@Override
 	public boolean belongsTo(String jobFamily) {
 		return jobFamily.equals(project.getElementName());
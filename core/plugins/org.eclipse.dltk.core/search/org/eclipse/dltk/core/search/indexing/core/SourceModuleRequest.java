@@ -40,6 +40,16 @@ public class SourceModuleRequest extends IndexRequest {
 		return module.getElementName();
 	}
 
+	@Override
+	public int getLane() {
+		return INTERACTIVE;
+	}
+
+	@Override
+	public Object getContainer() {
+		return module.getScriptProject().getPath();
+	}
+
 	@Override
 	public boolean belongsTo(String jobFamily) {
 		return jobFamily.equals(module.getScriptProject().getElementName());
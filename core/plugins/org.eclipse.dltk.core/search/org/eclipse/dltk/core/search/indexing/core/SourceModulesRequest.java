@@ -57,6 +57,11 @@ public class SourceModulesRequest extends IndexRequest {
 		return project.getElementName();
 	}
 
+	@Override
+	public Object getContainer() {
+		return project.getPath();
+	}
+
 	@Override
 	protected void run() throws CoreException, IOException {
 		IEnvironment environment = EnvironmentManager.getEnvironment(project);
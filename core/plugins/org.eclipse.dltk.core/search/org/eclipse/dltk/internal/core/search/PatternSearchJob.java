@@ -10,10 +10,19 @@
 package org.eclipse.dltk.internal.core.search;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.dltk.core.DLTKCore;
 import org.eclipse.dltk.core.search.IDLTKSearchScope;
 import org.eclipse.dltk.core.search.SearchParticipant;
 import org.eclipse.dltk.core.search.SearchPattern;
@@ -21,9 +30,11 @@ import org.eclipse.dltk.core.search.index.Index;
 import org.eclipse.dltk.core.search.indexing.IndexManager;
 import org.eclipse.dltk.core.search.indexing.ReadWriteMonitor;
 import org.eclipse.dltk.core.search.matching.MatchLocator;
+import org.eclipse.dltk.internal.compiler.env.AccessRuleSet;
 import org.eclipse.dltk.internal.core.ModelManager;
 import org.eclipse.dltk.internal.core.search.processing.IJob;
 import org.eclipse.dltk.internal.core.search.processing.JobManager;
+import org.eclipse.dltk.internal.core.util.WorkerPool;
 
 
 public class PatternSearchJob implements IJob {
@@ -40,6 +51,8 @@ public class PatternSearchJob implements IJob {
 
 	protected long executionTime = 0;
 
+	private static ExecutorService workerPool;
+
 	public PatternSearchJob(SearchPattern pattern,
 			SearchParticipant participant, IDLTKSearchScope scope,
 			IndexQueryRequestor requestor) {
@@ -73,12 +86,19 @@ public class PatternSearchJob implements IJob {
 			int max = indexes.length;
 			if (progressMonitor != null)
 				progressMonitor.beginTask("", max); //$NON-NLS-1$
-			for (int i = 0; i < max; i++) {
-				isComplete &= search(indexes[i], progressMonitor);
-				if (progressMonitor != null) {
-					if (progressMonitor.isCanceled())
-						throw new OperationCanceledException();
-					progressMonitor.worked(1);
+			int parallelism = Math.min(WorkerPool
+					.getParallelism(DLTKCore.SEARCH_PARALLELISM), max);
+			if (parallelism > 1) {
+				isComplete = executeInParallel(indexes, parallelism,
+						progressMonitor);
+			} else {
+				for (int i = 0; i < max; i++) {
+					isComplete &= search(indexes[i], progressMonitor);
+					if (progressMonitor != null) {
+						if (progressMonitor.isCanceled())
+							throw new OperationCanceledException();
+						progressMonitor.worked(1);
+					}
 				}
 			}
 			if (JobManager.VERBOSE)
@@ -90,6 +110,65 @@ public class PatternSearchJob implements IJob {
 		}
 	}
 
+	/**
+	 * Queries indexes by the current thread together with
+	 * <code>parallelism - 1</code> worker threads. Requestor is called by one
+	 * thread at a time, and progress is reported by the current thread only.
+	 * Returns when all the workers are finished.
+	 */
+	private boolean executeInParallel(Index[] indexes, int parallelism,
+			IProgressMonitor progressMonitor) {
+		ParallelSearch search = new ParallelSearch(indexes, progressMonitor);
+		IndexQueryRequestor originalRequestor = this.requestor;
+		this.requestor = new SynchronizedRequestor(originalRequestor);
+		try {
+			ExecutorService pool = getWorkerPool();
+			List<Future<?>> futures = new ArrayList<Future<?>>(parallelism - 1);
+			for (int i = 1; i < parallelism; i++)
+				futures.add(pool.submit(search));
+			search.searchIndexes(true);
+			boolean interrupted = false;
+			for (Future<?> future : futures) {
+				for (;;) {
+					try {
+						future.get();
+						break;
+					} catch (InterruptedException e) {
+						// workers must finish before requestor is restored
+						interrupted = true;
+						search.setCanceled(true);
+					} catch (ExecutionException e) {
+						search.fail(e.getCause());
+						break;
+					}
+				}
+			}
+			if (interrupted)
+				Thread.currentThread().interrupt();
+			search.reportProgress();
+			Throwable failure = search.failure;
+			if (failure instanceof Error)
+				throw (Error) failure;
+			if (failure instanceof RuntimeException)
+				throw (RuntimeException) failure;
+			if (search.isCanceled())
+				throw new OperationCanceledException();
+			return search.complete;
+		} finally {
+			this.requestor = originalRequestor;
+		}
+	}
+
+	private static synchronized ExecutorService getWorkerPool() {
+		if (workerPool == null) {
+			// idle threads are released after a minute
+			workerPool = Executors.newCachedThreadPool(WorkerPool
+					.createThreadFactory("DLTK Search Worker", //$NON-NLS-1$
+							Thread.NORM_PRIORITY));
+		}
+		return workerPool;
+	}
+
 	public Index[] getIndexes(IProgressMonitor progressMonitor) {
 		// acquire the in-memory indexes on the fly
 		IPath[] indexLocations = this.participant.selectIndexes(this.pattern,
@@ -142,23 +221,115 @@ public class PatternSearchJob implements IJob {
 		ReadWriteMonitor monitor = index.monitor;
 		if (monitor == null)
 			return COMPLETE; // index got deleted since acquired
+		// most indexes are queried without waiting for the writers
+		boolean locked = index.isReadLockRequired();
 		try {
-			monitor.enterRead(); // ask permission to read
+			if (locked)
+				monitor.enterRead(); // ask permission to read
 			long start = System.currentTimeMillis();
 			MatchLocator.findIndexMatches(this.pattern, index, requestor,
 					this.participant, this.scope, progressMonitor);
-			executionTime += System.currentTimeMillis() - start;
+			synchronized (this) {
+				executionTime += System.currentTimeMillis() - start;
+			}
 			return COMPLETE;
 		} catch (IOException e) {
 			if (e instanceof java.io.EOFException)
 				e.printStackTrace();
 			return FAILED;
 		} finally {
-			monitor.exitRead(); // finished reading
+			if (locked)
+				monitor.exitRead(); // finished reading
 		}
 	}
 
 	public String toString() {
 		return "searching " + pattern.toString(); //$NON-NLS-1$
 	}
+
+	/**
+	 * Indexes are claimed one by one by all the participating threads. It is
+	 * also the progress monitor passed to {@link #search(Index, IProgressMonitor)}
+	 * in the worker threads: it's cancelled as soon as one of the threads
+	 * fails, or when the job's progress monitor is cancelled.
+	 */
+	private class ParallelSearch extends NullProgressMonitor implements
+			Runnable {
+
+		private final Index[] indexes;
+		private final IProgressMonitor progressMonitor;
+		private final AtomicInteger next = new AtomicInteger();
+		private final AtomicInteger completed = new AtomicInteger();
+		private int reported;
+		private volatile boolean stopped;
+		volatile boolean complete = COMPLETE;
+		volatile Throwable failure;
+
+		ParallelSearch(Index[] indexes, IProgressMonitor progressMonitor) {
+			this.indexes = indexes;
+			this.progressMonitor = progressMonitor;
+		}
+
+		public void run() {
+			searchIndexes(false);
+		}
+
+		void searchIndexes(boolean reportProgress) {
+			int i;
+			while (!isCanceled()
+					&& (i = next.getAndIncrement()) < indexes.length) {
+				try {
+					if (!search(indexes[i], this))
+						complete = FAILED;
+				} catch (RuntimeException e) {
+					fail(e);
+					return;
+				}
+				completed.incrementAndGet();
+				if (reportProgress)
+					reportProgress();
+			}
+		}
+
+		void reportProgress() {
+			int count = completed.get();
+			if (progressMonitor != null && count > reported)
+				progressMonitor.worked(count - reported);
+			reported = count;
+		}
+
+		synchronized void fail(Throwable e) {
+			if (failure == null)
+				failure = e;
+			stopped = true;
+		}
+
+		public boolean isCanceled() {
+			return stopped || progressMonitor != null
+					&& progressMonitor.isCanceled();
+		}
+
+		public void setCanceled(boolean value) {
+			stopped = value;
+		}
+	}
+
+	/**
+	 * Serializes matches reported from the parallel searches
+	 */
+	private static class SynchronizedRequestor extends IndexQueryRequestor {
+
+		private final IndexQueryRequestor requestor;
+
+		SynchronizedRequestor(IndexQueryRequestor requestor) {
+			this.requestor = requestor;
+		}
+
+		public synchronized boolean acceptIndexMatch(String documentPath,
+				SearchPattern indexRecord, SearchParticipant participant,
+				AccessRuleSet access) {
+			return requestor.acceptIndexMatch(documentPath, indexRecord,
+					participant, access);
+		}
+	}
 }
@@ -10,7 +10,7 @@
 package org.eclipse.dltk.internal.core.search;
 
 import org.eclipse.core.runtime.IProgressMonitor;
-import org.eclipse.dltk.compiler.util.SimpleSet;
+import org.eclipse.dltk.compiler.util.SimpleLookupTable;
 import org.eclipse.dltk.core.search.IDLTKSearchScope;
 import org.eclipse.dltk.core.search.SearchParticipant;
 import org.eclipse.dltk.core.search.SearchPattern;
@@ -18,7 +18,8 @@ import org.eclipse.dltk.core.search.index.Index;
 
 public class SubTypeSearchJob extends PatternSearchJob {
 
-	SimpleSet indexes = new SimpleSet(5);
+	/* started queries, indexed by index */
+	SimpleLookupTable indexes = new SimpleLookupTable(5);
 
 	public SubTypeSearchJob(SearchPattern pattern,
 			SearchParticipant participant, IDLTKSearchScope scope,
@@ -27,17 +28,20 @@ public class SubTypeSearchJob extends PatternSearchJob {
 	}
 
 	public void finished() {
-		Object[] values = this.indexes.values;
-		for (int i = 0, l = values.length; i < l; i++)
-			if (values[i] != null)
-				((Index) values[i]).stopQuery();
+		Object[] keys = this.indexes.keyTable;
+		Object[] values = this.indexes.valueTable;
+		for (int i = 0, l = keys.length; i < l; i++)
+			if (keys[i] != null)
+				((Index) keys[i]).stopQuery(values[i]);
 	}
 
 	public boolean search(Index index, IProgressMonitor progressMonitor) {
 		if (index == null)
 			return COMPLETE;
-		if (indexes.addIfNotIncluded(index) == index)
-			index.startQuery();
+		synchronized (indexes) { // indexes may be searched in parallel
+			if (!indexes.containsKey(index))
+				indexes.put(index, index.startQuery());
+		}
 		return super.search(index, progressMonitor);
 	}
 }
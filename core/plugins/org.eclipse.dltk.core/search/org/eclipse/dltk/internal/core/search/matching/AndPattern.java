@@ -40,8 +40,8 @@ public abstract class AndPattern extends DLTKSearchPattern {
 
 		this.resetQuery();
 		SimpleSet intersectedNames = null;
+		Object query = index.startQuery();
 		try {
-			index.startQuery();
 			do {
 				SearchPattern pattern = ((InternalSearchPattern) this)
 						.currentPattern();
@@ -76,7 +76,7 @@ public abstract class AndPattern extends DLTKSearchPattern {
 				intersectedNames = newIntersectedNames;
 			} while (this.hasNextQuery());
 		} finally {
-			index.stopQuery();
+			index.stopQuery(query);
 		}
 
 		String containerPath = index.getContainerPath();
@@ -109,8 +109,8 @@ public abstract class InternalSearchPattern {
 		}
 		if (monitor != null && monitor.isCanceled())
 			throw new OperationCanceledException();
+		Object query = index.startQuery();
 		try {
-			index.startQuery();
 			SearchPattern pattern = currentPattern();
 			EntryResult[] entries = ((InternalSearchPattern) pattern)
 					.queryIn(index);
@@ -134,7 +134,7 @@ public abstract class InternalSearchPattern {
 				}
 			}
 		} finally {
-			index.stopQuery();
+			index.stopQuery(query);
 		}
 	}
 
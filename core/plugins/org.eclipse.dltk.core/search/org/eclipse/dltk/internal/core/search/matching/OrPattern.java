@@ -75,13 +75,13 @@ public class OrPattern extends SearchPattern implements IIndexConstants {
 			IProgressMonitor progressMonitor) throws IOException {
 		// per construction, OR pattern can only be used with a PathCollector
 		// (which already gather results using a set)
+		Object query = index.startQuery();
 		try {
-			index.startQuery();
 			for (int i = 0, length = this.patterns.length; i < length; i++)
 				((InternalSearchPattern) this.patterns[i]).findIndexMatches(
 						index, requestor, participant, scope, progressMonitor);
 		} finally {
-			index.stopQuery();
+			index.stopQuery(query);
 		}
 	}
 
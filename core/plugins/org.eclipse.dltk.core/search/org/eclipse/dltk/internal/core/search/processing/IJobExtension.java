@@ -0,0 +1,60 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Sage and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Sage - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.dltk.internal.core.search.processing;
+
+/**
+ * Optional interface implemented by jobs which tell the {@link JobManager}
+ * how they could be scheduled.
+ * <p>
+ * Jobs of the {@link #INTERACTIVE} lane are started before the jobs of the
+ * {@link #BULK} lane, which are started before the jobs of the
+ * {@link #LIBRARY} lane, even if they were requested later. Jobs with equal
+ * containers are always executed one at a time, in the order they were
+ * requested. Jobs not implementing this interface (or returning
+ * <code>null</code> container) are executed in the bulk lane, alone and in the
+ * order they were requested relatively to all the other jobs.
+ * </p>
+ *
+ * @since 2.0
+ */
+public interface IJobExtension extends IJob {
+
+	/**
+	 * Lane of short jobs the user is waiting for, like reconciling the edited
+	 * file.
+	 */
+	int INTERACTIVE = 0;
+
+	/**
+	 * Lane of long running jobs, like indexing the whole project.
+	 */
+	int BULK = 1;
+
+	/**
+	 * Lane of long running jobs indexing the libraries, which are started
+	 * only when there are no jobs of the other lanes to start.
+	 */
+	int LIBRARY = 2;
+
+	/**
+	 * Answers the lane of this job, one of {@link #INTERACTIVE},
+	 * {@link #BULK} or {@link #LIBRARY}.
+	 */
+	public int getLane();
+
+	/**
+	 * Answers the container (usually the path of the index) this job updates.
+	 * Jobs of different containers could be executed concurrently. If
+	 * <code>null</code> is returned then this job is not executed concurrently
+	 * with any other job.
+	 */
+	public Object getContainer();
+}
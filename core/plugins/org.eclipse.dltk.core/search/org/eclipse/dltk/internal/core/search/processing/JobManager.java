@@ -9,6 +9,13 @@
  *******************************************************************************/
 package org.eclipse.dltk.internal.core.search.processing;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.OperationCanceledException;
@@ -16,22 +23,93 @@ import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.SubProgressMonitor;
 import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.dltk.core.DLTKCore;
+import org.eclipse.dltk.core.metrics.Counter;
+import org.eclipse.dltk.core.metrics.Histogram;
+import org.eclipse.dltk.core.metrics.IGauges;
+import org.eclipse.dltk.core.metrics.Metrics;
 import org.eclipse.dltk.internal.core.util.Messages;
 import org.eclipse.dltk.internal.core.util.Util;
 import org.eclipse.osgi.util.NLS;
 
+/**
+ * Executes the requested jobs in background, by the pool of
+ * {@link #getWorkerCount()} worker threads. Jobs implementing
+ * {@link IJobExtension} are scheduled according to their lane and container,
+ * all the other jobs are executed one at a time in the order they were
+ * requested.
+ */
 public abstract class JobManager implements Runnable {
 
-	/* queue of jobs to execute */
-	protected IJob[] awaitingJobs = new IJob[10];
-	protected int jobStart = 0;
-	protected int jobEnd = -1;
-	protected boolean executing = false;
+	private static final int LANE_COUNT = 3;
+
+	private static final int WORKER_PRIORITY = Thread.NORM_PRIORITY - 1;
+
+	/* names of the lanes in the metrics, indexed by lane */
+	private static final String[] LANE_NAMES = { "interactive", "bulk", //$NON-NLS-1$ //$NON-NLS-2$
+			"library" }; //$NON-NLS-1$
+
+	private static final Counter[] REQUESTED_JOBS = new Counter[LANE_COUNT];
+	private static final Histogram[] WAIT_TIME = new Histogram[LANE_COUNT];
+	private static final Histogram[] RUN_TIME = new Histogram[LANE_COUNT];
+	static {
+		for (int lane = 0; lane < LANE_COUNT; ++lane) {
+			final String prefix = "jobs." + LANE_NAMES[lane]; //$NON-NLS-1$
+			REQUESTED_JOBS[lane] = Metrics.counter(prefix + ".requested"); //$NON-NLS-1$
+			WAIT_TIME[lane] = Metrics.histogram(prefix + ".wait"); //$NON-NLS-1$
+			RUN_TIME[lane] = Metrics.histogram(prefix + ".run"); //$NON-NLS-1$
+		}
+	}
 
-	/* background processing */
-	protected Thread processingThread;
+	private static final class QueuedJob {
+		final IJob job;
+		final int lane;
+		final Object container;
+		final long requestTime;
+		long startTime;
+		Thread worker;
+
+		QueuedJob(IJob job) {
+			this.job = job;
+			if (job instanceof IJobExtension) {
+				final IJobExtension extension = (IJobExtension) job;
+				final int jobLane = extension.getLane();
+				this.lane = jobLane == IJobExtension.INTERACTIVE
+						|| jobLane == IJobExtension.LIBRARY ? jobLane
+						: IJobExtension.BULK;
+				this.container = extension.getContainer();
+			} else {
+				this.lane = IJobExtension.BULK;
+				this.container = null;
+			}
+			this.requestTime = System.currentTimeMillis();
+		}
+	}
+
+	/* queue of jobs to execute, in the order they were requested */
+	private final List<QueuedJob> awaitingJobs = new ArrayList<QueuedJob>();
+	/* jobs being executed */
+	private final List<QueuedJob> runningJobs = new ArrayList<QueuedJob>();
+	/* running jobs of the bulk and library lanes */
+	private int runningBulkJobs = 0;
+
+	/* background processing, the first worker also handles idle time */
+	private volatile Thread[] workers;
 	protected Job progressJob;
 
+	/*
+	 * set while the first worker delays processing of new jobs after being
+	 * idle
+	 */
+	private boolean delaying = false;
+
+	/* statistics, indexed by lane */
+	private final int[] queueDepth = new int[LANE_COUNT];
+	private final int[] maxQueueDepth = new int[LANE_COUNT];
+	private final int[] completedJobs = new int[LANE_COUNT];
+	private final long[] totalWaitTime = new long[LANE_COUNT];
+	private final long[] maxWaitTime = new long[LANE_COUNT];
+	private final long[] totalRunTime = new long[LANE_COUNT];
+
 	/*
 	 * counter indicating whether job execution is enabled or not, disabled if
 	 * <= 0 it cannot go beyond 1
@@ -44,34 +122,58 @@ public abstract class JobManager implements Runnable {
 
 	private int awaitingClients = 0;
 
+	/* current values published to the metrics while processing jobs */
+	private final IGauges gauges = new IGauges() {
+		public void collect(Map<String, Long> values) {
+			collectMetrics(values);
+		}
+	};
+
 	/**
 	 * Invoked exactly once, in background, before starting processing any job
 	 */
-	public void activateProcessing() {
+	public synchronized void activateProcessing() {
 		this.activated = true;
 	}
 
 	/**
-	 * Answer the amount of awaiting jobs.
+	 * Answer the amount of awaiting jobs, including the ones being executed.
 	 */
 	public synchronized int awaitingJobsCount() {
 		// pretend busy in case concurrent job attempts performing before
 		// activated
-		return this.activated ? this.jobEnd - this.jobStart + 1 : 1;
+		return this.activated ? this.awaitingJobs.size()
+				+ this.runningJobs.size() : 1;
 	}
 
 	/**
-	 * Answers the first job in the queue, or null if there is no job available
-	 * Until the job has completed, the job manager will keep answering the same
-	 * job.
+	 * Answers the oldest job being executed, or the first job in the queue, or
+	 * null if there is no job available. Until the job has completed, the job
+	 * manager will keep answering the same job.
 	 */
 	public synchronized IJob currentJob() {
-		if (this.enableCount > 0 && this.jobStart <= this.jobEnd)
-			return this.awaitingJobs[this.jobStart];
+		if (this.enableCount > 0) {
+			if (!this.runningJobs.isEmpty())
+				return this.runningJobs.get(0).job;
+			if (!this.awaitingJobs.isEmpty())
+				return this.awaitingJobs.get(0).job;
+		}
 		return null;
 	}
 
-	public void disable() {
+	/**
+	 * Answers the jobs waiting to be executed, in the order they were
+	 * requested. Jobs being executed are not included.
+	 */
+	protected synchronized IJob[] getAwaitingJobs() {
+		final IJob[] jobs = new IJob[this.awaitingJobs.size()];
+		for (int i = 0; i < jobs.length; ++i) {
+			jobs[i] = this.awaitingJobs.get(i).job;
+		}
+		return jobs;
+	}
+
+	public synchronized void disable() {
 		this.enableCount--;
 		if (VERBOSE)
 			Util.verbose("DISABLING background indexing"); //$NON-NLS-1$
@@ -87,50 +189,49 @@ public abstract class JobManager implements Runnable {
 			Util.verbose("DISCARD   background job family - " + jobFamily); //$NON-NLS-1$
 
 		try {
-			IJob currentJob;
-			// cancel current job if it belongs to the given family
+			final List<QueuedJob> cancelled = new ArrayList<QueuedJob>();
+			// cancel active jobs if they belong to the given family
 			synchronized (this) {
-				currentJob = this.currentJob();
 				disable();
+				for (QueuedJob running : this.runningJobs) {
+					if ((jobFamily == null || running.job.belongsTo(jobFamily))
+							&& running.worker != Thread.currentThread()) {
+						cancelled.add(running);
+					}
+				}
+			}
+			for (QueuedJob running : cancelled) {
+				running.job.cancel();
 			}
-			if (currentJob != null
-					&& (jobFamily == null || currentJob.belongsTo(jobFamily))) {
-				currentJob.cancel();
 
-				// wait until current active job has finished
-				while (this.processingThread != null && this.executing) {
+			// wait until cancelled active jobs have finished
+			synchronized (this) {
+				while (this.workers != null && containsAny(cancelled)) {
 					try {
 						if (VERBOSE)
 							Util
-									.verbose("-> waiting end of current background job - " + currentJob); //$NON-NLS-1$
-						Thread.sleep(50);
+									.verbose("-> waiting end of current background jobs - " + cancelled.size()); //$NON-NLS-1$
+						this.wait(50);
 					} catch (InterruptedException e) {
 						// ignore
 					}
 				}
 			}
 
-			// flush and compact awaiting jobs
-			int loc = -1;
+			// flush awaiting jobs
 			synchronized (this) {
-				for (int i = this.jobStart; i <= this.jobEnd; i++) {
-					currentJob = this.awaitingJobs[i];
-					if (currentJob != null) { // sanity check
-						this.awaitingJobs[i] = null;
-						if (!(jobFamily == null || currentJob
-								.belongsTo(jobFamily))) { // copy down,
-							// compacting
-							this.awaitingJobs[++loc] = currentJob;
-						} else {
-							if (VERBOSE)
-								Util
-										.verbose("-> discarding background job  - " + currentJob); //$NON-NLS-1$
-							currentJob.cancel();
-						}
+				for (Iterator<QueuedJob> i = this.awaitingJobs.iterator(); i
+						.hasNext();) {
+					final QueuedJob awaiting = i.next();
+					if (jobFamily == null || awaiting.job.belongsTo(jobFamily)) {
+						i.remove();
+						--this.queueDepth[awaiting.lane];
+						if (VERBOSE)
+							Util
+									.verbose("-> discarding background job  - " + awaiting.job); //$NON-NLS-1$
+						awaiting.job.cancel();
 					}
 				}
-				this.jobStart = 0;
-				this.jobEnd = loc;
 			}
 		} finally {
 			enable();
@@ -140,37 +241,121 @@ public abstract class JobManager implements Runnable {
 					.verbose("DISCARD   DONE with background job family - " + jobFamily); //$NON-NLS-1$
 	}
 
+	private boolean containsAny(List<QueuedJob> jobs) {
+		for (QueuedJob job : jobs) {
+			if (this.runningJobs.contains(job)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 	public synchronized void enable() {
 		this.enableCount++;
 		if (VERBOSE)
 			Util.verbose("ENABLING  background indexing"); //$NON-NLS-1$
-		this.notifyAll(); // wake up the background thread if it is waiting
+		this.notifyAll(); // wake up the background threads if they are waiting
 		// (context must be synchronized)
 	}
 
 	public synchronized boolean isJobWaiting(IJob request) {
-		for (int i = this.jobEnd; i > this.jobStart; i--)
-			// don't check job at jobStart, as it may have already started
-			if (request.equals(this.awaitingJobs[i]))
+		// don't check running jobs, as they have already started
+		for (QueuedJob awaiting : this.awaitingJobs)
+			if (request.equals(awaiting.job))
 				return true;
 		return false;
 	}
 
 	/**
-	 * Advance to the next available job, once the current one has been
-	 * completed. Note: clients awaiting until the job count is zero are still
-	 * waiting at this point.
+	 * Answers the number of worker threads executing the jobs. At least one
+	 * worker is always reserved for {@link IJobExtension#INTERACTIVE} jobs, if
+	 * there are more than one.
 	 */
-	protected synchronized void moveToNextJob() {
-		// if (!enabled) return;
-
-		if (this.jobStart <= this.jobEnd) {
-			this.awaitingJobs[this.jobStart++] = null;
-			if (this.jobStart > this.jobEnd) {
-				this.jobStart = 0;
-				this.jobEnd = -1;
+	protected int getWorkerCount() {
+		return 1;
+	}
+
+	/**
+	 * Answers the next job which could be started now, or <code>null</code>.
+	 * Job could be started if it doesn't conflict with the jobs being
+	 * executed and with the jobs requested before it. Jobs of the library
+	 * lane are started only if no job of the other lanes could be started, so
+	 * indexing of the projects doesn't wait for the libraries even with a
+	 * single worker.
+	 */
+	private QueuedJob nextJob() {
+		final Thread[] threads = this.workers;
+		if (this.enableCount <= 0 || this.delaying || threads == null)
+			return null;
+		final Set<Object> blocked = new HashSet<Object>();
+		for (QueuedJob running : this.runningJobs) {
+			if (running.container == null)
+				return null;
+			blocked.add(running.container);
+		}
+		final boolean bulkAllowed = this.runningBulkJobs < Math.max(1,
+				threads.length - 1);
+		QueuedJob bulk = null;
+		QueuedJob library = null;
+		for (int i = 0, size = this.awaitingJobs.size(); i < size; ++i) {
+			final QueuedJob candidate = this.awaitingJobs.get(i);
+			if (candidate.container == null) {
+				if (i == 0 && this.runningJobs.isEmpty())
+					return candidate;
+				// no later job could be started before this one
+				break;
+			}
+			if (!blocked.contains(candidate.container)) {
+				if (candidate.lane == IJobExtension.INTERACTIVE)
+					return candidate;
+				if (bulkAllowed) {
+					if (candidate.lane == IJobExtension.LIBRARY) {
+						if (library == null)
+							library = candidate;
+					} else if (bulk == null) {
+						bulk = candidate;
+					}
+				}
 			}
+			blocked.add(candidate.container);
 		}
+		return bulk != null ? bulk : library;
+	}
+
+	private void jobStarted(QueuedJob job, Thread worker) {
+		this.awaitingJobs.remove(job);
+		this.runningJobs.add(job);
+		if (job.lane != IJobExtension.INTERACTIVE)
+			++this.runningBulkJobs;
+		job.worker = worker;
+		job.startTime = System.currentTimeMillis();
+		final long waitTime = job.startTime - job.requestTime;
+		--this.queueDepth[job.lane];
+		this.totalWaitTime[job.lane] += waitTime;
+		if (waitTime > this.maxWaitTime[job.lane])
+			this.maxWaitTime[job.lane] = waitTime;
+		WAIT_TIME[job.lane].record(waitTime * 1000);
+		showProgress();
+	}
+
+	private synchronized void jobFinished(QueuedJob job) {
+		this.runningJobs.remove(job);
+		if (job.lane != IJobExtension.INTERACTIVE)
+			--this.runningBulkJobs;
+		++this.completedJobs[job.lane];
+		final long runTime = System.currentTimeMillis() - job.startTime;
+		this.totalRunTime[job.lane] += runTime;
+		RUN_TIME[job.lane].record(runTime * 1000);
+		jobCompleted(job.job);
+		this.notifyAll(); // jobs waiting for this one could be started now
+	}
+
+	/**
+	 * Invoked once the job has been completed. Note: clients awaiting until
+	 * the job count is zero are still waiting at this point.
+	 */
+	protected void jobCompleted(IJob job) {
+		// do nothing
 	}
 
 	/**
@@ -189,11 +374,11 @@ public abstract class JobManager implements Runnable {
 	 * should synchronize (it is deliberately left to clients to decide whether
 	 * concurrent jobs might interfere or not. In general, multiple read jobs
 	 * are ok).
-	 * 
+	 *
 	 * Waiting policy can be: IJobConstants.ForceImmediateSearch
 	 * IJobConstants.CancelIfNotReadyToSearch
 	 * IJobConstants.WaitUntilReadyToSearch
-	 * 
+	 *
 	 */
 	public boolean performConcurrentJob(IJob searchJob, int waitingPolicy,
 			IProgressMonitor progress) {
@@ -250,11 +435,9 @@ public abstract class JobManager implements Runnable {
 				// when searchingscriptmethod
 				// and bug 42760 NullPointerException in JobManager when
 				// searching)
-				Thread t = this.processingThread;
-				int originalPriority = t == null ? -1 : t.getPriority();
+				final Thread[] threads = this.workers;
 				try {
-					if (t != null)
-						t.setPriority(Thread.currentThread().getPriority());
+					setPriority(threads, Thread.currentThread().getPriority());
 					synchronized (this) {
 						this.awaitingClients++;
 					}
@@ -291,8 +474,7 @@ public abstract class JobManager implements Runnable {
 					synchronized (this) {
 						this.awaitingClients--;
 					}
-					if (t != null && originalPriority > -1 && t.isAlive())
-						t.setPriority(originalPriority);
+					setPriority(threads, WORKER_PRIORITY);
 				}
 				if (subProgress != null)
 					subProgress.done();
@@ -307,6 +489,15 @@ public abstract class JobManager implements Runnable {
 		return status;
 	}
 
+	private static void setPriority(Thread[] threads, int priority) {
+		if (threads != null) {
+			for (int i = 0; i < threads.length; ++i) {
+				if (threads[i].isAlive())
+					threads[i].setPriority(priority);
+			}
+		}
+	}
+
 	public abstract String processName();
 
 	private static final class WaitJob implements IJob {
@@ -348,20 +539,16 @@ public abstract class JobManager implements Runnable {
 		job.ensureReadyToRun();
 
 		// append the job to the list of ones to process later on
-		int size = this.awaitingJobs.length;
-		if (++this.jobEnd == size) { // when growing, relocate jobs starting at
-			// position 0
-			this.jobEnd -= this.jobStart;
-			System.arraycopy(this.awaitingJobs, this.jobStart,
-					this.awaitingJobs = new IJob[size * 2], 0, this.jobEnd);
-			this.jobStart = 0;
-		}
-		this.awaitingJobs[this.jobEnd] = job;
+		final QueuedJob queued = new QueuedJob(job);
+		this.awaitingJobs.add(queued);
+		if (++this.queueDepth[queued.lane] > this.maxQueueDepth[queued.lane])
+			this.maxQueueDepth[queued.lane] = this.queueDepth[queued.lane];
+		REQUESTED_JOBS[queued.lane].increment();
 		if (VERBOSE) {
 			Util.verbose("REQUEST   background job - " + job); //$NON-NLS-1$
 			Util.verbose("AWAITING JOBS count: " + awaitingJobsCount()); //$NON-NLS-1$
 		}
-		notifyAll(); // wake up the background thread if it is waiting
+		notifyAll(); // wake up the background threads if they are waiting
 	}
 
 	/**
@@ -371,16 +558,59 @@ public abstract class JobManager implements Runnable {
 		if (VERBOSE)
 			Util.verbose("Reset"); //$NON-NLS-1$
 
-		if (this.processingThread != null) {
+		if (this.workers != null) {
 			discardJobs(null); // discard all jobs
 		} else {
 			/* initiate background processing */
-			this.processingThread = new Thread(this, this.processName());
-			this.processingThread.setDaemon(true);
-			// less prioritary by default, priority is raised if clients are
-			// actively waiting on it
-			this.processingThread.setPriority(Thread.NORM_PRIORITY - 1);
-			this.processingThread.start();
+			final Thread[] threads = new Thread[Math.max(1, getWorkerCount())];
+			for (int i = 0; i < threads.length; ++i) {
+				threads[i] = createWorker(i);
+			}
+			this.workers = threads;
+			for (int i = 0; i < threads.length; ++i) {
+				threads[i].start();
+			}
+			Metrics.register(this.gauges);
+		}
+	}
+
+	private Thread createWorker(int index) {
+		final Thread thread = new Thread(this, index == 0 ? processName()
+				: processName() + ' ' + (index + 1));
+		thread.setDaemon(true);
+		// less prioritary by default, priority is raised if clients are
+		// actively waiting on it
+		thread.setPriority(WORKER_PRIORITY);
+		return thread;
+	}
+
+	private boolean isWorker(Thread thread) {
+		final Thread[] threads = this.workers;
+		if (threads != null) {
+			for (int i = 0; i < threads.length; ++i) {
+				if (threads[i] == thread)
+					return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Replaces the crashed worker with the new one
+	 */
+	private synchronized void restartWorker(Thread thread) {
+		final Thread[] threads = this.workers;
+		if (threads != null) {
+			for (int i = 0; i < threads.length; ++i) {
+				if (threads[i] == thread) {
+					final Thread[] newThreads = new Thread[threads.length];
+					System.arraycopy(threads, 0, newThreads, 0, threads.length);
+					newThreads[i] = createWorker(i);
+					this.workers = newThreads;
+					newThreads[i].start();
+					return;
+				}
+			}
 		}
 	}
 
@@ -417,60 +647,79 @@ public abstract class JobManager implements Runnable {
 	private final Object delaySignal = new Object();
 
 	/**
-	 * Infinite loop performing resource indexing
+	 * Infinite loop performing resource indexing, executed by every worker
 	 */
 	public void run() {
+		final Thread thread = Thread.currentThread();
 		long idlingStart = -1;
 		activateProcessing();
 		try {
-			this.progressJob = null;
-			while (this.processingThread != null) {
+			while (isWorker(thread)) {
 				try {
-					IJob job;
+					QueuedJob job;
+					boolean idle = false;
 					synchronized (this) {
 						// handle shutdown case when notifyAll came before the
 						// wait but after the while loop was entered
-						if (this.processingThread == null)
+						if (!isWorker(thread))
 							continue;
 
 						// must check for new job inside this sync block to
 						// avoid timing hole
-						if ((job = currentJob()) == null) {
-							hideProgress();
-							if (idlingStart < 0)
-								idlingStart = System.currentTimeMillis();
-							else
-								notifyIdle(System.currentTimeMillis()
-										- idlingStart);
+						if ((job = nextJob()) == null) {
+							if (this.runningJobs.isEmpty()
+									&& this.workers[0] == thread) {
+								hideProgress();
+								if (idlingStart < 0)
+									idlingStart = System.currentTimeMillis();
+								else
+									notifyIdle(System.currentTimeMillis()
+											- idlingStart);
+								idle = true;
+								// other workers don't start new jobs until
+								// the delay is over
+								this.delaying = true;
+							}
 							this.wait(); // wait until a new job is posted (or
 							// reenabled:38901)
 						} else {
 							idlingStart = -1;
+							jobStarted(job, thread);
 						}
 					}
 					if (job == null) {
-						notifyIdle(System.currentTimeMillis() - idlingStart);
-						// just woke up, delay before processing any new jobs,
-						// allow some time for the active thread to finish
-						synchronized (delaySignal) {
-							delaySignal.wait(500);
+						if (idle) {
+							try {
+								notifyIdle(System.currentTimeMillis()
+										- idlingStart);
+								// just woke up, delay before processing any
+								// new jobs, allow some time for the active
+								// thread to finish
+								synchronized (delaySignal) {
+									delaySignal.wait(500);
+								}
+							} finally {
+								synchronized (this) {
+									this.delaying = false;
+									this.notifyAll();
+								}
+							}
 						}
 						continue;
 					}
 					if (VERBOSE) {
 						Util.verbose(awaitingJobsCount() + " awaiting jobs"); //$NON-NLS-1$
-						Util.verbose("STARTING background job - " + job); //$NON-NLS-1$
+						Util.verbose("STARTING background job - " + job.job //$NON-NLS-1$
+								+ " (waited " //$NON-NLS-1$
+								+ (job.startTime - job.requestTime) + " ms)"); //$NON-NLS-1$
 					}
 					try {
-						this.executing = true;
-						showProgress();
-						/* boolean status = */job.execute(null);
+						/* boolean status = */job.job.execute(null);
 						// if (status == FAILED) request(job);
 					} finally {
-						this.executing = false;
 						if (VERBOSE)
-							Util.verbose("FINISHED background job - " + job); //$NON-NLS-1$
-						moveToNextJob();
+							Util.verbose("FINISHED background job - " + job.job); //$NON-NLS-1$
+						jobFinished(job);
 						if (this.awaitingClients == 0)
 							Thread.sleep(50);
 					}
@@ -479,27 +728,25 @@ public abstract class JobManager implements Runnable {
 				}
 			}
 		} catch (RuntimeException e) {
-			if (this.processingThread != null) { // if not shutting down
+			if (isWorker(thread)) { // if not shutting down
 				// log exception
 				Util.log(e, "Background Indexer Crash Recovery"); //$NON-NLS-1$
 
 				// keep job manager alive
 				this.discardJobs(null);
-				this.processingThread = null;
-				this.reset(); // this will fork a new thread with no waiting
-				// jobs, some indexes will be inconsistent
+				this.restartWorker(thread); // this will fork a new thread,
+				// some indexes will be inconsistent
 			}
 			throw e;
 		} catch (Error e) {
-			if (this.processingThread != null && !(e instanceof ThreadDeath)) {
+			if (isWorker(thread) && !(e instanceof ThreadDeath)) {
 				// log exception
 				Util.log(e, "Background Indexer Crash Recovery"); //$NON-NLS-1$
 
 				// keep job manager alive
 				this.discardJobs(null);
-				this.processingThread = null;
-				this.reset(); // this will fork a new thread with no waiting
-				// jobs, some indexes will be inconsistent
+				this.restartWorker(thread); // this will fork a new thread,
+				// some indexes will be inconsistent
 			}
 			throw e;
 		}
@@ -523,8 +770,8 @@ public abstract class JobManager implements Runnable {
 	}
 
 	/**
-	 * Stop background processing, and wait until the current job is completed
-	 * before returning
+	 * Stop background processing, and wait until the current jobs are
+	 * completed before returning
 	 */
 	public void shutdown() {
 
@@ -532,23 +779,29 @@ public abstract class JobManager implements Runnable {
 			Util.verbose("Shutdown"); //$NON-NLS-1$
 
 		disable();
-		discardJobs(null); // will wait until current executing job has
+		discardJobs(null); // will wait until current executing jobs have
 		// completed
-		Thread thread = this.processingThread;
+		Thread[] threads;
+		synchronized (this) {
+			threads = this.workers;
+			// mark the job manager as shutting down so that the threads will
+			// stop by themselves
+			this.workers = null;
+			this.notifyAll(); // ensure they are awake so they can be shutdown
+		}
+		Metrics.unregister(this.gauges);
 		try {
-			if (thread != null) { // see
+			if (threads != null) { // see
 				// http://bugs.eclipse.org/bugs/show_bug.cgi
 				// ?id=31858
-				synchronized (this) {
-					this.processingThread = null; // mark the job manager as
-					// shutting down so that the
-					// thread will stop by
-					// itself
-					this.notifyAll(); // ensure its awake so it can be shutdown
-				}
-				// in case processing thread is handling a job
+				// in case processing threads are handling a job
 				// XXX wait not more than 1 minute
-				thread.join(60000);
+				final long deadline = System.currentTimeMillis() + 60000;
+				for (int i = 0; i < threads.length; ++i) {
+					final long timeout = deadline - System.currentTimeMillis();
+					if (timeout > 0)
+						threads[i].join(timeout);
+				}
 			}
 			Job job = this.progressJob;
 			if (job != null) {
@@ -560,16 +813,124 @@ public abstract class JobManager implements Runnable {
 		}
 	}
 
+	/**
+	 * Puts the current values of this job manager into the metrics, see
+	 * {@link Metrics#collect()}. Subclasses may extend.
+	 *
+	 * @since 2.0
+	 */
+	protected synchronized void collectMetrics(Map<String, Long> values) {
+		for (int lane = 0; lane < LANE_COUNT; ++lane)
+			values.put("jobs." + LANE_NAMES[lane] + ".queue", new Long( //$NON-NLS-1$ //$NON-NLS-2$
+					this.queueDepth[lane]));
+		values.put("jobs.running", new Long(this.runningJobs.size())); //$NON-NLS-1$
+	}
+
+	/**
+	 * Statistics of the jobs of one lane.
+	 *
+	 * @since 2.0
+	 */
+	public static final class LaneStatistics {
+		private final int queueDepth;
+		private final int maxQueueDepth;
+		private final int completedJobs;
+		private final long totalWaitTime;
+		private final long maxWaitTime;
+		private final long totalRunTime;
+
+		LaneStatistics(int queueDepth, int maxQueueDepth, int completedJobs,
+				long totalWaitTime, long maxWaitTime, long totalRunTime) {
+			this.queueDepth = queueDepth;
+			this.maxQueueDepth = maxQueueDepth;
+			this.completedJobs = completedJobs;
+			this.totalWaitTime = totalWaitTime;
+			this.maxWaitTime = maxWaitTime;
+			this.totalRunTime = totalRunTime;
+		}
+
+		/**
+		 * Answers the number of jobs waiting to be executed
+		 */
+		public int getQueueDepth() {
+			return queueDepth;
+		}
+
+		/**
+		 * Answers the maximal number of jobs which were waiting at once
+		 */
+		public int getMaxQueueDepth() {
+			return maxQueueDepth;
+		}
+
+		public int getCompletedJobs() {
+			return completedJobs;
+		}
+
+		/**
+		 * Answers the total time (in milliseconds) the started jobs were
+		 * waiting in the queue
+		 */
+		public long getTotalWaitTime() {
+			return totalWaitTime;
+		}
+
+		public long getMaxWaitTime() {
+			return maxWaitTime;
+		}
+
+		/**
+		 * Answers the total time (in milliseconds) the completed jobs were
+		 * executed
+		 */
+		public long getTotalRunTime() {
+			return totalRunTime;
+		}
+
+		@Override
+		public String toString() {
+			return "queue:" + queueDepth + " max queue:" + maxQueueDepth //$NON-NLS-1$ //$NON-NLS-2$
+					+ " completed:" + completedJobs + " wait time:" //$NON-NLS-1$ //$NON-NLS-2$
+					+ totalWaitTime + "ms max wait time:" + maxWaitTime //$NON-NLS-1$
+					+ "ms run time:" + totalRunTime + "ms"; //$NON-NLS-1$ //$NON-NLS-2$
+		}
+	}
+
+	/**
+	 * Answers the statistics of the specified lane
+	 *
+	 * @param lane
+	 *            {@link IJobExtension#INTERACTIVE},
+	 *            {@link IJobExtension#BULK} or {@link IJobExtension#LIBRARY}
+	 * @since 2.0
+	 */
+	public synchronized LaneStatistics getStatistics(int lane) {
+		return new LaneStatistics(this.queueDepth[lane],
+				this.maxQueueDepth[lane], this.completedJobs[lane],
+				this.totalWaitTime[lane], this.maxWaitTime[lane],
+				this.totalRunTime[lane]);
+	}
+
 	@Override
-	public String toString() {
+	public synchronized String toString() {
 		StringBuffer buffer = new StringBuffer(64);
 		buffer.append("Enable count:").append(this.enableCount).append('\n'); //$NON-NLS-1$
-		int numJobs = this.jobEnd - this.jobStart + 1;
+		buffer.append("Interactive jobs:").append( //$NON-NLS-1$
+				getStatistics(IJobExtension.INTERACTIVE)).append('\n');
+		buffer.append("Bulk jobs:").append(getStatistics(IJobExtension.BULK)) //$NON-NLS-1$
+				.append('\n');
+		buffer.append("Library jobs:").append( //$NON-NLS-1$
+				getStatistics(IJobExtension.LIBRARY)).append('\n');
+		for (int i = 0; i < this.runningJobs.size(); i++) {
+			buffer
+					.append(" - running[" + i + "]: ").append(this.runningJobs.get(i).job).append('\n'); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		int numJobs = this.awaitingJobs.size();
 		buffer.append("Jobs in queue:").append(numJobs).append('\n'); //$NON-NLS-1$
 		for (int i = 0; i < numJobs && i < 15; i++) {
 			buffer
 					.append(i)
-					.append(" - job[" + i + "]: ").append(this.awaitingJobs[this.jobStart + i]).append('\n'); //$NON-NLS-1$ //$NON-NLS-2$
+					.append(" - job[" + i + "]: ").append(this.awaitingJobs.get(i).job).append('\n'); //$NON-NLS-1$ //$NON-NLS-2$
 		}
 		return buffer.toString();
 	}
@@ -0,0 +1,259 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Sage and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Sage - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.dltk.core.index.segment.tests;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.eclipse.dltk.core.IModelElement;
+import org.eclipse.dltk.core.index.sql.Container;
+import org.eclipse.dltk.core.index.sql.DbFactory;
+import org.eclipse.dltk.core.index.sql.Element;
+import org.eclipse.dltk.core.index.sql.IElementDao;
+import org.eclipse.dltk.core.index.sql.IElementHandler;
+import org.eclipse.dltk.core.index2.search.ISearchEngine.MatchRule;
+import org.eclipse.dltk.internal.core.index.segment.SegmentElement;
+import org.eclipse.dltk.internal.core.index.segment.SegmentStore;
+
+/**
+ * Compares the segment store with the H2 index on a generated corpus: time of
+ * building the index, time of re-indexing a part of the files, and latency of
+ * exact and prefix name searches.
+ * <p>
+ * Not included in {@link AllTests}, should be launched manually.
+ * </p>
+ */
+public class SegmentStoreBenchmark extends TestCase {
+
+	private static final String NATURE_ID = "org.eclipse.dltk.core.index.segment.tests.nature";
+	private static final String CONTAINER_PATH = "/SegmentStoreBenchmark";
+
+	private static final int FILES = 2000;
+	private static final int DECLARATIONS = 20;
+	private static final int REFERENCES = 60;
+	private static final int COMMIT_SIZE = 500;
+
+	/** Every n-th file is re-indexed by the incremental update */
+	private static final int UPDATE_STEP = 10;
+	private static final int SEARCHES = 200;
+
+	private DbFactory dbFactory;
+	private File directory;
+	private SegmentStore store;
+
+	protected void setUp() throws Exception {
+		dbFactory = DbFactory.getInstance();
+		assertNotNull(dbFactory);
+		removeContainer();
+
+		directory = SegmentStoreTests.createTempDirectory();
+		store = new SegmentStore(directory);
+		store.open();
+	}
+
+	protected void tearDown() throws Exception {
+		removeContainer();
+		store.close();
+		SegmentStoreTests.deleteDirectory(directory);
+	}
+
+	private void removeContainer() throws SQLException {
+		Connection connection = dbFactory.createConnection();
+		try {
+			dbFactory.getContainerDao().deleteByPath(connection,
+					CONTAINER_PATH);
+		} finally {
+			connection.close();
+		}
+	}
+
+	private static String fileName(int fileNumber) {
+		return "file" + fileNumber + ".txt";
+	}
+
+	private static String methodName(int fileNumber, int i) {
+		return "method" + (fileNumber % 100) + "_" + i;
+	}
+
+	private static List<SegmentElement> createElements(int fileNumber) {
+		List<SegmentElement> elements = new ArrayList<SegmentElement>();
+		for (int i = 0; i < DECLARATIONS; ++i) {
+			elements.add(new SegmentElement(IModelElement.METHOD, 0, i * 100,
+					100, i * 100 + 10, 10, methodName(fileNumber, i), null,
+					"Class" + fileNumber, null, false));
+		}
+		for (int i = 0; i < REFERENCES; ++i) {
+			elements.add(new SegmentElement(IModelElement.METHOD, 0, i * 30,
+					10, 0, 0, methodName(fileNumber + i, i % DECLARATIONS),
+					null, null, null, true));
+		}
+		return elements;
+	}
+
+	private void writeH2(int from, int step, long timestamp)
+			throws SQLException {
+		IElementDao elementDao = dbFactory.getElementDao();
+		Connection connection = dbFactory.createConnection();
+		try {
+			connection.setAutoCommit(false);
+			Container container = dbFactory.getContainerDao().insert(
+					connection, CONTAINER_PATH);
+			int written = 0;
+			for (int fileNumber = from; fileNumber < FILES; fileNumber += step) {
+				dbFactory.getFileDao().delete(connection, fileName(fileNumber),
+						container.getId());
+				int fileId = dbFactory.getFileDao().insert(connection,
+						fileName(fileNumber), timestamp, container.getId())
+						.getId();
+				for (SegmentElement element : createElements(fileNumber)) {
+					elementDao.insert(connection, element.getType(), element
+							.getFlags(), element.getOffset(), element
+							.getLength(), element.getNameOffset(), element
+							.getNameLength(), element.getName(), element
+							.getMetadata(), element.getQualifier(), element
+							.getParent(), fileId, NATURE_ID, element
+							.isReference());
+				}
+				if (++written % COMMIT_SIZE == 0) {
+					elementDao.flushInsertions(connection);
+					connection.commit();
+				}
+			}
+		} finally {
+			elementDao.commitInsertions(connection);
+			connection.commit();
+			connection.close();
+		}
+	}
+
+	private void writeSegments(int from, int step, long timestamp)
+			throws Exception {
+		for (int fileNumber = from; fileNumber < FILES; fileNumber += step) {
+			store.addDocument(CONTAINER_PATH, fileName(fileNumber), timestamp,
+					null, NATURE_ID, createElements(fileNumber), false);
+		}
+		store.flush();
+	}
+
+	private int searchH2(String name, MatchRule matchRule) throws SQLException {
+		final int[] count = new int[1];
+		Connection connection = dbFactory.createConnection();
+		try {
+			dbFactory.getElementDao().search(connection, name, matchRule,
+					IModelElement.METHOD, 0, 0, null, null, null, null,
+					NATURE_ID, 0, false, new IElementHandler() {
+						public void handle(Element element) {
+							++count[0];
+						}
+					}, null);
+		} finally {
+			connection.close();
+		}
+		return count[0];
+	}
+
+	private int searchSegments(final String name, final MatchRule matchRule)
+			throws Exception {
+		final int[] count = new int[1];
+		store.search(NATURE_ID, null, new SegmentStore.IElementFilter() {
+			public boolean acceptDocument(String containerPath, String path) {
+				return true;
+			}
+
+			public boolean acceptElement(int elementType, boolean isReference,
+					String elementName) {
+				return elementType == IModelElement.METHOD
+						&& !isReference
+						&& (matchRule == MatchRule.EXACT ? elementName
+								.equalsIgnoreCase(name) : elementName
+								.regionMatches(true, 0, name, 0, name.length()));
+			}
+		}, new SegmentStore.IElementVisitor() {
+			public boolean visit(String containerPath, String path,
+					SegmentElement element) {
+				++count[0];
+				return true;
+			}
+		}, null);
+		return count[0];
+	}
+
+	private static String perSecond(int count, long time) {
+		return String.valueOf(count * 1000L / Math.max(time, 1));
+	}
+
+	public void testCompareWithH2() throws Exception {
+		long start = System.currentTimeMillis();
+		writeH2(0, 1, 1);
+		long h2BuildTime = System.currentTimeMillis() - start;
+
+		start = System.currentTimeMillis();
+		writeSegments(0, 1, 1);
+		long segmentBuildTime = System.currentTimeMillis() - start;
+
+		int updated = FILES / UPDATE_STEP;
+		start = System.currentTimeMillis();
+		writeH2(0, UPDATE_STEP, 2);
+		long h2UpdateTime = System.currentTimeMillis() - start;
+
+		start = System.currentTimeMillis();
+		writeSegments(0, UPDATE_STEP, 2);
+		long segmentUpdateTime = System.currentTimeMillis() - start;
+
+		long h2SearchTime = 0;
+		long segmentSearchTime = 0;
+		for (int i = 0; i < SEARCHES; ++i) {
+			String name = methodName(i, i % DECLARATIONS);
+			MatchRule matchRule = i % 2 == 0 ? MatchRule.EXACT
+					: MatchRule.PREFIX;
+
+			start = System.currentTimeMillis();
+			int h2Count = searchH2(name, matchRule);
+			h2SearchTime += System.currentTimeMillis() - start;
+
+			start = System.currentTimeMillis();
+			int segmentCount = searchSegments(name, matchRule);
+			segmentSearchTime += System.currentTimeMillis() - start;
+
+			assertEquals(name, h2Count, segmentCount);
+		}
+
+		long size = store.getSize();
+		start = System.currentTimeMillis();
+		store.compact(null);
+		long compactionTime = System.currentTimeMillis() - start;
+
+		System.out.println("SegmentStoreBenchmark: " + FILES + " files, "
+				+ DECLARATIONS + " declarations and " + REFERENCES
+				+ " references per file");
+		System.out.println("  index build (H2/segments):        "
+				+ h2BuildTime + " ms (" + perSecond(FILES, h2BuildTime)
+				+ " files/sec) / " + segmentBuildTime + " ms ("
+				+ perSecond(FILES, segmentBuildTime) + " files/sec)");
+		System.out.println("  incremental update (H2/segments): "
+				+ h2UpdateTime + " ms / " + segmentUpdateTime + " ms ("
+				+ updated + " files)");
+		System.out.println("  search latency (H2/segments):     "
+				+ (h2SearchTime / SEARCHES) + " ms / "
+				+ (segmentSearchTime / SEARCHES) + " ms (" + SEARCHES
+				+ " searches)");
+		System.out.println("  compaction:                       "
+				+ compactionTime + " ms (" + size + " -> " + store.getSize()
+				+ " bytes)");
+
+		assertEquals(FILES, store.getDocuments(CONTAINER_PATH).size());
+	}
+}
@@ -0,0 +1,274 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Sage and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Sage - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.dltk.core.index.segment.tests;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.dltk.core.IModelElement;
+import org.eclipse.dltk.internal.core.index.segment.SegmentElement;
+import org.eclipse.dltk.internal.core.index.segment.SegmentStore;
+
+public class SegmentStoreTests extends TestCase {
+
+	private static final String NATURE_ID = "org.eclipse.dltk.core.index.segment.tests.nature";
+	private static final String CONTAINER_PATH = "/SegmentStoreTests";
+
+	private File directory;
+	private SegmentStore store;
+
+	protected void setUp() throws Exception {
+		directory = createTempDirectory();
+		store = new SegmentStore(directory);
+		store.open();
+	}
+
+	protected void tearDown() throws Exception {
+		store.close();
+		deleteDirectory(directory);
+	}
+
+	static File createTempDirectory() throws IOException {
+		File directory = File.createTempFile("segments", "");
+		directory.delete();
+		directory.mkdirs();
+		return directory;
+	}
+
+	static void deleteDirectory(File directory) {
+		File[] files = directory.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				file.delete();
+			}
+		}
+		directory.delete();
+	}
+
+	static List<SegmentElement> createElements(String... names) {
+		List<SegmentElement> elements = new ArrayList<SegmentElement>();
+		for (int i = 0; i < names.length; ++i) {
+			elements.add(new SegmentElement(IModelElement.METHOD, 0, i * 100,
+					100, i * 100 + 10, 10, names[i], null, "Qualifier", null,
+					false));
+		}
+		return elements;
+	}
+
+	private List<String> search(final String name) throws IOException {
+		final List<String> found = new ArrayList<String>();
+		store.search(NATURE_ID, null, new SegmentStore.IElementFilter() {
+			public boolean acceptDocument(String containerPath, String path) {
+				return true;
+			}
+
+			public boolean acceptElement(int elementType, boolean isReference,
+					String elementName) {
+				return name.equals(elementName);
+			}
+		}, new SegmentStore.IElementVisitor() {
+			public boolean visit(String containerPath, String path,
+					SegmentElement element) {
+				assertEquals("Qualifier", element.getQualifier());
+				found.add(path);
+				return true;
+			}
+		}, null);
+		return found;
+	}
+
+	private void reopen() throws IOException {
+		store.close();
+		store = new SegmentStore(directory);
+		store.open();
+	}
+
+	public void testReplay() throws Exception {
+		store.addDocument(CONTAINER_PATH, "a.txt", 1, null, NATURE_ID,
+				createElements("foo", "bar"), true);
+		store.addDocument(CONTAINER_PATH, "b.txt", 2, "digest", NATURE_ID,
+				createElements("foo"), true);
+		store.updateTimestamp(CONTAINER_PATH, "b.txt", 3);
+		reopen();
+
+		assertEquals(2, search("foo").size());
+		assertEquals(1, search("bar").size());
+		assertEquals(3, store.getDocument(CONTAINER_PATH, "b.txt")
+				.getTimestamp());
+		assertEquals("digest", store.getDocument(CONTAINER_PATH, "b.txt")
+				.getDigest());
+	}
+
+	public void testUpdateTimestamps() throws Exception {
+		store.addDocument(CONTAINER_PATH, "a.txt", 1, "a", NATURE_ID,
+				createElements("foo"), true);
+		store.addDocument(CONTAINER_PATH, "b.txt", 1, "b", NATURE_ID,
+				createElements("bar"), true);
+		Map<String, Long> timestamps = new HashMap<String, Long>();
+		timestamps.put("a.txt", Long.valueOf(5));
+		timestamps.put("b.txt", Long.valueOf(6));
+		timestamps.put("unknown.txt", Long.valueOf(7));
+		store.updateTimestamps(CONTAINER_PATH, timestamps);
+		reopen();
+
+		assertEquals(5, store.getDocument(CONTAINER_PATH, "a.txt")
+				.getTimestamp());
+		assertEquals(6, store.getDocument(CONTAINER_PATH, "b.txt")
+				.getTimestamp());
+		assertNull(store.getDocument(CONTAINER_PATH, "unknown.txt"));
+		assertEquals(1, search("foo").size());
+		assertEquals(1, search("bar").size());
+	}
+
+	public void testTombstones() throws Exception {
+		store.addDocument(CONTAINER_PATH, "a.txt", 1, null, NATURE_ID,
+				createElements("foo"), true);
+		store.addDocument(CONTAINER_PATH, "b.txt", 1, null, NATURE_ID,
+				createElements("foo"), true);
+		store.addDocument("/Other", "c.txt", 1, null, NATURE_ID,
+				createElements("foo"), true);
+		store.removeDocument(CONTAINER_PATH, "a.txt");
+		assertEquals(2, search("foo").size());
+
+		store.removeContainer("/Other");
+		assertEquals(1, search("foo").size());
+
+		reopen();
+		assertEquals(1, search("foo").size());
+		assertNull(store.getDocument(CONTAINER_PATH, "a.txt"));
+		assertNull(store.getDocuments("/Other"));
+	}
+
+	public void testReplaceDocument() throws Exception {
+		store.addDocument(CONTAINER_PATH, "a.txt", 1, null, NATURE_ID,
+				createElements("foo"), true);
+		store.addDocument(CONTAINER_PATH, "a.txt", 2, null, NATURE_ID,
+				createElements("bar"), true);
+		assertEquals(0, search("foo").size());
+		assertEquals(1, search("bar").size());
+		assertTrue(store.getLiveSize() < store.getSize());
+	}
+
+	public void testCompaction() throws Exception {
+		for (int i = 0; i < 100; ++i) {
+			store.addDocument(CONTAINER_PATH, "file" + i + ".txt", 1, null,
+					NATURE_ID, createElements("foo", "bar"), false);
+		}
+		for (int i = 0; i < 50; ++i) {
+			store.removeDocument(CONTAINER_PATH, "file" + i + ".txt");
+		}
+		store.addDocument(CONTAINER_PATH, "file99.txt", 2, null, NATURE_ID,
+				createElements("baz"), false);
+		long size = store.getSize();
+
+		store.compact(null);
+		assertTrue(store.getSize() < size);
+		assertEquals(49, search("foo").size());
+		assertEquals(1, search("baz").size());
+
+		// documents written after compaction:
+		store.addDocument(CONTAINER_PATH, "new.txt", 1, null, NATURE_ID,
+				createElements("foo"), true);
+		reopen();
+		assertEquals(50, search("foo").size());
+		assertEquals(1, search("baz").size());
+		assertEquals(2, store.getDocument(CONTAINER_PATH, "file99.txt")
+				.getTimestamp());
+	}
+
+	public void testUpdateTimestampsDuringCompaction() throws Exception {
+		final Map<String, Long> timestamps = new HashMap<String, Long>();
+		for (int i = 0; i < 10; ++i) {
+			store.addDocument(CONTAINER_PATH, "file" + i + ".txt", 1, null,
+					NATURE_ID, createElements("foo"), false);
+			timestamps.put("file" + i + ".txt", Long.valueOf(2));
+		}
+		store.addDocument(CONTAINER_PATH, "other.txt", 1, null, NATURE_ID,
+				createElements("bar"), false);
+		// recorded in the compacted segments:
+		store.updateTimestamp(CONTAINER_PATH, "other.txt", 3);
+
+		store.compact(new NullProgressMonitor() {
+			private boolean updated;
+
+			public boolean isCanceled() {
+				if (!updated) {
+					updated = true;
+					try {
+						store.updateTimestamps(CONTAINER_PATH, timestamps);
+					} catch (IOException e) {
+						fail(e.toString());
+					}
+				}
+				return false;
+			}
+		});
+		checkTimestamps(timestamps);
+		reopen();
+		checkTimestamps(timestamps);
+	}
+
+	private void checkTimestamps(Map<String, Long> timestamps)
+			throws IOException {
+		assertEquals(10, search("foo").size());
+		assertEquals(1, search("bar").size());
+		for (Map.Entry<String, Long> entry : timestamps.entrySet()) {
+			assertEquals(entry.getValue().longValue(), store.getDocument(
+					CONTAINER_PATH, entry.getKey()).getTimestamp());
+		}
+		assertEquals(3, store.getDocument(CONTAINER_PATH, "other.txt")
+				.getTimestamp());
+	}
+
+	public void testTornRecord() throws Exception {
+		store.addDocument(CONTAINER_PATH, "a.txt", 1, null, NATURE_ID,
+				createElements("foo"), true);
+		store.addDocument(CONTAINER_PATH, "b.txt", 1, null, NATURE_ID,
+				createElements("foo"), true);
+		store.close();
+
+		// simulate crash in the middle of writing the last record:
+		File[] files = directory.listFiles();
+		assertEquals(1, files.length);
+		RandomAccessFile file = new RandomAccessFile(files[0], "rw");
+		try {
+			file.setLength(file.length() - 5);
+		} finally {
+			file.close();
+		}
+
+		store = new SegmentStore(directory);
+		store.open();
+		assertEquals(1, search("foo").size());
+		assertNotNull(store.getDocument(CONTAINER_PATH, "a.txt"));
+
+		store.addDocument(CONTAINER_PATH, "c.txt", 1, null, NATURE_ID,
+				createElements("foo"), true);
+		reopen();
+		assertEquals(2, search("foo").size());
+	}
+
+	public void testNonAsciiNames() throws Exception {
+		store.addDocument(CONTAINER_PATH, "\u0444.txt", 1, null, NATURE_ID,
+				createElements("\u0444\u0443", "foo"), true);
+		reopen();
+		assertEquals(1, search("\u0444\u0443").size());
+		assertEquals("\u0444.txt", search("foo").get(0));
+	}
+}
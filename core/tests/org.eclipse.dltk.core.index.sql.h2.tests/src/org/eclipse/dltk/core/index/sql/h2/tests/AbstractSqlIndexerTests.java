@@ -0,0 +1,92 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Sage and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Sage - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.dltk.core.index.sql.h2.tests;
+
+import java.sql.SQLException;
+
+import org.eclipse.dltk.core.ISourceModule;
+import org.eclipse.dltk.core.index.sql.DbFactory;
+import org.eclipse.dltk.core.tests.model.ModelTestsPlugin;
+import org.eclipse.dltk.core.tests.model.ModifyingResourceTests;
+import org.eclipse.dltk.internal.core.index.sql.SqlIndexer;
+
+/**
+ * Base of the tests indexing the files of a test project with
+ * {@link SqlIndexer}. File <code>N</code> of the project contains
+ * <code>methodN</code>. The container of the project is removed from the
+ * index before and after each test.
+ */
+public abstract class AbstractSqlIndexerTests extends ModifyingResourceTests {
+
+	private static final String[] TEST_NATURES = new String[] { ModelTestsPlugin.TEST_NATURE };
+
+	private final String project;
+	private final int fileCount;
+
+	protected DbFactory dbFactory;
+	protected ISourceModule[] modules;
+
+	protected AbstractSqlIndexerTests(String name, String project,
+			int fileCount) {
+		super(ModelTestsPlugin.PLUGIN_NAME, name);
+		this.project = project;
+		this.fileCount = fileCount;
+	}
+
+	protected String getContainerPath() {
+		return "/" + project;
+	}
+
+	protected String getPath(int fileNumber) {
+		return getContainerPath() + "/src/file" + fileNumber + ".txt";
+	}
+
+	public void setUpSuite() throws Exception {
+		super.setUpSuite();
+		createScriptProject(project, TEST_NATURES, new String[] { "src" });
+		for (int i = 0; i < fileCount; ++i) {
+			createFile(getPath(i), "method" + i);
+		}
+		createFiles();
+		waitUntilIndexesReady();
+	}
+
+	/**
+	 * Creates other files of the project before it is indexed
+	 */
+	protected void createFiles() throws Exception {
+	}
+
+	public void tearDownSuite() throws Exception {
+		deleteProject(project);
+		super.tearDownSuite();
+	}
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		dbFactory = DbFactory.getInstance();
+		assertNotNull(dbFactory);
+		removeContainer();
+		modules = new ISourceModule[fileCount];
+		for (int i = 0; i < fileCount; ++i) {
+			modules[i] = getSourceModule(getPath(i));
+		}
+	}
+
+	protected void tearDown() throws Exception {
+		removeContainer();
+		super.tearDown();
+	}
+
+	protected void removeContainer() throws SQLException {
+		SqlTestUtils.removeContainer(dbFactory, getContainerPath());
+	}
+}
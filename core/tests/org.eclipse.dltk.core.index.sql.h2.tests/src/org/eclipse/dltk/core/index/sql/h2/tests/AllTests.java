@@ -0,0 +1,31 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Sage and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Sage - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.dltk.core.index.sql.h2.tests;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+public class AllTests {
+
+	public static Test suite() {
+		TestSuite suite = new TestSuite(
+				"org.eclipse.dltk.core.index.sql.h2.tests");
+		// $JUnit-BEGIN$
+		suite.addTestSuite(ElementSearchTests.class);
+		suite.addTestSuite(ElementIndexTests.class);
+		suite.addTestSuite(H2CacheTests.class);
+		suite.addTest(SqlIndexerBulkTests.suite());
+		suite.addTest(ChangeDetectionTests.suite());
+		suite.addTest(ContainerRebuildTests.suite());
+		// $JUnit-END$
+		return suite;
+	}
+}
@@ -0,0 +1,140 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Sage and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Sage - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.dltk.core.index.sql.h2.tests;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import junit.framework.TestCase;
+
+import org.eclipse.dltk.core.IModelElement;
+import org.eclipse.dltk.core.index.sql.Container;
+import org.eclipse.dltk.core.index.sql.DbFactory;
+import org.eclipse.dltk.core.index.sql.File;
+import org.eclipse.dltk.core.index.sql.IElementDao;
+
+/**
+ * Compares the speed of writing a generated corpus into the H2 index using a
+ * transaction per file, and using a group commit of many files sharing the
+ * same connection and prepared statements.
+ * <p>
+ * Not included in {@link AllTests}, should be launched manually.
+ * </p>
+ */
+public class BulkIndexingBenchmark extends TestCase {
+
+	private static final String NATURE_ID = "org.eclipse.dltk.core.index.sql.h2.tests.nature";
+	private static final String CONTAINER_PATH = "/BulkIndexingBenchmark";
+
+	private static final int FILES = 2000;
+	private static final int DECLARATIONS = 20;
+	private static final int REFERENCES = 60;
+	private static final int COMMIT_SIZE = 500;
+
+	private DbFactory dbFactory;
+
+	protected void setUp() throws Exception {
+		dbFactory = DbFactory.getInstance();
+		assertNotNull(dbFactory);
+		SqlTestUtils.removeContainer(dbFactory, CONTAINER_PATH);
+	}
+
+	protected void tearDown() throws Exception {
+		SqlTestUtils.removeContainer(dbFactory, CONTAINER_PATH);
+	}
+
+	private void writeFile(Connection connection, IElementDao elementDao,
+			int fileNumber) throws SQLException {
+		Container container = dbFactory.getContainerDao().insert(connection,
+				CONTAINER_PATH);
+		File file = dbFactory.getFileDao().insert(connection,
+				"file" + fileNumber + ".txt", fileNumber, container.getId());
+
+		for (int i = 0; i < DECLARATIONS; ++i) {
+			elementDao.insert(connection, IModelElement.METHOD, 0, i * 100,
+					100, i * 100 + 10, 10, "method" + i, null, "Class"
+							+ fileNumber, null, file.getId(), NATURE_ID,
+					false);
+		}
+		for (int i = 0; i < REFERENCES; ++i) {
+			elementDao.insert(connection, IModelElement.METHOD, 0, i * 30, 10,
+					0, 0, "method" + (i % DECLARATIONS), null, null, null,
+					file.getId(), NATURE_ID, true);
+		}
+	}
+
+	private long writePerFile() throws SQLException {
+		long start = System.currentTimeMillis();
+		IElementDao elementDao = dbFactory.getElementDao();
+		for (int fileNumber = 0; fileNumber < FILES; ++fileNumber) {
+			Connection connection = dbFactory.createConnection();
+			try {
+				connection.setAutoCommit(false);
+				writeFile(connection, elementDao, fileNumber);
+			} finally {
+				elementDao.commitInsertions(connection);
+				connection.commit();
+				connection.close();
+			}
+		}
+		return System.currentTimeMillis() - start;
+	}
+
+	private long writeGrouped() throws SQLException {
+		long start = System.currentTimeMillis();
+		IElementDao elementDao = dbFactory.getElementDao();
+		Connection connection = dbFactory.createConnection();
+		try {
+			connection.setAutoCommit(false);
+			for (int fileNumber = 0; fileNumber < FILES; ++fileNumber) {
+				writeFile(connection, elementDao, fileNumber);
+				if ((fileNumber + 1) % COMMIT_SIZE == 0) {
+					elementDao.flushInsertions(connection);
+					connection.commit();
+				}
+			}
+		} finally {
+			elementDao.commitInsertions(connection);
+			connection.commit();
+			connection.close();
+		}
+		return System.currentTimeMillis() - start;
+	}
+
+	private static String filesPerSecond(long time) {
+		return String.valueOf(FILES * 1000L / Math.max(time, 1));
+	}
+
+	public void testGroupCommit() throws Exception {
+		long perFileTime = writePerFile();
+		SqlTestUtils.removeContainer(dbFactory, CONTAINER_PATH);
+		long groupedTime = writeGrouped();
+
+		System.out.println("BulkIndexingBenchmark: " + FILES + " files, "
+				+ DECLARATIONS + " declarations and " + REFERENCES
+				+ " references per file");
+		System.out.println("  transaction per file: " + perFileTime
+				+ " ms (" + filesPerSecond(perFileTime) + " files/sec)");
+		System.out.println("  group commit:         " + groupedTime
+				+ " ms (" + filesPerSecond(groupedTime) + " files/sec)");
+
+		Connection connection = dbFactory.createConnection();
+		try {
+			Container container = dbFactory.getContainerDao().selectByPath(
+					connection, CONTAINER_PATH);
+			assertNotNull(container);
+			assertEquals(FILES, dbFactory.getFileDao().selectByContainerId(
+					connection, container.getId()).length);
+		} finally {
+			connection.close();
+		}
+	}
+}
@@ -0,0 +1,160 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Sage and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Sage - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.dltk.core.index.sql.h2.tests;
+
+import java.io.ByteArrayInputStream;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.Test;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.dltk.core.DLTKCore;
+import org.eclipse.dltk.core.ISourceModule;
+import org.eclipse.dltk.core.index.sql.DbFactory;
+import org.eclipse.dltk.core.metrics.Counter;
+import org.eclipse.dltk.core.metrics.Metrics;
+import org.eclipse.dltk.core.tests.model.ModelTestsPlugin;
+import org.eclipse.dltk.core.tests.model.ModifyingResourceTests;
+import org.eclipse.dltk.internal.core.index.sql.SqlIndexer;
+import org.eclipse.dltk.internal.core.index2.AbstractIndexRequest;
+
+/**
+ * Tests detection of changed source modules by the digest of their contents.
+ */
+public class ChangeDetectionTests extends ModifyingResourceTests {
+
+	private static final String PROJECT = "ChangeDetection";
+	private static final String[] TEST_NATURES = new String[] { ModelTestsPlugin.TEST_NATURE };
+	private static final String FILE_PATH = "/" + PROJECT + "/src/file.txt";
+	private static final String RELATIVE_PATH = "src/file.txt";
+
+	private final Counter indexedDocuments = Metrics
+			.counter("sql.documents.indexed");
+
+	private Hashtable<?, ?> oldOptions;
+	private IPath containerPath;
+
+	public ChangeDetectionTests(String name) {
+		super(ModelTestsPlugin.PLUGIN_NAME, name);
+	}
+
+	public static Test suite() {
+		return new Suite(ChangeDetectionTests.class);
+	}
+
+	@SuppressWarnings("unchecked")
+	protected void setUp() throws Exception {
+		super.setUp();
+		oldOptions = DLTKCore.getOptions();
+		Hashtable options = DLTKCore.getOptions();
+		options.put(DLTKCore.INDEXER_ID,
+				"org.eclipse.dltk.core.index.sql.indexer");
+		options.put(DLTKCore.INDEXER_CHANGE_DETECTION,
+				DLTKCore.INDEXER_CHANGE_DETECTION_DIGEST);
+		DLTKCore.setOptions(options);
+
+		createScriptProject(PROJECT, TEST_NATURES, new String[] { "src" });
+		createFile(FILE_PATH, "method");
+		waitUntilIndexesReady();
+		containerPath = new Path("/" + PROJECT);
+	}
+
+	protected void tearDown() throws Exception {
+		deleteProject(PROJECT);
+		DbFactory dbFactory = DbFactory.getInstance();
+		Connection connection = dbFactory.createConnection();
+		try {
+			dbFactory.getContainerDao().deleteByPath(connection,
+					containerPath.toString());
+		} finally {
+			connection.close();
+		}
+		DLTKCore.setOptions(oldOptions);
+		super.tearDown();
+	}
+
+	private static class TestRequest extends AbstractIndexRequest {
+		TestRequest() {
+			super(null, null);
+		}
+
+		protected String getName() {
+			return "Test request";
+		}
+
+		protected void run() {
+		}
+	}
+
+	private void analyze(ISourceModule sourceModule, List<String> toRemove,
+			List<ISourceModule> toReindex) {
+		new TestRequest().analyzeSourceModuleChanges(containerPath,
+				Collections.singleton(sourceModule), toRemove, toReindex);
+	}
+
+	private void touch(IFile file) throws Exception {
+		long timestamp = file.getLocalTimeStamp();
+		file.setLocalTimeStamp(timestamp + 10000);
+		assertTrue(timestamp != file.getLocalTimeStamp());
+	}
+
+	public void testTouchedFileIsNotReindexed() throws Exception {
+		ISourceModule sourceModule = getSourceModule(FILE_PATH);
+		SqlIndexer indexer = new SqlIndexer();
+		indexer.indexDocument(sourceModule);
+		long indexed = indexedDocuments.get();
+
+		IFile file = getFile(FILE_PATH);
+		touch(file);
+
+		List<String> toRemove = new ArrayList<String>();
+		List<ISourceModule> toReindex = new ArrayList<ISourceModule>();
+		analyze(sourceModule, toRemove, toReindex);
+		assertTrue(toRemove.isEmpty());
+		assertTrue(toReindex.isEmpty());
+
+		Map<String, Long> documents = indexer.getDocuments(containerPath);
+		assertEquals(Long.valueOf(file.getLocalTimeStamp()), documents
+				.get(RELATIVE_PATH));
+
+		// timestamp is updated, so the file isn't checked again:
+		analyze(sourceModule, toRemove, toReindex);
+		assertTrue(toReindex.isEmpty());
+		assertEquals(indexed, indexedDocuments.get());
+	}
+
+	public void testChangedFileIsReindexed() throws Exception {
+		ISourceModule sourceModule = getSourceModule(FILE_PATH);
+		new SqlIndexer().indexDocument(sourceModule);
+
+		IFile file = getFile(FILE_PATH);
+		long timestamp = file.getLocalTimeStamp();
+		file.setContents(new ByteArrayInputStream("changed".getBytes()), true,
+				false, null);
+		if (file.getLocalTimeStamp() == timestamp) {
+			touch(file);
+		}
+
+		List<String> toRemove = new ArrayList<String>();
+		List<ISourceModule> toReindex = new ArrayList<ISourceModule>();
+		analyze(sourceModule, toRemove, toReindex);
+		assertTrue(toRemove.isEmpty());
+		assertEquals(1, toReindex.size());
+		assertEquals(sourceModule, toReindex.get(0));
+	}
+}
@@ -0,0 +1,299 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Sage and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Sage - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.dltk.core.index.sql.h2.tests;
+
+import static org.eclipse.dltk.core.index.sql.h2.tests.SqlTestUtils.declare;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.Hashtable;
+import java.util.Set;
+
+import junit.framework.Test;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.dltk.core.DLTKCore;
+import org.eclipse.dltk.core.ISourceModule;
+import org.eclipse.dltk.core.index.sql.Container;
+import org.eclipse.dltk.core.index.sql.File;
+import org.eclipse.dltk.core.index.sql.IContainerDao;
+import org.eclipse.dltk.internal.core.index.sql.SqlIndexer;
+import org.eclipse.dltk.internal.core.index.sql.h2.H2Cache;
+import org.eclipse.dltk.internal.core.index2.SourceModulesRequest;
+
+/**
+ * Tests rebuilding containers with {@link SqlIndexer}: the rebuilt container
+ * replaces the old one on commit, while aborted or failed rebuilds leave the
+ * old container in place. Rebuilds by {@link SourceModulesRequest} are parsed
+ * by {@link TestIndexerParticipant}.
+ */
+public class ContainerRebuildTests extends AbstractSqlIndexerTests {
+
+	private static final String PROJECT = "ContainerRebuild";
+	private static final String CONTAINER_PATH = "/" + PROJECT;
+
+	private static final int FILES = 5;
+	/** Number of changed files for which the request rebuilds the container */
+	private static final int REQUEST_FILES = 500;
+
+	private Hashtable<?, ?> oldOptions;
+
+	public ContainerRebuildTests(String name) {
+		super(name, PROJECT, FILES);
+	}
+
+	public static Test suite() {
+		return new Suite(ContainerRebuildTests.class);
+	}
+
+	protected void createFiles() throws Exception {
+		createFolder(CONTAINER_PATH + "/src/request");
+		for (int i = 0; i < REQUEST_FILES; ++i) {
+			createFile(getRequestPath(i), "module" + i);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	protected void setUp() throws Exception {
+		super.setUp();
+		oldOptions = DLTKCore.getOptions();
+		Hashtable options = DLTKCore.getOptions();
+		options.put(DLTKCore.INDEXER_ID,
+				"org.eclipse.dltk.core.index.sql.indexer");
+		options.put(DLTKCore.INDEXER_PARALLELISM, "4");
+		DLTKCore.setOptions(options);
+	}
+
+	protected void tearDown() throws Exception {
+		TestIndexerParticipant.reset();
+		DLTKCore.setOptions(oldOptions);
+		super.tearDown();
+	}
+
+	private static String getRequestPath(int fileNumber) {
+		return CONTAINER_PATH + "/src/request/module" + fileNumber + ".txt";
+	}
+
+	private Container selectContainer() throws SQLException {
+		Connection connection = dbFactory.createConnection();
+		try {
+			return dbFactory.getContainerDao().selectByPath(connection,
+					CONTAINER_PATH);
+		} finally {
+			connection.close();
+		}
+	}
+
+	private int countFiles(Container container) throws SQLException {
+		Connection connection = dbFactory.createConnection();
+		try {
+			File[] files = dbFactory.getFileDao().selectByContainerId(
+					connection, container.getId());
+			return files.length;
+		} finally {
+			connection.close();
+		}
+	}
+
+	private Container indexContainer(SqlIndexer indexer) throws SQLException {
+		for (int i = 0; i < FILES; ++i) {
+			indexer.indexDocument(modules[i], declare("method" + i));
+		}
+		Container container = selectContainer();
+		assertNotNull(container);
+		assertEquals(FILES, countFiles(container));
+		return container;
+	}
+
+	public void testSwap() throws Exception {
+		SqlIndexer indexer = new SqlIndexer();
+		Container old = indexContainer(indexer);
+
+		indexer.beginContainerRebuild(new Path(CONTAINER_PATH));
+		for (int i = 0; i < FILES - 1; ++i) {
+			indexer.indexDocument(modules[i], declare("rebuilt" + i));
+		}
+		// the old container is used until the rebuild is committed
+		assertEquals(old.getId(), selectContainer().getId());
+		assertEquals(FILES, countFiles(old));
+
+		indexer.commitContainerRebuild(new Path(CONTAINER_PATH));
+		Container rebuilt = selectContainer();
+		assertNotNull(rebuilt);
+		assertTrue(old.getId() != rebuilt.getId());
+		assertEquals(FILES - 1, countFiles(rebuilt));
+		assertEquals(rebuilt.getId(), H2Cache
+				.selectContainerByPath(CONTAINER_PATH).getId());
+		assertNull(H2Cache.selectContainerById(old.getId()));
+	}
+
+	public void testAbort() throws Exception {
+		SqlIndexer indexer = new SqlIndexer();
+		Container old = indexContainer(indexer);
+
+		indexer.beginContainerRebuild(new Path(CONTAINER_PATH));
+		indexer.indexDocument(modules[0], declare("rebuilt0"));
+		indexer.abortContainerRebuild(new Path(CONTAINER_PATH));
+
+		Container container = selectContainer();
+		assertNotNull(container);
+		assertEquals(old.getId(), container.getId());
+		assertEquals(FILES, countFiles(container));
+	}
+
+	public void testReclaimStaleStaging() throws Exception {
+		final String stalePath = "#staging/ContainerRebuildStale";
+		Connection connection = dbFactory.createConnection();
+		try {
+			dbFactory.getContainerDao().insert(connection, stalePath);
+		} finally {
+			connection.close();
+		}
+		try {
+			SqlIndexer indexer = new SqlIndexer();
+			indexer.beginContainerRebuild(new Path(CONTAINER_PATH));
+			indexer.abortContainerRebuild(new Path(CONTAINER_PATH));
+
+			connection = dbFactory.createConnection();
+			try {
+				assertNull(dbFactory.getContainerDao().selectByPath(
+						connection, stalePath));
+			} finally {
+				connection.close();
+			}
+		} finally {
+			SqlTestUtils.removeContainer(dbFactory, stalePath);
+		}
+	}
+
+	/**
+	 * Indexes the request files by {@link SourceModulesRequest}, which
+	 * rebuilds the container, since all its files are removed or changed
+	 */
+	private boolean executeRequest() {
+		Set<ISourceModule> sourceModules = new HashSet<ISourceModule>();
+		for (int i = 0; i < REQUEST_FILES; ++i) {
+			sourceModules.add(getSourceModule(getRequestPath(i)));
+		}
+		TestIndexerParticipant.enabled = true;
+		return new SourceModulesRequest(null, new Path(CONTAINER_PATH),
+				sourceModules, null).execute(new NullProgressMonitor());
+	}
+
+	private void assertOldContainer(Container old) throws SQLException {
+		Container container = selectContainer();
+		assertNotNull(container);
+		assertEquals(old.getId(), container.getId());
+		assertEquals(FILES, countFiles(container));
+		assertNull(H2Cache.selectContainerByPath("#staging" + CONTAINER_PATH));
+	}
+
+	public void testRequest() throws Exception {
+		Container old = indexContainer(new SqlIndexer());
+
+		assertTrue(executeRequest());
+		Container rebuilt = selectContainer();
+		assertNotNull(rebuilt);
+		assertTrue(old.getId() != rebuilt.getId());
+		assertEquals(REQUEST_FILES, countFiles(rebuilt));
+	}
+
+	public void testRequestParseFailure() throws Exception {
+		Container old = indexContainer(new SqlIndexer());
+
+		TestIndexerParticipant.failOn = "module250.txt";
+		assertFalse(executeRequest());
+		assertOldContainer(old);
+	}
+
+	public void testRequestInterrupted() throws Exception {
+		Container old = indexContainer(new SqlIndexer());
+
+		TestIndexerParticipant.interruptOn = "module250.txt";
+		TestIndexerParticipant.thread = Thread.currentThread();
+		boolean interrupted;
+		try {
+			assertFalse(executeRequest());
+		} finally {
+			// the request restores the interrupt status
+			interrupted = Thread.interrupted();
+		}
+		assertTrue(interrupted);
+		assertOldContainer(old);
+	}
+
+	public void testRollback() throws Exception {
+		final String stagingPath = "#staging" + CONTAINER_PATH;
+		IContainerDao containerDao = dbFactory.getContainerDao();
+		Container old;
+		Container staging;
+		Connection connection = dbFactory.createConnection();
+		try {
+			old = containerDao.insert(connection, CONTAINER_PATH);
+			staging = containerDao.insert(connection, stagingPath);
+		} finally {
+			connection.close();
+		}
+		try {
+			connection = failingCommit(dbFactory.createConnection());
+			try {
+				connection.setAutoCommit(false);
+				containerDao.replace(connection, staging, CONTAINER_PATH);
+				fail("SQLException expected");
+			} catch (SQLException e) {
+				// expected
+			} finally {
+				connection.close();
+			}
+			Container cached = H2Cache.selectContainerByPath(CONTAINER_PATH);
+			assertNotNull(cached);
+			assertEquals(old.getId(), cached.getId());
+			cached = H2Cache.selectContainerByPath(stagingPath);
+			assertNotNull(cached);
+			assertEquals(staging.getId(), cached.getId());
+		} finally {
+			connection = dbFactory.createConnection();
+			try {
+				containerDao.deleteById(connection, old.getId());
+				containerDao.deleteById(connection, staging.getId());
+			} finally {
+				connection.close();
+			}
+		}
+	}
+
+	/**
+	 * Returns connection failing on {@link Connection#commit()}
+	 */
+	private static Connection failingCommit(final Connection connection) {
+		return (Connection) Proxy.newProxyInstance(Connection.class
+				.getClassLoader(), new Class<?>[] { Connection.class },
+				new InvocationHandler() {
+					public Object invoke(Object proxy, Method method,
+							Object[] args) throws Throwable {
+						if ("commit".equals(method.getName())) {
+							throw new SQLException("commit failed");
+						}
+						try {
+							return method.invoke(connection, args);
+						} catch (InvocationTargetException e) {
+							throw e.getCause();
+						}
+					}
+				});
+	}
+}
@@ -0,0 +1,232 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Sage and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Sage - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.dltk.core.index.sql.h2.tests;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import org.eclipse.dltk.core.IModelElement;
+import org.eclipse.dltk.core.index.sql.Element;
+import org.eclipse.dltk.internal.core.index.sql.h2.ElementIndex;
+import org.eclipse.dltk.internal.core.index.sql.h2.ElementIndex.IElementVisitor;
+
+/**
+ * Tests the in-memory index of element declarations used by the H2 cache.
+ */
+public class ElementIndexTests extends TestCase {
+
+	private ElementIndex index;
+
+	protected void setUp() throws Exception {
+		index = new ElementIndex();
+	}
+
+	private static Element element(String name, String camelCaseName,
+			int fileId) {
+		return new Element(IModelElement.METHOD, 0, 0, name.length(), 0, name
+				.length(), name, camelCaseName, null, null, null, fileId,
+				false);
+	}
+
+	/**
+	 * Collects names of visited elements, which start with the given prefix
+	 * (ignoring case), since the index could visit not matching elements too
+	 */
+	private static class Collector implements IElementVisitor {
+		final List<String> names = new ArrayList<String>();
+		private final String prefix;
+		private final boolean exact;
+
+		Collector(String prefix, boolean exact) {
+			this.prefix = prefix;
+			this.exact = exact;
+		}
+
+		public boolean visit(Element element) {
+			String name = element.getName();
+			if (exact ? name.equalsIgnoreCase(prefix) : name.regionMatches(
+					true, 0, prefix, 0, prefix.length())) {
+				names.add(name);
+			}
+			return true;
+		}
+
+		Set<String> getNames() {
+			return new HashSet<String>(names);
+		}
+	}
+
+	private static Set<String> names(String... names) {
+		return new HashSet<String>(Arrays.asList(names));
+	}
+
+	private Set<String> visitByName(String prefix, boolean exact) {
+		Collector collector = new Collector(prefix, exact);
+		index.visitByName(new String[] { prefix }, exact, collector);
+		return collector.getNames();
+	}
+
+	private void addElements() {
+		index.add(element("getName", "GN", 1));
+		index.add(element("GetValue", "GV", 1));
+		index.add(element("setName", "SN", 2));
+		index.add(element("getNameLength", "GNL", 3));
+	}
+
+	public void testVisitByNameBeforeAndAfterRebuild() {
+		addElements();
+		assertTrue(index.isSnapshotOutdated());
+		assertEquals(names("getName", "GetValue", "getNameLength"),
+				visitByName("GET", false));
+		assertEquals(names("getName"), visitByName("getname", true));
+
+		index.rebuildSnapshot();
+		assertFalse(index.isSnapshotOutdated());
+		assertEquals(names("getName", "GetValue", "getNameLength"),
+				visitByName("GET", false));
+		assertEquals(names("getName"), visitByName("getname", true));
+		assertEquals(names(), visitByName("x", false));
+	}
+
+	public void testElementsAddedAfterRebuild() {
+		addElements();
+		index.rebuildSnapshot();
+		index.add(element("getAge", "GA", 4));
+		assertTrue(index.isSnapshotOutdated());
+		assertEquals(names("getName", "GetValue", "getNameLength", "getAge"),
+				visitByName("get", false));
+	}
+
+	public void testRemoveFile() {
+		addElements();
+		index.rebuildSnapshot();
+		assertEquals(2, index.removeFile(1).length);
+		assertEquals(0, index.getElements(1).length);
+		assertEquals(names("getNameLength"), visitByName("get", false));
+	}
+
+	public void testRemoveFiles() {
+		addElements();
+		index.rebuildSnapshot();
+		Set<Integer> filesIds = new HashSet<Integer>();
+		filesIds.add(1);
+		filesIds.add(3);
+		assertEquals(3, index.removeFiles(filesIds).size());
+		assertFalse(index.isSnapshotOutdated());
+		assertEquals(names(), visitByName("get", false));
+		assertEquals(names("setName"), visitByName("set", false));
+	}
+
+	public void testVisitByNameOrdered() {
+		index.add(element("b2", null, 1));
+		index.add(element("A1", null, 2));
+		index.rebuildSnapshot();
+		index.add(element("a2", null, 3));
+		index.add(element("B1", null, 3));
+		Collector collector = new Collector("", false);
+		index.visitByNameOrdered(new String[] { "b", "a" }, false, collector);
+		assertEquals(Arrays.asList("A1", "a2", "B1", "b2"), collector.names);
+	}
+
+	public void testVisitByNameStops() {
+		addElements();
+		index.rebuildSnapshot();
+		final int[] count = new int[1];
+		index.visitByName(new String[] { "get" }, false,
+				new IElementVisitor() {
+					public boolean visit(Element element) {
+						++count[0];
+						return false;
+					}
+				});
+		assertEquals(1, count[0]);
+	}
+
+	public void testVisitByCamelCase() {
+		addElements();
+		index.rebuildSnapshot();
+		Collector collector = new Collector("get", false);
+		index.visitByCamelCase("GN", collector);
+		assertEquals(names("getName", "getNameLength"), collector.getNames());
+	}
+
+	/**
+	 * Readers are not blocked by the writer and always see consistent
+	 * elements, while snapshots are rebuilt by the writer.
+	 */
+	public void testConcurrentReaders() throws Exception {
+		final int files = 500;
+		final int elementsPerFile = 10;
+		final Throwable[] failure = new Throwable[1];
+		final boolean[] done = new boolean[1];
+		Thread[] readers = new Thread[4];
+		for (int i = 0; i < readers.length; ++i) {
+			readers[i] = new Thread() {
+				public void run() {
+					try {
+						while (!isDone()) {
+							index.visitByName(new String[] { "m" }, false,
+									new IElementVisitor() {
+										public boolean visit(Element element) {
+											assertTrue(element.getName()
+													.startsWith("m"));
+											return true;
+										}
+									});
+						}
+					} catch (Throwable e) {
+						synchronized (failure) {
+							failure[0] = e;
+						}
+					}
+				}
+
+				private boolean isDone() {
+					synchronized (done) {
+						return done[0];
+					}
+				}
+			};
+			readers[i].start();
+		}
+		try {
+			for (int file = 0; file < files; ++file) {
+				for (int i = 0; i < elementsPerFile; ++i) {
+					index.add(element("m" + file + "_" + i, null, file));
+				}
+			}
+		} finally {
+			synchronized (done) {
+				done[0] = true;
+			}
+			for (Thread reader : readers) {
+				reader.join();
+			}
+		}
+		synchronized (failure) {
+			if (failure[0] != null) {
+				fail(failure[0].toString());
+			}
+		}
+		Collector collector = new Collector("m", false);
+		index.visitByName(new String[] { "m" }, false, collector);
+		assertEquals(files * elementsPerFile, collector.names.size());
+		index.rebuildSnapshot();
+		collector = new Collector("m", false);
+		index.visitByName(new String[] { "m" }, false, collector);
+		assertEquals(files * elementsPerFile, collector.names.size());
+	}
+}
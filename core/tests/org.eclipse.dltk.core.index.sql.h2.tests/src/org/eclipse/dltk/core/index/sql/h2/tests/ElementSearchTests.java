@@ -0,0 +1,224 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Sage and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Sage - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.dltk.core.index.sql.h2.tests;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.dltk.core.IModelElement;
+import org.eclipse.dltk.core.index.sql.Container;
+import org.eclipse.dltk.core.index.sql.DbFactory;
+import org.eclipse.dltk.core.index.sql.Element;
+import org.eclipse.dltk.core.index.sql.File;
+import org.eclipse.dltk.core.index.sql.IElementDao;
+import org.eclipse.dltk.core.index.sql.IElementHandler;
+import org.eclipse.dltk.core.index2.search.ISearchEngine.MatchRule;
+import org.eclipse.dltk.internal.core.index.sql.h2.Schema;
+
+/**
+ * Tests the SQL search of element references in the H2 index, which is never
+ * served by the cache.
+ */
+public class ElementSearchTests extends TestCase {
+
+	private static final String NATURE_ID = "org.eclipse.dltk.core.index.sql.h2.tests.nature";
+	private static final String CONTAINER_PATH = "/ElementSearchTests";
+
+	private static final String[] NAMES = { "getName", "GetValue", "get_x",
+			"getXY", "get%", "setName", "isValid" };
+
+	private DbFactory dbFactory;
+	private int fileId;
+
+	protected void setUp() throws Exception {
+		dbFactory = DbFactory.getInstance();
+		assertNotNull(dbFactory);
+		SqlTestUtils.removeContainer(dbFactory, CONTAINER_PATH);
+
+		IElementDao elementDao = dbFactory.getElementDao();
+		Connection connection = dbFactory.createConnection();
+		try {
+			connection.setAutoCommit(false);
+			Container container = dbFactory.getContainerDao().insert(
+					connection, CONTAINER_PATH);
+			File file = dbFactory.getFileDao().insert(connection,
+					"file.txt", 0, container.getId());
+			fileId = file.getId();
+			for (int i = 0; i < NAMES.length; ++i) {
+				elementDao.insert(connection, IModelElement.METHOD, 0, i * 10,
+						NAMES[i].length(), 0, 0, NAMES[i], null, null, null,
+						fileId, NATURE_ID, true);
+			}
+		} finally {
+			elementDao.commitInsertions(connection);
+			connection.commit();
+			connection.close();
+		}
+	}
+
+	protected void tearDown() throws Exception {
+		SqlTestUtils.removeContainer(dbFactory, CONTAINER_PATH);
+	}
+
+	private Set<String> search(String pattern, MatchRule matchRule)
+			throws SQLException {
+		final Set<String> names = new HashSet<String>();
+		Connection connection = dbFactory.createConnection();
+		try {
+			dbFactory.getElementDao().search(connection, pattern, matchRule,
+					IModelElement.METHOD, 0, 0, null, null,
+					new int[] { fileId }, null, NATURE_ID, 0, true,
+					new IElementHandler() {
+						public void handle(Element element) {
+							names.add(element.getName());
+						}
+					}, null);
+		} finally {
+			connection.close();
+		}
+		return names;
+	}
+
+	private List<String> searchOrdered(String pattern, MatchRule matchRule,
+			int limit, final int cancelAfter) throws SQLException {
+		final List<String> names = new ArrayList<String>();
+		final IProgressMonitor monitor = new NullProgressMonitor();
+		Connection connection = dbFactory.createConnection();
+		try {
+			dbFactory.getElementDao().search(connection, pattern, matchRule,
+					IModelElement.METHOD, 0, 0, null, null,
+					new int[] { fileId }, null, NATURE_ID, limit, true, true,
+					new IElementHandler() {
+						public void handle(Element element) {
+							names.add(element.getName());
+							if (names.size() == cancelAfter) {
+								monitor.setCanceled(true);
+							}
+						}
+					}, monitor);
+		} finally {
+			connection.close();
+		}
+		return names;
+	}
+
+	private static Set<String> names(String... names) {
+		return new HashSet<String>(Arrays.asList(names));
+	}
+
+	public void testExact() throws Exception {
+		assertEquals(names("getName"), search("getName", MatchRule.EXACT));
+		assertEquals(names("getName"), search("GETNAME", MatchRule.EXACT));
+		assertEquals(names(), search("get", MatchRule.EXACT));
+	}
+
+	public void testPrefix() throws Exception {
+		assertEquals(names("getName", "GetValue", "get_x", "getXY", "get%"),
+				search("get", MatchRule.PREFIX));
+		assertEquals(names("getName", "GetValue", "get_x", "getXY", "get%"),
+				search("GET", MatchRule.PREFIX));
+		assertEquals(names("getXY"), search("getx", MatchRule.PREFIX));
+	}
+
+	public void testPrefixInTurkishLocale() throws Exception {
+		// dotted and dotless 'i' are folded differently in this locale
+		Locale locale = Locale.getDefault();
+		Locale.setDefault(new Locale("tr", "TR"));
+		try {
+			assertEquals(names("isValid"), search("IS", MatchRule.PREFIX));
+			assertEquals(names("isValid"), search("is", MatchRule.PREFIX));
+			assertEquals(names("getXY"), search("GETX", MatchRule.PREFIX));
+		} finally {
+			Locale.setDefault(locale);
+		}
+	}
+
+	public void testPrefixWithLikeWildcards() throws Exception {
+		assertEquals(names("get_x"), search("get_", MatchRule.PREFIX));
+		assertEquals(names("get%"), search("get%", MatchRule.PREFIX));
+	}
+
+	public void testPattern() throws Exception {
+		assertEquals(names("getName"), search("get?ame", MatchRule.PATTERN));
+		assertEquals(names("getName", "setName"), search("*Name",
+				MatchRule.PATTERN));
+		assertEquals(names("getXY"), search("get*Y", MatchRule.PATTERN));
+		assertEquals(names("get_x"), search("get_*", MatchRule.PATTERN));
+	}
+
+	public void testSet() throws Exception {
+		assertEquals(names("getName", "setName"), search("getName,setName",
+				MatchRule.SET));
+	}
+
+	public void testSecondaryIndexes() throws Exception {
+		String tableName = new Schema().getTableName(IModelElement.METHOD,
+				NATURE_ID, true);
+		List<String> indexes = new ArrayList<String>();
+		Connection connection = dbFactory.createConnection();
+		try {
+			PreparedStatement statement = connection
+					.prepareStatement("SELECT INDEX_NAME FROM INFORMATION_SCHEMA.INDEXES WHERE TABLE_NAME=?");
+			try {
+				statement.setString(1, tableName);
+				ResultSet result = statement.executeQuery();
+				try {
+					while (result.next()) {
+						indexes.add(result.getString(1));
+					}
+				} finally {
+					result.close();
+				}
+			} finally {
+				statement.close();
+			}
+		} finally {
+			connection.close();
+		}
+		assertTrue(indexes.toString(), indexes.contains(tableName
+				+ "_NAME_IDX"));
+		assertTrue(indexes.toString(), indexes.contains(tableName
+				+ "_QUALIFIER_IDX"));
+		assertTrue(indexes.toString(), indexes.contains(tableName
+				+ "_FILE_ID_IDX"));
+	}
+
+	public void testOrderByName() throws Exception {
+		List<String> expected = new ArrayList<String>(Arrays.asList(NAMES));
+		Collections.sort(expected, String.CASE_INSENSITIVE_ORDER);
+		assertEquals(expected, searchOrdered(null, null, 0, 0));
+		assertEquals(Arrays.asList("GetValue", "getXY", "setName"),
+				searchOrdered("setName,getXY,GetValue", MatchRule.SET, 0, 0));
+	}
+
+	public void testLimit() throws Exception {
+		assertEquals(Arrays.asList("GetValue", "getXY"), searchOrdered(
+				"setName,getXY,GetValue", MatchRule.SET, 2, 0));
+	}
+
+	public void testCancel() throws Exception {
+		assertEquals(Arrays.asList("GetValue"), searchOrdered(
+				"setName,getXY,GetValue", MatchRule.SET, 0, 1));
+	}
+}
@@ -0,0 +1,262 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Sage and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Sage - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.dltk.core.index.sql.h2.tests;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.preferences.IEclipsePreferences;
+import org.eclipse.core.runtime.preferences.InstanceScope;
+import org.eclipse.dltk.core.IModelElement;
+import org.eclipse.dltk.core.index.sql.Container;
+import org.eclipse.dltk.core.index.sql.DbFactory;
+import org.eclipse.dltk.core.index.sql.Element;
+import org.eclipse.dltk.core.index.sql.File;
+import org.eclipse.dltk.core.index.sql.IElementDao;
+import org.eclipse.dltk.core.index.sql.IElementHandler;
+import org.eclipse.dltk.core.index.sql.h2.H2Index;
+import org.eclipse.dltk.core.index.sql.h2.H2IndexPreferences;
+import org.eclipse.dltk.core.index2.search.ISearchEngine.MatchRule;
+import org.eclipse.dltk.internal.core.index.sql.h2.H2Cache;
+
+/**
+ * Tests searching element declarations in the H2 index before and after the
+ * container is loaded into {@link H2Cache}.
+ */
+public class H2CacheTests extends TestCase {
+
+	/** Not a registered nature: the cache must not depend on natures */
+	private static final String NATURE_ID = "org.eclipse.dltk.core.index.sql.h2.tests.nature";
+	private static final String CONTAINER_PATH = "/H2CacheTests";
+
+	private static final long LOAD_TIMEOUT = 30000;
+
+	private DbFactory dbFactory;
+	private int containerId;
+	private int fileId;
+
+	protected void setUp() throws Exception {
+		dbFactory = DbFactory.getInstance();
+		assertNotNull(dbFactory);
+		SqlTestUtils.removeContainer(dbFactory, CONTAINER_PATH);
+
+		Connection connection = dbFactory.createConnection();
+		try {
+			Container container = dbFactory.getContainerDao().insert(
+					connection, CONTAINER_PATH);
+			containerId = container.getId();
+		} finally {
+			connection.close();
+		}
+		fileId = insertFile("file.txt", new String[] { "alpha", "alphaBeta",
+				"gamma" });
+	}
+
+	protected void tearDown() throws Exception {
+		SqlTestUtils.removeContainer(dbFactory, CONTAINER_PATH);
+	}
+
+	private int insertFile(String path, String[] names) throws SQLException {
+		IElementDao elementDao = dbFactory.getElementDao();
+		Connection connection = dbFactory.createConnection();
+		try {
+			connection.setAutoCommit(false);
+			File file = dbFactory.getFileDao().insert(connection, path, 0,
+					containerId);
+			for (int i = 0; i < names.length; ++i) {
+				elementDao.insert(connection, IModelElement.METHOD, 0,
+						i * 10, names[i].length(), i * 10, names[i].length(),
+						names[i], null, null, null, file.getId(), NATURE_ID,
+						false);
+			}
+			elementDao.commitInsertions(connection);
+			connection.commit();
+			return file.getId();
+		} finally {
+			connection.close();
+		}
+	}
+
+	private List<Element> search(String pattern, MatchRule matchRule)
+			throws SQLException {
+		final List<Element> elements = new ArrayList<Element>();
+		Connection connection = dbFactory.createConnection();
+		try {
+			dbFactory.getElementDao().search(connection, pattern, matchRule,
+					IModelElement.METHOD, 0, 0, null, null, null,
+					new int[] { containerId }, NATURE_ID, 0, false,
+					new IElementHandler() {
+						public void handle(Element element) {
+							elements.add(element);
+						}
+					}, null);
+		} finally {
+			connection.close();
+		}
+		return elements;
+	}
+
+	private List<String> searchOrdered(String pattern, MatchRule matchRule,
+			int limit, final int cancelAfter) throws SQLException {
+		final List<String> names = new ArrayList<String>();
+		final IProgressMonitor monitor = new NullProgressMonitor();
+		Connection connection = dbFactory.createConnection();
+		try {
+			dbFactory.getElementDao().search(connection, pattern, matchRule,
+					IModelElement.METHOD, 0, 0, null, null, null,
+					new int[] { containerId }, NATURE_ID, limit, false, true,
+					new IElementHandler() {
+						public void handle(Element element) {
+							names.add(element.getName());
+							if (names.size() == cancelAfter) {
+								monitor.setCanceled(true);
+							}
+						}
+					}, monitor);
+		} finally {
+			connection.close();
+		}
+		return names;
+	}
+
+	private Set<String> searchNames(String pattern, MatchRule matchRule)
+			throws SQLException {
+		Set<String> names = new HashSet<String>();
+		for (Element element : search(pattern, matchRule)) {
+			names.add(element.getName());
+		}
+		return names;
+	}
+
+	private static Set<String> names(String... names) {
+		return new HashSet<String>(Arrays.asList(names));
+	}
+
+	/**
+	 * Waits until the container is loaded into the cache. Checking whether
+	 * the container is loaded moves it to the head of the loading queue.
+	 */
+	private void waitUntilLoaded() throws InterruptedException {
+		long start = System.currentTimeMillis();
+		while (!H2Cache.isLoaded(null, new int[] { containerId })) {
+			if (System.currentTimeMillis() - start > LOAD_TIMEOUT) {
+				fail("Container is not loaded into the cache");
+			}
+			Thread.sleep(50);
+		}
+	}
+
+	public void testSearchBeforeAndAfterLoading() throws Exception {
+		assertEquals(names("alpha", "alphaBeta"), searchNames("alpha",
+				MatchRule.PREFIX));
+		waitUntilLoaded();
+		assertTrue(H2Cache.isContainerLoaded(containerId));
+		assertEquals(names("alpha", "alphaBeta"), searchNames("alpha",
+				MatchRule.PREFIX));
+		assertEquals(names("gamma"), searchNames("gamma", MatchRule.EXACT));
+		assertEquals(names("alpha", "alphaBeta", "gamma"), searchNames(null,
+				null));
+	}
+
+	public void testChangesAfterLoading() throws Exception {
+		waitUntilLoaded();
+		insertFile("file2.txt", new String[] { "alphaGamma" });
+		assertEquals(names("alpha", "alphaBeta", "alphaGamma"), searchNames(
+				"alpha", MatchRule.PREFIX));
+
+		Connection connection = dbFactory.createConnection();
+		try {
+			dbFactory.getFileDao().deleteById(connection, fileId);
+		} finally {
+			connection.close();
+		}
+		assertEquals(names("alphaGamma"), searchNames("alpha",
+				MatchRule.PREFIX));
+	}
+
+	public void testOrderedSearch() throws Exception {
+		waitUntilLoaded();
+		// elements of the file changed after the sorted snapshot was built
+		// are merged with the snapshot:
+		insertFile("file2.txt", new String[] { "AlphaAlpha", "alphaC" });
+		assertEquals(Arrays.asList("alpha", "AlphaAlpha", "alphaBeta",
+				"alphaC"), searchOrdered("alpha", MatchRule.PREFIX, 0, 0));
+		assertEquals(Arrays.asList("alpha", "AlphaAlpha"), searchOrdered(
+				"alpha", MatchRule.PREFIX, 2, 0));
+		assertEquals(Arrays.asList("alpha"), searchOrdered("alpha",
+				MatchRule.PREFIX, 0, 1));
+	}
+
+	public void testStringsInterned() throws Exception {
+		insertFile("file2.txt", new String[] { new String("alpha") });
+		waitUntilLoaded();
+		List<Element> elements = search("alpha", MatchRule.EXACT);
+		assertEquals(2, elements.size());
+		assertSame(elements.get(0).getName(), elements.get(1).getName());
+	}
+
+	public void testMemoryUsage() throws Exception {
+		waitUntilLoaded();
+		long usage = H2Cache.getMemoryUsage();
+		int fileId2 = insertFile("file2.txt", new String[] { "delta",
+				"epsilon" });
+		long added = H2Cache.getMemoryUsage();
+		assertTrue(added > usage);
+
+		Connection connection = dbFactory.createConnection();
+		try {
+			dbFactory.getFileDao().deleteById(connection, fileId2);
+		} finally {
+			connection.close();
+		}
+		assertTrue(H2Cache.getMemoryUsage() < added);
+	}
+
+	public void testEviction() throws Exception {
+		waitUntilLoaded();
+		IEclipsePreferences preferences = new InstanceScope()
+				.getNode(H2Index.PLUGIN_ID);
+		preferences.putInt(H2IndexPreferences.CACHE_MEMORY_LIMIT, 1);
+		try {
+			H2Cache.load();
+			String[] names = new String[100];
+			for (int i = 0; i < names.length; ++i) {
+				names[i] = "delta" + i;
+			}
+			insertFile("file2.txt", names);
+
+			long start = System.currentTimeMillis();
+			while (H2Cache.isContainerLoaded(containerId)) {
+				if (System.currentTimeMillis() - start > LOAD_TIMEOUT) {
+					fail("Container is not evicted from the cache");
+				}
+				Thread.sleep(50);
+			}
+			// evicted elements are searched using SQL:
+			assertEquals(names("alpha", "alphaBeta"), searchNames("alpha",
+					MatchRule.PREFIX));
+			assertEquals(names.length, searchNames("delta", MatchRule.PREFIX)
+					.size());
+		} finally {
+			preferences.remove(H2IndexPreferences.CACHE_MEMORY_LIMIT);
+			H2Cache.load();
+		}
+	}
+}
@@ -0,0 +1,149 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Sage and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Sage - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.dltk.core.index.sql.h2.tests;
+
+import static org.eclipse.dltk.core.index.sql.h2.tests.SqlTestUtils.declare;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.Test;
+
+import org.eclipse.dltk.core.IModelElement;
+import org.eclipse.dltk.core.index.sql.Container;
+import org.eclipse.dltk.core.index.sql.Element;
+import org.eclipse.dltk.core.index.sql.File;
+import org.eclipse.dltk.core.index.sql.IElementHandler;
+import org.eclipse.dltk.core.index2.IIndexingRequestor;
+import org.eclipse.dltk.core.index2.RecordingIndexingRequestor;
+import org.eclipse.dltk.core.index2.search.ISearchEngine.MatchRule;
+import org.eclipse.dltk.core.metrics.Counter;
+import org.eclipse.dltk.core.metrics.Metrics;
+import org.eclipse.dltk.core.tests.model.ModelTestsPlugin;
+import org.eclipse.dltk.internal.core.index.sql.SqlIndexer;
+
+/**
+ * Tests writing documents with {@link SqlIndexer} in bulk mode.
+ */
+public class SqlIndexerBulkTests extends AbstractSqlIndexerTests {
+
+	private static final String PROJECT = "SqlIndexerBulk";
+	private static final String CONTAINER_PATH = "/" + PROJECT;
+
+	private static final int COMMIT_SIZE = 10;
+	private static final int FILES = 25;
+
+	private final Counter bulkCommits = Metrics.counter("sql.bulk.commits");
+
+	public SqlIndexerBulkTests(String name) {
+		super(name, PROJECT, FILES);
+	}
+
+	public static Test suite() {
+		return new Suite(SqlIndexerBulkTests.class);
+	}
+
+	private File[] selectFiles() throws SQLException {
+		Connection connection = dbFactory.createConnection();
+		try {
+			Container container = dbFactory.getContainerDao().selectByPath(
+					connection, CONTAINER_PATH);
+			if (container == null) {
+				return new File[0];
+			}
+			return dbFactory.getFileDao().selectByContainerId(connection,
+					container.getId());
+		} finally {
+			connection.close();
+		}
+	}
+
+	private List<String> selectDeclarations(String name) throws SQLException {
+		final List<String> names = new ArrayList<String>();
+		Connection connection = dbFactory.createConnection();
+		try {
+			dbFactory.getElementDao().search(connection, name,
+					MatchRule.EXACT, IModelElement.METHOD, 0, 0, null, null,
+					null, null, ModelTestsPlugin.TEST_NATURE, 0, false,
+					new IElementHandler() {
+						public void handle(Element element) {
+							names.add(element.getName());
+						}
+					}, null);
+		} finally {
+			connection.close();
+		}
+		return names;
+	}
+
+	public void testCommitThreshold() throws Exception {
+		SqlIndexer indexer = new SqlIndexer(COMMIT_SIZE, Long.MAX_VALUE);
+		long commits = bulkCommits.get();
+		indexer.beginBulkIndexing();
+		try {
+			for (int i = 0; i < FILES; ++i) {
+				indexer.indexDocument(modules[i], declare("method" + i));
+			}
+			assertEquals(FILES / COMMIT_SIZE, bulkCommits.get() - commits);
+		} finally {
+			indexer.endBulkIndexing();
+		}
+		assertEquals(FILES / COMMIT_SIZE, bulkCommits.get() - commits);
+	}
+
+	public void testContentsAfterEndBulkIndexing() throws Exception {
+		SqlIndexer indexer = new SqlIndexer(COMMIT_SIZE, Long.MAX_VALUE);
+		indexer.beginBulkIndexing();
+		try {
+			for (int i = 0; i < FILES; ++i) {
+				indexer.indexDocument(modules[i], declare("method" + i));
+			}
+		} finally {
+			indexer.endBulkIndexing();
+		}
+		assertEquals(FILES, selectFiles().length);
+		for (int i = 0; i < FILES; ++i) {
+			List<String> names = selectDeclarations("method" + i);
+			assertEquals(1, names.size());
+			assertEquals("method" + i, names.get(0));
+		}
+	}
+
+	public void testNoLossOnException() throws Exception {
+		final int failing = COMMIT_SIZE + COMMIT_SIZE / 2;
+		SqlIndexer indexer = new SqlIndexer(COMMIT_SIZE, Long.MAX_VALUE);
+		indexer.beginBulkIndexing();
+		try {
+			for (int i = 0; i < FILES; ++i) {
+				if (i == failing) {
+					indexer.indexDocument(modules[i],
+							new RecordingIndexingRequestor() {
+								public void replay(IIndexingRequestor requestor) {
+									throw new IllegalStateException();
+								}
+							});
+				} else {
+					indexer.indexDocument(modules[i], declare("method" + i));
+				}
+			}
+		} finally {
+			indexer.endBulkIndexing();
+		}
+		for (int i = 0; i < FILES; ++i) {
+			if (i != failing) {
+				assertEquals("method" + i, 1, selectDeclarations("method" + i)
+						.size());
+			}
+		}
+	}
+}
@@ -0,0 +1,52 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Sage and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Sage - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.dltk.core.index.sql.h2.tests;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import org.eclipse.dltk.core.IModelElement;
+import org.eclipse.dltk.core.index.sql.DbFactory;
+import org.eclipse.dltk.core.index2.RecordingIndexingRequestor;
+import org.eclipse.dltk.core.index2.IIndexingRequestor.DeclarationInfo;
+
+/**
+ * Helpers shared by the tests of the H2 index.
+ */
+public class SqlTestUtils {
+
+	private SqlTestUtils() {
+	}
+
+	/**
+	 * Removes the container with all its files from the index
+	 */
+	public static void removeContainer(DbFactory dbFactory,
+			String containerPath) throws SQLException {
+		Connection connection = dbFactory.createConnection();
+		try {
+			dbFactory.getContainerDao().deleteByPath(connection,
+					containerPath);
+		} finally {
+			connection.close();
+		}
+	}
+
+	/**
+	 * Returns the requestor declaring the method with the given name
+	 */
+	public static RecordingIndexingRequestor declare(String name) {
+		RecordingIndexingRequestor requestor = new RecordingIndexingRequestor();
+		requestor.addDeclaration(new DeclarationInfo(IModelElement.METHOD, 0,
+				0, name.length(), 0, name.length(), name, null, null, null));
+		return requestor;
+	}
+}
@@ -0,0 +1,76 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Sage and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Sage - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.dltk.core.index.sql.h2.tests;
+
+import org.eclipse.dltk.core.IModelElement;
+import org.eclipse.dltk.core.ISourceModule;
+import org.eclipse.dltk.core.index2.IElementResolver;
+import org.eclipse.dltk.core.index2.IIndexerParticipant;
+import org.eclipse.dltk.core.index2.IIndexingParser;
+import org.eclipse.dltk.core.index2.IIndexingParserExtension;
+import org.eclipse.dltk.core.index2.IIndexingRequestor;
+import org.eclipse.dltk.core.index2.IIndexingRequestor.DeclarationInfo;
+
+/**
+ * Indexing participant of the test nature for the SQL indexer. Its parser
+ * declares a method named after each source module, and does nothing unless
+ * enabled by the tests.
+ */
+public class TestIndexerParticipant implements IIndexerParticipant {
+
+	static volatile boolean enabled;
+
+	/** Name of the source module the parser fails on */
+	static volatile String failOn;
+
+	/** Name of the source module the parser interrupts {@link #thread} on */
+	static volatile String interruptOn;
+	static volatile Thread thread;
+
+	static void reset() {
+		enabled = false;
+		failOn = null;
+		interruptOn = null;
+		thread = null;
+	}
+
+	public IIndexingParser getIndexingParser() {
+		return new Parser();
+	}
+
+	public IElementResolver getElementResolver() {
+		return null;
+	}
+
+	private static class Parser implements IIndexingParserExtension {
+
+		public boolean isThreadSafe() {
+			return true;
+		}
+
+		public void parseSourceModule(ISourceModule module,
+				IIndexingRequestor requestor) {
+			if (!enabled) {
+				return;
+			}
+			String name = module.getElementName();
+			if (name.equals(failOn)) {
+				throw new IllegalStateException(name);
+			}
+			if (name.equals(interruptOn)) {
+				thread.interrupt();
+			}
+			requestor.addDeclaration(new DeclarationInfo(IModelElement.METHOD,
+					0, 0, name.length(), 0, name.length(), name, null, null,
+					null));
+		}
+	}
+}
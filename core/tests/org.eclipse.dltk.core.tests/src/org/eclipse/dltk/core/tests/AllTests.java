@@ -12,19 +12,31 @@ package org.eclipse.dltk.core.tests;
 import junit.framework.Test;
 import junit.framework.TestSuite;
 
+import org.eclipse.dltk.core.tests.builder.StandardScriptBuilderTests;
 import org.eclipse.dltk.core.tests.buildpath.BuildpathTests;
+import org.eclipse.dltk.core.tests.cache.MetadataContentCacheTests;
+import org.eclipse.dltk.core.tests.cache.MetadataIndexJournalTests;
+import org.eclipse.dltk.core.tests.cache.SourceModuleInfoCacheTests;
 import org.eclipse.dltk.core.tests.compiler.CompilerCharOperationTests;
 import org.eclipse.dltk.core.tests.compiler.CompilerUtilTests;
 import org.eclipse.dltk.core.tests.ddp.CoreDDPTests;
+import org.eclipse.dltk.core.tests.index.DiskIndexTests;
+import org.eclipse.dltk.core.tests.index.IndexBundlesTests;
+import org.eclipse.dltk.core.tests.index.IndexSegmentTests;
+import org.eclipse.dltk.core.tests.index.JobManagerTests;
+import org.eclipse.dltk.core.tests.index.PatternSearchJobTests;
 import org.eclipse.dltk.core.tests.launching.EnvironmentResolverTests;
 import org.eclipse.dltk.core.tests.launching.InterpreterConfigTests;
+import org.eclipse.dltk.core.tests.metrics.HistogramTests;
 import org.eclipse.dltk.core.tests.mixin.MixinIndexTests;
 import org.eclipse.dltk.core.tests.mixin.MixinModelTests;
 import org.eclipse.dltk.core.tests.model.BufferTests;
 import org.eclipse.dltk.core.tests.model.ModelMembersTests;
 import org.eclipse.dltk.core.tests.model.WorkingCopyTests;
+import org.eclipse.dltk.core.tests.parser.PersistentASTCacheTests;
 import org.eclipse.dltk.core.tests.util.CharacterStackTests;
 import org.eclipse.dltk.core.tests.utils.CharOperationTests;
+import org.eclipse.dltk.core.tests.utils.ContentDigestTests;
 import org.eclipse.dltk.core.tests.utils.InternalCoreUtilTest;
 import org.eclipse.dltk.core.tests.utils.TextUtilsTest;
 
@@ -38,7 +50,19 @@ public class AllTests {
 		suite.addTest(new TestSuite(InternalCoreUtilTest.class));
 		suite.addTest(new TestSuite(MixinIndexTests.class));
 		suite.addTest(new TestSuite(MixinModelTests.class));
+		suite.addTest(new TestSuite(DiskIndexTests.class));
+		suite.addTest(new TestSuite(IndexSegmentTests.class));
+		suite.addTest(new TestSuite(PatternSearchJobTests.class));
+		suite.addTest(new TestSuite(IndexBundlesTests.class));
+		suite.addTest(new TestSuite(JobManagerTests.class));
+		suite.addTest(new TestSuite(HistogramTests.class));
+		suite.addTest(new TestSuite(SourceModuleInfoCacheTests.class));
+		suite.addTest(new TestSuite(MetadataIndexJournalTests.class));
+		suite.addTest(new TestSuite(MetadataContentCacheTests.class));
+		suite.addTest(new TestSuite(ContentDigestTests.class));
 		suite.addTest(BuildpathTests.suite());
+		suite.addTest(StandardScriptBuilderTests.suite());
+		suite.addTest(PersistentASTCacheTests.suite());
 
 		suite.addTest(CoreDDPTests.suite());
 
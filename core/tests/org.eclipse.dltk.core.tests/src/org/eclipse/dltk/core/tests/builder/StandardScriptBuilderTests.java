@@ -0,0 +1,281 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Sage and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Sage - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.dltk.core.tests.builder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.Test;
+
+import org.eclipse.core.resources.IMarker;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.dltk.compiler.problem.DefaultProblem;
+import org.eclipse.dltk.compiler.problem.ProblemSeverities;
+import org.eclipse.dltk.core.DLTKCore;
+import org.eclipse.dltk.core.IScriptProject;
+import org.eclipse.dltk.core.ISourceModule;
+import org.eclipse.dltk.core.builder.IBuildContext;
+import org.eclipse.dltk.core.builder.IBuildParticipant;
+import org.eclipse.dltk.core.builder.IBuildParticipantExtension4;
+import org.eclipse.dltk.core.builder.IBuildParticipantFactory;
+import org.eclipse.dltk.core.builder.IScriptBuilder;
+import org.eclipse.dltk.core.builder.ParserBuildParticipantFactory;
+import org.eclipse.dltk.core.tests.model.ModelTestsPlugin;
+import org.eclipse.dltk.core.tests.model.ModifyingResourceTests;
+import org.eclipse.dltk.core.tests.model.TestSourceParser;
+import org.eclipse.dltk.internal.core.ModelManager;
+import org.eclipse.dltk.internal.core.builder.StandardScriptBuilder;
+
+/**
+ * Tests building source modules by {@link StandardScriptBuilder}
+ * sequentially and concurrently (see {@link DLTKCore#BUILDER_PARALLELISM}).
+ * The participants are contributed by this plugin for the test nature, but
+ * are created only when enabled by these tests.
+ */
+public class StandardScriptBuilderTests extends ModifyingResourceTests {
+
+	private static final String PROJECT = "StandardScriptBuilder";
+	private static final String[] TEST_NATURES = new String[] { ModelTestsPlugin.TEST_NATURE };
+
+	private static final int FILES = 20;
+	private static final int PARALLELISM = 4;
+
+	private static volatile boolean enabled = false;
+	private static volatile Thread builderThread;
+	private static volatile String failOn;
+	private static volatile boolean failOnWorkerOnly;
+
+	/** Modules in the order they are passed to the sequential participant */
+	private static final List<String> sequential = Collections
+			.synchronizedList(new ArrayList<String>());
+	/** Threads calling the thread safe participant, by module */
+	private static final Map<String, String> threads = Collections
+			.synchronizedMap(new HashMap<String, String>());
+	/** Failures detected by the participants */
+	private static final List<String> errors = Collections
+			.synchronizedList(new ArrayList<String>());
+
+	private Hashtable oldOptions;
+	private IScriptProject project;
+	private List<ISourceModule> modules;
+
+	public StandardScriptBuilderTests(String name) {
+		super(ModelTestsPlugin.PLUGIN_NAME, name);
+	}
+
+	public static Test suite() {
+		return new Suite(StandardScriptBuilderTests.class);
+	}
+
+	public void setUpSuite() throws Exception {
+		super.setUpSuite();
+		createScriptProject(PROJECT, TEST_NATURES, new String[] { "src" });
+		for (int i = 0; i < FILES; ++i) {
+			createFile(getPath(i), "module" + i);
+		}
+		waitUntilIndexesReady();
+	}
+
+	public void tearDownSuite() throws Exception {
+		deleteProject(PROJECT);
+		super.tearDownSuite();
+	}
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		oldOptions = DLTKCore.getOptions();
+		project = getScriptProject(PROJECT);
+		modules = new ArrayList<ISourceModule>();
+		for (int i = 0; i < FILES; ++i) {
+			modules.add(getSourceModule(getPath(i)));
+		}
+		sequential.clear();
+		threads.clear();
+		errors.clear();
+		failOn = null;
+		failOnWorkerOnly = false;
+		TestSourceParser.sharedBetweenThreads = false;
+		// parse again instead of using the AST from cache
+		ModelManager.getModelManager().getSourceModuleInfoCache().clear();
+		enabled = true;
+	}
+
+	protected void tearDown() throws Exception {
+		enabled = false;
+		builderThread = null;
+		DLTKCore.setOptions(oldOptions);
+		super.tearDown();
+	}
+
+	private static String getPath(int fileNumber) {
+		return "/" + PROJECT + "/src/file" + fileNumber + ".txt";
+	}
+
+	@SuppressWarnings("unchecked")
+	private static void setParallelism(int parallelism) {
+		Hashtable options = DLTKCore.getOptions();
+		options.put(DLTKCore.BUILDER_PARALLELISM, String.valueOf(parallelism));
+		DLTKCore.setOptions(options);
+	}
+
+	private void build(int parallelism) {
+		setParallelism(parallelism);
+		builderThread = Thread.currentThread();
+		final StandardScriptBuilder builder = new StandardScriptBuilder();
+		builder.initialize(project);
+		builder.buildModelElements(project, modules, new NullProgressMonitor(),
+				IScriptBuilder.FULL_BUILD);
+		builder.endBuild(project, new NullProgressMonitor());
+	}
+
+	private List<String> getModuleNames() {
+		final List<String> names = new ArrayList<String>();
+		for (Iterator<ISourceModule> i = modules.iterator(); i.hasNext();) {
+			names.add(i.next().getElementName());
+		}
+		return names;
+	}
+
+	public void testSequential() throws Exception {
+		build(1);
+		assertEquals(Collections.EMPTY_LIST, errors);
+		assertEquals(getModuleNames(), sequential);
+		assertEquals(FILES, threads.size());
+		for (Iterator<String> i = threads.values().iterator(); i.hasNext();) {
+			assertEquals(Thread.currentThread().getName(), i.next());
+		}
+	}
+
+	public void testParallel() throws Exception {
+		build(PARALLELISM);
+		assertEquals(Collections.EMPTY_LIST, errors);
+		assertEquals(getModuleNames(), sequential);
+		assertEquals(FILES, threads.size());
+		for (Iterator<String> i = threads.values().iterator(); i.hasNext();) {
+			assertTrue(i.next().startsWith("DLTK Build Worker"));
+		}
+		assertFalse(TestSourceParser.sharedBetweenThreads);
+	}
+
+	public void testParallelFailure() throws Exception {
+		failOn = "file3.txt";
+		try {
+			build(PARALLELISM);
+			fail("IllegalStateException expected");
+		} catch (IllegalStateException e) {
+			// the module is built again by the builder thread, which fails
+			// the same way as the sequential build
+			assertEquals(failOn, e.getMessage());
+		}
+		assertEquals(Collections.EMPTY_LIST, errors);
+		assertEquals(getModuleNames().subList(0, 3), sequential);
+	}
+
+	public void testParallelWorkerFailure() throws Exception {
+		failOn = "file3.txt";
+		failOnWorkerOnly = true;
+		build(PARALLELISM);
+		assertEquals(Collections.EMPTY_LIST, errors);
+		assertEquals(getModuleNames(), sequential);
+		assertEquals(Thread.currentThread().getName(), threads.get(failOn));
+	}
+
+	public void testMarkers() throws Exception {
+		build(PARALLELISM);
+		assertMarkers();
+		// markers of the previous build are replaced
+		build(PARALLELISM);
+		assertMarkers();
+	}
+
+	private void assertMarkers() throws CoreException {
+		for (Iterator<ISourceModule> i = modules.iterator(); i.hasNext();) {
+			final IResource resource = i.next().getResource();
+			final IMarker[] markers = resource.findMarkers(
+					DefaultProblem.MARKER_TYPE_PROBLEM, true,
+					IResource.DEPTH_ZERO);
+			assertEquals(resource.getName(), 1, markers.length);
+			assertEquals(resource.getName(), markers[0].getAttribute(
+					IMarker.MESSAGE, null));
+			assertEquals(IMarker.SEVERITY_ERROR, markers[0].getAttribute(
+					IMarker.SEVERITY, -1));
+		}
+	}
+
+	private static void checkAST(IBuildContext context) {
+		if (context.get(IBuildContext.ATTR_MODULE_DECLARATION) == null) {
+			errors.add("No AST for "
+					+ context.getSourceModule().getElementName());
+		}
+	}
+
+	public static class Parser extends ParserBuildParticipantFactory {
+		public IBuildParticipant createBuildParticipant(IScriptProject project)
+				throws CoreException {
+			return enabled ? super.createBuildParticipant(project) : null;
+		}
+	}
+
+	public static class ThreadSafe implements IBuildParticipantFactory {
+		public IBuildParticipant createBuildParticipant(
+				IScriptProject project) {
+			return enabled ? new ThreadSafeParticipant() : null;
+		}
+	}
+
+	public static class Sequential implements IBuildParticipantFactory {
+		public IBuildParticipant createBuildParticipant(
+				IScriptProject project) {
+			return enabled ? new SequentialParticipant() : null;
+		}
+	}
+
+	private static class ThreadSafeParticipant implements
+			IBuildParticipantExtension4 {
+
+		public boolean isThreadSafe() {
+			return true;
+		}
+
+		public void build(IBuildContext context) {
+			final String name = context.getSourceModule().getElementName();
+			checkAST(context);
+			threads.put(name, Thread.currentThread().getName());
+			final boolean worker = Thread.currentThread() != builderThread;
+			if (name.equals(failOn) && (worker || !failOnWorkerOnly)) {
+				throw new IllegalStateException(name);
+			}
+		}
+	}
+
+	private static class SequentialParticipant implements IBuildParticipant {
+
+		public void build(IBuildContext context) {
+			final String name = context.getSourceModule().getElementName();
+			checkAST(context);
+			if (Thread.currentThread() != builderThread) {
+				errors.add(name + " built by "
+						+ Thread.currentThread().getName());
+			}
+			sequential.add(name);
+			context.getProblemReporter().reportProblem(
+					new DefaultProblem(name, 0, null, ProblemSeverities.Error,
+							0, 1, 0));
+		}
+	}
+}
@@ -0,0 +1,215 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Sage and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Sage - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.dltk.core.tests.cache;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.runtime.Path;
+import org.eclipse.dltk.core.caching.MetadataContentCache;
+import org.eclipse.dltk.core.environment.EnvironmentManager;
+import org.eclipse.dltk.core.environment.IFileHandle;
+import org.eclipse.dltk.core.environment.IFileStoreProvider;
+
+/**
+ * Tests validation of the entries of {@link MetadataContentCache} against the
+ * timestamps of the files of their folders.
+ */
+public class MetadataContentCacheTests extends TestCase {
+
+	private static final long TIMEOUT = 10000;
+
+	private File location;
+	private File folder;
+	private MetadataContentCache cache;
+
+	protected void setUp() throws Exception {
+		location = File.createTempFile("metadata", ".cache");
+		location.delete();
+		location.mkdirs();
+		folder = new File(location.getParentFile(), location.getName()
+				+ ".files");
+		folder.mkdirs();
+		cache = new MetadataContentCache(new Path(location.getPath()));
+	}
+
+	protected void tearDown() throws Exception {
+		delete(location);
+		delete(folder);
+	}
+
+	private static void delete(File file) {
+		final File[] children = file.listFiles();
+		if (children != null) {
+			for (int i = 0; i < children.length; ++i) {
+				delete(children[i]);
+			}
+		}
+		file.delete();
+	}
+
+	private IFileHandle createFile(File parent, String name)
+			throws IOException {
+		parent.mkdirs();
+		final File file = new File(parent, name);
+		final FileOutputStream out = new FileOutputStream(file);
+		try {
+			out.write(name.getBytes());
+		} finally {
+			out.close();
+		}
+		return getHandle(file);
+	}
+
+	private static IFileHandle getHandle(File file) {
+		return EnvironmentManager.getLocalEnvironment().getFile(
+				new Path(file.getPath()));
+	}
+
+	private static void touch(IFileHandle handle) {
+		final File file = new File(handle.getPath().toOSString());
+		assertTrue(file.setLastModified(file.lastModified() + 10000));
+	}
+
+	public void testModificationDetectedAfterRefresh() throws Exception {
+		final IFileHandle handle = createFile(folder, "file.txt");
+		assertTrue(cache.setCacheEntryAttribute(handle, "attr", "value"));
+		touch(handle);
+		// validated against the timestamps fetched before the modification
+		assertEquals("value", cache.getCacheEntryAttributeString(handle,
+				"attr"));
+		cache.updateFolderTimestamps(handle.getParent());
+		assertNull(cache.getCacheEntryAttributeString(handle, "attr"));
+	}
+
+	public void testFileCreatedAfterFolderTimestamps() throws Exception {
+		final IFileHandle first = createFile(folder, "first.txt");
+		assertTrue(cache.setCacheEntryAttribute(first, "attr", "first"));
+		final IFileHandle second = createFile(folder, "second.txt");
+		assertTrue(cache.setCacheEntryAttribute(second, "attr", "second"));
+		assertEquals("first", cache.getCacheEntryAttributeString(first,
+				"attr"));
+		assertEquals("second", cache.getCacheEntryAttributeString(second,
+				"attr"));
+		// not in the fetched timestamps, so checked by itself once
+		touch(second);
+		assertEquals("second", cache.getCacheEntryAttributeString(second,
+				"attr"));
+		cache.updateFolderTimestamps(second.getParent());
+		assertNull(cache.getCacheEntryAttributeString(second, "attr"));
+		assertEquals("first", cache.getCacheEntryAttributeString(first,
+				"attr"));
+	}
+
+	public void testRefreshEmptyFolder() throws Exception {
+		final File empty = new File(folder, "empty");
+		assertTrue(empty.mkdirs());
+		cache.updateFolderTimestamps(getHandle(empty));
+		final IFileHandle handle = createFile(empty, "file.txt");
+		assertTrue(cache.setCacheEntryAttribute(handle, "attr", "value"));
+		assertEquals("value", cache.getCacheEntryAttributeString(handle,
+				"attr"));
+	}
+
+	public void testFolderTimestampsFetchedWithoutLock() throws Exception {
+		final IFileHandle other = createFile(new File(folder, "other"),
+				"file.txt");
+		final CountDownLatch fetching = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final IFileHandle blocked = blockingParent(createFile(new File(
+				folder, "blocked"), "file.txt"), fetching, release);
+		final Throwable[] failure = new Throwable[1];
+		final Thread thread = new Thread() {
+			public void run() {
+				try {
+					assertTrue(cache.setCacheEntryAttribute(blocked, "attr",
+							"blocked"));
+				} catch (Throwable e) {
+					failure[0] = e;
+				}
+			}
+		};
+		thread.start();
+		try {
+			assertTrue(fetching.await(TIMEOUT, TimeUnit.MILLISECONDS));
+			// not blocked by the thread fetching the timestamps
+			assertTrue(cache.setCacheEntryAttribute(other, "attr", "other"));
+			assertEquals("other", cache.getCacheEntryAttributeString(other,
+					"attr"));
+		} finally {
+			release.countDown();
+			thread.join(TIMEOUT);
+		}
+		assertFalse(thread.isAlive());
+		if (failure[0] != null) {
+			throw new Exception(failure[0]);
+		}
+		assertEquals("blocked", cache.getCacheEntryAttributeString(blocked,
+				"attr"));
+	}
+
+	/**
+	 * Returns the handle, which parent blocks when the timestamps of its
+	 * files are fetched until released
+	 */
+	private static IFileHandle blockingParent(final IFileHandle handle,
+			final CountDownLatch fetching, final CountDownLatch release) {
+		final IFileHandle parent = delegate(handle.getParent(),
+				new InvocationHandler() {
+					public Object invoke(Object proxy, Method method,
+							Object[] args) throws Throwable {
+						if ("getFileStore".equals(method.getName())) {
+							fetching.countDown();
+							release.await(TIMEOUT, TimeUnit.MILLISECONDS);
+						}
+						return null;
+					}
+				});
+		return delegate(handle, new InvocationHandler() {
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				return "getParent".equals(method.getName()) ? parent : null;
+			}
+		});
+	}
+
+	/**
+	 * Returns the proxy of the handle, calling the given interceptor before
+	 * the handle and returning its result if it's not <code>null</code>
+	 */
+	private static IFileHandle delegate(final IFileHandle handle,
+			final InvocationHandler interceptor) {
+		return (IFileHandle) Proxy.newProxyInstance(IFileHandle.class
+				.getClassLoader(), new Class<?>[] { IFileHandle.class,
+				IFileStoreProvider.class }, new InvocationHandler() {
+			public Object invoke(Object proxy, Method method, Object[] args)
+					throws Throwable {
+				final Object result = interceptor.invoke(proxy, method, args);
+				if (result != null) {
+					return result;
+				}
+				try {
+					return method.invoke(handle, args);
+				} catch (InvocationTargetException e) {
+					throw e.getCause();
+				}
+			}
+		});
+	}
+}
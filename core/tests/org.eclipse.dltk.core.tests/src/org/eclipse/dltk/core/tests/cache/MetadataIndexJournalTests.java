@@ -0,0 +1,283 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Sage and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Sage - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.dltk.core.tests.cache;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.runtime.Path;
+import org.eclipse.dltk.core.caching.MetadataContentCache;
+import org.eclipse.dltk.core.environment.EnvironmentManager;
+import org.eclipse.dltk.core.environment.IFileHandle;
+
+/**
+ * Tests the binary journals keeping the index of
+ * {@link MetadataContentCache}: their format, recovery of the partially
+ * written records, compaction and migration of the XMI index written by the
+ * previous versions.
+ */
+public class MetadataIndexJournalTests extends TestCase {
+
+	private static final String SIGNATURE = "DLTK METADATA INDEX 1";
+
+	private static final byte ENTRY = 1;
+	private static final byte ATTRIBUTE = 3;
+	private static final byte LAST_INDEX = 5;
+
+	private File location;
+	private File file;
+	private IFileHandle handle;
+
+	protected void setUp() throws Exception {
+		location = File.createTempFile("metadata", ".cache");
+		location.delete();
+		location.mkdirs();
+		final File folder = new File(location.getParentFile(), location
+				.getName()
+				+ ".files");
+		folder.mkdirs();
+		file = new File(folder, "file.txt");
+		write(file, "content");
+		handle = EnvironmentManager.getLocalEnvironment().getFile(
+				new Path(file.getPath()));
+	}
+
+	protected void tearDown() throws Exception {
+		delete(location);
+		delete(file.getParentFile());
+	}
+
+	private static void delete(File file) {
+		final File[] children = file.listFiles();
+		if (children != null) {
+			for (int i = 0; i < children.length; ++i) {
+				delete(children[i]);
+			}
+		}
+		file.delete();
+	}
+
+	private static void write(File file, String content) throws IOException {
+		final Writer writer = new OutputStreamWriter(new FileOutputStream(
+				file), "UTF-8");
+		try {
+			writer.write(content);
+		} finally {
+			writer.close();
+		}
+	}
+
+	private MetadataContentCache createCache() {
+		return new MetadataContentCache(new Path(location.getPath()));
+	}
+
+	private File getJournal(String environmentId) {
+		final CRC32 checksum = new CRC32();
+		checksum.update(environmentId.getBytes());
+		return new File(new File(location, Long.toString(checksum
+				.getValue())), "index.journal");
+	}
+
+	private static byte[] read(File file) throws IOException {
+		final DataInputStream in = new DataInputStream(new FileInputStream(
+				file));
+		try {
+			final byte[] data = new byte[(int) file.length()];
+			in.readFully(data);
+			return data;
+		} finally {
+			in.close();
+		}
+	}
+
+	private static void append(File file, byte[] data) throws IOException {
+		final FileOutputStream out = new FileOutputStream(file, true);
+		try {
+			out.write(data);
+		} finally {
+			out.close();
+		}
+	}
+
+	public void testFormat() throws Exception {
+		final MetadataContentCache cache = createCache();
+		assertTrue(cache.setCacheEntryAttribute(handle, "attr1", "value1"));
+		assertTrue(cache.setCacheEntryAttribute(handle, "attr2", "value2"));
+		cache.save(false);
+
+		final String path = handle.getPath().toPortableString();
+		final List<Byte> records = new ArrayList<Byte>();
+		final List<String> locations = new ArrayList<String>();
+		final DataInputStream in = new DataInputStream(new FileInputStream(
+				getJournal(handle.getEnvironmentId())));
+		try {
+			assertEquals(SIGNATURE, in.readUTF());
+			assertEquals(handle.getEnvironmentId(), in.readUTF());
+			for (;;) {
+				final byte op;
+				try {
+					op = in.readByte();
+				} catch (EOFException e) {
+					break;
+				}
+				records.add(new Byte(op));
+				if (op == ENTRY) {
+					assertEquals(path, in.readUTF());
+					assertEquals(file.lastModified() / 1000,
+							in.readLong() / 1000);
+				} else if (op == ATTRIBUTE) {
+					assertEquals(path, in.readUTF());
+					assertEquals("attr" + (locations.size() + 1), in
+							.readUTF());
+					locations.add(in.readUTF());
+				} else if (op == LAST_INDEX) {
+					assertTrue(in.readLong() > 0);
+				} else {
+					fail("Unexpected record " + op);
+				}
+			}
+		} finally {
+			in.close();
+		}
+		// the snapshot written by the first save, then the appended changes
+		assertEquals(Arrays.asList(new Byte[] { new Byte(LAST_INDEX),
+				new Byte(ENTRY), new Byte(ATTRIBUTE), new Byte(LAST_INDEX),
+				new Byte(ATTRIBUTE) }), records);
+		assertEquals(2, locations.size());
+		assertFalse(locations.get(0).equals(locations.get(1)));
+		for (int i = 0; i < locations.size(); ++i) {
+			assertTrue(new File(location, locations.get(i)).isFile());
+		}
+
+		final MetadataContentCache reopened = createCache();
+		assertEquals("value1", reopened.getCacheEntryAttributeString(handle,
+				"attr1"));
+		assertEquals("value2", reopened.getCacheEntryAttributeString(handle,
+				"attr2"));
+	}
+
+	public void testTruncatedTail() throws Exception {
+		final MetadataContentCache cache = createCache();
+		assertTrue(cache.setCacheEntryAttribute(handle, "attr1", "value1"));
+		cache.save(false);
+		final File journal = getJournal(handle.getEnvironmentId());
+		final byte[] saved = read(journal);
+		// the entry record interrupted in the middle of the path
+		append(journal, new byte[] { ENTRY, 0, 10, '/', 'p' });
+
+		final MetadataContentCache reopened = createCache();
+		assertEquals("value1", reopened.getCacheEntryAttributeString(handle,
+				"attr1"));
+		assertTrue(Arrays.equals(saved, read(journal)));
+
+		// records appended after the truncation are read
+		assertTrue(reopened.setCacheEntryAttribute(handle, "attr2", "value2"));
+		reopened.removeCacheEntryAttributes(handle, "attr1");
+		reopened.save(false);
+		assertTrue(journal.length() > saved.length);
+		final MetadataContentCache third = createCache();
+		assertNull(third.getCacheEntryAttributeString(handle, "attr1"));
+		assertEquals("value2", third.getCacheEntryAttributeString(handle,
+				"attr2"));
+	}
+
+	public void testUnknownFormat() throws Exception {
+		final File journal = getJournal(handle.getEnvironmentId());
+		journal.getParentFile().mkdirs();
+		write(journal, "garbage");
+		final MetadataContentCache cache = createCache();
+		assertNull(cache.getCacheEntryAttributeString(handle, "attr1"));
+		assertTrue(cache.setCacheEntryAttribute(handle, "attr1", "value1"));
+		cache.save(false);
+		assertEquals("value1", createCache().getCacheEntryAttributeString(
+				handle, "attr1"));
+	}
+
+	public void testCompaction() throws Exception {
+		final MetadataContentCache cache = createCache();
+		assertTrue(cache.setCacheEntryAttribute(handle, "attr", "initial"));
+		cache.save(false);
+		final File journal = getJournal(handle.getEnvironmentId());
+		final byte[] saved = read(journal);
+		// the snapshot can't be written, so the journal is not replaced
+		final File temp = new File(journal.getPath() + ".tmp");
+		assertTrue(temp.mkdir());
+		final File blocker = new File(temp, "blocker");
+		write(blocker, "");
+		for (int i = 0; i < 1500; ++i) {
+			assertTrue(cache.setCacheEntryAttribute(handle, "attr", "value"
+					+ i));
+			cache.removeCacheEntryAttributes(handle, "attr");
+		}
+		assertTrue(cache.setCacheEntryAttribute(handle, "attr", "last"));
+		cache.save(false);
+		assertTrue(Arrays.equals(saved, read(journal)));
+		assertFalse(new File(journal.getPath() + ".old").exists());
+
+		// retried when saved next time
+		assertTrue(blocker.delete());
+		assertTrue(temp.delete());
+		cache.save(false);
+		assertFalse(temp.exists());
+		assertFalse(new File(journal.getPath() + ".old").exists());
+		assertTrue(journal.length() < 1024);
+		assertEquals("last", createCache().getCacheEntryAttributeString(
+				handle, "attr"));
+	}
+
+	public void testMigration() throws Exception {
+		final String environmentId = handle.getEnvironmentId();
+		final String path = handle.getPath().toPortableString();
+		write(new File(location, "migrated.idx"), "value1");
+		write(new File(location, "index"), "<?xml version=\"1.0\" "
+				+ "encoding=\"UTF-8\"?>\n"
+				+ "<xmi:XMI xmi:version=\"2.0\" "
+				+ "xmlns:xmi=\"http://www.omg.org/XMI\" "
+				+ "xmlns:cache=\"http://eclipse.org/dltk/cache_model\">\n"
+				+ "  <cache:CacheIndex lastIndex=\"5\" environment=\""
+				+ environmentId + "\">\n" + "    <entries path=\"" + path
+				+ "\" timestamp=\"" + file.lastModified() + "\">\n"
+				+ "      <attributes name=\"attr1\" "
+				+ "location=\"migrated.idx\"/>\n" + "    </entries>\n"
+				+ "  </cache:CacheIndex>\n"
+				+ "  <cache:CacheIndex lastIndex=\"1\" "
+				+ "environment=\"other\"/>\n" + "</xmi:XMI>\n");
+
+		final MetadataContentCache cache = createCache();
+		assertEquals("value1", cache.getCacheEntryAttributeString(handle,
+				"attr1"));
+		assertFalse(new File(location, "index").exists());
+		assertTrue(getJournal(environmentId).isFile());
+		assertTrue(getJournal("other").isFile());
+
+		final MetadataContentCache reopened = createCache();
+		assertEquals("value1", reopened.getCacheEntryAttributeString(handle,
+				"attr1"));
+		// attributes are added to the migrated entry
+		assertTrue(reopened.setCacheEntryAttribute(handle, "attr2", "value2"));
+		assertEquals("value1", reopened.getCacheEntryAttributeString(handle,
+				"attr1"));
+		assertEquals("value2", reopened.getCacheEntryAttributeString(handle,
+				"attr2"));
+	}
+}
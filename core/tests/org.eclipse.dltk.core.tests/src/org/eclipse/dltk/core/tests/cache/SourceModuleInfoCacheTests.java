@@ -0,0 +1,256 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Sage and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Sage - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.dltk.core.tests.cache;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Hashtable;
+
+import junit.framework.TestCase;
+
+import org.eclipse.dltk.ast.ASTNode;
+import org.eclipse.dltk.ast.ASTVisitor;
+import org.eclipse.dltk.core.DLTKCore;
+import org.eclipse.dltk.core.ISourceModule;
+import org.eclipse.dltk.core.ISourceModuleInfoCache.ISourceModuleInfo;
+import org.eclipse.dltk.core.metrics.Metrics;
+import org.eclipse.dltk.internal.core.SourceModuleInfoCache;
+
+/**
+ * Tests the weight budget and the admission of modules by
+ * {@link SourceModuleInfoCache}. The budget is 1 megabyte and each cached AST
+ * has 1000 nodes (about 64 kilobytes), so 16 modules fit.
+ */
+public class SourceModuleInfoCacheTests extends TestCase {
+
+	private static final String AST = "ast";
+	private static final int NODES = 1000;
+
+	private Hashtable oldOptions;
+	private SourceModuleInfoCache cache;
+
+	@SuppressWarnings("unchecked")
+	protected void setUp() throws Exception {
+		oldOptions = DLTKCore.getOptions();
+		Hashtable options = DLTKCore.getOptions();
+		options.put(DLTKCore.SOURCE_MODULE_CACHE_SIZE, "1");
+		DLTKCore.setOptions(options);
+		cache = new SourceModuleInfoCache();
+		// registered after the cache of the model manager, so its gauges win
+		cache.start();
+	}
+
+	protected void tearDown() throws Exception {
+		cache.stop();
+		DLTKCore.setOptions(oldOptions);
+	}
+
+	/**
+	 * AST node visiting itself the given number of times
+	 */
+	private static class TestNode extends ASTNode {
+		private final int nodes;
+
+		TestNode(int nodes) {
+			this.nodes = nodes;
+		}
+
+		public void traverse(ASTVisitor visitor) throws Exception {
+			for (int i = 0; i < nodes; ++i) {
+				visitor.visitGeneral(this);
+			}
+		}
+	}
+
+	private static ISourceModule createModule(final String name) {
+		return (ISourceModule) Proxy.newProxyInstance(ISourceModule.class
+				.getClassLoader(), new Class<?>[] { ISourceModule.class },
+				new InvocationHandler() {
+					public Object invoke(Object proxy, Method method,
+							Object[] args) {
+						final String methodName = method.getName();
+						if ("hashCode".equals(methodName)) {
+							return new Integer(name.hashCode());
+						} else if ("equals".equals(methodName)) {
+							return Boolean.valueOf(proxy == args[0]);
+						} else if ("getElementName".equals(methodName)
+								|| "toString".equals(methodName)) {
+							return name;
+						}
+						return null;
+					}
+				});
+	}
+
+	private static ISourceModule[] createModules(String prefix, int count) {
+		final ISourceModule[] modules = new ISourceModule[count];
+		for (int i = 0; i < count; ++i) {
+			modules[i] = createModule(prefix + i);
+		}
+		return modules;
+	}
+
+	/**
+	 * Requests the module the given number of times, then caches its AST
+	 */
+	private void request(ISourceModule module, int times) {
+		ISourceModuleInfo info = null;
+		for (int i = 0; i < times; ++i) {
+			info = cache.get(module);
+		}
+		if (info.get(AST) == null) {
+			info.put(AST, new TestNode(NODES));
+		}
+	}
+
+	private boolean isCached(ISourceModule module) {
+		return cache.get(module).get(AST) != null;
+	}
+
+	private static long getGauge(String name) {
+		return Metrics.collect().get("sourceModuleCache." + name).longValue();
+	}
+
+	private static long getCounter(String name) {
+		return Metrics.counter("sourceModuleCache." + name).get();
+	}
+
+	public void testWeightWithinBudget() {
+		assertEquals(1024 * 1024, getGauge("budget"));
+		final long rejections = getCounter("rejections");
+		final ISourceModule[] modules = createModules("module", 100);
+		for (int i = 0; i < modules.length; ++i) {
+			request(modules[i], 1);
+			assertTrue(getGauge("weight") <= getGauge("budget"));
+		}
+		final long size = getGauge("size");
+		assertTrue(size > 10);
+		assertTrue(size < 20);
+		assertTrue(getGauge("weight") > size * NODES * 64);
+		assertTrue(getCounter("rejections") > rejections);
+	}
+
+	public void testEvictLeastRecentlyUsed() {
+		final ISourceModule[] modules = createModules("module", 100);
+		int filled = 0;
+		final long rejections = getCounter("rejections");
+		while (getCounter("rejections") == rejections) {
+			request(modules[filled++], 1);
+		}
+		// the last module was rejected, the first one is used again
+		--filled;
+		cache.get(modules[0]);
+		final long evictions = getCounter("evictions");
+		final ISourceModule hot = createModule("hot");
+		request(hot, 3);
+		assertEquals(evictions + 1, getCounter("evictions"));
+		assertTrue(getGauge("weight") <= getGauge("budget"));
+		assertTrue(isCached(hot));
+		assertTrue(isCached(modules[0]));
+		for (int i = 2; i < filled; ++i) {
+			assertTrue(isCached(modules[i]));
+		}
+		assertFalse(isCached(modules[1]));
+	}
+
+	public void testScanResistance() {
+		final ISourceModule[] hot = createModules("hot", 8);
+		for (int i = 0; i < hot.length; ++i) {
+			request(hot[i], 5);
+		}
+		final long rejections = getCounter("rejections");
+		final ISourceModule[] scan = createModules("scan", 200);
+		for (int i = 0; i < scan.length; ++i) {
+			request(scan[i], 1);
+		}
+		assertTrue(getCounter("rejections") > rejections);
+		assertTrue(getGauge("weight") <= getGauge("budget"));
+		for (int i = 0; i < hot.length; ++i) {
+			assertTrue(isCached(hot[i]));
+		}
+		// module requested more often than the least recently used one
+		final ISourceModule frequent = createModule("frequent");
+		request(frequent, 10);
+		assertTrue(isCached(frequent));
+	}
+
+	public void testReplaceAndRemoveValue() {
+		final ISourceModule module = createModule("module");
+		request(module, 1);
+		final long weight = getGauge("weight");
+		final ISourceModuleInfo info = cache.get(module);
+		info.put(AST, new TestNode(NODES));
+		assertEquals(weight, getGauge("weight"));
+		info.put(AST, new TestNode(NODES * 2));
+		assertEquals(weight + NODES * 64, getGauge("weight"));
+		info.remove(AST);
+		assertTrue(getGauge("weight") < weight);
+		assertTrue(info.isEmpty());
+	}
+
+	public void testRemoveAndClear() {
+		final ISourceModule[] modules = createModules("module", 4);
+		for (int i = 0; i < modules.length; ++i) {
+			request(modules[i], 1);
+		}
+		assertEquals(4, getGauge("size"));
+		final long weight = getGauge("weight");
+		final ISourceModuleInfo removed = cache.get(modules[0]);
+		cache.remove(modules[0]);
+		assertEquals(3, getGauge("size"));
+		assertTrue(getGauge("weight") < weight);
+		// values of the removed module are not accounted anymore
+		final long afterRemove = getGauge("weight");
+		removed.put("other", new TestNode(NODES));
+		assertEquals(afterRemove, getGauge("weight"));
+		cache.clear();
+		assertEquals(0, getGauge("size"));
+		assertEquals(0, getGauge("weight"));
+		assertFalse(isCached(modules[1]));
+	}
+
+	public void testConcurrentRequests() throws Exception {
+		final ISourceModule[] modules = createModules("module", 8);
+		for (int i = 0; i < modules.length; ++i) {
+			request(modules[i], 1);
+		}
+		final ISourceModuleInfo[] infos = new ISourceModuleInfo[modules.length];
+		for (int i = 0; i < modules.length; ++i) {
+			infos[i] = cache.get(modules[i]);
+		}
+		final Throwable[] failure = new Throwable[1];
+		final Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; ++t) {
+			threads[t] = new Thread() {
+				public void run() {
+					try {
+						for (int n = 0; n < 10000; ++n) {
+							final int i = n % modules.length;
+							assertSame(infos[i], cache.get(modules[i]));
+						}
+					} catch (Throwable e) {
+						failure[0] = e;
+					}
+				}
+			};
+			threads[t].start();
+		}
+		for (int t = 0; t < threads.length; ++t) {
+			threads[t].join();
+		}
+		assertNull(failure[0]);
+		assertEquals(modules.length, getGauge("size"));
+		for (int i = 0; i < modules.length; ++i) {
+			assertTrue(isCached(modules[i]));
+		}
+	}
+}
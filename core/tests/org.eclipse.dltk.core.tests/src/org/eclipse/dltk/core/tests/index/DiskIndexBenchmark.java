@@ -0,0 +1,144 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Sage and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Sage - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.dltk.core.tests.index;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.eclipse.dltk.core.search.SearchPattern;
+import org.eclipse.dltk.core.search.index.EntryResult;
+import org.eclipse.dltk.core.search.index.Index;
+
+/**
+ * Measures size of the disk index and latency of queries on a generated
+ * corpus, where a few words (like <code>$this</code> or <code>self</code>)
+ * are referenced from every document, and other words follow a skewed
+ * distribution.
+ * <p>
+ * Not included in {@link org.eclipse.dltk.core.tests.AllTests}, should be
+ * launched manually.
+ * </p>
+ */
+public class DiskIndexBenchmark extends TestCase {
+
+	private static final char[] REF = "ref".toCharArray();
+	private static final char[] DECL = "decl".toCharArray();
+	private static final String[] COMMON_WORDS = { "$this", "self", "parent" };
+
+	private static final int FILES = 5000;
+	private static final int WORDS = 20000;
+	private static final int REFERENCES = 40;
+	private static final int DECLARATIONS = 5;
+	private static final int QUERIES = 200;
+
+	private File file;
+
+	protected void setUp() throws Exception {
+		file = File.createTempFile("benchmark", ".index");
+	}
+
+	protected void tearDown() throws Exception {
+		file.delete();
+	}
+
+	private static String word(Random random) {
+		// smaller numbers are more frequent
+		int n = (int) (WORDS * Math.pow(random.nextDouble(), 3));
+		return "word" + n;
+	}
+
+	private static String documentName(int fileNumber) {
+		return "folder" + (fileNumber / 100) + "/file" + fileNumber + ".txt";
+	}
+
+	private int countDocuments(Index index, char[] category, String key,
+			int matchRule) throws IOException {
+		EntryResult[] results = index.query(new char[][] { category }, key
+				.toCharArray(), matchRule);
+		int count = 0;
+		if (results != null) {
+			for (int i = 0; i < results.length; ++i) {
+				count += results[i].getDocumentNames(index).length;
+			}
+		}
+		return count;
+	}
+
+	public void testIndexSizeAndQueryTime() throws Exception {
+		Random random = new Random(1);
+		long start = System.currentTimeMillis();
+		Index index = new Index(file.getPath(), "/DiskIndexBenchmark", false);
+		for (int i = 0; i < FILES; ++i) {
+			String documentName = documentName(i);
+			for (int j = 0; j < COMMON_WORDS.length; ++j) {
+				index.addIndexEntry(REF, COMMON_WORDS[j].toCharArray(),
+						documentName);
+			}
+			for (int j = 0; j < REFERENCES; ++j) {
+				index.addIndexEntry(REF, word(random).toCharArray(),
+						documentName);
+			}
+			for (int j = 0; j < DECLARATIONS; ++j) {
+				index.addIndexEntry(DECL, word(random).toCharArray(),
+						documentName);
+			}
+		}
+		index.compact();
+		long buildTime = System.currentTimeMillis() - start;
+
+		// reopen, so the queries don't use the tables cached while saving
+		index = new Index(file.getPath(), "/DiskIndexBenchmark", true);
+
+		long commonTime = 0;
+		long exactTime = 0;
+		long prefixTime = 0;
+		for (int i = 0; i < QUERIES; ++i) {
+			Object query = index.startQuery();
+			try {
+				start = System.nanoTime();
+				assertEquals(FILES, countDocuments(index, REF,
+						COMMON_WORDS[i % COMMON_WORDS.length],
+						SearchPattern.R_EXACT_MATCH
+								| SearchPattern.R_CASE_SENSITIVE));
+				commonTime += System.nanoTime() - start;
+
+				start = System.nanoTime();
+				countDocuments(index, DECL, word(random),
+						SearchPattern.R_EXACT_MATCH
+								| SearchPattern.R_CASE_SENSITIVE);
+				exactTime += System.nanoTime() - start;
+
+				start = System.nanoTime();
+				countDocuments(index, REF, "word" + (i % 100),
+						SearchPattern.R_PREFIX_MATCH
+								| SearchPattern.R_CASE_SENSITIVE);
+				prefixTime += System.nanoTime() - start;
+			} finally {
+				index.stopQuery(query);
+			}
+		}
+
+		System.out.println("DiskIndexBenchmark: " + FILES + " files, "
+				+ (REFERENCES + COMMON_WORDS.length) + " references and "
+				+ DECLARATIONS + " declarations per file");
+		System.out.println("  index build: " + buildTime + " ms, size: "
+				+ file.length() + " bytes");
+		System.out.println("  common word query: "
+				+ (commonTime / 1000 / QUERIES) + " us");
+		System.out.println("  exact query:       "
+				+ (exactTime / 1000 / QUERIES) + " us");
+		System.out.println("  prefix query:      "
+				+ (prefixTime / 1000 / QUERIES) + " us");
+	}
+}
@@ -0,0 +1,292 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Sage and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Sage - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.dltk.core.tests.index;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Hashtable;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.eclipse.dltk.core.DLTKCore;
+import org.eclipse.dltk.core.search.SearchPattern;
+import org.eclipse.dltk.core.search.index.DiskIndex;
+import org.eclipse.dltk.core.search.index.EntryResult;
+import org.eclipse.dltk.core.search.index.Index;
+
+public class DiskIndexTests extends TestCase {
+
+	private static final char[] REF = "ref".toCharArray();
+	private static final char[] DECL = "decl".toCharArray();
+
+	private static final int EXACT = SearchPattern.R_EXACT_MATCH
+			| SearchPattern.R_CASE_SENSITIVE;
+	private static final int PREFIX = SearchPattern.R_PREFIX_MATCH
+			| SearchPattern.R_CASE_SENSITIVE;
+	private static final int PATTERN = SearchPattern.R_PATTERN_MATCH
+			| SearchPattern.R_CASE_SENSITIVE;
+	private static final int CASE_INSENSITIVE_PREFIX = SearchPattern.R_PREFIX_MATCH;
+
+	private static final int FILES = 300;
+	private static final int WORDS = 500;
+
+	private Hashtable oldOptions;
+	private File file;
+
+	protected void setUp() throws Exception {
+		oldOptions = DLTKCore.getOptions();
+		file = File.createTempFile("disk", ".index");
+	}
+
+	protected void tearDown() throws Exception {
+		file.delete();
+		Index.deleteSegments(file);
+		DLTKCore.setOptions(oldOptions);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static void setMemoryMapping(boolean enabled) {
+		Hashtable options = DLTKCore.getOptions();
+		options.put(DLTKCore.INDEX_MEMORY_MAPPING, enabled ? DLTKCore.ENABLED
+				: DLTKCore.DISABLED);
+		DLTKCore.setOptions(options);
+	}
+
+	private static String documentName(int fileNumber) {
+		return "folder" + (fileNumber / 100) + "/file" + fileNumber + ".txt";
+	}
+
+	/**
+	 * Creates the index file, where the document <code>n</code> references
+	 * the words <code>n % WORDS</code> and <code>n * 7 % WORDS</code>, and
+	 * declares the word <code>n</code>.
+	 */
+	private void createIndex() throws IOException {
+		Index index = new Index(file.getPath(), "/DiskIndexTests", false);
+		for (int i = 0; i < FILES; ++i) {
+			String documentName = documentName(i);
+			index.addIndexEntry(REF, ("word" + (i % WORDS)).toCharArray(),
+					documentName);
+			index.addIndexEntry(REF, ("word" + (i * 7 % WORDS))
+					.toCharArray(), documentName);
+			index.addIndexEntry(DECL, ("word" + i).toCharArray(),
+					documentName);
+		}
+		index.compact();
+		index.monitor = null;
+	}
+
+	private Index openIndex(boolean mapped) throws IOException {
+		setMemoryMapping(mapped);
+		return new Index(file.getPath(), "/DiskIndexTests", true);
+	}
+
+	private static List<String> query(Index index, char[] category,
+			String key, int matchRule) throws IOException {
+		List<String> result = new ArrayList<String>();
+		Object query = index.startQuery();
+		try {
+			EntryResult[] results = index.query(new char[][] { category },
+					key.toCharArray(), matchRule);
+			if (results != null) {
+				for (int i = 0; i < results.length; ++i) {
+					String word = new String(results[i].getWord());
+					String[] names = results[i].getDocumentNames(index);
+					for (int j = 0; j < names.length; ++j) {
+						result.add(word + ' ' + names[j]);
+					}
+				}
+			}
+		} finally {
+			index.stopQuery(query);
+		}
+		String[] sorted = result.toArray(new String[result.size()]);
+		Arrays.sort(sorted);
+		return Arrays.asList(sorted);
+	}
+
+	private static List<String> queryAll(Index index) throws IOException {
+		List<String> result = new ArrayList<String>();
+		result.addAll(query(index, REF, "word1", EXACT));
+		result.addAll(query(index, REF, "word42", EXACT));
+		result.addAll(query(index, REF, "word2", PREFIX));
+		result.addAll(query(index, DECL, "word1", PREFIX));
+		result.addAll(query(index, DECL, "word*9", PATTERN));
+		result.addAll(query(index, DECL, "missing", EXACT));
+		return result;
+	}
+
+	public void testMappedMatchesStream() throws Exception {
+		createIndex();
+		List<String> expected = queryAll(openIndex(false));
+		assertEquals(2, query(openIndex(false), REF, "word1", EXACT).size());
+		assertEquals(expected, queryAll(openIndex(true)));
+	}
+
+	public void testMappedDocumentNames() throws Exception {
+		createIndex();
+		Index index = openIndex(true);
+		String[] names = index.queryDocumentNames(null);
+		assertEquals(FILES, names.length);
+		names = index.queryDocumentNames("folder1/");
+		assertEquals(100, names.length);
+	}
+
+	public void testConcurrentMappedQueries() throws Exception {
+		createIndex();
+		final List<String> expected = queryAll(openIndex(false));
+		final Index index = openIndex(true);
+		final Throwable[] failure = new Throwable[1];
+		Thread[] threads = new Thread[8];
+		for (int i = 0; i < threads.length; ++i) {
+			threads[i] = new Thread() {
+				public void run() {
+					try {
+						for (int j = 0; j < 20; ++j) {
+							assertEquals(expected, queryAll(index));
+						}
+					} catch (Throwable e) {
+						synchronized (failure) {
+							failure[0] = e;
+						}
+					}
+				}
+			};
+		}
+		for (int i = 0; i < threads.length; ++i) {
+			threads[i].start();
+		}
+		for (int i = 0; i < threads.length; ++i) {
+			threads[i].join(60000);
+			assertFalse(threads[i].isAlive());
+		}
+		if (failure[0] != null) {
+			throw new Exception(failure[0]);
+		}
+	}
+
+	public void testMergeMapped() throws Exception {
+		createIndex();
+		Index index = openIndex(true);
+		assertEquals(2, query(index, REF, "word1", EXACT).size());
+		index.remove(documentName(1));
+		index.addIndexEntry(REF, "word1".toCharArray(), "added.txt");
+		index.compact();
+		assertEquals(Arrays.asList(new String[] { "word1 added.txt",
+				"word1 folder1/file143.txt" }), query(index, REF, "word1",
+				EXACT));
+		index.monitor = null;
+		assertEquals(query(openIndex(false), REF, "word1", EXACT), query(
+				openIndex(true), REF, "word1", EXACT));
+	}
+
+	public void testSortedCategory() throws Exception {
+		// spans many blocks of front-coded words
+		Index index = new Index(file.getPath(), "/DiskIndexTests", false);
+		for (int i = 0; i < 1000; ++i) {
+			index.addIndexEntry(REF, ("name" + i).toCharArray(), "file"
+					+ (i % 50) + ".txt");
+		}
+		index.compact();
+		index.monitor = null;
+		boolean[] modes = new boolean[] { false, true };
+		for (int m = 0; m < modes.length; ++m) {
+			index = openIndex(modes[m]);
+			for (int i = 0; i < 1000; ++i) {
+				assertEquals(Arrays.asList(new String[] { "name" + i
+						+ " file" + (i % 50) + ".txt" }), query(index, REF,
+						"name" + i, EXACT));
+			}
+			assertEquals(0, query(index, REF, "name5000", EXACT).size());
+			assertEquals(0, query(index, REF, "a", EXACT).size());
+			assertEquals(0, query(index, REF, "z", EXACT).size());
+			assertEquals(111, query(index, REF, "name1", PREFIX).size());
+			assertEquals(1000, query(index, REF, "name", PREFIX).size());
+			assertEquals(1000, query(index, REF, "nam", PREFIX).size());
+			assertEquals(0, query(index, REF, "namf", PREFIX).size());
+			assertEquals(0, query(index, REF, "a", PREFIX).size());
+			assertEquals(0, query(index, REF, "z", PREFIX).size());
+			assertEquals(11, query(index, REF, "NAME99",
+					CASE_INSENSITIVE_PREFIX).size());
+			assertEquals(0, query(index, DECL, "name", PREFIX).size());
+			index.monitor = null;
+		}
+	}
+
+	public void testCaseInsensitiveRanges() throws Exception {
+		// words of the same letters in different case are far apart when
+		// sorted, the kelvin sign is equal to 'k' ignoring case
+		String[] prefixes = new String[] { "name", "Name", "NAME", "nAme",
+				"value", "Value", "kelvin", "\u212Aelvin", "get", "_x" };
+		List<String> words = new ArrayList<String>();
+		Index index = new Index(file.getPath(), "/DiskIndexTests", false);
+		for (int i = 0; i < 1000; ++i) {
+			String word = prefixes[i % prefixes.length] + i;
+			words.add(word);
+			index.addIndexEntry(REF, word.toCharArray(), "file" + i + ".txt");
+		}
+		index.compact();
+		index.monitor = null;
+		String[] keys = new String[] { "name1", "NAME12", "Name", "K", "v",
+				"n*1?", "*lvin3", "N?me1*", "?", "Name1*", "missing" };
+		int[] rules = new int[] { SearchPattern.R_PREFIX_MATCH,
+				SearchPattern.R_EXACT_MATCH, SearchPattern.R_PATTERN_MATCH,
+				PATTERN,
+				SearchPattern.R_PREFIX_MATCH | SearchPattern.R_CAMELCASE_MATCH,
+				PREFIX | SearchPattern.R_CAMELCASE_MATCH };
+		boolean[] modes = new boolean[] { false, true };
+		for (int m = 0; m < modes.length; ++m) {
+			index = openIndex(modes[m]);
+			for (int k = 0; k < keys.length; ++k) {
+				for (int r = 0; r < rules.length; ++r) {
+					List<String> expected = new ArrayList<String>();
+					for (int i = 0; i < words.size(); ++i) {
+						String word = words.get(i);
+						if (Index.isMatch(keys[k].toCharArray(), word
+								.toCharArray(), rules[r])) {
+							expected.add(word + " file" + i + ".txt");
+						}
+					}
+					String[] sorted = expected.toArray(new String[expected
+							.size()]);
+					Arrays.sort(sorted);
+					assertEquals(keys[k] + " " + rules[r], Arrays
+							.asList(sorted), query(index, REF, keys[k],
+							rules[r]));
+				}
+			}
+			index.monitor = null;
+		}
+	}
+
+	public void testPreviousFormatRejected() throws Exception {
+		DataOutputStream out = new DataOutputStream(new FileOutputStream(
+				file));
+		try {
+			out.writeUTF("DLTK INDEX VERSION 1.0");
+			out.writeInt(-1);
+		} finally {
+			out.close();
+		}
+		assertFalse(DiskIndex.SIGNATURE.equals("DLTK INDEX VERSION 1.0"));
+		try {
+			new Index(file.getPath(), "/DiskIndexTests", true);
+			fail("IOException expected");
+		} catch (IOException e) {
+			// expected, index is rebuilt
+		}
+	}
+}
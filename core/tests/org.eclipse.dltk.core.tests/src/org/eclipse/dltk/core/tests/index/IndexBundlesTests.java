@@ -0,0 +1,109 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Sage and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Sage - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.dltk.core.tests.index;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Hashtable;
+
+import junit.framework.TestCase;
+
+import org.eclipse.dltk.core.DLTKCore;
+import org.eclipse.dltk.core.search.indexing.IndexBundles;
+
+/**
+ * Tests removal of the least recently used {@link IndexBundles} when their
+ * size exceeds {@link DLTKCore#INDEX_BUNDLE_SIZE}.
+ */
+public class IndexBundlesTests extends TestCase {
+
+	private static final int BUNDLE_SIZE = 400 * 1024;
+	private static final long DAY = 1000 * 60 * 60 * 24;
+
+	private Hashtable oldOptions;
+	private File directory;
+
+	@SuppressWarnings("unchecked")
+	protected void setUp() throws Exception {
+		oldOptions = DLTKCore.getOptions();
+		directory = File.createTempFile("bundles", "");
+		directory.delete();
+		Hashtable options = DLTKCore.getOptions();
+		options.put(DLTKCore.INDEX_BUNDLE_LOCATION, directory.getPath());
+		// megabyte, fits 2 bundles
+		options.put(DLTKCore.INDEX_BUNDLE_SIZE, "1");
+		DLTKCore.setOptions(options);
+	}
+
+	protected void tearDown() throws Exception {
+		final File[] files = directory.listFiles();
+		if (files != null) {
+			for (int i = 0; i < files.length; ++i) {
+				files[i].delete();
+			}
+		}
+		directory.delete();
+		DLTKCore.setOptions(oldOptions);
+	}
+
+	private static void publish(String key, long lastUsed) throws IOException {
+		final File tempFile = IndexBundles.createTempFile(key);
+		final FileOutputStream out = new FileOutputStream(tempFile);
+		try {
+			out.write(new byte[BUNDLE_SIZE]);
+		} finally {
+			out.close();
+		}
+		IndexBundles.publish(tempFile, key);
+		assertTrue(IndexBundles.find(key).setLastModified(lastUsed));
+	}
+
+	public void testDisabledByDefault() {
+		assertEquals("", DLTKCore.getDefaultOptions().get(
+				DLTKCore.INDEX_BUNDLE_LOCATION));
+	}
+
+	public void testLeastRecentlyUsedRemoved() throws Exception {
+		final long now = System.currentTimeMillis();
+		publish("first", now - 3 * DAY);
+		publish("second", now - 2 * DAY);
+		// used after the second one was published
+		assertNotNull(IndexBundles.find("first"));
+		publish("third", now);
+		assertNotNull(IndexBundles.find("first"));
+		assertNull(IndexBundles.find("second"));
+		assertNotNull(IndexBundles.find("third"));
+	}
+
+	public void testNoLimit() throws Exception {
+		@SuppressWarnings("unchecked")
+		Hashtable<String, String> options = DLTKCore.getOptions();
+		options.put(DLTKCore.INDEX_BUNDLE_SIZE, "0");
+		DLTKCore.setOptions(options);
+		for (int i = 0; i < 4; ++i) {
+			publish("bundle" + i, System.currentTimeMillis());
+		}
+		for (int i = 0; i < 4; ++i) {
+			assertNotNull(IndexBundles.find("bundle" + i));
+		}
+	}
+
+	public void testStaleTempFilesRemoved() throws Exception {
+		final File stale = IndexBundles.createTempFile("stale");
+		assertTrue(stale.setLastModified(System.currentTimeMillis() - 2
+				* DAY));
+		final File written = IndexBundles.createTempFile("written");
+		publish("bundle", System.currentTimeMillis());
+		assertFalse(stale.exists());
+		assertTrue(written.exists());
+	}
+}
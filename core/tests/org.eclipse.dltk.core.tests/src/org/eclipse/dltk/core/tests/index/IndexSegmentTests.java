@@ -0,0 +1,215 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Sage and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Sage - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.dltk.core.tests.index;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+import org.eclipse.dltk.core.metrics.Counter;
+import org.eclipse.dltk.core.metrics.Metrics;
+import org.eclipse.dltk.core.search.SearchPattern;
+import org.eclipse.dltk.core.search.index.EntryResult;
+import org.eclipse.dltk.core.search.index.Index;
+
+public class IndexSegmentTests extends TestCase {
+
+	private static final char[] REF = "ref".toCharArray();
+	private static final char[] DECL = "decl".toCharArray();
+
+	private File file;
+	private Index index;
+
+	protected void setUp() throws Exception {
+		file = File.createTempFile("segments", ".index");
+		index = new Index(file.getPath(), "/IndexSegmentTests", false);
+	}
+
+	protected void tearDown() throws Exception {
+		index.monitor = null;
+		file.delete();
+		Index.deleteSegments(file);
+	}
+
+	private String[] query(String word) throws IOException {
+		Object query = index.startQuery();
+		try {
+			EntryResult[] results = index.query(new char[][] { REF }, word
+					.toCharArray(), SearchPattern.R_EXACT_MATCH
+					| SearchPattern.R_CASE_SENSITIVE);
+			if (results == null)
+				return new String[0];
+			assertEquals(1, results.length);
+			String[] names = results[0].getDocumentNames(index);
+			Arrays.sort(names);
+			return names;
+		} finally {
+			index.stopQuery(query);
+		}
+	}
+
+	private void save() throws IOException {
+		index.monitor.enterWrite();
+		try {
+			index.save();
+		} finally {
+			index.monitor.exitWrite();
+		}
+	}
+
+	private void reopen() throws IOException {
+		index.monitor = null;
+		index = new Index(file.getPath(), "/IndexSegmentTests", true);
+	}
+
+	private static void assertNames(String[] expected, String[] actual) {
+		assertEquals(Arrays.asList(expected), Arrays.asList(actual));
+	}
+
+	public void testNewerSegmentReplacesDocuments() throws Exception {
+		index.addIndexEntry(REF, "foo".toCharArray(), "a.txt");
+		index.addIndexEntry(REF, "foo".toCharArray(), "b.txt");
+		index.addIndexEntry(REF, "foo".toCharArray(), "c.txt");
+		save();
+		index.remove("a.txt");
+		index.addIndexEntry(REF, "bar".toCharArray(), "a.txt");
+		index.remove("b.txt");
+		save();
+
+		assertNames(new String[] { "c.txt" }, query("foo"));
+		assertNames(new String[] { "a.txt" }, query("bar"));
+		assertNames(new String[] { "a.txt", "c.txt" }, index
+				.queryDocumentNames(null));
+		reopen();
+		assertNames(new String[] { "c.txt" }, query("foo"));
+		assertNames(new String[] { "a.txt", "c.txt" }, index
+				.queryDocumentNames(null));
+	}
+
+	public void testCompact() throws Exception {
+		for (int i = 0; i < 20; ++i) {
+			index.addIndexEntry(REF, "foo".toCharArray(), "file" + i + ".txt");
+			save();
+		}
+		index.remove("file0.txt");
+		index.compact();
+
+		assertEquals(19, query("foo").length);
+		String[] names = file.getParentFile().list();
+		for (int i = 0; i < names.length; ++i)
+			assertFalse(names[i], names[i].startsWith(file.getName() + '.'));
+		reopen();
+		assertEquals(19, query("foo").length);
+	}
+
+	public void testQueryDuringUpdate() throws Exception {
+		index.addIndexEntry(REF, "foo".toCharArray(), "a.txt");
+		save();
+		final String[][] names = new String[1][];
+		final Exception[] failure = new Exception[1];
+		Thread reader = new Thread() {
+			public void run() {
+				try {
+					names[0] = query("foo");
+				} catch (Exception e) {
+					failure[0] = e;
+				}
+			}
+		};
+		index.monitor.enterWrite();
+		try {
+			index.remove("a.txt");
+			index.addIndexEntry(REF, "foo".toCharArray(), "b.txt");
+			// the reader doesn't wait for the writer, and doesn't see the
+			// changes until they are published
+			reader.start();
+			reader.join(10000);
+			assertFalse(reader.isAlive());
+			assertNames(new String[] { "b.txt" }, query("foo"));
+		} finally {
+			index.monitor.exitWrite();
+		}
+		assertNull(failure[0]);
+		assertNames(new String[] { "a.txt" }, names[0]);
+		assertNames(new String[] { "b.txt" }, query("foo"));
+	}
+
+	public void testAttachBundle() throws Exception {
+		index.addIndexEntry(REF, "foo".toCharArray(), "a.txt");
+		save();
+		index.addIndexEntry(REF, "foo".toCharArray(), "b.txt");
+		save();
+		File bundle = File.createTempFile("segments", ".bundle");
+		try {
+			assertTrue(index.exportBundle(bundle));
+			index.monitor = null;
+			index = new Index(file.getPath(), "/IndexSegmentTests", false);
+			index.addIndexEntry(REF, "bar".toCharArray(), "c.txt");
+			save();
+			index.monitor.enterWrite();
+			try {
+				index.attachBundle(bundle);
+			} finally {
+				index.monitor.exitWrite();
+			}
+			assertNames(new String[] { "a.txt", "b.txt" }, query("foo"));
+			assertNames(new String[0], query("bar"));
+			reopen();
+			assertNames(new String[] { "a.txt", "b.txt" }, query("foo"));
+			assertTrue(bundle.exists());
+		} finally {
+			bundle.delete();
+		}
+	}
+
+	/**
+	 * Reads whole tables of both categories, so they are cached by the disk
+	 * indexes while the query is running.
+	 */
+	private void queryCategories() throws IOException {
+		assertNotNull(index.query(new char[][] { REF }, null,
+				SearchPattern.R_EXACT_MATCH));
+		assertNotNull(index.query(new char[][] { DECL }, null,
+				SearchPattern.R_EXACT_MATCH));
+	}
+
+	public void testStopQueryAfterSwap() throws Exception {
+		final Counter misses = Metrics.counter("index.categoryTables.misses");
+		index.addIndexEntry(REF, "foo".toCharArray(), "a.txt");
+		index.addIndexEntry(DECL, "foo".toCharArray(), "a.txt");
+		save();
+		Object first = index.startQuery();
+		// the writer replaces the snapshot pinned by the first query
+		index.monitor.enterWrite();
+		try {
+			index.addIndexEntry(REF, "bar".toCharArray(), "b.txt");
+			index.addIndexEntry(DECL, "bar".toCharArray(), "b.txt");
+			index.save();
+		} finally {
+			index.monitor.exitWrite();
+		}
+		Object second = index.startQuery();
+		try {
+			queryCategories();
+			index.stopQuery(first);
+			// stopping the first query keeps the tables cached by the second
+			long missed = misses.get();
+			queryCategories();
+			assertEquals(missed, misses.get());
+		} finally {
+			index.stopQuery(second);
+		}
+		assertNames(new String[] { "a.txt" }, query("foo"));
+		assertNames(new String[] { "b.txt" }, query("bar"));
+	}
+}
@@ -0,0 +1,240 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Sage and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Sage - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.dltk.core.tests.index;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.dltk.internal.core.search.processing.IJob;
+import org.eclipse.dltk.internal.core.search.processing.IJobExtension;
+import org.eclipse.dltk.internal.core.search.processing.JobManager;
+
+/**
+ * Tests scheduling of the jobs by {@link JobManager}: lanes, per container
+ * ordering and jobs without container.
+ */
+public class JobManagerTests extends TestCase {
+
+	private static final long TIMEOUT = 10000;
+
+	private final List<String> events = new ArrayList<String>();
+	private final CountDownLatch gate = new CountDownLatch(1);
+	private JobManager manager;
+
+	protected void tearDown() throws Exception {
+		gate.countDown();
+		if (manager != null) {
+			manager.shutdown();
+			manager = null;
+		}
+	}
+
+	private void start(final int workers) {
+		manager = new JobManager() {
+			public String processName() {
+				return "JobManagerTests";
+			}
+
+			protected int getWorkerCount() {
+				return workers;
+			}
+		};
+		manager.reset();
+	}
+
+	private void event(String event) {
+		synchronized (events) {
+			events.add(event);
+		}
+	}
+
+	private int indexOf(String event) {
+		synchronized (events) {
+			int index = events.indexOf(event);
+			assertTrue(event + " in " + events, index >= 0);
+			return index;
+		}
+	}
+
+	private boolean happened(String event) {
+		synchronized (events) {
+			return events.contains(event);
+		}
+	}
+
+	private void assertBefore(String first, String second) {
+		assertTrue(first + " before " + second + " in " + events,
+				indexOf(first) < indexOf(second));
+	}
+
+	private class TestJob implements IJob {
+
+		final String name;
+		final boolean blocking;
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch finished = new CountDownLatch(1);
+
+		TestJob(String name, boolean blocking) {
+			this.name = name;
+			this.blocking = blocking;
+		}
+
+		public boolean belongsTo(String jobFamily) {
+			return false;
+		}
+
+		public void cancel() {
+		}
+
+		public void ensureReadyToRun() {
+		}
+
+		public boolean execute(IProgressMonitor progress) {
+			event("start " + name);
+			started.countDown();
+			try {
+				if (blocking)
+					gate.await(TIMEOUT, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				// finish
+			}
+			event("end " + name);
+			finished.countDown();
+			return COMPLETE;
+		}
+
+		void awaitStarted() throws InterruptedException {
+			assertTrue(name + " started", started.await(TIMEOUT,
+					TimeUnit.MILLISECONDS));
+		}
+
+		void awaitFinished() throws InterruptedException {
+			assertTrue(name + " finished", finished.await(TIMEOUT,
+					TimeUnit.MILLISECONDS));
+		}
+
+		public String toString() {
+			return name;
+		}
+	}
+
+	private class LaneJob extends TestJob implements IJobExtension {
+
+		final int lane;
+		final Object container;
+
+		LaneJob(String name, int lane, Object container, boolean blocking) {
+			super(name, blocking);
+			this.lane = lane;
+			this.container = container;
+		}
+
+		public int getLane() {
+			return lane;
+		}
+
+		public Object getContainer() {
+			return container;
+		}
+	}
+
+	private LaneJob bulk(String name, Object container, boolean blocking) {
+		LaneJob job = new LaneJob(name, IJobExtension.BULK, container,
+				blocking);
+		manager.request(job);
+		return job;
+	}
+
+	private LaneJob interactive(String name, Object container) {
+		LaneJob job = new LaneJob(name, IJobExtension.INTERACTIVE, container,
+				false);
+		manager.request(job);
+		return job;
+	}
+
+	public void testInteractiveLaneFirst() throws Exception {
+		start(1);
+		LaneJob library = bulk("library", "/lib", true);
+		library.awaitStarted();
+		LaneJob project = bulk("project", "/project", false);
+		LaneJob reconcile = interactive("reconcile", "/other");
+		gate.countDown();
+		project.awaitFinished();
+		reconcile.awaitFinished();
+		assertBefore("end library", "start reconcile");
+		assertBefore("end reconcile", "start project");
+	}
+
+	public void testProjectBeforeLibrary() throws Exception {
+		start(1);
+		LaneJob first = bulk("first", "/first", true);
+		first.awaitStarted();
+		LaneJob library = new LaneJob("library", IJobExtension.LIBRARY,
+				"/lib", false);
+		manager.request(library);
+		LaneJob project = bulk("project", "/project", false);
+		gate.countDown();
+		library.awaitFinished();
+		project.awaitFinished();
+		assertBefore("end first", "start project");
+		assertBefore("end project", "start library");
+	}
+
+	public void testInteractiveDoesNotWaitForBulk() throws Exception {
+		start(2);
+		LaneJob library = bulk("library", "/lib", true);
+		library.awaitStarted();
+		LaneJob project = bulk("project", "/project", false);
+		LaneJob reconcile = interactive("reconcile", "/other");
+		reconcile.awaitFinished();
+		// one worker is reserved for interactive jobs
+		assertFalse(happened("start project"));
+		assertFalse(happened("end library"));
+		gate.countDown();
+		project.awaitFinished();
+		assertBefore("end library", "start project");
+	}
+
+	public void testSameContainerInRequestOrder() throws Exception {
+		start(3);
+		LaneJob first = bulk("first", "/project", true);
+		first.awaitStarted();
+		LaneJob second = interactive("second", "/project");
+		LaneJob third = bulk("third", "/project", false);
+		LaneJob other = interactive("other", "/other");
+		other.awaitFinished();
+		assertFalse(happened("start second"));
+		gate.countDown();
+		second.awaitFinished();
+		third.awaitFinished();
+		assertBefore("end first", "start second");
+		assertBefore("end second", "start third");
+	}
+
+	public void testJobWithoutContainerRunsAlone() throws Exception {
+		start(3);
+		LaneJob first = bulk("first", "/project", true);
+		first.awaitStarted();
+		TestJob exclusive = new TestJob("exclusive", false);
+		manager.request(exclusive);
+		LaneJob later = interactive("later", "/other");
+		gate.countDown();
+		exclusive.awaitFinished();
+		later.awaitFinished();
+		assertBefore("end first", "start exclusive");
+		assertBefore("end exclusive", "start later");
+	}
+}
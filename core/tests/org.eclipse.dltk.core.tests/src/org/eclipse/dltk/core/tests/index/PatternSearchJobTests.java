@@ -0,0 +1,240 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Sage and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Sage - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.dltk.core.tests.index;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Hashtable;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.dltk.core.DLTKCore;
+import org.eclipse.dltk.core.search.IDLTKSearchScope;
+import org.eclipse.dltk.core.search.SearchParticipant;
+import org.eclipse.dltk.core.search.SearchPattern;
+import org.eclipse.dltk.core.search.index.EntryResult;
+import org.eclipse.dltk.core.search.index.Index;
+import org.eclipse.dltk.internal.compiler.env.AccessRuleSet;
+import org.eclipse.dltk.internal.core.search.IndexQueryRequestor;
+import org.eclipse.dltk.internal.core.search.PatternSearchJob;
+
+/**
+ * Tests that {@link PatternSearchJob} finds the same matches when the indexes
+ * are queried in parallel (see {@link DLTKCore#SEARCH_PARALLELISM}).
+ */
+public class PatternSearchJobTests extends TestCase {
+
+	private static final char[] REF = "ref".toCharArray();
+
+	private static final int INDEXES = 12;
+	private static final int FILES = 50;
+
+	private Hashtable oldOptions;
+	private File[] files;
+	private Index[] indexes;
+
+	protected void setUp() throws Exception {
+		oldOptions = DLTKCore.getOptions();
+		files = new File[INDEXES];
+		indexes = new Index[INDEXES];
+		for (int i = 0; i < INDEXES; ++i) {
+			files[i] = File.createTempFile("search", ".index");
+			indexes[i] = new Index(files[i].getPath(), "/Project" + i, false);
+			for (int j = 0; j < FILES; ++j) {
+				String documentName = "file" + j + ".txt";
+				indexes[i].addIndexEntry(REF, ("word" + (j % 10))
+						.toCharArray(), documentName);
+				indexes[i].addIndexEntry(REF, ("other" + j).toCharArray(),
+						documentName);
+			}
+			indexes[i].compact();
+		}
+	}
+
+	protected void tearDown() throws Exception {
+		for (int i = 0; i < INDEXES; ++i) {
+			indexes[i].monitor = null;
+			files[i].delete();
+			Index.deleteSegments(files[i]);
+		}
+		DLTKCore.setOptions(oldOptions);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static void setParallelism(int parallelism) {
+		Hashtable options = DLTKCore.getOptions();
+		options.put(DLTKCore.SEARCH_PARALLELISM, String.valueOf(parallelism));
+		DLTKCore.setOptions(options);
+	}
+
+	/**
+	 * Pattern reporting the documents referencing the words with the given
+	 * prefix, without the language specific decoding of the index keys.
+	 */
+	private static class TestPattern extends SearchPattern {
+
+		private final String prefix;
+
+		TestPattern(String prefix) {
+			super(R_PREFIX_MATCH | R_CASE_SENSITIVE, null);
+			this.prefix = prefix;
+		}
+
+		public SearchPattern getBlankPattern() {
+			return new TestPattern(null);
+		}
+
+		public void findIndexMatches(Index index,
+				IndexQueryRequestor requestor, SearchParticipant participant,
+				IDLTKSearchScope scope, IProgressMonitor monitor)
+				throws IOException {
+			Object query = index.startQuery();
+			try {
+				EntryResult[] entries = index.query(new char[][] { REF },
+						prefix.toCharArray(), getMatchRule());
+				if (entries == null)
+					return;
+				for (int i = 0; i < entries.length; ++i) {
+					if (monitor != null && monitor.isCanceled())
+						throw new OperationCanceledException();
+					String[] names = entries[i].getDocumentNames(index);
+					for (int j = 0; j < names.length; ++j) {
+						if (!requestor.acceptIndexMatch(index
+								.getContainerPath()
+								+ '/' + names[j], this, participant, null))
+							throw new OperationCanceledException();
+					}
+				}
+			} finally {
+				index.stopQuery(query);
+			}
+		}
+	}
+
+	private class TestJob extends PatternSearchJob {
+
+		TestJob(String prefix, IndexQueryRequestor requestor) {
+			super(new TestPattern(prefix), null, null, requestor);
+		}
+
+		public Index[] getIndexes(IProgressMonitor progressMonitor) {
+			return indexes;
+		}
+	}
+
+	/**
+	 * Collects matches and verifies it's never called concurrently
+	 */
+	private static class Collector extends IndexQueryRequestor {
+
+		final List<String> paths = new ArrayList<String>();
+		private int active;
+		boolean concurrent;
+
+		public boolean acceptIndexMatch(String documentPath,
+				SearchPattern indexRecord, SearchParticipant participant,
+				AccessRuleSet access) {
+			synchronized (this) {
+				if (++active > 1)
+					concurrent = true;
+			}
+			try {
+				Thread.yield();
+				paths.add(documentPath);
+				return true;
+			} finally {
+				synchronized (this) {
+					--active;
+				}
+			}
+		}
+
+		List<String> sorted() {
+			List<String> result = new ArrayList<String>(paths);
+			Collections.sort(result);
+			return result;
+		}
+	}
+
+	private List<String> search(int parallelism, String prefix) {
+		setParallelism(parallelism);
+		Collector collector = new Collector();
+		assertTrue(new TestJob(prefix, collector)
+				.execute(new NullProgressMonitor()));
+		assertFalse(collector.concurrent);
+		return collector.sorted();
+	}
+
+	public void testParallelMatchesSequential() throws Exception {
+		List<String> expected = search(1, "word");
+		assertEquals(INDEXES * FILES, expected.size());
+		assertEquals(expected, search(4, "word"));
+		assertEquals(expected, search(INDEXES * 2, "word"));
+		expected = search(1, "other1");
+		assertEquals(INDEXES * 11, expected.size());
+		assertEquals(expected, search(4, "other1"));
+	}
+
+	public void testRequestorCancel() throws Exception {
+		setParallelism(4);
+		final int[] count = new int[1];
+		IndexQueryRequestor requestor = new IndexQueryRequestor() {
+			public boolean acceptIndexMatch(String documentPath,
+					SearchPattern indexRecord, SearchParticipant participant,
+					AccessRuleSet access) {
+				synchronized (count) {
+					return ++count[0] < 10;
+				}
+			}
+		};
+		try {
+			new TestJob("word", requestor).execute(new NullProgressMonitor());
+			fail("OperationCanceledException expected");
+		} catch (OperationCanceledException e) {
+			// expected
+		}
+		assertTrue(count[0] < INDEXES * FILES);
+	}
+
+	public void testProgressMonitorCancel() throws Exception {
+		setParallelism(4);
+		final IProgressMonitor monitor = new NullProgressMonitor();
+		final int[] count = new int[1];
+		IndexQueryRequestor requestor = new IndexQueryRequestor() {
+			public boolean acceptIndexMatch(String documentPath,
+					SearchPattern indexRecord, SearchParticipant participant,
+					AccessRuleSet access) {
+				synchronized (count) {
+					if (++count[0] == 10)
+						monitor.setCanceled(true);
+				}
+				return true;
+			}
+		};
+		try {
+			new TestJob("word", requestor).execute(monitor);
+			fail("OperationCanceledException expected");
+		} catch (OperationCanceledException e) {
+			// expected
+		}
+		int reported = count[0];
+		assertTrue(reported < INDEXES * FILES);
+		// workers are finished when execute() returns
+		Thread.sleep(100);
+		assertEquals(reported, count[0]);
+	}
+}
@@ -0,0 +1,154 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Sage and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Sage - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.dltk.core.tests.metrics;
+
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.eclipse.dltk.core.metrics.Histogram;
+import org.eclipse.dltk.core.metrics.Metrics;
+
+/**
+ * Tests the percentiles approximated by {@link Histogram}
+ */
+public class HistogramTests extends TestCase {
+
+	private Histogram histogram;
+
+	protected void setUp() throws Exception {
+		histogram = Metrics.histogram(getClass().getName() + '.' + getName());
+	}
+
+	/**
+	 * Verifies the percentile is the upper bound of the exact value, which is
+	 * at most twice the exact value
+	 */
+	private void assertPercentile(long exact, double percentile) {
+		long value = histogram.getPercentile(percentile);
+		assertTrue("p" + percentile + "=" + value + " < " + exact,
+				value >= exact);
+		assertTrue("p" + percentile + "=" + value + " > 2*" + exact,
+				value <= 2 * exact);
+	}
+
+	public void testEmpty() {
+		assertEquals(0, histogram.getCount());
+		assertEquals(0, histogram.getMean());
+		assertEquals(0, histogram.getPercentile(50));
+		assertEquals(0, histogram.getPercentile(100));
+	}
+
+	public void testSingleValue() {
+		histogram.record(100);
+		assertEquals(1, histogram.getCount());
+		assertEquals(100, histogram.getMean());
+		// the upper bound of the bucket is limited by the maximum
+		assertEquals(100, histogram.getPercentile(0));
+		assertEquals(100, histogram.getPercentile(50));
+		assertEquals(100, histogram.getPercentile(100));
+	}
+
+	public void testZeroAndNegative() {
+		histogram.record(0);
+		histogram.record(-5);
+		assertEquals(2, histogram.getCount());
+		assertEquals(0, histogram.getSum());
+		assertEquals(0, histogram.getMax());
+		assertEquals(0, histogram.getPercentile(50));
+		assertEquals(0, histogram.getPercentile(100));
+	}
+
+	public void testBucketBounds() {
+		histogram.record(1);
+		histogram.record(2);
+		histogram.record(3);
+		histogram.record(4);
+		histogram.record(1000);
+		assertEquals(1, histogram.getPercentile(20));
+		// 2 and 3 are in the same bucket
+		assertEquals(3, histogram.getPercentile(40));
+		assertEquals(3, histogram.getPercentile(60));
+		assertEquals(7, histogram.getPercentile(80));
+		assertEquals(1000, histogram.getPercentile(100));
+	}
+
+	public void testUniformDistribution() {
+		for (int i = 1; i <= 1000; ++i) {
+			histogram.record(i);
+		}
+		assertEquals(1000, histogram.getCount());
+		assertEquals(500500, histogram.getSum());
+		assertEquals(500, histogram.getMean());
+		assertEquals(1000, histogram.getMax());
+		assertEquals(511, histogram.getPercentile(50));
+		assertEquals(1000, histogram.getPercentile(90));
+		assertEquals(1000, histogram.getPercentile(99));
+		assertEquals(1000, histogram.getPercentile(100));
+		for (int p = 1; p <= 100; ++p) {
+			assertPercentile(p * 10, p);
+		}
+	}
+
+	public void testSkewedDistribution() {
+		for (int i = 0; i < 990; ++i) {
+			histogram.record(10);
+		}
+		for (int i = 0; i < 10; ++i) {
+			histogram.record(100000);
+		}
+		assertEquals(15, histogram.getPercentile(50));
+		assertEquals(15, histogram.getPercentile(99));
+		assertEquals(100000, histogram.getPercentile(99.5));
+		assertEquals(100000, histogram.getMax());
+		assertPercentile(10, 90);
+	}
+
+	public void testConcurrentRecord() throws Exception {
+		final int perThread = 10000;
+		Thread[] threads = new Thread[4];
+		for (int i = 0; i < threads.length; ++i) {
+			final int offset = i;
+			threads[i] = new Thread() {
+				public void run() {
+					for (int j = 1; j <= perThread; ++j) {
+						histogram.record(j + offset);
+					}
+				}
+			};
+		}
+		for (int i = 0; i < threads.length; ++i) {
+			threads[i].start();
+		}
+		for (int i = 0; i < threads.length; ++i) {
+			threads[i].join(60000);
+			assertFalse(threads[i].isAlive());
+		}
+		assertEquals(threads.length * perThread, histogram.getCount());
+		assertEquals(perThread + threads.length - 1, histogram.getMax());
+		assertPercentile(perThread / 2 + 2, 50);
+		assertEquals(histogram.getMax(), histogram.getPercentile(100));
+	}
+
+	public void testCollect() {
+		for (int i = 1; i <= 100; ++i) {
+			histogram.record(i);
+		}
+		Map<String, Long> values = Metrics.collect();
+		String name = histogram.getName();
+		assertEquals(new Long(100), values.get(name + ".count"));
+		assertEquals(new Long(50), values.get(name + ".mean"));
+		assertEquals(new Long(63), values.get(name + ".p50"));
+		assertEquals(new Long(100), values.get(name + ".p90"));
+		assertEquals(new Long(100), values.get(name + ".p99"));
+		assertEquals(new Long(100), values.get(name + ".max"));
+	}
+}
@@ -112,4 +112,84 @@ public class MixinIndexTests extends TestCase {
 		assertTrue(index.hasChanged());
 	}
 
+	private String[] queryKeys(String pattern, int matchRule)
+			throws IOException {
+		EntryResult[] result = index.query(
+				new char[][] { IIndexConstants.MIXIN }, pattern.toCharArray(),
+				matchRule);
+		String[] keys = new String[result.length];
+		for (int i = 0; i < result.length; i++) {
+			keys[i] = new String(result[i].getWord());
+		}
+		Arrays.sort(keys);
+		return keys;
+	}
+
+	public void testQueryPatternAfterReopen() throws IOException {
+		index.addIndexEntry(IIndexConstants.MIXIN, "Foo".toCharArray(), "A");
+		index.addIndexEntry(IIndexConstants.MIXIN, "Foo{bar".toCharArray(), "A");
+		index.addIndexEntry(IIndexConstants.MIXIN, "Foo{baz".toCharArray(), "B");
+		index.addIndexEntry(IIndexConstants.MIXIN, "Fox".toCharArray(), "B");
+		index.save();
+		index = createIndex(false);
+		index.addIndexEntry(IIndexConstants.MIXIN, "Foo{qux".toCharArray(), "C");
+		final int pattern = SearchPattern.R_EXACT_MATCH
+				| SearchPattern.R_CASE_SENSITIVE | SearchPattern.R_PATTERN_MATCH;
+		assertEquals(Arrays.asList(new String[] { "Foo{bar", "Foo{baz",
+				"Foo{qux" }), Arrays.asList(queryKeys("Foo{*", pattern)));
+		assertEquals(Arrays.asList(new String[] { "Foo", "Fox" }), Arrays
+				.asList(queryKeys("Fo?", pattern)));
+		assertEquals(Arrays.asList(new String[] { "Foo" }), Arrays
+				.asList(queryKeys("Foo", SearchPattern.R_EXACT_MATCH
+						| SearchPattern.R_CASE_SENSITIVE)));
+		assertEquals(0, queryKeys("Fo", SearchPattern.R_EXACT_MATCH
+				| SearchPattern.R_CASE_SENSITIVE).length);
+	}
+
+	public void testRemoveAfterReopen() throws IOException {
+		index.addIndexEntry(IIndexConstants.MIXIN, "key1".toCharArray(), "A");
+		index.addIndexEntry(IIndexConstants.MIXIN, "key1".toCharArray(), "B");
+		index.addIndexEntry(IIndexConstants.MIXIN, "key2".toCharArray(), "A");
+		index.save();
+		index = createIndex(false);
+		index.remove("A");
+		assertTrue(index.hasChanged());
+		assertEquals(Arrays.asList(new String[] { "B" }), Arrays.asList(index
+				.queryDocumentNames(null)));
+		assertEquals(Arrays.asList(new String[] { "key1" }), Arrays
+				.asList(queryKeys("key*", SearchPattern.R_PATTERN_MATCH)));
+		index.addIndexEntry(IIndexConstants.MIXIN, "key3".toCharArray(), "A");
+		index.save();
+		index = createIndex(false);
+		assertEquals(Arrays.asList(new String[] { "A", "B" }), Arrays
+				.asList(index.queryDocumentNames(null)));
+		assertEquals(Arrays.asList(new String[] { "key1", "key3" }), Arrays
+				.asList(queryKeys("key*", SearchPattern.R_PATTERN_MATCH)));
+	}
+
+	public void testAttachBundle() throws IOException {
+		index.addIndexEntry(IIndexConstants.MIXIN, "key1".toCharArray(), "A");
+		index.addIndexEntry(IIndexConstants.MIXIN, "key2".toCharArray(), "B");
+		final File bundle = File.createTempFile("mixin", ".bundle");
+		try {
+			assertTrue(index.exportBundle(bundle));
+			index = createIndex(true);
+			index.addIndexEntry(IIndexConstants.MIXIN, "key3".toCharArray(),
+					"C");
+			index.attachBundle(bundle);
+			assertFalse(index.hasChanged());
+			assertEquals(Arrays.asList(new String[] { "A", "B" }), Arrays
+					.asList(index.queryDocumentNames(null)));
+			assertEquals(Arrays.asList(new String[] { "key1", "key2" }),
+					Arrays.asList(queryKeys("key*",
+							SearchPattern.R_PATTERN_MATCH)));
+			index = createIndex(false);
+			assertEquals(Arrays.asList(new String[] { "key1", "key2" }),
+					Arrays.asList(queryKeys("key*",
+							SearchPattern.R_PATTERN_MATCH)));
+		} finally {
+			bundle.delete();
+		}
+	}
+
 }
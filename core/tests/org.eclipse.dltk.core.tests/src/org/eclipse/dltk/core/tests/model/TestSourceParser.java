@@ -7,8 +7,21 @@ import org.eclipse.dltk.compiler.problem.IProblemReporter;
 
 public class TestSourceParser extends AbstractSourceParser {
 
+	/**
+	 * Set if some parser was used by more than one thread
+	 */
+	public static volatile boolean sharedBetweenThreads = false;
+
+	private Thread thread;
+
 	public ModuleDeclaration parse(IModuleSource input,
 			IProblemReporter reporter) {
+		final Thread current = Thread.currentThread();
+		if (thread == null) {
+			thread = current;
+		} else if (thread != current) {
+			sharedBetweenThreads = true;
+		}
 		return new ModuleDeclaration(input.getSourceContents().length());
 	}
 
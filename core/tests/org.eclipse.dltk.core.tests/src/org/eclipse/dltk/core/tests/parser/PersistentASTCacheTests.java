@@ -0,0 +1,276 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Sage and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Sage - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.dltk.core.tests.parser;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Hashtable;
+import java.util.List;
+
+import junit.framework.Test;
+
+import org.eclipse.dltk.ast.declarations.ModuleDeclaration;
+import org.eclipse.dltk.ast.parser.IModuleDeclaration;
+import org.eclipse.dltk.ast.parser.PersistentASTCache;
+import org.eclipse.dltk.ast.parser.IASTCache.ASTCacheEntry;
+import org.eclipse.dltk.compiler.problem.DefaultProblem;
+import org.eclipse.dltk.compiler.problem.IProblem;
+import org.eclipse.dltk.compiler.problem.ProblemCollector;
+import org.eclipse.dltk.compiler.problem.ProblemSeverities;
+import org.eclipse.dltk.core.DLTKCore;
+import org.eclipse.dltk.core.ISourceModule;
+import org.eclipse.dltk.core.tests.model.ModelTestsPlugin;
+import org.eclipse.dltk.core.tests.model.ModifyingResourceTests;
+
+/**
+ * Tests storing ASTs and problems by {@link PersistentASTCache}, with a codec
+ * writing the length of the {@link ModuleDeclaration} only.
+ */
+public class PersistentASTCacheTests extends ModifyingResourceTests {
+
+	private static final String PROJECT = "PersistentASTCache";
+	private static final String[] TEST_NATURES = new String[] { ModelTestsPlugin.TEST_NATURE };
+
+	private Hashtable oldOptions;
+	private File directory;
+
+	public PersistentASTCacheTests(String name) {
+		super(ModelTestsPlugin.PLUGIN_NAME, name);
+	}
+
+	public static Test suite() {
+		return new Suite(PersistentASTCacheTests.class);
+	}
+
+	public void setUpSuite() throws Exception {
+		super.setUpSuite();
+		createScriptProject(PROJECT, TEST_NATURES, new String[] { "src" });
+	}
+
+	public void tearDownSuite() throws Exception {
+		deleteProject(PROJECT);
+		super.tearDownSuite();
+	}
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		oldOptions = DLTKCore.getOptions();
+		directory = File.createTempFile("astCache", "");
+		directory.delete();
+	}
+
+	protected void tearDown() throws Exception {
+		final File[] files = directory.listFiles();
+		if (files != null) {
+			for (int i = 0; i < files.length; ++i) {
+				files[i].delete();
+			}
+		}
+		directory.delete();
+		DLTKCore.setOptions(oldOptions);
+		super.tearDown();
+	}
+
+	@SuppressWarnings("unchecked")
+	private static void setOptions(int sizeLimit, boolean mapped) {
+		Hashtable options = DLTKCore.getOptions();
+		options.put(DLTKCore.AST_CACHE_SIZE, String.valueOf(sizeLimit));
+		options.put(DLTKCore.INDEX_MEMORY_MAPPING, mapped ? DLTKCore.ENABLED
+				: DLTKCore.DISABLED);
+		DLTKCore.setOptions(options);
+	}
+
+	private class TestASTCache extends PersistentASTCache {
+
+		private final int padding;
+
+		TestASTCache(int padding) {
+			this.padding = padding;
+		}
+
+		protected File getDirectory() {
+			return directory;
+		}
+
+		protected String getFormat() {
+			return "test 1";
+		}
+
+		protected boolean writeModule(IModuleDeclaration module,
+				DataOutputStream out) throws IOException {
+			out.writeInt(((ModuleDeclaration) module).sourceEnd());
+			out.writeInt(padding);
+			out.write(new byte[padding]);
+			return true;
+		}
+
+		protected IModuleDeclaration readModule(DataInputStream in)
+				throws IOException {
+			final ModuleDeclaration module = new ModuleDeclaration(in
+					.readInt());
+			in.readFully(new byte[in.readInt()]);
+			return module;
+		}
+	}
+
+	private ISourceModule createModule(String name, String contents)
+			throws Exception {
+		final String path = "/" + PROJECT + "/src/" + name;
+		createFile(path, contents);
+		return getSourceModule(path);
+	}
+
+	private static int getLength(ASTCacheEntry entry) {
+		return ((ModuleDeclaration) entry.module).sourceEnd();
+	}
+
+	public void testStoreRestore() throws Exception {
+		setOptions(64, false);
+		final ISourceModule module = createModule("store.txt", "store");
+		final PersistentASTCache cache = new TestASTCache(0);
+		assertNull(cache.restoreModule(module));
+		cache.storeModule(module, new ModuleDeclaration(5), null);
+		final ASTCacheEntry entry = cache.restoreModule(module);
+		assertNotNull(entry);
+		assertEquals(5, getLength(entry));
+		assertNull(entry.problems);
+	}
+
+	public void testProblems() throws Exception {
+		setOptions(64, false);
+		final ISourceModule module = createModule("problems.txt", "problems");
+		final ProblemCollector problems = new ProblemCollector();
+		final DefaultProblem error = new DefaultProblem("problems.txt",
+				"error", 1, new String[] { "a", "b" }, ProblemSeverities.Error
+						| ProblemSeverities.Fatal, 0, 3, 0, 1);
+		final DefaultProblem warning = new DefaultProblem("problems.txt",
+				"warning", 2, null, ProblemSeverities.Warning
+						| ProblemSeverities.Optional, 4, 8, 1, 2);
+		problems.reportProblem(error);
+		problems.reportProblem(warning);
+		problems.reportTask("TODO task", 2, 1, 10, 14);
+		new TestASTCache(0).storeModule(module, new ModuleDeclaration(8),
+				problems);
+		final ASTCacheEntry entry = new TestASTCache(0).restoreModule(module);
+		assertNotNull(entry);
+		final List<IProblem> restored = entry.problems.getProblems();
+		assertEquals(3, restored.size());
+		assertEquals(error, restored.get(0));
+		assertEquals(ProblemSeverities.Error | ProblemSeverities.Fatal,
+				((DefaultProblem) restored.get(0)).getSeverity());
+		assertEquals(warning, restored.get(1));
+		assertEquals(ProblemSeverities.Warning | ProblemSeverities.Optional,
+				((DefaultProblem) restored.get(1)).getSeverity());
+		final IProblem task = restored.get(2);
+		assertEquals("TODO task", task.getMessage());
+		assertEquals(2, task.getSourceLineNumber());
+		assertEquals(10, task.getSourceStart());
+		assertEquals(14, task.getSourceEnd());
+	}
+
+	public void testSameContentsDifferentPath() throws Exception {
+		setOptions(64, false);
+		final ISourceModule first = createModule("first.txt", "same");
+		final ISourceModule second = createModule("second.txt", "same");
+		final PersistentASTCache cache = new TestASTCache(0);
+		final ProblemCollector problems = new ProblemCollector();
+		problems.reportProblem(new DefaultProblem("first.txt", "error", 1,
+				null, ProblemSeverities.Error, 0, 1, 0));
+		cache.storeModule(first, new ModuleDeclaration(4), problems);
+		assertNotNull(cache.restoreModule(first));
+		// problems refer to the first file
+		assertNull(cache.restoreModule(second));
+	}
+
+	public void testChangedContents() throws Exception {
+		setOptions(64, false);
+		final ISourceModule module = createModule("changed.txt", "old");
+		final PersistentASTCache cache = new TestASTCache(0);
+		cache.storeModule(module, new ModuleDeclaration(3), null);
+		assertNotNull(cache.restoreModule(module));
+		editFile("/" + PROJECT + "/src/changed.txt", "changed");
+		assertNull(cache.restoreModule(module));
+		cache.storeModule(module, new ModuleDeclaration(7), null);
+		assertEquals(7, getLength(cache.restoreModule(module)));
+	}
+
+	public void testKeyOfParsedContents() throws Exception {
+		setOptions(64, false);
+		final ISourceModule module = createModule("parsed.txt", "parsed");
+		final PersistentASTCache cache = new TestASTCache(0);
+		final String key = cache.getKey(module, "parsed".toCharArray());
+		assertNotNull(key);
+		assertNull(cache.restoreModule(key));
+		// the file is changed while the old contents are parsed
+		editFile("/" + PROJECT + "/src/parsed.txt", "changed");
+		cache.storeModule(key, new ModuleDeclaration(6), null);
+		assertNull(cache.restoreModule(module));
+		assertEquals(6, getLength(cache.restoreModule(key)));
+		editFile("/" + PROJECT + "/src/parsed.txt", "parsed");
+		assertEquals(6, getLength(cache.restoreModule(module)));
+	}
+
+	public void testReopen() throws Exception {
+		setOptions(64, false);
+		final ISourceModule module = createModule("reopen.txt", "reopen");
+		new TestASTCache(0).storeModule(module, new ModuleDeclaration(6),
+				null);
+		setOptions(64, true);
+		final ASTCacheEntry entry = new TestASTCache(0).restoreModule(module);
+		assertNotNull(entry);
+		assertEquals(6, getLength(entry));
+	}
+
+	public void testMappedAppend() throws Exception {
+		setOptions(64, true);
+		final PersistentASTCache cache = new TestASTCache(100);
+		final ISourceModule[] modules = new ISourceModule[10];
+		for (int i = 0; i < modules.length; ++i) {
+			modules[i] = createModule("mapped" + i + ".txt", "mapped" + i);
+			cache.storeModule(modules[i], new ModuleDeclaration(i), null);
+			// modules stored after the file is mapped are read too
+			for (int j = 0; j <= i; ++j) {
+				assertEquals(j, getLength(cache.restoreModule(modules[j])));
+			}
+		}
+	}
+
+	public void testSizeLimit() throws Exception {
+		checkSizeLimit(false, "limit");
+	}
+
+	public void testMappedSizeLimit() throws Exception {
+		checkSizeLimit(true, "mappedLimit");
+	}
+
+	private void checkSizeLimit(boolean mapped, String prefix)
+			throws Exception {
+		// 1 megabyte, each AST takes 200 kilobytes
+		setOptions(1, mapped);
+		final PersistentASTCache cache = new TestASTCache(200 * 1024);
+		final ISourceModule[] modules = new ISourceModule[8];
+		for (int i = 0; i < modules.length; ++i) {
+			modules[i] = createModule(prefix + i + ".txt", prefix + i);
+			cache.storeModule(modules[i], new ModuleDeclaration(i), null);
+		}
+		assertNull(cache.restoreModule(modules[0]));
+		final int last = modules.length - 1;
+		assertEquals(last, getLength(cache.restoreModule(modules[last])));
+		long size = 0;
+		final File[] files = directory.listFiles();
+		for (int i = 0; i < files.length; ++i) {
+			size += files[i].length();
+		}
+		assertTrue(size <= 1024 * 1024);
+	}
+}
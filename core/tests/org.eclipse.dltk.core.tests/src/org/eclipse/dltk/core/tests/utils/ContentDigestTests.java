@@ -0,0 +1,122 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Sage and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Sage - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.dltk.core.tests.utils;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.runtime.Path;
+import org.eclipse.dltk.core.ContentDigest;
+import org.eclipse.dltk.core.ISourceModule;
+
+public class ContentDigestTests extends TestCase {
+
+	private static String sha1(String contents) throws Exception {
+		byte[] bytes = MessageDigest.getInstance("SHA-1").digest(
+				contents.getBytes("UTF-8"));
+		StringBuffer sb = new StringBuffer();
+		for (int i = 0; i < bytes.length; ++i) {
+			sb.append(Character.forDigit((bytes[i] >> 4) & 0xf, 16));
+			sb.append(Character.forDigit(bytes[i] & 0xf, 16));
+		}
+		return sb.toString();
+	}
+
+	public void testEmpty() throws Exception {
+		assertEquals(sha1(""), ContentDigest.compute(new char[0]));
+	}
+
+	public void testMultibyte() throws Exception {
+		// longer than the encoding buffer, with characters of 1 to 4 bytes
+		StringBuffer sb = new StringBuffer();
+		for (int i = 0; i < 5000; ++i) {
+			sb.append("a\u00e9\u20ac\ud834\udd1e");
+		}
+		String contents = sb.toString();
+		assertEquals(sha1(contents), ContentDigest.compute(contents
+				.toCharArray()));
+	}
+
+	public void testDifferentContents() throws Exception {
+		assertFalse(ContentDigest.compute("a".toCharArray()).equals(
+				ContentDigest.compute("b".toCharArray())));
+	}
+
+	/**
+	 * Returns source module answering the given contents
+	 */
+	private static ISourceModule createModule(final String name,
+			final String contents) {
+		return (ISourceModule) Proxy.newProxyInstance(ISourceModule.class
+				.getClassLoader(), new Class<?>[] { ISourceModule.class },
+				new InvocationHandler() {
+					public Object invoke(Object proxy, Method method,
+							Object[] args) {
+						if ("getSourceAsCharArray".equals(method.getName())) {
+							return contents.toCharArray();
+						}
+						if ("getPath".equals(method.getName())) {
+							return new Path("/project/" + name);
+						}
+						if ("hashCode".equals(method.getName())) {
+							return Integer.valueOf(System
+									.identityHashCode(proxy));
+						}
+						if ("equals".equals(method.getName())) {
+							return Boolean.valueOf(proxy == args[0]);
+						}
+						return null;
+					}
+				});
+	}
+
+	public void testParallel() throws Exception {
+		List<ISourceModule> modules = new ArrayList<ISourceModule>();
+		for (int i = 0; i < 10; ++i) {
+			modules.add(createModule("file" + i, "contents" + i));
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(3);
+		try {
+			Map<ISourceModule, String> digests = ContentDigest.compute(
+					modules, executor);
+			assertEquals(ContentDigest.compute(modules, null), digests);
+			assertEquals(modules.size(), digests.size());
+			assertEquals(sha1("contents3"), digests.get(modules.get(3)));
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	public void testInterrupted() throws Exception {
+		List<ISourceModule> modules = new ArrayList<ISourceModule>();
+		modules.add(createModule("file1", "contents1"));
+		modules.add(createModule("file2", "contents2"));
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			Thread.currentThread().interrupt();
+			assertTrue(ContentDigest.compute(modules, executor).isEmpty());
+			// the interrupted status is kept for the caller
+			assertTrue(Thread.interrupted());
+		} finally {
+			Thread.interrupted();
+			executor.shutdownNow();
+		}
+	}
+}